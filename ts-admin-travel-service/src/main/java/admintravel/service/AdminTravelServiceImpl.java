@@ -2,6 +2,7 @@ package admintravel.service;
 
 import edu.fudan.common.entity.AdminTrip;
 import edu.fudan.common.entity.Route;
+import edu.fudan.common.entity.RouteTopology;
 import edu.fudan.common.entity.TrainType;
 import edu.fudan.common.entity.TravelInfo;
 import edu.fudan.common.util.JsonUtils;
@@ -215,9 +216,7 @@ public class AdminTravelServiceImpl implements AdminTravelService {
         // Check the route list for this train. Check that the required start and arrival stations are
         // in the list of stops that are not on the route, and check that the location of the start
         // station is before the stop
-        if (!route.getStations().contains(start)
-                || !route.getStations().contains(end)
-                || (route.getStations().indexOf(start) >= route.getStations().indexOf(end))) {
+        if (!route.topology().isBefore(start, end)) {
             response.setStatus(0);
             response.setMsg("Station not correct in Route");
             return response;
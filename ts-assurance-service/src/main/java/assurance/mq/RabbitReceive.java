@@ -0,0 +1,53 @@
+package assurance.mq;
+
+import assurance.config.Queues;
+import assurance.repository.AssuranceRepository;
+import assurance.service.AssuranceService;
+import edu.fudan.common.entity.BookingCompletedInfo;
+import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Buys the assurance chosen at booking time once the order is stored.
+ * Deliveries are at least once, so an order that already has an assurance is skipped.
+ */
+@Component
+public class RabbitReceive {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitReceive.class);
+
+    @Autowired
+    private AssuranceService assuranceService;
+
+    @Autowired
+    private AssuranceRepository assuranceRepository;
+
+    @RabbitListener(queues = Queues.bookingCompletedQueue)
+    public void process(String payload) {
+        BookingCompletedInfo info = JsonUtils.json2Object(payload, BookingCompletedInfo.class);
+        if (info == null) {
+            logger.error("[process][json2Object][Receive booking completed object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable booking completed message");
+        }
+        if (info.getAssurance() == 0) {
+            return;
+        }
+        if (assuranceRepository.findByOrderId(info.getOrderId()) != null) {
+            logger.info("[process][Assurance already exists, skip][OrderId: {}]", info.getOrderId());
+            return;
+        }
+        Response response = assuranceService.create(info.getAssurance(), info.getOrderId(), null);
+        if (response.getStatus() != 1) {
+            //retried and then dead-lettered like any other failure
+            logger.error("[process][Create assurance fail][OrderId: {}, msg: {}]", info.getOrderId(), response.getMsg());
+            throw new IllegalStateException("create assurance failed: " + response.getMsg());
+        }
+        logger.info("[process][Create assurance][OrderId: {}, msg: {}]", info.getOrderId(), response.getMsg());
+    }
+}
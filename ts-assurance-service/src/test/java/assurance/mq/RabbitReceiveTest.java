@@ -0,0 +1,55 @@
+package assurance.mq;
+
+import assurance.repository.AssuranceRepository;
+import assurance.service.AssuranceService;
+import edu.fudan.common.entity.BookingCompletedInfo;
+import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.util.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+@RunWith(JUnit4.class)
+public class RabbitReceiveTest {
+
+    @InjectMocks
+    private RabbitReceive rabbitReceive;
+
+    @Mock
+    private AssuranceService assuranceService;
+
+    @Mock
+    private AssuranceRepository assuranceRepository;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testProcessCreatesAssurance() {
+        Mockito.when(assuranceRepository.findByOrderId("order_id")).thenReturn(null);
+        Mockito.when(assuranceService.create(1, "order_id", null)).thenReturn(new Response<>(1, "Success", null));
+        rabbitReceive.process(payload());
+        Mockito.verify(assuranceService).create(1, "order_id", null);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testProcessThrowsWhenCreateFails() {
+        Mockito.when(assuranceRepository.findByOrderId("order_id")).thenReturn(null);
+        Mockito.when(assuranceService.create(1, "order_id", null)).thenReturn(new Response<>(0, "Assurance type doesn't exist", null));
+        rabbitReceive.process(payload());
+    }
+
+    private String payload() {
+        BookingCompletedInfo info = new BookingCompletedInfo();
+        info.setOrderId("order_id");
+        info.setAssurance(1);
+        return JsonUtils.object2Json(info);
+    }
+}
@@ -1,7 +1,6 @@
 package fdse.microservice.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.*;
 import edu.fudan.common.util.JsonUtils;
 import edu.fudan.common.util.Response;
@@ -9,6 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -30,6 +30,9 @@ public class BasicServiceImpl implements BasicService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private TrainTypeClient trainTypeClient;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(BasicServiceImpl.class);
 
     private String getServiceUrl(String serviceName) {
@@ -80,14 +83,9 @@ public class BasicServiceImpl implements BasicService {
 
         //Check the route list for this train. Check that the required start and arrival stations are in the list of stops that are not on the route, and check that the location of the start station is before the stop
         //Trains that meet the above criteria are added to the return list
-        int indexStart = 0;
-        int indexEnd = 0;
-        if (route.getStations().contains(start) &&
-                route.getStations().contains(end) &&
-                route.getStations().indexOf(start) < route.getStations().indexOf(end)){
-            indexStart = route.getStations().indexOf(start);
-            indexEnd = route.getStations().indexOf(end);
-            LOGGER.info("[queryForTravel][query start index and end index][indexStart: {} indexEnd: {}]", indexStart, indexEnd);
+        RouteTopology topology = route.topology();
+        if (topology.isBefore(start, end)){
+            LOGGER.info("[queryForTravel][query start index and end index][indexStart: {} indexEnd: {}]", topology.indexOf(start), topology.indexOf(end));
             LOGGER.info("[queryForTravel][query stations and distances][stations: {} distances: {}]", route.getStations(), route.getDistances());
         }else {
             result.setStatus(false);
@@ -95,21 +93,14 @@ public class BasicServiceImpl implements BasicService {
             response.setMsg("Station not correct in Route");
             return response;
         }
-        PriceConfig priceConfig = queryPriceConfigByRouteIdAndTrainType(routeId, trainType.getName(), headers);
+        List<FareQuote> fares = quoteFares(Collections.singletonList(new FareQuote(routeId, trainType.getName(), start, end)), headers);
         HashMap<String, String> prices = new HashMap<>();
-        try {
-            int distance = 0;
-            distance = route.getDistances().get(indexEnd) - route.getDistances().get(indexStart);
-            /**
-             * We need the price Rate and distance (starting station).
-             */
-            double priceForEconomyClass = distance * priceConfig.getBasicPriceRate();
-            double priceForConfortClass = distance * priceConfig.getFirstClassPriceRate();
-            prices.put("economyClass", "" + priceForEconomyClass);
-            prices.put("confortClass", "" + priceForConfortClass);
-        }catch (Exception e){
-                prices.put("economyClass", "95.0");
-                prices.put("confortClass", "120.0");
+        if (fares != null && fares.get(0).isPriced()) {
+            prices.put("economyClass", "" + fares.get(0).getEconomyClass());
+            prices.put("confortClass", "" + fares.get(0).getConfortClass());
+        } else {
+            prices.put("economyClass", "95.0");
+            prices.put("confortClass", "120.0");
         }
         result.setRoute(route);
         result.setPrices(prices);
@@ -249,9 +240,7 @@ public class BasicServiceImpl implements BasicService {
                 for(String t: trips){
                     String start = tripInfos.get(t).getStartPlace();
                     String end = tripInfos.get(t).getEndPlace();
-                    if (!route.getStations().contains(start) ||
-                            !route.getStations().contains(end) ||
-                            route.getStations().indexOf(start) >= route.getStations().indexOf(end)){
+                    if (!route.topology().isBefore(start, end)){
                         avaTrips.remove(t);
                     }
                 }
@@ -263,46 +252,37 @@ public class BasicServiceImpl implements BasicService {
             return response;
         }
 
-        List<String> routeIdAndTypes = new ArrayList<>();
-        for(String tripNumber: avaTrips){
-            String routeId = tripInfos.get(tripNumber).getTrip().getRouteId();
-            String trainType = tripInfos.get(tripNumber).getTrip().getTrainTypeName();
-            routeIdAndTypes.add(routeId+":"+trainType);
+        List<String> tripNumbers = new ArrayList<>(avaTrips);
+        List<FareQuote> queries = new ArrayList<>();
+        for(String tripNumber: tripNumbers){
+            Travel info = tripInfos.get(tripNumber);
+            queries.add(new FareQuote(info.getTrip().getRouteId(), info.getTrip().getTrainTypeName(), info.getStartPlace(), info.getEndPlace()));
         }
-        Map<String, PriceConfig> pcMap = queryPriceConfigByRouteIdsAndTrainTypes(routeIdAndTypes, headers);
+        List<FareQuote> fares = quoteFares(queries, headers);
 
         Map<String, TravelResult> trMap = new HashMap<>();
-        for(String tripNumber: avaTrips){
+        for(int i = 0; i < tripNumbers.size(); i++){
+            String tripNumber = tripNumbers.get(i);
             Travel info = tripInfos.get(tripNumber);
             String trainType = info.getTrip().getTrainTypeName();
             String routeId = info.getTrip().getRouteId();
             Route route = routeMap.get(routeId);
 
-            int indexStart = route.getStations().indexOf(info.getStartPlace());
-            int indexEnd = route.getStations().indexOf(info.getEndPlace());
-
-            double basicPriceRate = 0.75;
-            double firstPriceRate = 1;
-            PriceConfig priceConfig = pcMap.get(routeId+":"+trainType);
-            if(priceConfig != null){
-                basicPriceRate = priceConfig.getBasicPriceRate();
-                firstPriceRate = priceConfig.getFirstClassPriceRate();
-            }
-
             HashMap<String, String> prices = new HashMap<>();
-            try {
-                int distance = 0;
-                distance = route.getDistances().get(indexEnd) - route.getDistances().get(indexStart);
-                /**
-                 * We need the price Rate and distance (starting station).
-                 */
-                double priceForEconomyClass = distance * basicPriceRate;
-                double priceForConfortClass = distance * firstPriceRate;
-                prices.put("economyClass", "" + priceForEconomyClass);
-                prices.put("confortClass", "" + priceForConfortClass);
-            }catch (Exception e){
-                prices.put("economyClass", "95.0");
-                prices.put("confortClass", "120.0");
+            FareQuote fare = fares == null ? null : fares.get(i);
+            if (fare != null && fare.isPriced()) {
+                prices.put("economyClass", "" + fare.getEconomyClass());
+                prices.put("confortClass", "" + fare.getConfortClass());
+            } else {
+                //no price config for the route and train type, default rates
+                try {
+                    int distance = route.topology().distance(info.getStartPlace(), info.getEndPlace());
+                    prices.put("economyClass", "" + distance * 0.75);
+                    prices.put("confortClass", "" + distance * 1.0);
+                }catch (Exception e){
+                    prices.put("economyClass", "95.0");
+                    prices.put("confortClass", "120.0");
+                }
             }
 
 
@@ -371,33 +351,19 @@ public class BasicServiceImpl implements BasicService {
 
     public List<TrainType> queryTrainTypeByNames(List<String> trainTypeNames, HttpHeaders headers) {
         BasicServiceImpl.LOGGER.info("[queryTrainTypeByNames][Query Train Type][Train Type names: {}]", trainTypeNames);
-        HttpEntity requestEntity = new HttpEntity(trainTypeNames, null);
-        String train_service_url=getServiceUrl("ts-train-service");
-        ResponseEntity<Response> re = restTemplate.exchange(
-                train_service_url + "/api/v1/trainservice/trains/byNames",
-                HttpMethod.POST,
-                requestEntity,
-                Response.class);
-        Response<List<TrainType>>  response = re.getBody();
-        if(response.getStatus() == 0){
-            return null;
+        List<TrainType> tts = new ArrayList<>();
+        for (String trainTypeName : trainTypeNames) {
+            TrainType trainType = trainTypeClient.byName(trainTypeName);
+            if (trainType != null) {
+                tts.add(trainType);
+            }
         }
-        List<TrainType> tts = Arrays.asList(JsonUtils.conveterObject(response.getData(), TrainType[].class));
-        return tts;
+        return tts.isEmpty() ? null : tts;
     }
 
     public TrainType queryTrainTypeByName(String trainTypeName, HttpHeaders headers) {
         BasicServiceImpl.LOGGER.info("[queryTrainTypeByName][Query Train Type][Train Type name: {}]", trainTypeName);
-        HttpEntity requestEntity = new HttpEntity(null);
-        String train_service_url=getServiceUrl("ts-train-service");
-        ResponseEntity<Response> re = restTemplate.exchange(
-                train_service_url + "/api/v1/trainservice/trains/byName/" + trainTypeName,
-                HttpMethod.GET,
-                requestEntity,
-                Response.class);
-        Response  response = re.getBody();
-
-        return JsonUtils.conveterObject(response.getData(), TrainType.class);
+        return trainTypeClient.byName(trainTypeName);
     }
 
     private List<Route> getRoutesByRouteIds(List<String> routeIds, HttpHeaders headers) {
@@ -439,47 +405,25 @@ public class BasicServiceImpl implements BasicService {
         }
     }
 
-    private PriceConfig queryPriceConfigByRouteIdAndTrainType(String routeId, String trainType, HttpHeaders headers) {
-        BasicServiceImpl.LOGGER.info("[queryPriceConfigByRouteIdAndTrainType][Query For Price Config][RouteId: {} ,TrainType: {}]", routeId, trainType);
-        HttpEntity requestEntity = new HttpEntity(null, null);
+    /**
+     * @return a quote per query, in order; null when the price service failed
+     */
+    private List<FareQuote> quoteFares(List<FareQuote> queries, HttpHeaders headers) {
+        BasicServiceImpl.LOGGER.info("[quoteFares][Quote fares][Queries: {}]", queries.size());
+        HttpEntity requestEntity = new HttpEntity(queries, null);
         String price_service_url=getServiceUrl("ts-price-service");
-        ResponseEntity<Response> re = restTemplate.exchange(
-                price_service_url + "/api/v1/priceservice/prices/" + routeId + "/" + trainType,
-                HttpMethod.GET,
-                requestEntity,
-                Response.class);
-        Response result = re.getBody();
-
-        BasicServiceImpl.LOGGER.info("[queryPriceConfigByRouteIdAndTrainType][Response Resutl to String][result: {}]", result.toString());
-        return  JsonUtils.conveterObject(result.getData(), PriceConfig.class);
-    }
-
-    private Map<String, PriceConfig> queryPriceConfigByRouteIdsAndTrainTypes(List<String> routeIdsTypes, HttpHeaders headers) {
-        BasicServiceImpl.LOGGER.info("[queryPriceConfigByRouteIdsAndTrainTypes][Query For Price Config][RouteId and TrainType: {}]", routeIdsTypes);
-        HttpEntity requestEntity = new HttpEntity(routeIdsTypes, null);
-        String price_service_url=getServiceUrl("ts-price-service");
-        ResponseEntity<Response> re = restTemplate.exchange(
-                price_service_url + "/api/v1/priceservice/prices/byRouteIdsAndTrainTypes",
+        ResponseEntity<Response<List<FareQuote>>> re = restTemplate.exchange(
+                price_service_url + "/api/v1/priceservice/prices/quotes",
                 HttpMethod.POST,
                 requestEntity,
-                Response.class);
-        Response<Map<String, PriceConfig>> result = re.getBody();
-
-        Map<String, PriceConfig> pcMap;
-        if ( result.getStatus() == 0) {
-            BasicServiceImpl.LOGGER.warn("[queryPriceConfigByRouteIdsAndTrainTypes][Get Price Config by routeId and trainType Failed][Fail msg: {}]", result.getMsg());
+                new ParameterizedTypeReference<Response<List<FareQuote>>>() {
+                });
+        Response<List<FareQuote>> result = re.getBody();
+        if (result == null || result.getStatus() != 1 || result.getData() == null || result.getData().size() != queries.size()) {
+            BasicServiceImpl.LOGGER.warn("[quoteFares][Quote fares failed][Fail msg: {}]", result == null ? null : result.getMsg());
             return null;
-        } else {
-            ObjectMapper mapper = new ObjectMapper();
-            try{
-                pcMap = mapper.readValue(JsonUtils.object2Json(result.getData()), new TypeReference<Map<String, PriceConfig>>(){});
-            }catch(Exception e) {
-                BasicServiceImpl.LOGGER.warn("[queryPriceConfigByRouteIdsAndTrainTypes][Get Price Config by routeId and trainType Failed][Fail msg: {}]", e.getMessage());
-                return null;
-            }
-            BasicServiceImpl.LOGGER.info("[queryPriceConfigByRouteIdsAndTrainTypes][Get Price Config by routeId and trainType][Success][priceConfigs: {}]", result.getData());
-            return pcMap;
         }
+        return result.getData();
     }
 
 }
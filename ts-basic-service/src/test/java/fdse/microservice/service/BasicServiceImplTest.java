@@ -1,5 +1,6 @@
 package fdse.microservice.service;
 
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.*;
 import edu.fudan.common.util.Response;
 import edu.fudan.common.util.StringUtils;
@@ -15,7 +16,10 @@ import org.mockito.MockitoAnnotations;
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 @RunWith(JUnit4.class)
@@ -27,6 +31,9 @@ public class BasicServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private TrainTypeClient trainTypeClient;
+
     private HttpHeaders headers = new HttpHeaders();
     private HttpEntity requestEntity = new HttpEntity(headers);
 
@@ -125,4 +132,14 @@ public class BasicServiceImplTest {
         Assert.assertNull(result);
     }
 
+    @Test
+    public void testQueryTrainTypeByNamesSkipsUnknown() {
+        TrainType trainType = new TrainType("GaoTieOne", 10, 5);
+        Mockito.when(trainTypeClient.byName("GaoTieOne")).thenReturn(trainType);
+        List<TrainType> result = basicServiceImpl.queryTrainTypeByNames(Arrays.asList("GaoTieOne", "Unknown"), headers);
+        Assert.assertEquals(Collections.singletonList(trainType), result);
+        Assert.assertNull(basicServiceImpl.queryTrainTypeByNames(Collections.singletonList("Unknown"), headers));
+        Mockito.verifyNoInteractions(restTemplate);
+    }
+
 }
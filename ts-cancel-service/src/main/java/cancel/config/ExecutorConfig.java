@@ -0,0 +1,60 @@
+package cancel.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Pools of the disruption cancellation, kept apart from the request threads
+ * so a cancelled train never slows down the normal cancel traffic.
+ *
+ * @author fdse
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${cancel.disruption.jobs:2}")
+    private int jobs;
+
+    @Value("${cancel.disruption.job-queue-capacity:10}")
+    private int jobQueueCapacity;
+
+    @Value("${cancel.disruption.refund-workers:8}")
+    private int refundWorkers;
+
+    @Value("${cancel.disruption.refund-queue-capacity:200}")
+    private int refundQueueCapacity;
+
+    /**
+     * runs the disruption jobs; a full queue rejects the start request
+     */
+    @Bean
+    public Executor disruptionExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(jobs);
+        executor.setMaxPoolSize(jobs);
+        executor.setQueueCapacity(jobQueueCapacity);
+        executor.setThreadNamePrefix("DisruptionExecutor-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * bounds the refunds in flight; a saturated pool runs the refund on the job thread
+     */
+    @Bean
+    public Executor refundExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(refundWorkers);
+        executor.setMaxPoolSize(refundWorkers);
+        executor.setQueueCapacity(refundQueueCapacity);
+        executor.setThreadNamePrefix("RefundExecutor-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
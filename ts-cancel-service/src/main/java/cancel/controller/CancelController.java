@@ -1,6 +1,8 @@
 package cancel.controller;
 
+import cancel.entity.DisruptionInfo;
 import cancel.service.CancelService;
+import cancel.service.DisruptionService;
 import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +24,9 @@ public class CancelController {
     @Autowired
     CancelService cancelService;
 
+    @Autowired
+    DisruptionService disruptionService;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(CancelController.class);
 
     @GetMapping(path = "/welcome")
@@ -51,4 +56,32 @@ public class CancelController {
         }
     }
 
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/cancel/disruptions")
+    public HttpEntity startDisruption(@RequestBody DisruptionInfo info, @RequestHeader HttpHeaders headers) {
+        CancelController.LOGGER.info("[startDisruption][Cancel Train][TrainNumber: {}, TravelDate: {}]", info.getTrainNumber(), info.getTravelDate());
+        return ok(disruptionService.startDisruption(info, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @GetMapping(path = "/cancel/disruptions/{jobId}")
+    public HttpEntity getDisruption(@PathVariable String jobId, @RequestHeader HttpHeaders headers) {
+        CancelController.LOGGER.info("[getDisruption][Get Disruption][JobId: {}]", jobId);
+        return ok(disruptionService.getDisruption(jobId, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @GetMapping(path = "/cancel/disruptions/{jobId}/orders")
+    public HttpEntity getDisruptionOrders(@PathVariable String jobId, @RequestHeader HttpHeaders headers) {
+        CancelController.LOGGER.info("[getDisruptionOrders][Get Disruption Orders][JobId: {}]", jobId);
+        return ok(disruptionService.getDisruptionOrders(jobId, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/cancel/disruptions/{jobId}/resume")
+    public HttpEntity resumeDisruption(@PathVariable String jobId, @RequestHeader HttpHeaders headers) {
+        CancelController.LOGGER.info("[resumeDisruption][Resume Disruption][JobId: {}]", jobId);
+        return ok(disruptionService.resumeDisruption(jobId, headers));
+    }
+
 }
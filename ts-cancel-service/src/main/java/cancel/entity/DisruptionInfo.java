@@ -0,0 +1,26 @@
+package cancel.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Train whose orders are all cancelled and refunded
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class DisruptionInfo {
+
+    private String trainNumber;
+
+    /**
+     * travel date exactly as stored on the orders
+     */
+    private String travelDate;
+
+    public DisruptionInfo() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,53 @@
+package cancel.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Progress of the cancellation of one train. The orders are processed in
+ * id order and lastOrderId is the checkpoint a resumed job continues from.
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "disruption_job")
+public class DisruptionJob {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    private String trainNumber;
+
+    private String travelDate;
+
+    @Enumerated(EnumType.STRING)
+    private DisruptionJobStatus status;
+
+    /**
+     * last order id read from the order service
+     */
+    @Column(length = 36)
+    private String lastOrderId;
+
+    private int found;
+
+    private int refunded;
+
+    private int skipped;
+
+    private int refundFailed;
+
+    private String msg;
+
+    private long createdAt;
+
+    private long updatedAt;
+
+    public DisruptionJob() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,19 @@
+package cancel.entity;
+
+/**
+ * @author fdse
+ */
+public enum DisruptionJobStatus {
+    /**
+     * orders are being cancelled and refunded
+     */
+    RUNNING,
+    /**
+     * every order is cancelled and refunded
+     */
+    DONE,
+    /**
+     * the job stopped or some refunds failed, it can be resumed
+     */
+    INCOMPLETE
+}
@@ -0,0 +1,51 @@
+package cancel.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Result of one order of a disruption job
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "disruption_order", indexes = {@Index(name = "idx_disruption_order_job", columnList = "jobId, state")})
+public class DisruptionOrder {
+
+    /**
+     * job id and order id
+     */
+    @Id
+    @Column(length = 80)
+    private String id;
+
+    @Column(length = 36)
+    private String jobId;
+
+    @Column(length = 36)
+    private String orderId;
+
+    @Column(length = 36)
+    private String accountId;
+
+    /**
+     * status of the order before the cancellation
+     */
+    private int orderStatus;
+
+    private String refund;
+
+    @Enumerated(EnumType.STRING)
+    private DisruptionOrderState state;
+
+    private int attempts;
+
+    private String msg;
+
+    public DisruptionOrder() {
+        //Default Constructor
+    }
+
+}
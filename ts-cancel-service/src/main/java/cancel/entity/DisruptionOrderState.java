@@ -0,0 +1,27 @@
+package cancel.entity;
+
+/**
+ * @author fdse
+ */
+public enum DisruptionOrderState {
+    /**
+     * found on the train, not cancelled yet
+     */
+    PENDING,
+    /**
+     * cancelled, refund outstanding
+     */
+    CANCELLED,
+    /**
+     * cancelled and refunded, or nothing to refund
+     */
+    REFUNDED,
+    /**
+     * the order service refused to cancel it, usually because it changed meanwhile
+     */
+    SKIPPED,
+    /**
+     * the refund failed, a resume tries it again
+     */
+    REFUND_FAILED
+}
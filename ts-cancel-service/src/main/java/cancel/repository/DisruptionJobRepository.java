@@ -0,0 +1,34 @@
+package cancel.repository;
+
+import cancel.entity.DisruptionJob;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface DisruptionJobRepository extends CrudRepository<DisruptionJob, String> {
+
+    @Override
+    Optional<DisruptionJob> findById(String id);
+
+    Optional<DisruptionJob> findFirstByTrainNumberAndTravelDateOrderByCreatedAtDesc(String trainNumber, String travelDate);
+
+    /**
+     * Mark the job running unless a live runner holds it. A running job whose
+     * runner saved nothing since staleBefore is taken over.
+     *
+     * @return 1 when this caller got the job, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE DisruptionJob j SET j.status = cancel.entity.DisruptionJobStatus.RUNNING, j.msg = NULL, j.updatedAt = ?2 " +
+            "WHERE j.id = ?1 AND (j.status <> cancel.entity.DisruptionJobStatus.RUNNING OR j.updatedAt < ?3)")
+    int claim(String id, long now, long staleBefore);
+}
@@ -0,0 +1,24 @@
+package cancel.repository;
+
+import cancel.entity.DisruptionOrder;
+import cancel.entity.DisruptionOrderState;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface DisruptionOrderRepository extends CrudRepository<DisruptionOrder, String> {
+
+    List<DisruptionOrder> findByJobId(String jobId);
+
+    List<DisruptionOrder> findByJobIdAndStateIn(String jobId, Collection<DisruptionOrderState> states);
+
+    long countByJobId(String jobId);
+
+    long countByJobIdAndState(String jobId, DisruptionOrderState state);
+}
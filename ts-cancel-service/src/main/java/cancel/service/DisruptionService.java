@@ -0,0 +1,49 @@
+package cancel.service;
+
+import cancel.entity.DisruptionInfo;
+import edu.fudan.common.util.Response;
+import org.springframework.http.HttpHeaders;
+
+/**
+ * Cancels every order of a cancelled train and refunds it
+ *
+ * @author fdse
+ */
+public interface DisruptionService {
+
+    /**
+     * start cancelling the orders of a train in the background
+     *
+     * @param info    train number and travel date
+     * @param headers headers of the operator, used for the order and payment calls
+     * @return Response with the job
+     */
+    Response startDisruption(DisruptionInfo info, HttpHeaders headers);
+
+    /**
+     * get the progress of a job
+     *
+     * @param jobId   job id
+     * @param headers headers
+     * @return Response
+     */
+    Response getDisruption(String jobId, HttpHeaders headers);
+
+    /**
+     * get the result of every order of a job
+     *
+     * @param jobId   job id
+     * @param headers headers
+     * @return Response
+     */
+    Response getDisruptionOrders(String jobId, HttpHeaders headers);
+
+    /**
+     * retry the orders left over by a job and continue from its checkpoint
+     *
+     * @param jobId   job id
+     * @param headers headers of the operator
+     * @return Response with the job
+     */
+    Response resumeDisruption(String jobId, HttpHeaders headers);
+}
@@ -0,0 +1,346 @@
+package cancel.service;
+
+import cancel.entity.*;
+import cancel.repository.DisruptionJobRepository;
+import cancel.repository.DisruptionOrderRepository;
+import edu.fudan.common.entity.Order;
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.entity.OrderStatusChangeInfo;
+import edu.fudan.common.entity.OrderStatusChangeResult;
+import edu.fudan.common.security.jwt.ServiceToken;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Cancels the orders of a train page by page on the disruption pool. Every
+ * order gets a result row before it is cancelled, and the job keeps the id
+ * of the last order read, so a stopped job resumes where it left off and
+ * never refunds an order twice. Refunds of a page run in parallel on the
+ * bounded refund pool. A job is claimed in the database before it runs, so
+ * only one instance works on it at a time, and the calls are made with the
+ * service token because the job outlives the operator request.
+ *
+ * @author fdse
+ */
+@Service
+public class DisruptionServiceImpl implements DisruptionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DisruptionServiceImpl.class);
+
+    private static final List<Integer> CANCELLABLE = OrderStatus.getAllowedSourceCodes(OrderStatus.CANCEL.getCode());
+
+    private static final List<DisruptionOrderState> LEFT_OVER = Arrays.asList(
+            DisruptionOrderState.PENDING, DisruptionOrderState.CANCELLED, DisruptionOrderState.REFUND_FAILED);
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private DisruptionJobRepository disruptionJobRepository;
+
+    @Autowired
+    private DisruptionOrderRepository disruptionOrderRepository;
+
+    @Autowired
+    @Qualifier("disruptionExecutor")
+    private Executor disruptionExecutor;
+
+    @Autowired
+    @Qualifier("refundExecutor")
+    private Executor refundExecutor;
+
+    @Value("${cancel.disruption.page-size:200}")
+    int pageSize = 200;
+
+    /**
+     * a running job not saved for this long lost its runner and can be taken over
+     */
+    @Value("${cancel.disruption.claim-timeout-ms:300000}")
+    long claimTimeoutMs = 300000;
+
+    @Override
+    public Response startDisruption(DisruptionInfo info, HttpHeaders headers) {
+        if (info == null || info.getTrainNumber() == null || info.getTravelDate() == null) {
+            return new Response<>(0, "Train number and travel date are required", null);
+        }
+        Optional<DisruptionJob> last = disruptionJobRepository
+                .findFirstByTrainNumberAndTravelDateOrderByCreatedAtDesc(info.getTrainNumber(), info.getTravelDate());
+        if (last.isPresent() && isRunning(last.get(), System.currentTimeMillis())) {
+            return new Response<>(0, "Disruption already running", last.get());
+        }
+        DisruptionJob job = new DisruptionJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setTrainNumber(info.getTrainNumber());
+        job.setTravelDate(info.getTravelDate());
+        job.setLastOrderId("");
+        job.setStatus(DisruptionJobStatus.INCOMPLETE);
+        job.setCreatedAt(System.currentTimeMillis());
+        LOGGER.info("[startDisruption][Start disruption][JobId: {}, TrainNumber: {}, TravelDate: {}]",
+                job.getId(), job.getTrainNumber(), job.getTravelDate());
+        saveJob(job);
+        return submit(job);
+    }
+
+    @Override
+    public Response getDisruption(String jobId, HttpHeaders headers) {
+        Optional<DisruptionJob> job = disruptionJobRepository.findById(jobId);
+        if (!job.isPresent()) {
+            return new Response<>(0, "Disruption not found", null);
+        }
+        return new Response<>(1, "Success", job.get());
+    }
+
+    @Override
+    public Response getDisruptionOrders(String jobId, HttpHeaders headers) {
+        if (!disruptionJobRepository.findById(jobId).isPresent()) {
+            return new Response<>(0, "Disruption not found", null);
+        }
+        return new Response<>(1, "Success", disruptionOrderRepository.findByJobId(jobId));
+    }
+
+    @Override
+    public Response resumeDisruption(String jobId, HttpHeaders headers) {
+        Optional<DisruptionJob> op = disruptionJobRepository.findById(jobId);
+        if (!op.isPresent()) {
+            return new Response<>(0, "Disruption not found", null);
+        }
+        DisruptionJob job = op.get();
+        if (job.getStatus() == DisruptionJobStatus.DONE) {
+            return new Response<>(0, "Disruption already done", job);
+        }
+        LOGGER.info("[resumeDisruption][Resume disruption][JobId: {}, LastOrderId: {}]", jobId, job.getLastOrderId());
+        return submit(job);
+    }
+
+    private Response submit(DisruptionJob job) {
+        long now = System.currentTimeMillis();
+        if (disruptionJobRepository.claim(job.getId(), now, now - claimTimeoutMs) == 0) {
+            return new Response<>(0, "Disruption already running", job);
+        }
+        job.setStatus(DisruptionJobStatus.RUNNING);
+        job.setMsg(null);
+        job.setUpdatedAt(now);
+        try {
+            disruptionExecutor.execute(() -> runJob(job));
+        } catch (RejectedExecutionException e) {
+            job.setStatus(DisruptionJobStatus.INCOMPLETE);
+            job.setMsg("Too many disruptions running");
+            saveJob(job);
+            LOGGER.warn("[submit][Disruption rejected][JobId: {}]", job.getId());
+            return new Response<>(0, job.getMsg(), job);
+        }
+        return new Response<>(1, "Disruption started", job);
+    }
+
+    void runJob(DisruptionJob job) {
+        try {
+            List<DisruptionOrder> leftOver = disruptionOrderRepository.findByJobIdAndStateIn(job.getId(), LEFT_OVER);
+            if (!leftOver.isEmpty()) {
+                process(job, leftOver);
+            }
+            while (true) {
+                List<Order> page = queryOrders(job);
+                if (page.isEmpty()) {
+                    break;
+                }
+                List<DisruptionOrder> records = new ArrayList<>(page.size());
+                for (Order order : page) {
+                    records.add(recordOf(job, order));
+                }
+                //results first, then the checkpoint, so a crash in between only re-reads the page
+                disruptionOrderRepository.saveAll(records);
+                job.setLastOrderId(page.get(page.size() - 1).getId());
+                saveJob(job);
+                process(job, records);
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+            refreshCounts(job);
+            job.setStatus(job.getRefundFailed() > 0 || countState(job, DisruptionOrderState.PENDING) > 0
+                    ? DisruptionJobStatus.INCOMPLETE : DisruptionJobStatus.DONE);
+            saveJob(job);
+            LOGGER.info("[runJob][Disruption finished][JobId: {}, status: {}, found: {}, refunded: {}, skipped: {}, refundFailed: {}]",
+                    job.getId(), job.getStatus(), job.getFound(), job.getRefunded(), job.getSkipped(), job.getRefundFailed());
+        } catch (RuntimeException e) {
+            LOGGER.error("[runJob][Disruption stopped][JobId: {}, LastOrderId: {}, error: {}]", job.getId(), job.getLastOrderId(), e.getMessage());
+            refreshCounts(job);
+            job.setStatus(DisruptionJobStatus.INCOMPLETE);
+            job.setMsg(e.getMessage());
+            saveJob(job);
+        }
+    }
+
+    /**
+     * Cancel the pending orders in one batch, then refund every cancelled one.
+     */
+    private void process(DisruptionJob job, List<DisruptionOrder> records) {
+        List<DisruptionOrder> pending = records.stream()
+                .filter(r -> r.getState() == DisruptionOrderState.PENDING)
+                .collect(Collectors.toList());
+        if (!pending.isEmpty()) {
+            cancelOrders(job, pending);
+        }
+        List<DisruptionOrder> toRefund = records.stream()
+                .filter(r -> r.getState() == DisruptionOrderState.CANCELLED || r.getState() == DisruptionOrderState.REFUND_FAILED)
+                .collect(Collectors.toList());
+        if (!toRefund.isEmpty()) {
+            refundOrders(toRefund);
+        }
+        refreshCounts(job);
+        saveJob(job);
+    }
+
+    /**
+     * An order the order service refuses was changed meanwhile, usually
+     * cancelled by its owner with the normal refund, so it is skipped.
+     */
+    private void cancelOrders(DisruptionJob job, List<DisruptionOrder> pending) {
+        OrderStatusChangeInfo info = new OrderStatusChangeInfo(
+                pending.stream().map(DisruptionOrder::getOrderId).collect(Collectors.toList()),
+                OrderStatus.CANCEL.getCode());
+        ResponseEntity<Response<List<OrderStatusChangeResult>>> re = restTemplate.exchange(
+                orderServiceUrl(job.getTrainNumber()) + "/status/batch",
+                HttpMethod.POST,
+                new HttpEntity<>(info, serviceHeaders()),
+                new ParameterizedTypeReference<Response<List<OrderStatusChangeResult>>>() {
+                });
+        Response<List<OrderStatusChangeResult>> result = re.getBody();
+        if (result == null || result.getStatus() != 1 || result.getData() == null) {
+            throw new IllegalStateException("Cancel orders failed: " + (result == null ? null : result.getMsg()));
+        }
+        Map<String, OrderStatusChangeResult> byOrder = new HashMap<>();
+        for (OrderStatusChangeResult r : result.getData()) {
+            byOrder.put(r.getOrderId(), r);
+        }
+        for (DisruptionOrder record : pending) {
+            OrderStatusChangeResult r = byOrder.get(record.getOrderId());
+            if (r == null) {
+                continue;
+            }
+            record.setState(r.getStatus() == 1 ? DisruptionOrderState.CANCELLED : DisruptionOrderState.SKIPPED);
+            record.setMsg(r.getMsg());
+        }
+        disruptionOrderRepository.saveAll(pending);
+    }
+
+    private void refundOrders(List<DisruptionOrder> records) {
+        List<CompletableFuture<Void>> refunds = new ArrayList<>(records.size());
+        for (DisruptionOrder record : records) {
+            refunds.add(CompletableFuture.runAsync(() -> refund(record), refundExecutor));
+        }
+        CompletableFuture.allOf(refunds.toArray(new CompletableFuture[0])).join();
+        disruptionOrderRepository.saveAll(records);
+    }
+
+    private void refund(DisruptionOrder record) {
+        if (record.getOrderStatus() == OrderStatus.NOTPAID.getCode()) {
+            record.setState(DisruptionOrderState.REFUNDED);
+            record.setMsg("Not paid, nothing to refund");
+            return;
+        }
+        record.setAttempts(record.getAttempts() + 1);
+        try {
+            //the record id is the idempotency key, a retry after a lost reply is not paid twice
+            ResponseEntity<Response> re = restTemplate.exchange(
+                    "http://ts-inside-payment-service/api/v1/inside_pay_service/inside_payment/drawback/"
+                            + record.getAccountId() + "/" + record.getRefund() + "?requestId=" + record.getId(),
+                    HttpMethod.GET,
+                    new HttpEntity<>(serviceHeaders()),
+                    Response.class);
+            Response result = re.getBody();
+            if (result != null && result.getStatus() == 1) {
+                record.setState(DisruptionOrderState.REFUNDED);
+                record.setMsg(null);
+                return;
+            }
+            record.setMsg(result == null ? "Draw back money failed" : result.getMsg());
+        } catch (RuntimeException e) {
+            record.setMsg(e.getMessage());
+        }
+        record.setState(DisruptionOrderState.REFUND_FAILED);
+        LOGGER.warn("[refund][Draw Back Money Failed][OrderId: {}, AccountId: {}, msg: {}]", record.getOrderId(), record.getAccountId(), record.getMsg());
+    }
+
+    private List<Order> queryOrders(DisruptionJob job) {
+        String statuses = CANCELLABLE.stream().map(String::valueOf).collect(Collectors.joining(","));
+        ResponseEntity<Response<List<Order>>> re = restTemplate.exchange(
+                orderServiceUrl(job.getTrainNumber()) + "/bytrain?trainNumber=" + job.getTrainNumber()
+                        + "&travelDate=" + job.getTravelDate() + "&statuses=" + statuses
+                        + "&after=" + job.getLastOrderId() + "&size=" + pageSize,
+                HttpMethod.GET,
+                new HttpEntity<>(serviceHeaders()),
+                new ParameterizedTypeReference<Response<List<Order>>>() {
+                });
+        Response<List<Order>> result = re.getBody();
+        if (result == null || result.getStatus() != 1) {
+            throw new IllegalStateException("Query orders failed: " + (result == null ? null : result.getMsg()));
+        }
+        return result.getData() == null ? Collections.emptyList() : result.getData();
+    }
+
+    /**
+     * The railway cancelled the train, so paid orders get the full price back.
+     */
+    private static DisruptionOrder recordOf(DisruptionJob job, Order order) {
+        DisruptionOrder record = new DisruptionOrder();
+        record.setId(job.getId() + ":" + order.getId());
+        record.setJobId(job.getId());
+        record.setOrderId(order.getId());
+        record.setAccountId(order.getAccountId());
+        record.setOrderStatus(order.getStatus());
+        record.setRefund(order.getStatus() == OrderStatus.NOTPAID.getCode() ? "0" : order.getPrice());
+        record.setState(DisruptionOrderState.PENDING);
+        return record;
+    }
+
+    private void refreshCounts(DisruptionJob job) {
+        job.setFound((int) disruptionOrderRepository.countByJobId(job.getId()));
+        job.setRefunded((int) countState(job, DisruptionOrderState.REFUNDED));
+        job.setSkipped((int) countState(job, DisruptionOrderState.SKIPPED));
+        job.setRefundFailed((int) countState(job, DisruptionOrderState.REFUND_FAILED));
+    }
+
+    private long countState(DisruptionJob job, DisruptionOrderState state) {
+        return disruptionOrderRepository.countByJobIdAndState(job.getId(), state);
+    }
+
+    private boolean isRunning(DisruptionJob job, long now) {
+        return job.getStatus() == DisruptionJobStatus.RUNNING && job.getUpdatedAt() >= now - claimTimeoutMs;
+    }
+
+    /**
+     * a fresh token per call, a job runs longer than one token lives
+     */
+    private static HttpHeaders serviceHeaders() {
+        return ServiceToken.headers("ts-cancel-service");
+    }
+
+    private void saveJob(DisruptionJob job) {
+        job.setUpdatedAt(System.currentTimeMillis());
+        disruptionJobRepository.save(job);
+    }
+
+    private static String orderServiceUrl(String trainNumber) {
+        return trainNumber.startsWith("G") || trainNumber.startsWith("D")
+                ? "http://ts-order-service/api/v1/orderservice/order"
+                : "http://ts-order-other-service/api/v1/orderOtherService/orderOther";
+    }
+}
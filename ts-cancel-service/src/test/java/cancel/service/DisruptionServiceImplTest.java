@@ -0,0 +1,161 @@
+package cancel.service;
+
+import cancel.entity.*;
+import cancel.repository.DisruptionJobRepository;
+import cancel.repository.DisruptionOrderRepository;
+import edu.fudan.common.entity.Order;
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.entity.OrderStatusChangeResult;
+import edu.fudan.common.util.Response;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+@RunWith(JUnit4.class)
+public class DisruptionServiceImplTest {
+
+    @InjectMocks
+    private DisruptionServiceImpl disruptionServiceImpl;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Mock
+    private DisruptionJobRepository disruptionJobRepository;
+
+    @Mock
+    private DisruptionOrderRepository disruptionOrderRepository;
+
+    private HttpHeaders headers = new HttpHeaders();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Executor direct = Runnable::run;
+        ReflectionTestUtils.setField(disruptionServiceImpl, "disruptionExecutor", direct);
+        ReflectionTestUtils.setField(disruptionServiceImpl, "refundExecutor", direct);
+        Mockito.when(disruptionJobRepository.findFirstByTrainNumberAndTravelDateOrderByCreatedAtDesc(Mockito.anyString(), Mockito.anyString()))
+                .thenReturn(Optional.empty());
+        Mockito.when(disruptionOrderRepository.findByJobIdAndStateIn(Mockito.anyString(), Mockito.anyCollection()))
+                .thenReturn(new ArrayList<>());
+        Mockito.when(disruptionJobRepository.claim(Mockito.anyString(), Mockito.anyLong(), Mockito.anyLong())).thenReturn(1);
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/inside_payment/drawback/"),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, null, null), HttpStatus.OK));
+    }
+
+    @Test
+    public void testStartDisruptionRefundsCancelledOrders() {
+        mockTrainOrders(order("o1", OrderStatus.PAID, "100.0"), order("o2", OrderStatus.NOTPAID, "50.0"), order("o3", OrderStatus.PAID, "80.0"));
+        List<OrderStatusChangeResult> results = Arrays.asList(
+                new OrderStatusChangeResult("o1", 1, "Success"),
+                new OrderStatusChangeResult("o2", 1, "Success"),
+                new OrderStatusChangeResult("o3", 0, "Order Status Wrong"));
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/orderservice/order/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, null, results), HttpStatus.OK));
+
+        Response result = disruptionServiceImpl.startDisruption(new DisruptionInfo("G1234", "2026-01-01"), headers);
+        Assert.assertEquals(1, result.getStatus().intValue());
+        DisruptionJob job = (DisruptionJob) result.getData();
+        Assert.assertEquals(DisruptionJobStatus.DONE, job.getStatus());
+        Assert.assertEquals("o3", job.getLastOrderId());
+        //only the paid and cancelled order is refunded, at full price
+        Mockito.verify(restTemplate, Mockito.times(1)).exchange(
+                Mockito.contains("/inside_payment/drawback/"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.eq(Response.class));
+        Mockito.verify(restTemplate).exchange(
+                Mockito.matches(".*/drawback/account_id/100\\.0\\?requestId=.+:o1"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.eq(Response.class));
+    }
+
+    @Test
+    public void testResumeRetriesFailedRefund() {
+        DisruptionJob job = new DisruptionJob();
+        job.setId("job_id");
+        job.setTrainNumber("K1345");
+        job.setTravelDate("2026-01-01");
+        job.setLastOrderId("o9");
+        job.setStatus(DisruptionJobStatus.INCOMPLETE);
+        Mockito.when(disruptionJobRepository.findById("job_id")).thenReturn(Optional.of(job));
+        DisruptionOrder failed = new DisruptionOrder();
+        failed.setId("job_id:o9");
+        failed.setJobId("job_id");
+        failed.setOrderId("o9");
+        failed.setAccountId("account_id");
+        failed.setOrderStatus(OrderStatus.PAID.getCode());
+        failed.setRefund("100.0");
+        failed.setAttempts(1);
+        failed.setState(DisruptionOrderState.REFUND_FAILED);
+        Mockito.when(disruptionOrderRepository.findByJobIdAndStateIn(Mockito.eq("job_id"), Mockito.anyCollection()))
+                .thenReturn(new ArrayList<>(Collections.singletonList(failed)));
+        mockTrainOrders();
+
+        Response result = disruptionServiceImpl.resumeDisruption("job_id", headers);
+        Assert.assertEquals(1, result.getStatus().intValue());
+        Assert.assertEquals(DisruptionOrderState.REFUNDED, failed.getState());
+        Assert.assertEquals(2, failed.getAttempts());
+        Assert.assertEquals(DisruptionJobStatus.DONE, job.getStatus());
+        Mockito.verify(restTemplate).exchange(
+                Mockito.contains("/orderOther/bytrain?trainNumber=K1345&travelDate=2026-01-01&statuses=0,1,3&after=o9"),
+                Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+        Mockito.verify(restTemplate, Mockito.never()).exchange(
+                Mockito.contains("/status/batch"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void testResumeRefusedWhileClaimedElsewhere() {
+        DisruptionJob job = new DisruptionJob();
+        job.setId("job_id");
+        job.setTrainNumber("G1234");
+        job.setTravelDate("2026-01-01");
+        job.setStatus(DisruptionJobStatus.RUNNING);
+        Mockito.when(disruptionJobRepository.findById("job_id")).thenReturn(Optional.of(job));
+        //another instance runs the job and saved it recently
+        Mockito.when(disruptionJobRepository.claim(Mockito.eq("job_id"), Mockito.anyLong(), Mockito.anyLong())).thenReturn(0);
+
+        Response result = disruptionServiceImpl.resumeDisruption("job_id", headers);
+        Assert.assertEquals(new Response<>(0, "Disruption already running", job), result);
+        Mockito.verify(restTemplate, Mockito.never()).exchange(
+                Mockito.contains("/bytrain"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+    }
+
+    private void mockTrainOrders(Order... orders) {
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/bytrain"),
+                Mockito.eq(HttpMethod.GET),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, null, Arrays.asList(orders)), HttpStatus.OK));
+    }
+
+    private Order order(String id, OrderStatus status, String price) {
+        Order order = new Order();
+        order.setId(id);
+        order.setAccountId("account_id");
+        order.setStatus(status.getCode());
+        order.setPrice(price);
+        return order;
+    }
+}
@@ -0,0 +1,260 @@
+package edu.fudan.common.admission;
+
+import edu.fudan.common.entity.AdmissionTicket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admission control in front of the booking, per (tripId, date). A token
+ * bucket lets bookings through at the rate the seat and order services can
+ * allocate; the overflow waits in a FIFO waiting room and polls its ticket.
+ * A seat class the booking just found without any seat left sheds its
+ * requests before any downstream call, the other classes of the trip are
+ * still booked. Shared by the preserve services, each registers it as a bean.
+ *
+ * @author fdse
+ */
+public class AdmissionControl {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private static final String SOLD_OUT_MESSAGE = "Seat Not Enough";
+
+    @Value("${preserve.admission.enabled:true}")
+    boolean enabled = true;
+
+    @Value("${preserve.admission.permits-per-second:50}")
+    double permitsPerSecond = 50;
+
+    @Value("${preserve.admission.burst:100}")
+    double burst = 100;
+
+    @Value("${preserve.admission.waiting-room-capacity:5000}")
+    int waitingRoomCapacity = 5000;
+
+    /**
+     * how long an admitted ticket may be used to book
+     */
+    @Value("${preserve.admission.admitted-ttl-ms:30000}")
+    long admittedTtlMs = 30000;
+
+    /**
+     * a waiting ticket that is not polled for this long gives up its place
+     */
+    @Value("${preserve.admission.abandon-ms:30000}")
+    long abandonMs = 30000;
+
+    @Value("${preserve.admission.sold-out-ms:10000}")
+    long soldOutMs = 10000;
+
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+
+    private final Map<String, Waiting> tickets = new ConcurrentHashMap<>();
+
+    /**
+     * @param ticketId an admitted ticket from the waiting room, or null on the first attempt
+     * @param weight   tokens the booking takes, one per passenger
+     */
+    public AdmissionTicket admit(String tripId, String date, int seatType, String ticketId, int weight) {
+        if (!enabled) {
+            return new AdmissionTicket(ticketId, AdmissionTicket.State.ADMITTED, 0, 0, null);
+        }
+        String key = tripId + "|" + date;
+        Gate gate = gates.computeIfAbsent(key, k -> new Gate(burst));
+        synchronized (gate) {
+            long now = System.currentTimeMillis();
+            if (gate.isSoldOut(seatType, now)) {
+                return new AdmissionTicket(ticketId, AdmissionTicket.State.REJECTED, 0, 0, SOLD_OUT_MESSAGE);
+            }
+            advance(gate, now);
+            Waiting waiting = ticketId == null ? null : tickets.get(ticketId);
+            if (waiting != null && waiting.key.equals(key)) {
+                if (waiting.admitted) {
+                    tickets.remove(ticketId);
+                    return new AdmissionTicket(ticketId, AdmissionTicket.State.ADMITTED, 0, 0, null);
+                }
+                waiting.polledAt = now;
+                return waitingTicket(gate, waiting);
+            }
+            double need = Math.min(weight, burst);
+            if (gate.queue.isEmpty() && gate.tokens >= need) {
+                gate.tokens -= need;
+                return new AdmissionTicket(null, AdmissionTicket.State.ADMITTED, 0, 0, null);
+            }
+            if (gate.queue.size() >= waitingRoomCapacity) {
+                LOGGER.warn("[admit][Waiting room full][TripId: {}, Date: {}]", tripId, date);
+                return new AdmissionTicket(null, AdmissionTicket.State.REJECTED, 0, 1000, "Waiting room full, try again later");
+            }
+            waiting = new Waiting(UUID.randomUUID().toString(), key, seatType, gate.nextSeq++, need, now);
+            gate.queue.addLast(waiting);
+            tickets.put(waiting.ticketId, waiting);
+            return waitingTicket(gate, waiting);
+        }
+    }
+
+    /**
+     * Cheap status check of a waiting ticket, no downstream call is made.
+     */
+    public AdmissionTicket poll(String ticketId) {
+        Waiting waiting = tickets.get(ticketId);
+        if (waiting == null) {
+            return new AdmissionTicket(ticketId, AdmissionTicket.State.REJECTED, 0, 0, "Ticket not found or expired");
+        }
+        Gate gate = gates.get(waiting.key);
+        if (gate == null) {
+            return new AdmissionTicket(ticketId, AdmissionTicket.State.REJECTED, 0, 0, "Ticket not found or expired");
+        }
+        synchronized (gate) {
+            long now = System.currentTimeMillis();
+            if (gate.isSoldOut(waiting.seatType, now)) {
+                tickets.remove(ticketId);
+                return new AdmissionTicket(ticketId, AdmissionTicket.State.REJECTED, 0, 0, SOLD_OUT_MESSAGE);
+            }
+            waiting.polledAt = now;
+            advance(gate, now);
+            if (waiting.admitted) {
+                return new AdmissionTicket(ticketId, AdmissionTicket.State.ADMITTED, 0, 0, null);
+            }
+            return waitingTicket(gate, waiting);
+        }
+    }
+
+    /**
+     * Shed the next requests for a seat class the booking found no seat left
+     * of. Only call it when none is left, a shortage for a large group is not
+     * a reason to turn away a single passenger.
+     */
+    public void soldOut(String tripId, String date, int seatType) {
+        if (!enabled) {
+            return;
+        }
+        Gate gate = gates.computeIfAbsent(tripId + "|" + date, k -> new Gate(burst));
+        synchronized (gate) {
+            gate.soldOutUntil.put(seatType, System.currentTimeMillis() + soldOutMs);
+            Iterator<Waiting> it = gate.queue.iterator();
+            while (it.hasNext()) {
+                Waiting waiting = it.next();
+                if (waiting.seatType == seatType) {
+                    tickets.remove(waiting.ticketId);
+                    it.remove();
+                }
+            }
+        }
+        LOGGER.info("[soldOut][Seat class sold out, shed requests][TripId: {}, Date: {}, SeatType: {}, for: {}ms]", tripId, date, seatType, soldOutMs);
+    }
+
+    @Scheduled(fixedDelayString = "${preserve.admission.sweep-interval-ms:10000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Gate> entry : gates.entrySet()) {
+            Gate gate = entry.getValue();
+            synchronized (gate) {
+                advance(gate, now);
+                gate.soldOutUntil.values().removeIf(until -> until <= now);
+                if (gate.queue.isEmpty() && gate.soldOutUntil.isEmpty() && gate.tokens >= burst) {
+                    gates.remove(entry.getKey());
+                }
+            }
+        }
+        Iterator<Waiting> it = tickets.values().iterator();
+        while (it.hasNext()) {
+            Waiting waiting = it.next();
+            if (waiting.admitted && waiting.admittedAt + admittedTtlMs <= now) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Refill the bucket and admit the head of the waiting room while tokens last.
+     */
+    private void advance(Gate gate, long now) {
+        gate.tokens = Math.min(burst, gate.tokens + (now - gate.refilledAt) * permitsPerSecond / 1000);
+        gate.refilledAt = now;
+        while (!gate.queue.isEmpty()) {
+            Waiting head = gate.queue.peekFirst();
+            if (head.polledAt + abandonMs <= now) {
+                gate.queue.pollFirst();
+                tickets.remove(head.ticketId);
+            } else if (gate.tokens >= head.weight) {
+                gate.tokens -= head.weight;
+                head.admitted = true;
+                head.admittedAt = now;
+                gate.queue.pollFirst();
+            } else {
+                break;
+            }
+            gate.servedSeq = head.seq + 1;
+        }
+    }
+
+    private AdmissionTicket waitingTicket(Gate gate, Waiting waiting) {
+        long position = waiting.seq - gate.servedSeq;
+        long retryAfterMs = Math.min(5000, Math.max(200, (long) (position * 1000 / permitsPerSecond)));
+        return new AdmissionTicket(waiting.ticketId, AdmissionTicket.State.WAITING, position, retryAfterMs, "Waiting for admission");
+    }
+
+    private static class Gate {
+
+        private double tokens;
+
+        private long refilledAt = System.currentTimeMillis();
+
+        private final ArrayDeque<Waiting> queue = new ArrayDeque<>();
+
+        private long nextSeq;
+
+        private long servedSeq;
+
+        /**
+         * seat class -> end of its sold-out period
+         */
+        private final Map<Integer, Long> soldOutUntil = new HashMap<>();
+
+        Gate(double burst) {
+            this.tokens = burst;
+        }
+
+        boolean isSoldOut(int seatType, long now) {
+            Long until = soldOutUntil.get(seatType);
+            return until != null && until > now;
+        }
+    }
+
+    private static class Waiting {
+
+        private final String ticketId;
+
+        private final String key;
+
+        private final int seatType;
+
+        private final long seq;
+
+        private final double weight;
+
+        private volatile long polledAt;
+
+        private volatile boolean admitted;
+
+        private volatile long admittedAt;
+
+        Waiting(String ticketId, String key, int seatType, long seq, double weight, long polledAt) {
+            this.ticketId = ticketId;
+            this.key = key;
+            this.seatType = seatType;
+            this.seq = seq;
+            this.weight = weight;
+            this.polledAt = polledAt;
+        }
+    }
+}
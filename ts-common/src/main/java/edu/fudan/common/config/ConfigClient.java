@@ -0,0 +1,109 @@
+package edu.fudan.common.config;
+
+import edu.fudan.common.entity.ConfigSnapshot;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local copy of the config service values. The snapshot endpoint answers
+ * a poll as soon as the values change, so a read is a map lookup and a
+ * change arrives within the poll round trip. Enabled with
+ * ts.config-client.enabled.
+ *
+ * @author fdse
+ */
+public class ConfigClient extends SnapshotPoller<ConfigSnapshot> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigClient.class);
+
+    private static final String SNAPSHOT_URL = "http://ts-config-service/api/v1/configservice/configs/snapshot";
+
+    /**
+     * @param restTemplate a load balanced template without a read timeout shorter than waitMs
+     * @param waitMs       how long the config service holds a poll without changes
+     * @param retryMs      pause after a failed poll
+     */
+    public ConfigClient(RestTemplate restTemplate, long waitMs, long retryMs) {
+        super(restTemplate, waitMs, retryMs, "config-client");
+    }
+
+    /**
+     * @return the value, null when the config does not exist or the config service was never reached
+     */
+    public String get(String name) {
+        return values().get(name);
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            ConfigClient.LOGGER.warn("[getDouble][Config is not a number][name: {}, value: {}]", name, value);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return all values, read only
+     */
+    public Map<String, String> values() {
+        ConfigSnapshot current = current();
+        return current == null ? Collections.emptyMap() : current.getValues();
+    }
+
+    @Override
+    protected boolean revalidate(long wait) {
+        ConfigSnapshot current = held();
+        ConfigSnapshot next = fetch(current == null ? null : current.getVersion(), wait);
+        if (next == null) {
+            return false;
+        }
+        accept(next);
+        return true;
+    }
+
+    private synchronized void accept(ConfigSnapshot next) {
+        ConfigSnapshot current = held();
+        if (current != null && current.getVersion().equals(next.getVersion())) {
+            return;
+        }
+        Map<String, String> values = next.getValues() == null ? new HashMap<>() : new HashMap<>(next.getValues());
+        hold(new ConfigSnapshot(next.getVersion(), Collections.unmodifiableMap(values)));
+        ConfigClient.LOGGER.info("[accept][Config snapshot changed][version: {}, configs: {}]", next.getVersion(), values.size());
+    }
+
+    private ConfigSnapshot fetch(String version, long wait) {
+        try {
+            ResponseEntity<Response<ConfigSnapshot>> re = restTemplate.exchange(
+                    SNAPSHOT_URL + "?wait=" + wait + (version == null ? "" : "&version=" + version),
+                    HttpMethod.GET,
+                    new HttpEntity<>(null),
+                    new ParameterizedTypeReference<Response<ConfigSnapshot>>() {
+                    });
+            Response<ConfigSnapshot> result = re.getBody();
+            if (result == null || result.getStatus() == null || result.getStatus() != 1 || result.getData() == null) {
+                ConfigClient.LOGGER.warn("[fetch][Get config snapshot failed][msg: {}]", result == null ? null : result.getMsg());
+                return null;
+            }
+            return result.getData();
+        } catch (RestClientException e) {
+            ConfigClient.LOGGER.warn("[fetch][Get config snapshot error][error: {}]", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package edu.fudan.common.config;
+
+import edu.fudan.common.entity.ConsignPriceRule;
+import edu.fudan.common.entity.ConsignPriceRuleSnapshot;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Local copy of the consign price rule, so a consign is priced without a
+ * call to the consign price service. A price change arrives within the
+ * poll round trip. Enabled with ts.consign-price-client.enabled.
+ *
+ * @author fdse
+ */
+public class ConsignPriceRuleClient extends SnapshotPoller<ConsignPriceRuleSnapshot> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsignPriceRuleClient.class);
+
+    private static final String SNAPSHOT_URL = "http://ts-consign-price-service/api/v1/consignpriceservice/consignprice/rule/snapshot";
+
+    /**
+     * @param restTemplate a load balanced template without a read timeout shorter than waitMs
+     * @param waitMs       how long the consign price service holds a poll without changes
+     * @param retryMs      pause after a failed poll
+     */
+    public ConsignPriceRuleClient(RestTemplate restTemplate, long waitMs, long retryMs) {
+        super(restTemplate, waitMs, retryMs, "consign-price-client");
+    }
+
+    /**
+     * @return the rule, null when no price config exists or the consign price service was never reached
+     */
+    public ConsignPriceRule rule() {
+        ConsignPriceRuleSnapshot current = current();
+        return current == null ? null : current.getRule();
+    }
+
+    @Override
+    protected boolean revalidate(long wait) {
+        ConsignPriceRuleSnapshot current = held();
+        ConsignPriceRuleSnapshot next = fetch(current == null ? null : current.getVersion(), wait);
+        if (next == null) {
+            return false;
+        }
+        if (current == null || !current.getVersion().equals(next.getVersion())) {
+            hold(next);
+            ConsignPriceRuleClient.LOGGER.info("[revalidate][Consign price rule changed][version: {}, rule: {}]", next.getVersion(), next.getRule());
+        }
+        return true;
+    }
+
+    private ConsignPriceRuleSnapshot fetch(String version, long wait) {
+        try {
+            ResponseEntity<Response<ConsignPriceRuleSnapshot>> re = restTemplate.exchange(
+                    SNAPSHOT_URL + "?wait=" + wait + (version == null ? "" : "&version=" + version),
+                    HttpMethod.GET,
+                    new HttpEntity<>(null),
+                    new ParameterizedTypeReference<Response<ConsignPriceRuleSnapshot>>() {
+                    });
+            Response<ConsignPriceRuleSnapshot> result = re.getBody();
+            if (result == null || result.getStatus() == null || result.getStatus() != 1 || result.getData() == null) {
+                ConsignPriceRuleClient.LOGGER.warn("[fetch][Get consign price rule snapshot failed][msg: {}]", result == null ? null : result.getMsg());
+                return null;
+            }
+            return result.getData();
+        } catch (RestClientException e) {
+            ConsignPriceRuleClient.LOGGER.warn("[fetch][Get consign price rule snapshot error][error: {}]", e.getMessage());
+            return null;
+        }
+    }
+}
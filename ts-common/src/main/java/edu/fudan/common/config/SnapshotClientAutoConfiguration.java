@@ -0,0 +1,48 @@
+package edu.fudan.common.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Snapshot clients of the services that read train types, config values or
+ * the consign price rule on every request. A service turns one on in its
+ * application.yml, e.g. ts.train-type-client.enabled: true, and gets it
+ * started with the context; the load balanced RestTemplate of the service
+ * is used for the polls.
+ *
+ * @author fdse
+ */
+@Configuration
+public class SnapshotClientAutoConfiguration {
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "ts.train-type-client.enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    public TrainTypeClient trainTypeClient(RestTemplate restTemplate,
+                                           @Value("${ts.train-type-client.wait-ms:30000}") long waitMs,
+                                           @Value("${ts.train-type-client.retry-ms:1000}") long retryMs) {
+        return new TrainTypeClient(restTemplate, waitMs, retryMs);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "ts.config-client.enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    public ConfigClient configClient(RestTemplate restTemplate,
+                                     @Value("${ts.config-client.wait-ms:30000}") long waitMs,
+                                     @Value("${ts.config-client.retry-ms:1000}") long retryMs) {
+        return new ConfigClient(restTemplate, waitMs, retryMs);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "ts.consign-price-client.enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    public ConsignPriceRuleClient consignPriceRuleClient(RestTemplate restTemplate,
+                                                         @Value("${ts.consign-price-client.wait-ms:30000}") long waitMs,
+                                                         @Value("${ts.consign-price-client.retry-ms:1000}") long retryMs) {
+        return new ConsignPriceRuleClient(restTemplate, waitMs, retryMs);
+    }
+}
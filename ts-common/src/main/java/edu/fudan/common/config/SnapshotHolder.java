@@ -0,0 +1,77 @@
+package edu.fudan.common.config;
+
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Server side of a {@link SnapshotPoller}: the current snapshot and the
+ * requests waiting for it to change. A caller that is behind is answered at
+ * once, a caller that is current waits for the next change or the timeout.
+ *
+ * @param <S> the snapshot
+ * @param <A> the answer to a waiting request
+ * @author fdse
+ */
+public abstract class SnapshotHolder<S, A> {
+
+    private volatile S current;
+
+    private final Queue<DeferredResult<A>> waiting = new ConcurrentLinkedQueue<>();
+
+    protected SnapshotHolder(S initial) {
+        this.current = initial;
+    }
+
+    public S current() {
+        return current;
+    }
+
+    /**
+     * @param held the tag the caller holds, null for none
+     * @return answered at once when the caller is behind, otherwise on the next change or after waitMs
+     */
+    public DeferredResult<A> watch(String held, long waitMs) {
+        DeferredResult<A> result = new DeferredResult<>(waitMs);
+        result.onTimeout(() -> result.setResult(answer(current, held)));
+        result.onCompletion(() -> waiting.remove(result));
+        if (waitMs <= 0 || !tagOf(current).equals(held)) {
+            result.setResult(answer(current, held));
+            return result;
+        }
+        waiting.add(result);
+        //a change published while the caller was being registered
+        if (!tagOf(current).equals(held)) {
+            result.setResult(answer(current, held));
+        }
+        return result;
+    }
+
+    /**
+     * Make the snapshot current and answer the waiting requests.
+     *
+     * @return false when it is the current snapshot already
+     */
+    protected synchronized boolean publish(S next) {
+        if (tagOf(next).equals(tagOf(current))) {
+            return false;
+        }
+        current = next;
+        DeferredResult<A> poll;
+        while ((poll = waiting.poll()) != null) {
+            poll.setResult(answer(next, null));
+        }
+        return true;
+    }
+
+    /**
+     * @return what a caller holding this snapshot sends back
+     */
+    protected abstract String tagOf(S snapshot);
+
+    /**
+     * @param held the tag the caller holds, null for none
+     */
+    protected abstract A answer(S snapshot, String held);
+}
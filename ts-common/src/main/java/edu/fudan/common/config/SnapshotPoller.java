@@ -0,0 +1,104 @@
+package edu.fudan.common.config;
+
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Local copy of a snapshot served by another service. A background thread
+ * keeps asking for it with what it holds; the service holds the request
+ * while nothing changed and answers as soon as the snapshot does. Reads see
+ * the last accepted copy, the first read before any answer asks at once.
+ * Started and stopped by {@link SnapshotClientAutoConfiguration}.
+ *
+ * @param <T> the copy kept by the client
+ * @author fdse
+ */
+public abstract class SnapshotPoller<T> {
+
+    protected final RestTemplate restTemplate;
+
+    private final long waitMs;
+
+    private final long retryMs;
+
+    private final String threadName;
+
+    private volatile T current;
+
+    private volatile boolean running;
+
+    private Thread poller;
+
+    /**
+     * @param restTemplate a load balanced template without a read timeout shorter than waitMs
+     * @param waitMs       how long the service holds a request without changes
+     * @param retryMs      pause after a failed request
+     */
+    protected SnapshotPoller(RestTemplate restTemplate, long waitMs, long retryMs, String threadName) {
+        this.restTemplate = restTemplate;
+        this.waitMs = waitMs;
+        this.retryMs = retryMs;
+        this.threadName = threadName;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        poller = new Thread(this::poll, threadName);
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+    }
+
+    /**
+     * @return the copy, null when the service was never reached
+     */
+    protected T current() {
+        T held = current;
+        if (held == null) {
+            //first read before the poller got an answer
+            revalidate(0);
+            held = current;
+        }
+        return held;
+    }
+
+    /**
+     * @return the copy accepted last, without asking the service
+     */
+    protected T held() {
+        return current;
+    }
+
+    protected void hold(T next) {
+        current = next;
+    }
+
+    /**
+     * Ask the service for a newer snapshot and {@link #hold} it.
+     *
+     * @param wait how long the service may hold the request
+     * @return false when the service could not be asked
+     */
+    protected abstract boolean revalidate(long wait);
+
+    private void poll() {
+        while (running) {
+            if (!revalidate(waitMs) && running) {
+                try {
+                    Thread.sleep(retryMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
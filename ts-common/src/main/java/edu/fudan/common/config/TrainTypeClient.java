@@ -0,0 +1,119 @@
+package edu.fudan.common.config;
+
+import edu.fudan.common.entity.TrainType;
+import edu.fudan.common.entity.TrainTypeSnapshot;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Local copy of the train types of the train service. It revalidates with
+ * the ETag it holds; the train service answers 304 while nothing changed and
+ * sends the new snapshot as soon as a train type is written. A lookup by
+ * name is a map read. Enabled with ts.train-type-client.enabled.
+ *
+ * @author fdse
+ */
+public class TrainTypeClient extends SnapshotPoller<Map<String, TrainType>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrainTypeClient.class);
+
+    private static final String SNAPSHOT_URL = "http://ts-train-service/api/v1/trainservice/trains/snapshot";
+
+    private volatile String etag;
+
+    /**
+     * @param restTemplate a load balanced template without a read timeout shorter than waitMs
+     * @param waitMs       how long the train service holds a revalidation without changes
+     * @param retryMs      pause after a failed revalidation
+     */
+    public TrainTypeClient(RestTemplate restTemplate, long waitMs, long retryMs) {
+        super(restTemplate, waitMs, retryMs, "train-type-client");
+    }
+
+    /**
+     * @return a copy of the train type, null when it does not exist or the train service was never reached
+     */
+    public TrainType byName(String name) {
+        TrainType trainType = trainTypes().get(name);
+        if (trainType == null) {
+            TrainTypeClient.LOGGER.warn("[byName][Train type not found][name: {}]", name);
+            return null;
+        }
+        return copyOf(trainType);
+    }
+
+    /**
+     * @return all train types by name, read only, the values must not be modified
+     */
+    public Map<String, TrainType> trainTypes() {
+        Map<String, TrainType> current = current();
+        return current == null ? Collections.emptyMap() : current;
+    }
+
+    /**
+     * @return false when the train service could not be asked
+     */
+    @Override
+    protected boolean revalidate(long wait) {
+        HttpHeaders headers = new HttpHeaders();
+        String held = etag;
+        if (held != null) {
+            headers.setIfNoneMatch(held);
+        }
+        try {
+            ResponseEntity<Response<TrainTypeSnapshot>> re = restTemplate.exchange(
+                    SNAPSHOT_URL + "?wait=" + wait,
+                    HttpMethod.GET,
+                    new HttpEntity<>(null, headers),
+                    new ParameterizedTypeReference<Response<TrainTypeSnapshot>>() {
+                    });
+            if (re.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                return true;
+            }
+            Response<TrainTypeSnapshot> result = re.getBody();
+            if (result == null || result.getStatus() == null || result.getStatus() != 1 || result.getData() == null) {
+                TrainTypeClient.LOGGER.warn("[revalidate][Get train type snapshot failed][msg: {}]", result == null ? null : result.getMsg());
+                return false;
+            }
+            accept(re.getHeaders().getETag(), result.getData());
+            return true;
+        } catch (RestClientException e) {
+            TrainTypeClient.LOGGER.warn("[revalidate][Get train type snapshot error][error: {}]", e.getMessage());
+            return false;
+        }
+    }
+
+    private synchronized void accept(String nextEtag, TrainTypeSnapshot next) {
+        if (nextEtag != null && nextEtag.equals(etag)) {
+            return;
+        }
+        Map<String, TrainType> trainTypes = new HashMap<>();
+        if (next.getTrainTypes() != null) {
+            for (TrainType trainType : next.getTrainTypes()) {
+                trainTypes.put(trainType.getName(), trainType);
+            }
+        }
+        etag = nextEtag;
+        hold(Collections.unmodifiableMap(trainTypes));
+        TrainTypeClient.LOGGER.info("[accept][Train type snapshot changed][version: {}, trainTypes: {}]", next.getVersion(), trainTypes.size());
+    }
+
+    private static TrainType copyOf(TrainType trainType) {
+        TrainType copy = new TrainType(trainType.getName(), trainType.getEconomyClass(), trainType.getConfortClass(), trainType.getAverageSpeed());
+        copy.setId(trainType.getId());
+        return copy;
+    }
+}
@@ -0,0 +1,37 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Answer of the booking admission control. A waiting client polls the
+ * ticket until it is admitted and then books again with the ticket id.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class AdmissionTicket {
+
+    public enum State {
+        ADMITTED, WAITING, REJECTED
+    }
+
+    private String ticketId;
+
+    private State state;
+
+    /**
+     * requests ahead of this one in the waiting room
+     */
+    private long position;
+
+    private long retryAfterMs;
+
+    private String msg;
+
+    public AdmissionTicket() {
+        //Default Constructor
+    }
+
+}
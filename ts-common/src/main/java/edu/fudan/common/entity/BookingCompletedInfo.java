@@ -0,0 +1,56 @@
+package edu.fudan.common.entity;
+
+import lombok.Data;
+
+/**
+ * Published once a booking's order and seat are stored. Assurance, food,
+ * consign and notification each consume it on their own queue; the order
+ * id makes a redelivered message recognizable.
+ *
+ * @author fdse
+ */
+@Data
+public class BookingCompletedInfo {
+
+    private String orderId;
+
+    private String accountId;
+
+    private String trainNumber;
+
+    private String travelDate;
+
+    private String travelTime;
+
+    private String from;
+
+    private String to;
+
+    private int seatClass;
+
+    private String seatNumber;
+
+    private String price;
+
+    /**
+     * assurance type index, 0 for none
+     */
+    private int assurance;
+
+    /**
+     * null when no food was ordered
+     */
+    private FoodOrder foodOrder;
+
+    /**
+     * null when nothing is consigned
+     */
+    private Consign consign;
+
+    private long occurredAt;
+
+    public BookingCompletedInfo() {
+        //Default Constructor
+    }
+
+}
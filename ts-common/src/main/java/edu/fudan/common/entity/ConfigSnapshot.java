@@ -0,0 +1,30 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * All config values of the config service at one version. The version is
+ * derived from the values, so every config service instance names the same
+ * values the same way.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class ConfigSnapshot {
+
+    private String version;
+
+    /**
+     * config name -> value
+     */
+    private Map<String, String> values;
+
+    public ConfigSnapshot() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,31 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Price of consigning a parcel. Sent with the weight and region; the
+ * consign price service fills in the price.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class ConsignPriceQuote {
+
+    private double weight;
+
+    private boolean within;
+
+    private double price;
+
+    public ConsignPriceQuote() {
+        //Default Constructor
+    }
+
+    public ConsignPriceQuote(double weight, boolean within) {
+        this.weight = weight;
+        this.within = within;
+    }
+
+}
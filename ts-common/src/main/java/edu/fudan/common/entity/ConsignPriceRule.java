@@ -0,0 +1,38 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The consign pricing rule: a parcel up to the initial weight costs the
+ * initial price, every further unit of weight costs the within or beyond
+ * region rate. Shared by the consign price service and the services that
+ * price consigns locally, so both compute the same price.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class ConsignPriceRule {
+
+    private double initialWeight;
+
+    private double initialPrice;
+
+    private double withinPrice;
+
+    private double beyondPrice;
+
+    public ConsignPriceRule() {
+        //Default Constructor
+    }
+
+    public double price(double weight, boolean isWithinRegion) {
+        if (weight <= initialWeight) {
+            return initialPrice;
+        }
+        double extraWeight = weight - initialWeight;
+        return initialPrice + extraWeight * (isWithinRegion ? withinPrice : beyondPrice);
+    }
+
+}
@@ -0,0 +1,28 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The consign price rule of the consign price service at one version. The
+ * version is derived from the rule, so every consign price service instance
+ * names the same rule the same way.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class ConsignPriceRuleSnapshot {
+
+    private String version;
+
+    /**
+     * null while no price config exists
+     */
+    private ConsignPriceRule rule;
+
+    public ConsignPriceRuleSnapshot() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,46 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Fares of both seat classes for travelling from one station of a route to
+ * another with a train type. Sent with the route, train type and stations;
+ * the price service fills in the rest.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class FareQuote {
+
+    private String routeId;
+
+    private String trainType;
+
+    private String startStation;
+
+    private String endStation;
+
+    /**
+     * false when no price config exists for the route and train type, or the
+     * route does not pass the stations in this order; the fares are 0 then
+     */
+    private boolean priced;
+
+    private double economyClass;
+
+    private double confortClass;
+
+    public FareQuote() {
+        //Default Constructor
+    }
+
+    public FareQuote(String routeId, String trainType, String startStation, String endStation) {
+        this.routeId = routeId;
+        this.trainType = trainType;
+        this.startStation = startStation;
+        this.endStation = endStation;
+    }
+
+}
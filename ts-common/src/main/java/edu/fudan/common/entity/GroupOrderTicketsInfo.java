@@ -0,0 +1,63 @@
+package edu.fudan.common.entity;
+
+import edu.fudan.common.util.StringUtils;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A booking for several passengers of one account on the same trip and seat
+ * class. Every passenger gets the same assurance; food and consign are
+ * booked per order afterwards.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class GroupOrderTicketsInfo {
+
+    private String accountId;
+
+    private List<String> contactsIds;
+
+    private String tripId;
+
+    private int seatType;
+
+    private String date;
+
+    private String from;
+
+    private String to;
+
+    private int assurance;
+
+    public GroupOrderTicketsInfo() {
+        //Default Constructor
+    }
+
+    public String getFrom() {
+        return StringUtils.String2Lower(this.from);
+    }
+
+    public String getTo() {
+        return StringUtils.String2Lower(this.to);
+    }
+
+    /**
+     * the single booking of one passenger of the group
+     */
+    public OrderTicketsInfo toOrderTicketsInfo(String contactsId) {
+        OrderTicketsInfo oti = new OrderTicketsInfo();
+        oti.setAccountId(accountId);
+        oti.setContactsId(contactsId);
+        oti.setTripId(tripId);
+        oti.setSeatType(seatType);
+        oti.setDate(date);
+        oti.setFrom(from);
+        oti.setTo(to);
+        oti.setAssurance(assurance);
+        return oti;
+    }
+}
@@ -0,0 +1,62 @@
+package edu.fudan.common.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Order state transition, published by ts-order-service and
+ * ts-order-other-service through their transactional outbox.
+ * Events of one order are always published in the order they were written.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OrderEvent {
+
+    /**
+     * unique id, consumers use it to drop redelivered events
+     */
+    private String eventId;
+
+    /**
+     * service that wrote the event
+     */
+    private String source;
+
+    private OrderEventType type;
+
+    private String orderId;
+
+    private String accountId;
+
+    private String trainNumber;
+
+    private String travelDate;
+
+    private String boughtDate;
+
+    private int seatClass;
+
+    private String seatNumber;
+
+    private String from;
+
+    private String to;
+
+    private int status;
+
+    private String price;
+
+    /**
+     * time the transition was committed, in milliseconds
+     */
+    private long occurredAt;
+
+    public OrderEvent() {
+        //Default Constructor
+    }
+
+}
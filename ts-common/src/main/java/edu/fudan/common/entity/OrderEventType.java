@@ -0,0 +1,57 @@
+package edu.fudan.common.entity;
+
+/**
+ * Kind of order state transition published on the order event stream
+ *
+ * @author fdse
+ */
+public enum OrderEventType {
+
+    /**
+     * order created, not paid yet
+     */
+    CREATED,
+    /**
+     * order paid
+     */
+    PAID,
+    /**
+     * order cancelled or refunded
+     */
+    CANCELLED,
+    /**
+     * order cancelled because of rebooking
+     */
+    CHANGED,
+    /**
+     * ticket collected
+     */
+    COLLECTED,
+    /**
+     * ticket used at the gate
+     */
+    USED,
+    /**
+     * order removed by an admin
+     */
+    DELETED,
+    /**
+     * rebooked order moved to the shard of its new train, it keeps its id
+     */
+    MOVED;
+
+    public static OrderEventType fromStatus(int status) {
+        if (status == OrderStatus.PAID.getCode()) {
+            return PAID;
+        } else if (status == OrderStatus.COLLECTED.getCode()) {
+            return COLLECTED;
+        } else if (status == OrderStatus.CHANGE.getCode()) {
+            return CHANGED;
+        } else if (status == OrderStatus.CANCEL.getCode() || status == OrderStatus.REFUNDS.getCode()) {
+            return CANCELLED;
+        } else if (status == OrderStatus.USED.getCode()) {
+            return USED;
+        }
+        return CREATED;
+    }
+}
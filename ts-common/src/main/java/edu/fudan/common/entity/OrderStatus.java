@@ -1,5 +1,9 @@
 package edu.fudan.common.entity;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 /**
  * @author fdse
  */
@@ -60,4 +64,24 @@ public enum OrderStatus {
         return orderStatusSet[0].getName();
     }
 
+    /**
+     * Status codes an order may be in to be moved to the target status
+     */
+    public static List<Integer> getAllowedSourceCodes(int targetCode) {
+        if (targetCode == PAID.code) {
+            return Collections.singletonList(NOTPAID.code);
+        } else if (targetCode == COLLECTED.code) {
+            return Arrays.asList(PAID.code, CHANGE.code);
+        } else if (targetCode == USED.code) {
+            return Collections.singletonList(COLLECTED.code);
+        } else if (targetCode == CHANGE.code) {
+            return Collections.singletonList(PAID.code);
+        } else if (targetCode == CANCEL.code) {
+            return Arrays.asList(NOTPAID.code, PAID.code, CHANGE.code);
+        } else if (targetCode == REFUNDS.code) {
+            return Collections.singletonList(CANCEL.code);
+        }
+        return Collections.emptyList();
+    }
+
 }
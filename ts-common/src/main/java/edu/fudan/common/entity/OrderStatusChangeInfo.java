@@ -0,0 +1,28 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Bulk order status transition request
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class OrderStatusChangeInfo {
+
+    private List<String> orderIds;
+
+    /**
+     * target OrderStatus code
+     */
+    private int status;
+
+    public OrderStatusChangeInfo() {
+        //Default Constructor
+    }
+
+}
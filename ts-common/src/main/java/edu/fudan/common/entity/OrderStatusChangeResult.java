@@ -0,0 +1,28 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk order status transition for one order
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class OrderStatusChangeResult {
+
+    private String orderId;
+
+    /**
+     * 1 if the order was moved to the target status, 0 otherwise
+     */
+    private int status;
+
+    private String msg;
+
+    public OrderStatusChangeResult() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,32 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of a group booking for one passenger
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class PassengerBookingResult {
+
+    private String contactsId;
+
+    /**
+     * 1 if the passenger's order was created, 0 otherwise
+     */
+    private int status;
+
+    private String msg;
+
+    private String orderId;
+
+    private String seatNumber;
+
+    public PassengerBookingResult() {
+        //Default Constructor
+    }
+
+}
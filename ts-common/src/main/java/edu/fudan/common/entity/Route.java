@@ -1,8 +1,13 @@
 package edu.fudan.common.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.List;
 import java.util.UUID;
@@ -23,6 +28,15 @@ public class Route {
 
     private String endStation;
 
+    /**
+     * built on first use, dropped when the stations or distances are replaced
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile RouteTopology topology;
+
     public Route(){
         this.id = UUID.randomUUID().toString();
     }
@@ -42,4 +56,27 @@ public class Route {
         this.startStation = startStationName;
         this.endStation = terminalStationName;
     }
-}
\ No newline at end of file
+
+    public void setStations(List<String> stations) {
+        this.stations = stations;
+        this.topology = null;
+    }
+
+    public void setDistances(List<Integer> distances) {
+        this.distances = distances;
+        this.topology = null;
+    }
+
+    /**
+     * Station positions and distances of this route. The stations are not
+     * expected to change in place once the view is taken.
+     */
+    public RouteTopology topology() {
+        RouteTopology current = topology;
+        if (current == null) {
+            current = RouteTopology.of(stations, distances);
+            topology = current;
+        }
+        return current;
+    }
+}
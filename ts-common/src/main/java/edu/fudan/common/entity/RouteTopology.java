@@ -0,0 +1,120 @@
+package edu.fudan.common.entity;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only view of the stations of a route: the position of every station
+ * and the distance of every station from the route start, so "is A before B"
+ * and "how far from A to B" are answered without searching the station list.
+ * A station passed twice keeps its first position, as indexOf did.
+ *
+ * @author fdse
+ */
+public final class RouteTopology {
+
+    private static final RouteTopology EMPTY = new RouteTopology(Collections.emptyList(), null);
+
+    private final List<String> stations;
+
+    private final Map<String, Integer> positions;
+
+    /**
+     * distance of every station from the first one, null when the route has no distances
+     */
+    private final int[] fromStart;
+
+    private RouteTopology(List<String> stations, List<Integer> distances) {
+        this.stations = Collections.unmodifiableList(Arrays.asList(stations.toArray(new String[0])));
+        this.positions = new HashMap<>(stations.size() * 2);
+        for (int i = 0; i < stations.size(); i++) {
+            positions.putIfAbsent(stations.get(i), i);
+        }
+        if (distances == null || distances.isEmpty()) {
+            this.fromStart = null;
+        } else {
+            this.fromStart = new int[distances.size()];
+            for (int i = 0; i < distances.size(); i++) {
+                fromStart[i] = distances.get(i) - distances.get(0);
+            }
+        }
+    }
+
+    /**
+     * @param distances distance of every station from the route start, may be null
+     */
+    public static RouteTopology of(List<String> stations, List<Integer> distances) {
+        return stations == null ? EMPTY : new RouteTopology(stations, distances);
+    }
+
+    public List<String> getStations() {
+        return stations;
+    }
+
+    public int size() {
+        return stations.size();
+    }
+
+    /**
+     * @return position of the station, -1 when the route does not pass it
+     */
+    public int indexOf(String station) {
+        Integer position = positions.get(station);
+        return position == null ? -1 : position;
+    }
+
+    public boolean contains(String station) {
+        return positions.containsKey(station);
+    }
+
+    /**
+     * @return true when the route passes both stations and start comes first
+     */
+    public boolean isBefore(String start, String end) {
+        int from = indexOf(start);
+        int to = indexOf(end);
+        return from >= 0 && to >= 0 && from < to;
+    }
+
+    /**
+     * @return true when start and end are the first and the last station of the route
+     */
+    public boolean isWholeRoute(String start, String end) {
+        return !stations.isEmpty() && stations.get(0).equals(start) && stations.get(stations.size() - 1).equals(end);
+    }
+
+    /**
+     * Number of stops from start to end, negative when end comes first.
+     */
+    public int stopsBetween(String start, String end) {
+        return indexOf(end) - indexOf(start);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the route does not pass the station or has no distance for it
+     */
+    public int distanceFromStart(String station) {
+        int position = indexOf(station);
+        if (position < 0 || fromStart == null || position >= fromStart.length) {
+            throw new IllegalArgumentException("No distance of station " + station + " on the route");
+        }
+        return fromStart[position];
+    }
+
+    /**
+     * @throws IllegalArgumentException when the route does not pass one of the stations or has no distance for it
+     */
+    public int distance(String start, String end) {
+        return distanceFromStart(end) - distanceFromStart(start);
+    }
+
+    /**
+     * @return the stations from start to end, both included, empty when start does not come before end
+     */
+    public List<String> segment(String start, String end) {
+        return isBefore(start, end) ? stations.subList(indexOf(start), indexOf(end) + 1) : Collections.emptyList();
+    }
+}
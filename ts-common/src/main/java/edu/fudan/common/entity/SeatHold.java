@@ -0,0 +1,43 @@
+package edu.fudan.common.entity;
+
+import lombok.Data;
+
+/**
+ * A seat reserved by the seat service for a limited time. The booking
+ * confirms it with the id of the stored order, or releases it when the
+ * order could not be created; an unconfirmed hold expires on its own.
+ *
+ * @author fdse
+ */
+@Data
+public class SeatHold {
+
+    private String holdId;
+
+    private String trainNumber;
+
+    private String travelDate;
+
+    private int seatType;
+
+    private int seatNo;
+
+    private String startStation;
+
+    private String destStation;
+
+    /**
+     * set once the hold is confirmed
+     */
+    private String orderId;
+
+    private long expiresAt;
+
+    public SeatHold(){
+        //Default Constructor
+    }
+
+    public Ticket toTicket() {
+        return new Ticket(seatNo, startStation, destStation);
+    }
+}
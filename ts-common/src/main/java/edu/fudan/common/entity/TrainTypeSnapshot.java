@@ -0,0 +1,26 @@
+package edu.fudan.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * All train types of the train service at one version. The version is
+ * derived from the train types and is sent as the ETag of the snapshot.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class TrainTypeSnapshot {
+
+    private String version;
+
+    private List<TrainType> trainTypes;
+
+    public TrainTypeSnapshot() {
+        //Default Constructor
+    }
+
+}
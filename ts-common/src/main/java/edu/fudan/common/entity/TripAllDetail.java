@@ -20,4 +20,17 @@ public class TripAllDetail {
 
     private Trip trip;
 
+    /**
+     * route, train type and prices the travel service looked up for the
+     * trip, null when it was not sent
+     */
+    private TravelResult travelResult;
+
+    public TripAllDetail(boolean status, String message, TripResponse tripResponse, Trip trip) {
+        this.status = status;
+        this.message = message;
+        this.tripResponse = tripResponse;
+        this.trip = trip;
+    }
+
 }
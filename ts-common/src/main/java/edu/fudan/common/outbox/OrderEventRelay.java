@@ -0,0 +1,71 @@
+package edu.fudan.common.outbox;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Publishes outbox rows to the order event exchange in insertion order.
+ * A batch stops at the first failed send so that later events of the same
+ * order are never published ahead of earlier ones.
+ * Register it as a bean of the order service that writes the outbox.
+ *
+ * @author fdse
+ */
+public class OrderEventRelay {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderEventRelay.class);
+
+    private final AmqpTemplate rabbitTemplate;
+
+    private final OrderOutboxRepository orderOutboxRepository;
+
+    private final String exchange;
+
+    private final Consumer<Runnable> forEachShard;
+
+    private final int batchSize;
+
+    /**
+     * @param forEachShard runs the relay once inside every shard holding an outbox
+     */
+    public OrderEventRelay(AmqpTemplate rabbitTemplate, OrderOutboxRepository orderOutboxRepository,
+                           String exchange, Consumer<Runnable> forEachShard, int batchSize) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.orderOutboxRepository = orderOutboxRepository;
+        this.exchange = exchange;
+        this.forEachShard = forEachShard;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.relay-interval-ms:500}")
+    public void relay() {
+        forEachShard.accept(this::relayShard);
+    }
+
+    private void relayShard() {
+        List<OrderOutbox> batch = orderOutboxRepository.findAllByOrderByIdAsc(PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<OrderOutbox> published = new ArrayList<>();
+        for (OrderOutbox outbox : batch) {
+            try {
+                rabbitTemplate.convertAndSend(exchange, outbox.getOrderId(), outbox.getPayload());
+                published.add(outbox);
+            } catch (Exception e) {
+                LOGGER.error("[relay][Publish order event failed][eventId: {}, orderId: {}, exception: {}]",
+                        outbox.getEventId(), outbox.getOrderId(), e.getMessage());
+                break;
+            }
+        }
+        orderOutboxRepository.deleteInBatch(published);
+        LOGGER.info("[relay][Published order events][count: {}]", published.size());
+    }
+}
@@ -0,0 +1,59 @@
+package edu.fudan.common.outbox;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.util.JsonUtils;
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Order event waiting to be relayed to RabbitMQ. Rows are written in the
+ * same transaction as the order change and removed once published.
+ * ts-order-service and ts-order-other-service each keep the table in their
+ * own database.
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "orders_outbox", indexes = {@Index(name = "idx_outbox_order_id", columnList = "orderId")})
+public class OrderOutbox {
+
+    /**
+     * insertion sequence, the relay publishes in this order
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 36)
+    private String eventId;
+
+    @Column(length = 36)
+    private String orderId;
+
+    private String eventType;
+
+    /**
+     * OrderEvent as json
+     */
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    private long createdAt;
+
+    public OrderOutbox() {
+        //Default Constructor
+    }
+
+    public static OrderOutbox of(OrderEvent event) {
+        OrderOutbox outbox = new OrderOutbox();
+        outbox.setEventId(event.getEventId());
+        outbox.setOrderId(event.getOrderId());
+        outbox.setEventType(event.getType().name());
+        outbox.setPayload(JsonUtils.object2Json(event));
+        outbox.setCreatedAt(event.getOccurredAt());
+        return outbox;
+    }
+
+}
@@ -0,0 +1,22 @@
+package edu.fudan.common.outbox;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutbox, Long> {
+
+    /**
+     * find the oldest unpublished events
+     *
+     * @param pageable batch size
+     * @return List<OrderOutbox>
+     */
+    List<OrderOutbox> findAllByOrderByIdAsc(Pageable pageable);
+}
@@ -116,6 +116,10 @@ public class JWTUtil {
         }
     }
 
+    static String secretKey() {
+        return secretKey;
+    }
+
     private static Jws<Claims> getClaims(String token) {
         return Jwts.parser().setSigningKey(secretKey).parseClaimsJws(token);
     }
@@ -0,0 +1,104 @@
+package edu.fudan.common.entity;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+@RunWith(JUnit4.class)
+public class RouteTopologyTest {
+
+    private RouteTopology topology = RouteTopology.of(Arrays.asList("A", "B", "C", "D"), Arrays.asList(100, 150, 230, 300));
+
+    @Test
+    public void testIsBefore() {
+        Assert.assertTrue(topology.isBefore("A", "D"));
+        Assert.assertTrue(topology.isBefore("B", "C"));
+        Assert.assertFalse(topology.isBefore("C", "B"));
+        Assert.assertFalse(topology.isBefore("B", "B"));
+        Assert.assertFalse(topology.isBefore("A", "X"));
+        Assert.assertFalse(topology.isBefore("X", "D"));
+    }
+
+    @Test
+    public void testStationVisitedTwiceKeepsFirstPosition() {
+        RouteTopology loop = RouteTopology.of(Arrays.asList("A", "B", "C", "B", "D"), Arrays.asList(0, 10, 20, 30, 40));
+        Assert.assertEquals(1, loop.indexOf("B"));
+        Assert.assertEquals(5, loop.size());
+        Assert.assertTrue(loop.isBefore("B", "C"));
+        Assert.assertFalse(loop.isBefore("C", "B"));
+        Assert.assertEquals(10, loop.distanceFromStart("B"));
+        Assert.assertEquals(Arrays.asList("B", "C", "B", "D"), loop.segment("B", "D"));
+    }
+
+    @Test
+    public void testDistance() {
+        Assert.assertEquals(0, topology.distanceFromStart("A"));
+        Assert.assertEquals(130, topology.distanceFromStart("C"));
+        Assert.assertEquals(150, topology.distance("B", "D"));
+        Assert.assertEquals(-80, topology.distance("C", "B"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistanceOfUnknownStation() {
+        topology.distance("A", "X");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistanceWithoutDistances() {
+        RouteTopology.of(Arrays.asList("A", "B"), null).distance("A", "B");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDistanceOfStationPastTheDistances() {
+        RouteTopology.of(Arrays.asList("A", "B", "C"), Arrays.asList(0, 10)).distanceFromStart("C");
+    }
+
+    @Test
+    public void testSegment() {
+        Assert.assertEquals(Arrays.asList("B", "C", "D"), topology.segment("B", "D"));
+        Assert.assertEquals(Arrays.asList("A", "B"), topology.segment("A", "B"));
+        Assert.assertEquals(Collections.emptyList(), topology.segment("D", "B"));
+        Assert.assertEquals(Collections.emptyList(), topology.segment("A", "X"));
+    }
+
+    @Test
+    public void testNullStations() {
+        RouteTopology empty = RouteTopology.of(null, null);
+        Assert.assertEquals(0, empty.size());
+        Assert.assertEquals(-1, empty.indexOf("A"));
+        Assert.assertFalse(empty.isWholeRoute("A", "B"));
+    }
+
+    @Test
+    public void testRouteTopologyFollowsStations() {
+        Route route = new Route("route_id", Arrays.asList("A", "B", "C"), Arrays.asList(0, 10, 20), "A", "C");
+        RouteTopology first = route.topology();
+        Assert.assertSame(first, route.topology());
+        Assert.assertTrue(route.topology().isBefore("A", "C"));
+
+        route.setStations(Arrays.asList("C", "B", "A"));
+        Assert.assertNotSame(first, route.topology());
+        Assert.assertTrue(route.topology().isBefore("C", "A"));
+        Assert.assertFalse(route.topology().isBefore("A", "C"));
+    }
+
+    @Test
+    public void testRouteTopologyFollowsDistances() {
+        Route route = new Route("route_id", Arrays.asList("A", "B", "C"), Arrays.asList(0, 10, 20), "A", "C");
+        Assert.assertEquals(20, route.topology().distance("A", "C"));
+
+        route.setDistances(Arrays.asList(0, 15, 40));
+        Assert.assertEquals(40, route.topology().distance("A", "C"));
+        route.setDistances(null);
+        try {
+            route.topology().distance("A", "C");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            //no distances any more
+        }
+    }
+}
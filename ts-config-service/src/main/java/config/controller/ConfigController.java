@@ -2,6 +2,7 @@ package config.controller;
 
 import config.entity.Config;
 import config.service.ConfigService;
+import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,6 +11,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 
 import static org.springframework.http.ResponseEntity.ok;
@@ -39,6 +41,14 @@ public class ConfigController {
         return ok(configService.queryAll(headers));
     }
 
+    @GetMapping(value = "/configs/snapshot")
+    public DeferredResult<Response> snapshot(@RequestParam(value = "version", required = false) String version,
+                                             @RequestParam(value = "wait", defaultValue = "0") long waitMs,
+                                             @RequestHeader HttpHeaders headers) {
+        logger.debug("[snapshot][Watch config snapshot][version: {}, wait: {}]", version, waitMs);
+        return configService.watchSnapshot(version, waitMs, headers);
+    }
+
     @CrossOrigin(origins = "*")
     @PostMapping(value = "/configs")
     public HttpEntity<?> createConfig(@RequestBody Config info, @RequestHeader HttpHeaders headers) {
@@ -3,6 +3,7 @@ package config.service;
 import config.entity.Config;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.async.DeferredResult;
 
 
 /**
@@ -53,4 +54,14 @@ public interface ConfigService {
      * @return Response
      */
     Response queryAll(HttpHeaders headers);
+
+    /**
+     * all config values, answered once they differ from the given version or after the wait
+     *
+     * @param version version held by the caller, null for none
+     * @param waitMs how long to hold the request without a change
+     * @param headers headers
+     * @return Response of the ConfigSnapshot
+     */
+    DeferredResult<Response> watchSnapshot(String version, long waitMs, HttpHeaders headers);
 }
@@ -6,9 +6,11 @@ import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
 
@@ -22,10 +24,16 @@ public class ConfigServiceImpl implements ConfigService {
     @Autowired
     ConfigRepository repository;
 
+    @Autowired
+    ConfigSnapshotHolder snapshotHolder;
+
     private static final Logger logger = LoggerFactory.getLogger(ConfigServiceImpl.class);
 
     String config0 = "Config ";
 
+    @Value("${config.snapshot.max-wait-ms:30000}")
+    long maxWaitMs = 30000;
+
     @Override
     public Response create(Config info, HttpHeaders headers) {
         if (repository.findByName(info.getName()) != null) {
@@ -35,6 +43,7 @@ public class ConfigServiceImpl implements ConfigService {
         } else {
             Config config = new Config(info.getName(), info.getValue(), info.getDescription());
             repository.save(config);
+            snapshotHolder.refresh();
             logger.info("[create][create success][Config: {}]", info);
             return new Response<>(1, "Create success", config);
         }
@@ -49,6 +58,7 @@ public class ConfigServiceImpl implements ConfigService {
         } else {
             Config config = new Config(info.getName(), info.getValue(), info.getDescription());
             repository.save(config);
+            snapshotHolder.refresh();
             logger.info("[update][update success][Config: {}]", config);
             return new Response<>(1, "Update success", config);
         }
@@ -77,11 +87,17 @@ public class ConfigServiceImpl implements ConfigService {
             return new Response<>(0, result, null);
         } else {
             repository.deleteByName(name);
+            snapshotHolder.refresh();
             logger.info("[delete][Config delete success][config name: {}]", name);
             return new Response<>(1, "Delete success", config);
         }
     }
 
+    @Override
+    public DeferredResult<Response> watchSnapshot(String version, long waitMs, HttpHeaders headers) {
+        return snapshotHolder.watch(version, Math.min(Math.max(waitMs, 0), maxWaitMs));
+    }
+
     @Override
     public Response queryAll(HttpHeaders headers) {
         List<Config> configList = repository.findAll();
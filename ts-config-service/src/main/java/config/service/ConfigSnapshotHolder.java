@@ -0,0 +1,72 @@
+package config.service;
+
+import config.entity.Config;
+import config.repository.ConfigRepository;
+import edu.fudan.common.config.SnapshotHolder;
+import edu.fudan.common.entity.ConfigSnapshot;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * All config values as served to the ConfigClient of the seat service, which
+ * reads the seat rates on every seat query. The version is the checksum of
+ * the values sorted by name, so every instance computes the same version for
+ * the same table. Rates are tuned while the system runs and the seat service
+ * should see them within a second, hence the short reread interval, which is
+ * also how a value written on another instance gets here.
+ *
+ * @author fdse
+ */
+@Component
+public class ConfigSnapshotHolder extends SnapshotHolder<ConfigSnapshot, Response> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfigSnapshotHolder.class);
+
+    @Autowired
+    private ConfigRepository repository;
+
+    public ConfigSnapshotHolder() {
+        super(snapshotOf(Collections.emptyList()));
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${config.snapshot.poll-interval-ms:500}")
+    public void refresh() {
+        List<Config> configs = repository.findAll();
+        ConfigSnapshot next = snapshotOf(configs == null ? Collections.emptyList() : configs);
+        if (publish(next)) {
+            ConfigSnapshotHolder.logger.info("[refresh][Config snapshot changed][version: {}, configs: {}]", next.getVersion(), next.getValues().size());
+        }
+    }
+
+    @Override
+    protected String tagOf(ConfigSnapshot snapshot) {
+        return snapshot.getVersion();
+    }
+
+    @Override
+    protected Response answer(ConfigSnapshot snapshot, String version) {
+        return new Response<>(1, snapshot.getVersion().equals(version) ? "Not modified" : "Success", snapshot);
+    }
+
+    static ConfigSnapshot snapshotOf(Collection<Config> configs) {
+        Map<String, String> values = new TreeMap<>();
+        for (Config config : configs) {
+            values.put(config.getName(), config.getValue());
+        }
+        CRC32 crc = new CRC32();
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            crc.update((value.getKey() + "=" + value.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return new ConfigSnapshot(Long.toHexString(crc.getValue()), Collections.unmodifiableMap(values));
+    }
+}
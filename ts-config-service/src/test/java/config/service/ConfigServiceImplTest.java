@@ -2,6 +2,7 @@ package config.service;
 
 import config.entity.Config;
 import config.repository.ConfigRepository;
+import edu.fudan.common.entity.ConfigSnapshot;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,9 +13,13 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @RunWith(JUnit4.class)
@@ -26,11 +31,15 @@ public class ConfigServiceImplTest {
     @Mock
     private ConfigRepository repository;
 
+    @Spy
+    private ConfigSnapshotHolder snapshotHolder = new ConfigSnapshotHolder();
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(snapshotHolder, "repository", repository);
     }
 
     @Test
@@ -114,4 +123,24 @@ public class ConfigServiceImplTest {
         Assert.assertEquals(new Response<>(0, "No content", null), result);
     }
 
+    @Test
+    public void testWatchSnapshotAnswersOnChange() {
+        Config config = new Config("DirectTicketAllocationProportion", "0.5", null);
+        Mockito.when(repository.findAll()).thenReturn(new ArrayList<>(Collections.singletonList(config)));
+        snapshotHolder.refresh();
+        String version = snapshotHolder.current().getVersion();
+
+        DeferredResult<Response> behind = configServiceImpl.watchSnapshot(null, 1000, headers);
+        Assert.assertEquals(version, ((ConfigSnapshot) ((Response) behind.getResult()).getData()).getVersion());
+
+        DeferredResult<Response> waiting = configServiceImpl.watchSnapshot(version, 1000, headers);
+        Assert.assertFalse(waiting.hasResult());
+        Mockito.when(repository.findByName(config.getName())).thenReturn(config);
+        Mockito.when(repository.findAll()).thenReturn(new ArrayList<>(Collections.singletonList(new Config(config.getName(), "0.6", null))));
+        configServiceImpl.update(new Config(config.getName(), "0.6", null), headers);
+        ConfigSnapshot changed = (ConfigSnapshot) ((Response) waiting.getResult()).getData();
+        Assert.assertEquals("0.6", changed.getValues().get("DirectTicketAllocationProportion"));
+        Assert.assertNotEquals(version, changed.getVersion());
+    }
+
 }
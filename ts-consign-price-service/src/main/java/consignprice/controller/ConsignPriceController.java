@@ -2,12 +2,17 @@ package consignprice.controller;
 
 import consignprice.entity.ConsignPrice;
 import consignprice.service.ConsignPriceService;
+import edu.fudan.common.entity.ConsignPriceQuote;
+import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
 
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -36,6 +41,20 @@ public class ConsignPriceController {
                 Boolean.parseBoolean(isWithinRegion), headers));
     }
 
+    @PostMapping(value = "/consignprice/quotes")
+    public HttpEntity quotePrices(@RequestBody List<ConsignPriceQuote> quotes, @RequestHeader HttpHeaders headers) {
+        logger.info("[quotePrices][Quote prices][quotes: {}]", quotes.size());
+        return ok(service.quotePrices(quotes, headers));
+    }
+
+    @GetMapping(value = "/consignprice/rule/snapshot")
+    public DeferredResult<Response> ruleSnapshot(@RequestParam(value = "version", required = false) String version,
+                                                 @RequestParam(value = "wait", defaultValue = "0") long waitMs,
+                                                 @RequestHeader HttpHeaders headers) {
+        logger.debug("[ruleSnapshot][Watch price rule snapshot][version: {}, wait: {}]", version, waitMs);
+        return service.watchRuleSnapshot(version, waitMs, headers);
+    }
+
     @GetMapping(value = "/consignprice/price")
     public HttpEntity getPriceInfo(@RequestHeader HttpHeaders headers) {
         logger.info("[getPriceInfo][Get price info]");
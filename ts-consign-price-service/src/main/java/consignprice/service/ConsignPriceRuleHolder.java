@@ -0,0 +1,75 @@
+package consignprice.service;
+
+import consignprice.entity.ConsignPrice;
+import consignprice.repository.ConsignPriceConfigRepository;
+import edu.fudan.common.config.SnapshotHolder;
+import edu.fudan.common.entity.ConsignPriceRule;
+import edu.fudan.common.entity.ConsignPriceRuleSnapshot;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * The consign price rule as served to the ConsignPriceRuleClient of the
+ * consign service, and as used for the quotes priced here. The version is
+ * the checksum of the rule, so every instance computes the same version for
+ * the same config. The config is read again every second, which is how a
+ * change made through another instance gets here.
+ *
+ * @author fdse
+ */
+@Component
+public class ConsignPriceRuleHolder extends SnapshotHolder<ConsignPriceRuleSnapshot, Response> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsignPriceRuleHolder.class);
+
+    @Autowired
+    private ConsignPriceConfigRepository repository;
+
+    public ConsignPriceRuleHolder() {
+        super(snapshotOf(null));
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${consign-price.snapshot.poll-interval-ms:1000}")
+    public void refresh() {
+        ConsignPrice config = repository.findByIndex(0);
+        ConsignPriceRuleSnapshot next = snapshotOf(config == null ? null
+                : new ConsignPriceRule(config.getInitialWeight(), config.getInitialPrice(), config.getWithinPrice(), config.getBeyondPrice()));
+        if (publish(next)) {
+            ConsignPriceRuleHolder.LOGGER.info("[refresh][Consign price rule changed][version: {}, rule: {}]", next.getVersion(), next.getRule());
+        }
+    }
+
+    /**
+     * @return the rule, null while no price config exists
+     */
+    public ConsignPriceRule rule() {
+        return current().getRule();
+    }
+
+    @Override
+    protected String tagOf(ConsignPriceRuleSnapshot snapshot) {
+        return snapshot.getVersion();
+    }
+
+    @Override
+    protected Response answer(ConsignPriceRuleSnapshot snapshot, String version) {
+        return new Response<>(1, snapshot.getVersion().equals(version) ? "Not modified" : "Success", snapshot);
+    }
+
+    static ConsignPriceRuleSnapshot snapshotOf(ConsignPriceRule rule) {
+        CRC32 crc = new CRC32();
+        String values = rule == null ? "none" : rule.getInitialWeight() + "," + rule.getInitialPrice() + ","
+                + rule.getWithinPrice() + "," + rule.getBeyondPrice();
+        crc.update(values.getBytes(StandardCharsets.UTF_8));
+        return new ConsignPriceRuleSnapshot(Long.toHexString(crc.getValue()), rule);
+    }
+}
@@ -1,8 +1,12 @@
 package consignprice.service;
 
 import consignprice.entity.ConsignPrice;
+import edu.fudan.common.entity.ConsignPriceQuote;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
 
 /**
  * @author fdse
@@ -19,6 +23,25 @@ public interface ConsignPriceService {
      */
     Response getPriceByWeightAndRegion(double weight, boolean isWithinRegion, HttpHeaders headers);
 
+    /**
+     * price many parcels with one rule
+     *
+     * @param quotes weight and region of every parcel, the price is filled in
+     * @param headers headers
+     * @return Response
+     */
+    Response quotePrices(List<ConsignPriceQuote> quotes, HttpHeaders headers);
+
+    /**
+     * the pricing rule, for pricing consigns locally, answered once it differs from the given version or after the wait
+     *
+     * @param version version held by the caller, null for none
+     * @param waitMs how long to hold the request without a change
+     * @param headers headers
+     * @return Response of the ConsignPriceRuleSnapshot
+     */
+    DeferredResult<Response> watchRuleSnapshot(String version, long waitMs, HttpHeaders headers);
+
     /**
      * query price information
      *
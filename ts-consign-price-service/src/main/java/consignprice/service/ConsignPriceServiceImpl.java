@@ -2,12 +2,18 @@ package consignprice.service;
 
 import consignprice.entity.ConsignPrice;
 import consignprice.repository.ConsignPriceConfigRepository;
+import edu.fudan.common.entity.ConsignPriceQuote;
+import edu.fudan.common.entity.ConsignPriceRule;
 import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.List;
 
 /**
  * @author fdse
@@ -18,26 +24,52 @@ public class ConsignPriceServiceImpl implements ConsignPriceService {
     @Autowired
     private ConsignPriceConfigRepository repository;
 
+    @Autowired
+    private ConsignPriceRuleHolder ruleHolder;
+
+    @Value("${consign-price.snapshot.max-wait-ms:30000}")
+    long maxWaitMs = 30000;
+
     String success = "Success";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConsignPriceServiceImpl.class);
 
     @Override
     public Response getPriceByWeightAndRegion(double weight, boolean isWithinRegion, HttpHeaders headers) {
-        ConsignPrice priceConfig = repository.findByIndex(0);
-        double price = 0;
-        double initialPrice = priceConfig.getInitialPrice();
-        if (weight <= priceConfig.getInitialWeight()) {
-            price = initialPrice;
-        } else {
-            double extraWeight = weight - priceConfig.getInitialWeight();
-            if (isWithinRegion) {
-                price = initialPrice + extraWeight * priceConfig.getWithinPrice();
-            }else {
-                price = initialPrice + extraWeight * priceConfig.getBeyondPrice();
-            }
+        ConsignPriceRule current = rule();
+        if (current == null) {
+            ConsignPriceServiceImpl.LOGGER.error("[getPriceByWeightAndRegion][Get price error][Price config not found]");
+            return new Response<>(0, "Price config not found", null);
+        }
+        return new Response<>(1, success, current.price(weight, isWithinRegion));
+    }
+
+    @Override
+    public Response quotePrices(List<ConsignPriceQuote> quotes, HttpHeaders headers) {
+        ConsignPriceRule current = rule();
+        if (current == null) {
+            ConsignPriceServiceImpl.LOGGER.error("[quotePrices][Quote prices error][Price config not found]");
+            return new Response<>(0, "Price config not found", null);
+        }
+        for (ConsignPriceQuote quote : quotes) {
+            quote.setPrice(current.price(quote.getWeight(), quote.isWithin()));
+        }
+        return new Response<>(1, success, quotes);
+    }
+
+    @Override
+    public DeferredResult<Response> watchRuleSnapshot(String version, long waitMs, HttpHeaders headers) {
+        return ruleHolder.watch(version, Math.min(Math.max(waitMs, 0), maxWaitMs));
+    }
+
+    private ConsignPriceRule rule() {
+        ConsignPriceRule current = ruleHolder.rule();
+        if (current == null) {
+            //the config may have been created since the last read
+            ruleHolder.refresh();
+            current = ruleHolder.rule();
         }
-        return new Response<>(1, success, price);
+        return current;
     }
 
     @Override
@@ -73,6 +105,7 @@ public class ConsignPriceServiceImpl implements ConsignPriceService {
         originalConfig.setWithinPrice(config.getWithinPrice());
         originalConfig.setBeyondPrice(config.getBeyondPrice());
         repository.save(originalConfig);
+        ruleHolder.refresh();
         return new Response<>(1, success, originalConfig);
     }
 
@@ -0,0 +1,75 @@
+package consignprice.service;
+
+import consignprice.entity.ConsignPrice;
+import consignprice.repository.ConsignPriceConfigRepository;
+import edu.fudan.common.entity.ConsignPriceRuleSnapshot;
+import edu.fudan.common.util.Response;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.UUID;
+
+@RunWith(JUnit4.class)
+public class ConsignPriceRuleHolderTest {
+
+    private ConsignPriceRuleHolder ruleHolder = new ConsignPriceRuleHolder();
+
+    @Mock
+    private ConsignPriceConfigRepository repository;
+
+    private ConsignPrice priceConfig = new ConsignPrice(UUID.randomUUID().toString(), 0, 2.0, 3.0, 3.5, 4.0);
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        //set by hand, the holder's snapshot field would take any mock
+        ReflectionTestUtils.setField(ruleHolder, "repository", repository);
+        Mockito.when(repository.findByIndex(0)).thenReturn(priceConfig);
+        ruleHolder.refresh();
+    }
+
+    @Test
+    public void testRevalidateCurrentVersion() {
+        Response first = answer(ruleHolder.watch(null, 0));
+        Assert.assertEquals("Success", first.getMsg());
+        ConsignPriceRuleSnapshot snapshot = (ConsignPriceRuleSnapshot) first.getData();
+        Assert.assertEquals(3.5, snapshot.getRule().getWithinPrice(), 0.0);
+
+        Response second = answer(ruleHolder.watch(snapshot.getVersion(), 0));
+        Assert.assertEquals("Not modified", second.getMsg());
+    }
+
+    @Test
+    public void testChangeAnswersWaitingCaller() {
+        String version = ruleHolder.current().getVersion();
+        DeferredResult<Response> waiting = ruleHolder.watch(version, 30000);
+        Assert.assertFalse(waiting.hasResult());
+
+        priceConfig.setBeyondPrice(5.0);
+        ruleHolder.refresh();
+        Response changed = answer(waiting);
+        Assert.assertEquals("Success", changed.getMsg());
+        Assert.assertNotEquals(version, ((ConsignPriceRuleSnapshot) changed.getData()).getVersion());
+        Assert.assertEquals(5.0, ((ConsignPriceRuleSnapshot) changed.getData()).getRule().getBeyondPrice(), 0.0);
+    }
+
+    @Test
+    public void testNoConfigHasNoRule() {
+        Mockito.when(repository.findByIndex(0)).thenReturn(null);
+        ruleHolder.refresh();
+        Assert.assertNull(ruleHolder.rule());
+        Assert.assertEquals(ConsignPriceRuleHolder.snapshotOf(null).getVersion(), ruleHolder.current().getVersion());
+    }
+
+    private Response answer(DeferredResult<Response> result) {
+        return (Response) result.getResult();
+    }
+}
@@ -2,6 +2,7 @@ package consignprice.service;
 
 import consignprice.entity.ConsignPrice;
 import consignprice.repository.ConsignPriceConfigRepository;
+import edu.fudan.common.entity.ConsignPriceQuote;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,8 +13,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.UUID;
 
 @RunWith(JUnit4.class)
@@ -25,11 +30,15 @@ public class ConsignPriceServiceImplTest {
     @Mock
     private ConsignPriceConfigRepository repository;
 
+    @Spy
+    private ConsignPriceRuleHolder ruleHolder = new ConsignPriceRuleHolder();
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(ruleHolder, "repository", repository);
     }
 
     @Test
@@ -91,4 +100,29 @@ public class ConsignPriceServiceImplTest {
         Assert.assertEquals(new Response<>(1, "Success", config), result);
     }
 
+    @Test
+    public void testQuotePricesReadsRuleOnce() {
+        ConsignPrice priceConfig = new ConsignPrice(UUID.randomUUID().toString(), 0, 2.0, 3.0, 3.5, 4.0);
+        Mockito.when(repository.findByIndex(0)).thenReturn(priceConfig);
+        List<ConsignPriceQuote> quotes = Arrays.asList(new ConsignPriceQuote(1.0, true), new ConsignPriceQuote(3.0, true), new ConsignPriceQuote(3.0, false));
+        Response result = consignPriceServiceImpl.quotePrices(quotes, headers);
+        Assert.assertEquals(1, result.getStatus().intValue());
+        Assert.assertEquals(3.0, quotes.get(0).getPrice(), 0.0);
+        Assert.assertEquals(6.5, quotes.get(1).getPrice(), 0.0);
+        Assert.assertEquals(7.0, quotes.get(2).getPrice(), 0.0);
+        consignPriceServiceImpl.getPriceByWeightAndRegion(3.0, true, headers);
+        Mockito.verify(repository, Mockito.times(1)).findByIndex(0);
+    }
+
+    @Test
+    public void testModifyPricePublishesRule() {
+        ConsignPrice priceConfig = new ConsignPrice(UUID.randomUUID().toString(), 0, 2.0, 3.0, 3.5, 4.0);
+        String version = ruleHolder.current().getVersion();
+        Mockito.when(repository.findByIndex(0)).thenReturn(null, priceConfig);
+        consignPriceServiceImpl.createAndModifyPrice(priceConfig, headers);
+        Response result = (Response) consignPriceServiceImpl.watchRuleSnapshot(version, 30000, headers).getResult();
+        Assert.assertEquals(new Response<>(1, "Success", ruleHolder.current()), result);
+        Assert.assertEquals(3.0, ruleHolder.rule().getInitialPrice(), 0.0);
+    }
+
 }
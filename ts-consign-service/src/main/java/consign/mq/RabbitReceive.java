@@ -0,0 +1,59 @@
+package consign.mq;
+
+import consign.config.Queues;
+import consign.entity.Consign;
+import consign.repository.ConsignRepository;
+import consign.service.ConsignService;
+import edu.fudan.common.entity.BookingCompletedInfo;
+import edu.fudan.common.security.jwt.ServiceToken;
+import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the consignment entered at booking time once the order is stored.
+ * Deliveries are at least once, so an order that already has a consignment is skipped.
+ */
+@Component
+public class RabbitReceive {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitReceive.class);
+
+    @Autowired
+    private ConsignService consignService;
+
+    @Autowired
+    private ConsignRepository repository;
+
+    @RabbitListener(queues = Queues.bookingCompletedQueue)
+    public void process(String payload) {
+        BookingCompletedInfo info = JsonUtils.json2Object(payload, BookingCompletedInfo.class);
+        if (info == null) {
+            logger.error("[process][json2Object][Receive booking completed object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable booking completed message");
+        }
+        if (info.getConsign() == null) {
+            return;
+        }
+        if (repository.findByOrderId(info.getOrderId()) != null) {
+            logger.info("[process][Consign already exists, skip][OrderId: {}]", info.getOrderId());
+            return;
+        }
+        //the consign price service only answers signed-in users and services
+        HttpHeaders headers = ServiceToken.headers("ts-consign-service");
+        Consign consign = JsonUtils.conveterObject(info.getConsign(), Consign.class);
+        Response response = consignService.insertConsignRecord(consign, headers);
+        if (response.getStatus() != 1) {
+            //retried and then dead-lettered like any other failure
+            logger.error("[process][Insert consign record fail][OrderId: {}, msg: {}]", info.getOrderId(), response.getMsg());
+            throw new IllegalStateException("insert consign record failed: " + response.getMsg());
+        }
+        logger.info("[process][Insert consign record][OrderId: {}, msg: {}]", info.getOrderId(), response.getMsg());
+    }
+}
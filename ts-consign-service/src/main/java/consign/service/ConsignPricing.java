@@ -0,0 +1,51 @@
+package consign.service;
+
+import edu.fudan.common.config.ConsignPriceRuleClient;
+import edu.fudan.common.entity.ConsignPriceRule;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Prices a consign by the weight rule the ConsignPriceRuleClient holds, so
+ * inserting or updating a consign makes no pricing call. Until the client
+ * got a rule the consign price service prices each consign itself.
+ *
+ * @author fdse
+ */
+@Component
+public class ConsignPricing {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConsignPricing.class);
+
+    private static final String CONSIGN_PRICE_SERVICE_URL = "http://ts-consign-price-service/api/v1/consignpriceservice/consignprice";
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ConsignPriceRuleClient consignPriceRuleClient;
+
+    public Double price(double weight, boolean isWithinRegion, HttpHeaders headers) {
+        ConsignPriceRule rule = consignPriceRuleClient.rule();
+        if (rule != null) {
+            return rule.price(weight, isWithinRegion);
+        }
+        ConsignPricing.LOGGER.warn("[price][No consign price rule, price remotely][weight: {}, within: {}]", weight, isWithinRegion);
+        ResponseEntity<Response<Double>> re = restTemplate.exchange(
+                CONSIGN_PRICE_SERVICE_URL + "/" + weight + "/" + isWithinRegion,
+                HttpMethod.GET,
+                new HttpEntity<>(null, headers),
+                new ParameterizedTypeReference<Response<Double>>() {
+                });
+        return re.getBody().getData();
+    }
+}
@@ -36,6 +36,9 @@ public class ConsignServiceImpl implements ConsignService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private ConsignPricing consignPricing;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ConsignServiceImpl.class);
 
     private String getServiceUrl(String serviceName) {
@@ -62,15 +65,7 @@ public class ConsignServiceImpl implements ConsignService {
         consignRecord.setWeight(consignRequest.getWeight());
 
         //get the price
-        HttpEntity requestEntity = new HttpEntity(null, headers);
-        String consign_price_service_url = getServiceUrl("ts-consign-price-service");
-        ResponseEntity<Response<Double>> re = restTemplate.exchange(
-                consign_price_service_url + "/api/v1/consignpriceservice/consignprice/" + consignRequest.getWeight() + "/" + consignRequest.isWithin(),
-                HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<Response<Double>>() {
-                });
-        consignRecord.setPrice(re.getBody().getData());
+        consignRecord.setPrice(consignPricing.price(consignRequest.getWeight(), consignRequest.isWithin(), headers));
 
         LOGGER.info("[insertConsignRecord][SAVE consign info][consignRecord : {}]", consignRecord.toString());
         ConsignRecord result = repository.save(consignRecord);
@@ -82,10 +77,11 @@ public class ConsignServiceImpl implements ConsignService {
     public Response updateConsignRecord(Consign consignRequest, HttpHeaders headers) {
         ConsignServiceImpl.LOGGER.info("[updateConsignRecord][Update Start]");
 
-        if (!repository.findById(consignRequest.getId()).isPresent()) {
+        Optional<ConsignRecord> found = repository.findById(consignRequest.getId());
+        if (!found.isPresent()) {
             return insertConsignRecord(consignRequest, headers);
         }
-        ConsignRecord originalRecord = repository.findById(consignRequest.getId()).get();
+        ConsignRecord originalRecord = found.get();
         originalRecord.setAccountId(consignRequest.getAccountId().toString());
         originalRecord.setHandleDate(consignRequest.getHandleDate());
         originalRecord.setTargetDate(consignRequest.getTargetDate());
@@ -95,16 +91,7 @@ public class ConsignServiceImpl implements ConsignService {
         originalRecord.setPhone(consignRequest.getPhone());
         //Recalculate price
         if (originalRecord.getWeight() != consignRequest.getWeight()) {
-            HttpEntity requestEntity = new HttpEntity<>(null, headers);
-            String consign_price_service_url = getServiceUrl("ts-consign-price-service");
-            ResponseEntity<Response<Double>> re = restTemplate.exchange(
-                    consign_price_service_url + "/api/v1/consignpriceservice/consignprice/" + consignRequest.getWeight() + "/" + consignRequest.isWithin(),
-                    HttpMethod.GET,
-                    requestEntity,
-                    new ParameterizedTypeReference<Response<Double>>() {
-                    });
-
-            originalRecord.setPrice(re.getBody().getData());
+            originalRecord.setPrice(consignPricing.price(consignRequest.getWeight(), consignRequest.isWithin(), headers));
         } else {
             originalRecord.setPrice(originalRecord.getPrice());
         }
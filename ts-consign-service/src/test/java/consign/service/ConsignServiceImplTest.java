@@ -3,6 +3,8 @@ package consign.service;
 import consign.entity.Consign;
 import consign.entity.ConsignRecord;
 import consign.repository.ConsignRepository;
+import edu.fudan.common.config.ConsignPriceRuleClient;
+import edu.fudan.common.entity.ConsignPriceRule;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -13,8 +15,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
@@ -33,26 +37,26 @@ public class ConsignServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private ConsignPriceRuleClient consignPriceRuleClient;
+
+    @Spy
+    private ConsignPricing consignPricing = new ConsignPricing();
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(consignPricing, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(consignPricing, "consignPriceRuleClient", consignPriceRuleClient);
+        Mockito.when(consignPriceRuleClient.rule()).thenReturn(new ConsignPriceRule(1.0, 3.0, 2.0, 4.0));
     }
 
     @Test
     public void testInsertConsignRecord() {
-        HttpEntity requestEntity = new HttpEntity(null, headers);
-        Response<Double> response = new Response<>(1, null, 3.0);
-        ResponseEntity<Response<Double>> re = new ResponseEntity<>(response, HttpStatus.OK);
         Consign consignRequest = new Consign(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString(), "handle_date", "target_date", "place_from", "place_to", "consignee", "10001", 1.0, true);
         ConsignRecord consignRecord = new ConsignRecord(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString(), "handle_date", "target_date", "place_from", "place_to", "consignee", "10001", 1.0, 3.0);
-        Mockito.when(restTemplate.exchange(
-                "http://ts-consign-price-service:16110/api/v1/consignpriceservice/consignprice/" + consignRequest.getWeight() + "/" + consignRequest.isWithin(),
-                HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<Response<Double>>() {
-                })).thenReturn(re);
         Mockito.when(repository.save(Mockito.any(ConsignRecord.class))).thenReturn(consignRecord);
         Response result = consignServiceImpl.insertConsignRecord(consignRequest, headers);
         Assert.assertEquals(new Response<>(1, "You have consigned successfully! The price is 3.0", consignRecord), result);
@@ -60,18 +64,9 @@ public class ConsignServiceImplTest {
 
     @Test
     public void testUpdateConsignRecord1() {
-        HttpEntity requestEntity = new HttpEntity(null, headers);
-        Response<Double> response = new Response<>(1, null, 3.0);
-        ResponseEntity<Response<Double>> re = new ResponseEntity<>(response, HttpStatus.OK);
         Consign consignRequest = new Consign(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString(), "handle_date", "target_date", "place_from", "place_to", "consignee", "10001", 1.0, true);
         ConsignRecord consignRecord = new ConsignRecord(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString(), "handle_date", "target_date", "place_from", "place_to", "consignee", "10001", 2.0, 3.0);
         Mockito.when(repository.findById(Mockito.anyString())).thenReturn(java.util.Optional.of(consignRecord));
-        Mockito.when(restTemplate.exchange(
-                "http://ts-consign-price-service:16110/api/v1/consignpriceservice/consignprice/" + consignRequest.getWeight() + "/" + consignRequest.isWithin(),
-                HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<Response<Double>>() {
-                })).thenReturn(re);
         Mockito.when(repository.save(Mockito.any(ConsignRecord.class))).thenReturn(null);
         Response result = consignServiceImpl.updateConsignRecord(consignRequest, headers);
         consignRecord.setWeight(1.0);
@@ -139,4 +134,35 @@ public class ConsignServiceImplTest {
         Assert.assertEquals(new Response<>(0, "No Content according to consignee", null), result);
     }
 
+    @Test
+    public void testInsertConsignRecordsPricedLocally() {
+        Consign consignRequest = new Consign(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString(), "handle_date", "target_date", "place_from", "place_to", "consignee", "10001", 3.0, false);
+        Mockito.when(repository.save(Mockito.any(ConsignRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        for (int i = 0; i < 3; i++) {
+            ConsignRecord result = (ConsignRecord) consignServiceImpl.insertConsignRecord(consignRequest, headers).getData();
+            Assert.assertEquals(11.0, result.getPrice(), 0.0);
+        }
+        //the rule is the one the client holds, no consign is priced remotely
+        Mockito.verifyZeroInteractions(restTemplate);
+    }
+
+    @Test
+    public void testNoRulePricesRemotely() {
+        Mockito.when(consignPriceRuleClient.rule()).thenReturn(null);
+        ResponseEntity<Response<Double>> priced = new ResponseEntity<>(new Response<>(1, null, 11.0), HttpStatus.OK);
+        Mockito.when(restTemplate.exchange(
+                Mockito.endsWith("/consignprice/3.0/false"),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(priced);
+        Consign consignRequest = new Consign(UUID.randomUUID().toString(), UUID.randomUUID().toString(), UUID.randomUUID().toString(), "handle_date", "target_date", "place_from", "place_to", "consignee", "10001", 3.0, false);
+        Mockito.when(repository.save(Mockito.any(ConsignRecord.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ConsignRecord result = (ConsignRecord) consignServiceImpl.insertConsignRecord(consignRequest, headers).getData();
+        Assert.assertEquals(11.0, result.getPrice(), 0.0);
+        Mockito.verify(restTemplate).exchange(
+                Mockito.endsWith("/consignprice/3.0/false"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+    }
+
 }
@@ -8,6 +8,8 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+
 import static org.springframework.http.ResponseEntity.ok;
 
 /**
@@ -43,4 +45,18 @@ public class ExecuteControlller {
         return ok(executeService.ticketCollect(orderId, headers));
     }
 
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/execute/execute/batch")
+    public HttpEntity executeTickets(@RequestBody List<String> orderIds, @RequestHeader HttpHeaders headers) {
+        ExecuteControlller.LOGGER.info("[executeTickets][Execute batch][size: {}]", orderIds.size());
+        return ok(executeService.ticketExecuteBatch(orderIds, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/execute/collected/batch")
+    public HttpEntity collectTickets(@RequestBody List<String> orderIds, @RequestHeader HttpHeaders headers) {
+        ExecuteControlller.LOGGER.info("[collectTickets][Collect batch][size: {}]", orderIds.size());
+        return ok(executeService.ticketCollectBatch(orderIds, headers));
+    }
+
 }
@@ -3,6 +3,8 @@ package execute.serivce;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
 
+import java.util.List;
+
 /**
  * @author fdse
  */
@@ -26,4 +28,22 @@ public interface ExecuteService {
      */
     Response ticketCollect(String orderId, HttpHeaders headers);
 
+    /**
+     * ticket execute for a batch of orders
+     *
+     * @param orderIds order ids
+     * @param headers headers
+     * @return Response with one OrderStatusChangeResult per order id
+     */
+    Response ticketExecuteBatch(List<String> orderIds, HttpHeaders headers);
+
+    /**
+     * ticket collect for a batch of orders
+     *
+     * @param orderIds order ids
+     * @param headers headers
+     * @return Response with one OrderStatusChangeResult per order id
+     */
+    Response ticketCollectBatch(List<String> orderIds, HttpHeaders headers);
+
 }
@@ -14,9 +14,13 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author fdse
@@ -31,6 +35,11 @@ public class ExecuteServiceImpl implements ExecuteService {
 
     String orderStatusWrong = "Order Status Wrong";
 
+    /**
+     * an order service could not answer, unlike "Order Not Found" the order is not looked up elsewhere
+     */
+    String orderServiceUnavailable = "Order Service Unavailable";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(ExecuteServiceImpl.class);
     private String getServiceUrl(String serviceName) {
         return "http://" + serviceName;
@@ -132,6 +141,73 @@ public class ExecuteServiceImpl implements ExecuteService {
         }
     }
 
+    @Override
+    public Response ticketExecuteBatch(List<String> orderIds, HttpHeaders headers) {
+        return changeOrdersStatus(orderIds, OrderStatus.USED.getCode());
+    }
+
+    @Override
+    public Response ticketCollectBatch(List<String> orderIds, HttpHeaders headers) {
+        return changeOrdersStatus(orderIds, OrderStatus.COLLECTED.getCode());
+    }
+
+    private Response changeOrdersStatus(List<String> orderIds, int status) {
+        //1.Change the orders held by order service, the transition is validated there
+        Map<String, OrderStatusChangeResult> resultMap = new HashMap<>();
+        List<String> notFoundIds = new ArrayList<>();
+        for (OrderStatusChangeResult result : executeOrders(orderIds, status, getServiceUrl("ts-order-service") + "/api/v1/orderservice/order/status/batch")) {
+            if (result.getStatus() == 1 || !"Order Not Found".equals(result.getMsg())) {
+                resultMap.put(result.getOrderId(), result);
+            } else {
+                notFoundIds.add(result.getOrderId());
+            }
+        }
+        //2.Orders not held by order service are looked up in order other service
+        if (!notFoundIds.isEmpty()) {
+            for (OrderStatusChangeResult result : executeOrders(notFoundIds, status, getServiceUrl("ts-order-other-service") + "/api/v1/orderOtherService/orderOther/status/batch")) {
+                resultMap.put(result.getOrderId(), result);
+            }
+        }
+        List<OrderStatusChangeResult> results = new ArrayList<>(orderIds.size());
+        int successCount = 0;
+        for (String orderId : orderIds) {
+            OrderStatusChangeResult result = resultMap.get(orderId);
+            if (result == null) {
+                result = new OrderStatusChangeResult(orderId, 0, "Order Not Found");
+            }
+            successCount += result.getStatus();
+            results.add(result);
+        }
+        LOGGER.info("[changeOrdersStatus][Change orders status][target status: {}, requested: {}, success: {}]", status, orderIds.size(), successCount);
+        return new Response<>(1, "Success", results);
+    }
+
+    private List<OrderStatusChangeResult> executeOrders(List<String> orderIds, int status, String url) {
+        ExecuteServiceImpl.LOGGER.info("[executeOrders][Execute Service, Execute Orders][size: {}]", orderIds.size());
+        HttpEntity requestEntity = new HttpEntity(new OrderStatusChangeInfo(orderIds, status), null);
+        Response<List<OrderStatusChangeResult>> result;
+        try {
+            ResponseEntity<Response<List<OrderStatusChangeResult>>> re = restTemplate.exchange(
+                    url,
+                    HttpMethod.POST,
+                    requestEntity,
+                    new ParameterizedTypeReference<Response<List<OrderStatusChangeResult>>>() {
+                    });
+            result = re.getBody();
+        } catch (RestClientException e) {
+            LOGGER.error("[executeOrders][Execute orders error][url: {}, exception: {}]", url, e.getMessage());
+            result = null;
+        }
+        if (result == null || result.getStatus() != 1 || result.getData() == null) {
+            LOGGER.error("[executeOrders][Execute orders error][url: {}]", url);
+            List<OrderStatusChangeResult> failed = new ArrayList<>(orderIds.size());
+            for (String orderId : orderIds) {
+                failed.add(new OrderStatusChangeResult(orderId, 0, orderServiceUnavailable));
+            }
+            return failed;
+        }
+        return result.getData();
+    }
 
     private Response executeOrder(String orderId, int status, HttpHeaders headers) {
         ExecuteServiceImpl.LOGGER.info("[Execute Service][Execute Order] Executing....");
@@ -2,6 +2,7 @@ package execute.service;
 
 import edu.fudan.common.util.Response;
 import edu.fudan.common.entity.Order;
+import edu.fudan.common.entity.OrderStatusChangeResult;
 import execute.serivce.ExecuteServiceImpl;
 import org.junit.Assert;
 import org.junit.Before;
@@ -12,8 +13,13 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class ExecuteServiceImplTest {
 
     @InjectMocks
@@ -148,4 +154,66 @@ public class ExecuteServiceImplTest {
         Assert.assertEquals(new Response<>(1, "Success.", null), result);
     }
 
+    @Test
+    public void testTicketCollectBatch() {
+        //mock executeOrders() on order service, one order is held by order other service
+        List<OrderStatusChangeResult> orderResults = new ArrayList<>();
+        orderResults.add(new OrderStatusChangeResult("order_id", 1, "Success"));
+        orderResults.add(new OrderStatusChangeResult("order_other_id", 0, "Order Not Found"));
+        ResponseEntity<Response<List<OrderStatusChangeResult>>> re = new ResponseEntity<>(new Response<>(1, null, orderResults), HttpStatus.OK);
+        Mockito.when(restTemplate.exchange(
+                Mockito.eq("http://ts-order-service/api/v1/orderservice/order/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class))).thenReturn(re);
+        List<OrderStatusChangeResult> otherResults = new ArrayList<>();
+        otherResults.add(new OrderStatusChangeResult("order_other_id", 1, "Success"));
+        ResponseEntity<Response<List<OrderStatusChangeResult>>> re2 = new ResponseEntity<>(new Response<>(1, null, otherResults), HttpStatus.OK);
+        Mockito.when(restTemplate.exchange(
+                Mockito.eq("http://ts-order-other-service/api/v1/orderOtherService/orderOther/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class))).thenReturn(re2);
+        Response<List<OrderStatusChangeResult>> result = executeServiceImpl.ticketCollectBatch(Arrays.asList("order_id", "order_other_id"), headers);
+        Assert.assertEquals(2, result.getData().size());
+        Assert.assertEquals(1, result.getData().get(0).getStatus());
+        Assert.assertEquals(1, result.getData().get(1).getStatus());
+    }
+
+    @Test
+    public void testTicketCollectBatchOrderServiceDown() {
+        //order service fails, its orders are not sent to order other service as if they were not found
+        Mockito.when(restTemplate.exchange(
+                Mockito.eq("http://ts-order-service/api/v1/orderservice/order/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class))).thenThrow(new ResourceAccessException("Connection refused"));
+        Response<List<OrderStatusChangeResult>> result = executeServiceImpl.ticketCollectBatch(Arrays.asList("order_id", "order_other_id"), headers);
+        Assert.assertEquals(Arrays.asList(
+                new OrderStatusChangeResult("order_id", 0, "Order Service Unavailable"),
+                new OrderStatusChangeResult("order_other_id", 0, "Order Service Unavailable")), result.getData());
+        Mockito.verify(restTemplate, Mockito.never()).exchange(
+                Mockito.contains("ts-order-other-service"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void testTicketCollectBatchOrderOtherServiceDown() {
+        List<OrderStatusChangeResult> orderResults = new ArrayList<>();
+        orderResults.add(new OrderStatusChangeResult("order_id", 1, "Success"));
+        orderResults.add(new OrderStatusChangeResult("order_other_id", 0, "Order Not Found"));
+        Mockito.when(restTemplate.exchange(
+                Mockito.eq("http://ts-order-service/api/v1/orderservice/order/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class))).thenReturn(new ResponseEntity<>(new Response<>(1, null, orderResults), HttpStatus.OK));
+        Mockito.when(restTemplate.exchange(
+                Mockito.eq("http://ts-order-other-service/api/v1/orderOtherService/orderOther/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class))).thenThrow(new ResourceAccessException("Read timed out"));
+        Response<List<OrderStatusChangeResult>> result = executeServiceImpl.ticketCollectBatch(Arrays.asList("order_id", "order_other_id"), headers);
+        //the order changed by order service keeps its result
+        Assert.assertEquals(1, result.getData().get(0).getStatus());
+        Assert.assertEquals("Order Service Unavailable", result.getData().get(1).getMsg());
+    }
 }
@@ -0,0 +1,55 @@
+package foodsearch.mq;
+
+import edu.fudan.common.entity.BookingCompletedInfo;
+import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.util.Response;
+import foodsearch.config.Queues;
+import foodsearch.entity.FoodOrder;
+import foodsearch.repository.FoodOrderRepository;
+import foodsearch.service.FoodService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Places the food order chosen at booking time once the order is stored.
+ * Deliveries are at least once, so an order that already has food is skipped.
+ */
+@Component
+public class RabbitReceive {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitReceive.class);
+
+    @Autowired
+    private FoodService foodService;
+
+    @Autowired
+    private FoodOrderRepository foodOrderRepository;
+
+    @RabbitListener(queues = Queues.bookingCompletedQueue)
+    public void process(String payload) {
+        BookingCompletedInfo info = JsonUtils.json2Object(payload, BookingCompletedInfo.class);
+        if (info == null) {
+            logger.error("[process][json2Object][Receive booking completed object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable booking completed message");
+        }
+        if (info.getFoodOrder() == null) {
+            return;
+        }
+        if (foodOrderRepository.findByOrderId(info.getOrderId()) != null) {
+            logger.info("[process][Food order already exists, skip][OrderId: {}]", info.getOrderId());
+            return;
+        }
+        FoodOrder foodOrder = JsonUtils.conveterObject(info.getFoodOrder(), FoodOrder.class);
+        Response response = foodService.createFoodOrder(foodOrder, null);
+        if (response.getStatus() != 1) {
+            //retried and then dead-lettered like any other failure
+            logger.error("[process][Create food order fail][OrderId: {}, msg: {}]", info.getOrderId(), response.getMsg());
+            throw new IllegalStateException("create food order failed: " + response.getMsg());
+        }
+        logger.info("[process][Create food order][OrderId: {}, msg: {}]", info.getOrderId(), response.getMsg());
+    }
+}
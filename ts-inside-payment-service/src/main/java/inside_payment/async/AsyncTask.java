@@ -1,13 +1,24 @@
 package inside_payment.async;
 
+import java.util.Optional;
 import java.util.concurrent.Future;
+
+import edu.fudan.common.util.Response;
 import inside_payment.entity.OutsidePaymentInfo;
+import inside_payment.entity.PendingPayment;
+import inside_payment.entity.PendingPaymentStatus;
+import inside_payment.repository.PendingPaymentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 /**
@@ -19,14 +30,48 @@ public class AsyncTask {
     @Autowired
 	private RestTemplate restTemplate;
 
+    @Autowired
+    private PendingPaymentRepository pendingPaymentRepository;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTask.class);
 
+    /**
+     * Hand a pending payment to the payment service, which reports the result
+     * to the callback. A payment it refuses fails right away; when it could
+     * not be asked the payment stays pending, it may have been taken anyway,
+     * and the callback or the sweeper completes it.
+     */
     @Async("mySimpleAsync")
-    public Future<Boolean> sendAsyncCallToPaymentService(OutsidePaymentInfo outsidePaymentInfo) {
-        AsyncTask.LOGGER.info("[sendAsyncCallToPaymentService][Inside Payment Service, Async Task,Begin]");
-        Boolean value = restTemplate.getForObject("http://rest-service-external:16100/greet", Boolean.class);
-        AsyncTask.LOGGER.info("[sendAsyncCallToPaymentService][Inside Payment Service, Async Task][Receive call Value directly back: {}]", value);
-        return new AsyncResult<>(value);
+    public Future<Boolean> sendAsyncCallToPaymentService(OutsidePaymentInfo outsidePaymentInfo, HttpHeaders headers) {
+        AsyncTask.LOGGER.info("[sendAsyncCallToPaymentService][Inside Payment Service, Async Task,Begin][Token: {}]", outsidePaymentInfo.getToken());
+        Response result;
+        try {
+            ResponseEntity<Response> re = restTemplate.exchange(
+                    "http://ts-payment-service/api/v1/paymentservice/payment/async",
+                    HttpMethod.POST,
+                    new HttpEntity<>(outsidePaymentInfo, headers),
+                    Response.class);
+            result = re.getBody();
+        } catch (RestClientException e) {
+            AsyncTask.LOGGER.warn("[sendAsyncCallToPaymentService][Payment service not reached, left pending][Token: {}, exception: {}]", outsidePaymentInfo.getToken(), e.getMessage());
+            return new AsyncResult<>(false);
+        }
+        Integer status = result == null ? null : result.getStatus();
+        if (status != null && status == 1) {
+            return new AsyncResult<>(true);
+        }
+        if (status == null || status != 0) {
+            AsyncTask.LOGGER.warn("[sendAsyncCallToPaymentService][No payment answer, left pending][Token: {}]", outsidePaymentInfo.getToken());
+            return new AsyncResult<>(false);
+        }
+        AsyncTask.LOGGER.warn("[sendAsyncCallToPaymentService][Payment not accepted][Token: {}, msg: {}]", outsidePaymentInfo.getToken(), result.getMsg());
+        Optional<PendingPayment> op = pendingPaymentRepository.findById(outsidePaymentInfo.getToken());
+        if (op.isPresent() && op.get().getStatus() == PendingPaymentStatus.PENDING) {
+            op.get().setStatus(PendingPaymentStatus.FAILED);
+            op.get().setMsg(result.getMsg());
+            pendingPaymentRepository.save(op.get());
+        }
+        return new AsyncResult<>(false);
     }
     
 }  
@@ -54,15 +54,31 @@ public class InsidePaymentController {
     }
 
     @GetMapping(value = "/inside_payment/account")
-    public HttpEntity queryAccount(@RequestHeader HttpHeaders headers) {
-        LOGGER.info("[queryAccount][query account]");
-        return ok(service.queryAccount(headers));
+    public HttpEntity queryAccount(@RequestParam(value = "after", required = false) String after,
+                                   @RequestParam(value = "size", defaultValue = "500") int size,
+                                   @RequestHeader HttpHeaders headers) {
+        LOGGER.info("[queryAccount][query account][after: {}, size: {}]", after, size);
+        return ok(service.queryAccount(after, size, headers));
     }
 
     @GetMapping(value = "/inside_payment/drawback/{userId}/{money}")
-    public HttpEntity drawBack(@PathVariable String userId, @PathVariable String money, @RequestHeader HttpHeaders headers) {
-        LOGGER.info("[drawBack][draw back payment][userId: {}, money: {}]", userId, money);
-        return ok(service.drawBack(userId, money, headers));
+    public HttpEntity drawBack(@PathVariable String userId, @PathVariable String money,
+                               @RequestParam(value = "requestId", required = false) String requestId,
+                               @RequestHeader HttpHeaders headers) {
+        LOGGER.info("[drawBack][draw back payment][userId: {}, money: {}, requestId: {}]", userId, money, requestId);
+        return ok(service.drawBack(userId, money, requestId, headers));
+    }
+
+    @PostMapping(value = "/inside_payment/callback")
+    public HttpEntity completePayment(@RequestBody PaymentCallback info, @RequestHeader HttpHeaders headers) {
+        LOGGER.info("[completePayment][complete outside payment][token: {}, status: {}]", info.getToken(), info.getStatus());
+        return ok(service.completePayment(info, headers));
+    }
+
+    @GetMapping(value = "/inside_payment/pending/{token}")
+    public HttpEntity queryPendingPayment(@PathVariable String token, @RequestHeader HttpHeaders headers) {
+        LOGGER.info("[queryPendingPayment][query outside payment][token: {}]", token);
+        return ok(service.queryPendingPayment(token, headers));
     }
 
     @PostMapping(value = "/inside_payment/difference")
@@ -0,0 +1,34 @@
+package inside_payment.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Balance of an account, kept in step with the money and payment ledger in
+ * the same transaction as every entry. The version rejects a concurrent
+ * change made from a stale balance.
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "inside_balance")
+public class AccountBalance {
+
+    @Id
+    @Column(length = 36)
+    private String userId;
+
+    private String balance; //NOSONAR
+
+    @Version
+    private Long version;
+
+    private long updatedAt;
+
+    public AccountBalance() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,15 @@
+package inside_payment.entity;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance of an account as summed by the database
+ *
+ * @author fdse
+ */
+public interface BalanceView {
+
+    String getUserId();
+
+    BigDecimal getBalance();
+}
@@ -16,7 +16,7 @@ import java.util.UUID;
 @Data
 @Entity
 @GenericGenerator(name = "jpa-uuid", strategy = "org.hibernate.id.UUIDGenerator")
-@Table(name = "inside_money")
+@Table(name = "inside_money", indexes = {@Index(name = "idx_inside_money_user", columnList = "userId")})
 public class Money {
 
     @Valid
@@ -40,6 +40,12 @@ public class Money {
     @Enumerated(EnumType.STRING)
     private MoneyType type;
 
+    /**
+     * idempotency key of a refund, a retried refund with the same key is not paid again
+     */
+    @Column(length = 80, unique = true)
+    private String requestId;
+
     public Money(){
         this.userId = "";
         this.money = "";
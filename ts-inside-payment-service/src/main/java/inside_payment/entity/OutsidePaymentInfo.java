@@ -11,6 +11,11 @@ public class OutsidePaymentInfo {
         //Default Constructor
     }
 
+    /**
+     * id of the pending payment the result is reported with
+     */
+    private String token;
+
     private String orderId;
     private String price;
     private String userId;
@@ -16,7 +16,7 @@ import java.util.UUID;
 @Data
 @Entity
 @GenericGenerator(name = "jpa-uuid", strategy = "org.hibernate.id.UUIDGenerator")
-@Table(name="inside_payment")
+@Table(name="inside_payment", indexes = {@Index(name = "idx_inside_payment_user", columnList = "userId")})
 public class Payment {
     @Id
     @NotNull
@@ -0,0 +1,38 @@
+package inside_payment.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Result of an asynchronous payment, reported by the payment service
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class PaymentCallback {
+
+    /**
+     * id of the pending payment
+     */
+    private String token;
+
+    /**
+     * 1 if the payment succeeded, 0 otherwise
+     */
+    private int status;
+
+    private String msg;
+
+    /**
+     * order and price the payment was made for, must match the pending payment
+     */
+    private String orderId;
+
+    private String price;
+
+    public PaymentCallback() {
+        //Default Constructor
+    }
+
+}
@@ -0,0 +1,50 @@
+package inside_payment.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Payment handed to the payment service and not completed yet. The id is
+ * the token returned to the client and sent back with the result.
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "inside_pending_payment", indexes = {
+        @Index(name = "idx_pending_payment_order", columnList = "orderId"),
+        @Index(name = "idx_pending_payment_deadline", columnList = "status, deadline")})
+public class PendingPayment {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(length = 36)
+    private String orderId;
+
+    @Column(length = 36)
+    private String userId;
+
+    private String tripId;
+
+    private String price;
+
+    @Enumerated(EnumType.STRING)
+    private PaymentType type;
+
+    @Enumerated(EnumType.STRING)
+    private PendingPaymentStatus status;
+
+    private String msg;
+
+    private long createdAt;
+
+    private long deadline;
+
+    public PendingPayment() {
+        //Default Constructor
+    }
+
+}
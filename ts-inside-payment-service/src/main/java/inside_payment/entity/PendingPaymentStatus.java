@@ -0,0 +1,28 @@
+package inside_payment.entity;
+
+/**
+ * @author fdse
+ */
+public enum PendingPaymentStatus {
+    /**
+     * sent to the payment service, no result yet
+     */
+    PENDING,
+    /**
+     * paid outside and recorded
+     */
+    SUCCEEDED,
+    /**
+     * refused by the payment service
+     */
+    FAILED,
+    /**
+     * no result before the deadline; a late success still completes it
+     * while its order is not paid
+     */
+    EXPIRED,
+    /**
+     * paid outside after its order was given up, the money went back to the account
+     */
+    REFUNDED
+}
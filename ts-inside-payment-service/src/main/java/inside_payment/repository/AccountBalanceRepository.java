@@ -0,0 +1,43 @@
+package inside_payment.repository;
+
+import inside_payment.entity.AccountBalance;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @author fdse
+ */
+public interface AccountBalanceRepository extends CrudRepository<AccountBalance, String> {
+
+    /**
+     * find by user id
+     *
+     * @param userId user id
+     * @return Optional<AccountBalance>
+     */
+    @Override
+    Optional<AccountBalance> findById(String userId);
+
+    /**
+     * find by user id and lock the row until the transaction ends
+     *
+     * @param userId user id
+     * @return Optional<AccountBalance>
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM AccountBalance b WHERE b.userId = ?1")
+    Optional<AccountBalance> lockById(String userId);
+
+    /**
+     * find all
+     *
+     * @return List<AccountBalance>
+     */
+    @Override
+    List<AccountBalance> findAll();
+}
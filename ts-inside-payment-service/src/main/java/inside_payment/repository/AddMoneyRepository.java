@@ -1,9 +1,12 @@
 package inside_payment.repository;
 
+import inside_payment.entity.BalanceView;
 import inside_payment.entity.Money;
 //import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 /**
@@ -19,6 +22,14 @@ public interface AddMoneyRepository extends CrudRepository<Money,String> {
      */
     List<Money> findByUserId(String userId);
 
+    /**
+     * whether a refund with this idempotency key was already drawn back
+     *
+     * @param requestId idempotency key
+     * @return boolean
+     */
+    boolean existsByRequestId(String requestId);
+
     /**
      * find all
      *
@@ -26,4 +37,27 @@ public interface AddMoneyRepository extends CrudRepository<Money,String> {
      */
     @Override
     List<Money> findAll();
+
+    /**
+     * sum the money added to an account
+     *
+     * @param userId user id
+     * @return BigDecimal
+     */
+    @Query(value = "SELECT COALESCE(SUM(CAST(money AS DECIMAL(19,4))), 0) FROM inside_money WHERE user_id = ?1", nativeQuery = true)
+    BigDecimal sumByUserId(String userId);
+
+    /**
+     * balances of the accounts after a user id, in user id order, summed in one statement:
+     * the page of accounts is grouped first and only its payments are summed
+     *
+     * @param afterUserId last user id of the previous page, "" for the first page
+     * @param size        page size
+     * @return List<BalanceView>
+     */
+    @Query(value = "SELECT m.user_id AS userId, m.total - COALESCE((SELECT SUM(CAST(p.price AS DECIMAL(19,4))) " +
+            "FROM inside_payment p WHERE p.user_id = m.user_id AND p.type IN ('P', 'D')), 0) AS balance " +
+            "FROM (SELECT user_id, SUM(CAST(money AS DECIMAL(19,4))) AS total FROM inside_money " +
+            "WHERE user_id > ?1 GROUP BY user_id ORDER BY user_id LIMIT ?2) m ORDER BY m.user_id", nativeQuery = true)
+    List<BalanceView> findBalancePage(String afterUserId, int size);
 }
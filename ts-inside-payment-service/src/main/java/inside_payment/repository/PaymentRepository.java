@@ -2,8 +2,10 @@ package inside_payment.repository;
 
 import inside_payment.entity.Payment;
 //import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,4 +45,13 @@ public interface PaymentRepository extends CrudRepository<Payment,String> {
      * @return List<Payment>
      */
     List<Payment> findByUserId(String userId);
+
+    /**
+     * sum the payments taken from the balance of an account, payments made outside are left out
+     *
+     * @param userId user id
+     * @return BigDecimal
+     */
+    @Query(value = "SELECT COALESCE(SUM(CAST(price AS DECIMAL(19,4))), 0) FROM inside_payment WHERE user_id = ?1 AND type IN ('P', 'D')", nativeQuery = true)
+    BigDecimal sumFromBalanceByUserId(String userId);
 }
@@ -0,0 +1,56 @@
+package inside_payment.repository;
+
+import inside_payment.entity.PendingPayment;
+import inside_payment.entity.PendingPaymentStatus;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+
+import javax.persistence.LockModeType;
+import java.util.Optional;
+
+/**
+ * @author fdse
+ */
+public interface PendingPaymentRepository extends CrudRepository<PendingPayment, String> {
+
+    /**
+     * find by id
+     *
+     * @param id token
+     * @return Optional<PendingPayment>
+     */
+    @Override
+    Optional<PendingPayment> findById(String id);
+
+    /**
+     * find the payment of an order in a status
+     *
+     * @param orderId order id
+     * @param status status
+     * @return Optional<PendingPayment>
+     */
+    Optional<PendingPayment> findFirstByOrderIdAndStatus(String orderId, PendingPaymentStatus status);
+
+    /**
+     * find by id and lock the row until the transaction ends
+     *
+     * @param id token
+     * @return Optional<PendingPayment>
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM PendingPayment p WHERE p.id = ?1")
+    Optional<PendingPayment> lockById(String id);
+
+    /**
+     * expire the pending payments whose deadline passed
+     *
+     * @param now now
+     * @return number of payments expired
+     */
+    @Modifying
+    @Query("UPDATE PendingPayment p SET p.status = inside_payment.entity.PendingPaymentStatus.EXPIRED " +
+            "WHERE p.status = inside_payment.entity.PendingPaymentStatus.PENDING AND p.deadline < ?1")
+    int expirePending(long now);
+}
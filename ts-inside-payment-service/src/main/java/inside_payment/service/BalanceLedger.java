@@ -0,0 +1,192 @@
+package inside_payment.service;
+
+import inside_payment.entity.*;
+import inside_payment.repository.AccountBalanceRepository;
+import inside_payment.repository.AddMoneyRepository;
+import inside_payment.repository.PaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.function.Supplier;
+
+/**
+ * Writes the money and payment entries of an account together with its
+ * balance snapshot, so a payment only reads one row instead of the whole
+ * history. Every change runs in its own transaction; a change that lost a
+ * race on the snapshot version is retried from the fresh balance, so two
+ * payments never spend the same money.
+ *
+ * @author fdse
+ */
+@Component
+public class BalanceLedger {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BalanceLedger.class);
+
+    @Autowired
+    private AccountBalanceRepository accountBalanceRepository;
+
+    @Autowired
+    private AddMoneyRepository addMoneyRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${inside-payment.balance.retries:5}")
+    private int retries = 5;
+
+    /**
+     * Pay from the balance.
+     *
+     * @return false when the balance is too low, nothing is written then
+     */
+    public boolean pay(Payment payment) {
+        BigDecimal price = new BigDecimal(payment.getPrice());
+        String id = payment.getId();
+        return retry(() -> transactionTemplate.execute(status -> {
+            //a rolled back attempt leaves its generated id behind
+            payment.setId(id);
+            AccountBalance balance = balanceOf(payment.getUserId());
+            BigDecimal left = new BigDecimal(balance.getBalance()).subtract(price);
+            if (left.signum() < 0) {
+                return false;
+            }
+            paymentRepository.save(payment);
+            store(balance, left);
+            return true;
+        }));
+    }
+
+    /**
+     * Record a payment made outside, the balance is untouched.
+     */
+    public void recordOutside(Payment payment) {
+        paymentRepository.save(payment);
+    }
+
+    /**
+     * Add money to the account: top up, refund or opening deposit.
+     */
+    public void credit(Money money) {
+        BigDecimal amount = new BigDecimal(money.getMoney());
+        String id = money.getId();
+        retry(() -> transactionTemplate.execute(status -> {
+            money.setId(id);
+            //read before the entry is written, a rebuilt snapshot would count it twice
+            AccountBalance balance = balanceOf(money.getUserId());
+            addMoneyRepository.save(money);
+            store(balance, new BigDecimal(balance.getBalance()).add(amount));
+            return null;
+        }));
+    }
+
+    /**
+     * The current balance, rebuilt from the ledger for an account that has no snapshot yet.
+     */
+    public BigDecimal balance(String userId) {
+        return retry(() -> transactionTemplate.execute(status -> {
+            AccountBalance balance = accountBalanceRepository.findById(userId).orElse(null);
+            if (balance == null) {
+                balance = new AccountBalance();
+                balance.setUserId(userId);
+                store(balance, ledgerBalance(userId));
+            }
+            return new BigDecimal(balance.getBalance());
+        }));
+    }
+
+    /**
+     * Compare every snapshot with the ledger and repair the ones that drifted,
+     * e.g. after entries were written around the ledger.
+     */
+    @Scheduled(fixedDelayString = "${inside-payment.balance.reconcile-interval-ms:3600000}",
+            initialDelayString = "${inside-payment.balance.reconcile-interval-ms:3600000}")
+    public void reconcile() {
+        int repaired = 0;
+        for (AccountBalance snapshot : accountBalanceRepository.findAll()) {
+            try {
+                if (Boolean.TRUE.equals(retry(() -> transactionTemplate.execute(status -> reconcile(snapshot.getUserId()))))) {
+                    repaired++;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("[reconcile][Reconcile balance failed][userId: {}, error: {}]", snapshot.getUserId(), e.getMessage());
+            }
+        }
+        if (repaired > 0) {
+            LOGGER.warn("[reconcile][Balance snapshots repaired][count: {}]", repaired);
+        }
+    }
+
+    /**
+     * Rebuild the snapshot of one account from its ledger.
+     */
+    public void resync(String userId) {
+        retry(() -> transactionTemplate.execute(status -> reconcile(userId)));
+    }
+
+    private Boolean reconcile(String userId) {
+        //the lock keeps payments out until the ledger is summed
+        AccountBalance balance = accountBalanceRepository.lockById(userId).orElse(null);
+        BigDecimal ledger = ledgerBalance(userId);
+        if (balance == null) {
+            balance = new AccountBalance();
+            balance.setUserId(userId);
+        } else if (new BigDecimal(balance.getBalance()).compareTo(ledger) == 0) {
+            return false;
+        } else {
+            LOGGER.warn("[reconcile][Balance snapshot drifted][userId: {}, snapshot: {}, ledger: {}]", userId, balance.getBalance(), ledger);
+        }
+        store(balance, ledger);
+        return true;
+    }
+
+    private AccountBalance balanceOf(String userId) {
+        AccountBalance balance = accountBalanceRepository.findById(userId).orElse(null);
+        if (balance == null) {
+            balance = new AccountBalance();
+            balance.setUserId(userId);
+            balance.setBalance(ledgerBalance(userId).toPlainString());
+        }
+        return balance;
+    }
+
+    private void store(AccountBalance balance, BigDecimal value) {
+        balance.setBalance(value.toPlainString());
+        balance.setUpdatedAt(System.currentTimeMillis());
+        accountBalanceRepository.save(balance);
+    }
+
+    /**
+     * money added minus what was paid from the balance; outside payments never touched it
+     */
+    BigDecimal ledgerBalance(String userId) {
+        return addMoneyRepository.sumByUserId(userId).subtract(paymentRepository.sumFromBalanceByUserId(userId));
+    }
+
+    /**
+     * a lost version race, or two first snapshots of one account inserted at once
+     */
+    private <T> T retry(Supplier<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return change.get();
+            } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+                if (attempt >= retries) {
+                    throw e;
+                }
+                LOGGER.info("[retry][Balance changed concurrently, retry][attempt: {}]", attempt);
+            }
+        }
+    }
+}
@@ -55,6 +55,16 @@ public interface InsidePaymentService {
      */
     Response queryAccount(HttpHeaders headers);
 
+    /**
+     * query the balances of a page of accounts, in user id order
+     *
+     * @param afterUserId last user id of the previous page, null for the first page
+     * @param size page size
+     * @param headers headers
+     * @return Response
+     */
+    Response queryAccount(String afterUserId, int size, HttpHeaders headers);
+
     /**
      * drawback with user id, money
      *
@@ -65,6 +75,35 @@ public interface InsidePaymentService {
      */
     Response drawBack(String userId, String money, HttpHeaders headers);
 
+    /**
+     * drawback with user id, money and an idempotency key, a key already drawn back is not paid again
+     *
+     * @param userId user id
+     * @param money money
+     * @param requestId idempotency key of the refund, null for none
+     * @param headers headers
+     * @return Response
+     */
+    Response drawBack(String userId, String money, String requestId, HttpHeaders headers);
+
+    /**
+     * complete an outside payment with the result reported by the payment service
+     *
+     * @param info token and result
+     * @param headers headers
+     * @return Response
+     */
+    Response completePayment(PaymentCallback info, HttpHeaders headers);
+
+    /**
+     * query an outside payment by the token returned from pay
+     *
+     * @param token token
+     * @param headers headers
+     * @return Response
+     */
+    Response queryPendingPayment(String token, HttpHeaders headers);
+
     /**
      * pay difference by payment info
      *
@@ -2,20 +2,27 @@ package inside_payment.service;
 
 import edu.fudan.common.entity.OrderStatus;
 import edu.fudan.common.entity.Order;
+import edu.fudan.common.entity.OrderStatusChangeInfo;
+import edu.fudan.common.entity.OrderStatusChangeResult;
+import edu.fudan.common.security.jwt.ServiceToken;
 import edu.fudan.common.util.Response;
+import inside_payment.async.AsyncTask;
 import inside_payment.entity.*;
 import inside_payment.repository.AddMoneyRepository;
 import inside_payment.repository.PaymentRepository;
+import inside_payment.repository.PendingPaymentRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
@@ -36,6 +43,24 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
     @Autowired
     public RestTemplate restTemplate;
 
+    @Autowired
+    public BalanceLedger balanceLedger;
+
+    @Autowired
+    public PendingPaymentRepository pendingPaymentRepository;
+
+    @Autowired
+    public AsyncTask asyncTask;
+
+    /**
+     * how long an outside payment may take before it expires
+     */
+    @Value("${inside-payment.external.timeout-ms:60000}")
+    private long externalTimeoutMs = 60000;
+
+    @Value("${inside-payment.account.page-size:500}")
+    private int accountPageSize = 500;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(InsidePaymentServiceImpl.class);
 
     private String getServiceUrl(String serviceName) {
@@ -78,56 +103,36 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
             payment.setUserId(userId);
 
             //判断一下账户余额够不够，不够要去站外支付
-            List<Payment> payments = paymentRepository.findByUserId(userId);
-            List<Money> addMonies = addMoneyRepository.findByUserId(userId);
-            Iterator<Payment> paymentsIterator = payments.iterator();
-            Iterator<Money> addMoniesIterator = addMonies.iterator();
-
-            BigDecimal totalExpand = new BigDecimal("0");
-            while (paymentsIterator.hasNext()) {
-                Payment p = paymentsIterator.next();
-                totalExpand = totalExpand.add(new BigDecimal(p.getPrice()));
-            }
-            totalExpand = totalExpand.add(new BigDecimal(order.getPrice()));
-
-            BigDecimal money = new BigDecimal("0");
-            while (addMoniesIterator.hasNext()) {
-                Money addMoney = addMoniesIterator.next();
-                money = money.add(new BigDecimal(addMoney.getMoney()));
-            }
+            payment.setType(PaymentType.P);
+            if (!balanceLedger.pay(payment)) {
+                //站外支付, the payment service reports the result to the callback
+                Optional<PendingPayment> sent = pendingPaymentRepository.findFirstByOrderIdAndStatus(info.getOrderId(), PendingPaymentStatus.PENDING);
+                if (sent.isPresent()) {
+                    return new Response<>(1, "Payment Pending", sent.get().getId());
+                }
+                PendingPayment pending = new PendingPayment();
+                pending.setId(UUID.randomUUID().toString());
+                pending.setOrderId(info.getOrderId());
+                pending.setUserId(userId);
+                pending.setTripId(info.getTripId());
+                pending.setPrice(order.getPrice());
+                pending.setType(PaymentType.O);
+                pending.setStatus(PendingPaymentStatus.PENDING);
+                pending.setCreatedAt(System.currentTimeMillis());
+                pending.setDeadline(pending.getCreatedAt() + externalTimeoutMs);
+                pendingPaymentRepository.save(pending);
 
-            if (totalExpand.compareTo(money) > 0) {
-                //站外支付
-                Payment outsidePaymentInfo = new Payment();
+                /****这里调用第三方支付***/
+                OutsidePaymentInfo outsidePaymentInfo = new OutsidePaymentInfo();
+                outsidePaymentInfo.setToken(pending.getId());
                 outsidePaymentInfo.setOrderId(info.getOrderId());
                 outsidePaymentInfo.setUserId(userId);
                 outsidePaymentInfo.setPrice(order.getPrice());
-
-                /****这里调用第三方支付***/
-
-                HttpEntity requestEntityOutsidePaySuccess = new HttpEntity(outsidePaymentInfo, headers);
-                String payment_service_url = getServiceUrl("ts-payment-service");
-                ResponseEntity<Response> reOutsidePaySuccess = restTemplate.exchange(
-                        payment_service_url + "/api/v1/paymentservice/payment",
-                        HttpMethod.POST,
-                        requestEntityOutsidePaySuccess,
-                        Response.class);
-                Response outsidePaySuccess = reOutsidePaySuccess.getBody();
-
-                InsidePaymentServiceImpl.LOGGER.info("[Inside Payment Service.pay][outside Pay][Out pay result: {}]", outsidePaySuccess.toString());
-                if (outsidePaySuccess.getStatus() == 1) {
-                    payment.setType(PaymentType.O);
-                    paymentRepository.save(payment);
-                    setOrderStatus(info.getTripId(), info.getOrderId(), headers);
-                    return new Response<>(1, "Payment Success " +    outsidePaySuccess.getMsg(), null);
-                } else {
-                    LOGGER.error("Payment failed: {}", outsidePaySuccess.getMsg());
-                    return new Response<>(0, "Payment Failed:  " +  outsidePaySuccess.getMsg(), null);
-                }
+                asyncTask.sendAsyncCallToPaymentService(outsidePaymentInfo, authorizationOf(headers));
+                InsidePaymentServiceImpl.LOGGER.info("[Inside Payment Service.pay][outside Pay][Payment pending][orderId: {}, token: {}]", info.getOrderId(), pending.getId());
+                return new Response<>(1, "Payment Pending", pending.getId());
             } else {
                 setOrderStatus(info.getTripId(), info.getOrderId(), headers);
-                payment.setType(PaymentType.P);
-                paymentRepository.save(payment);
             }
             LOGGER.info("[Inside Payment Service.pay][Payment success][orderId: {}]", info.getOrderId());
             return new Response<>(1, "Payment Success", null);
@@ -146,7 +151,7 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
             addMoney.setMoney(info.getMoney());
             addMoney.setUserId(info.getUserId());
             addMoney.setType(MoneyType.A);
-            addMoneyRepository.save(addMoney);
+            balanceLedger.credit(addMoney);
             return new Response<>(1, "Create Account Success", null);
         } else {
             LOGGER.error("[createAccount][Create Account Failed][Account already Exists][userId: {}]", info.getUserId());
@@ -161,7 +166,7 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
             addMoney.setUserId(userId);
             addMoney.setMoney(money);
             addMoney.setType(MoneyType.A);
-            addMoneyRepository.save(addMoney);
+            balanceLedger.credit(addMoney);
             return new Response<>(1, "Add Money Success", null);
         } else {
             LOGGER.error("Add Money Failed, userId: {}", userId);
@@ -171,63 +176,25 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
 
     @Override
     public Response queryAccount(HttpHeaders headers) {
-        List<Balance> result = new ArrayList<>();
-        List<Money> list = addMoneyRepository.findAll();
-        Iterator<Money> ite = list.iterator();
-        HashMap<String, String> map = new HashMap<>();
-        while (ite.hasNext()) {
-            Money addMoney = ite.next();
-            if (map.containsKey(addMoney.getUserId())) {
-                BigDecimal money = new BigDecimal(map.get(addMoney.getUserId()));
-                map.put(addMoney.getUserId(), money.add(new BigDecimal(addMoney.getMoney())).toString());
-            } else {
-                map.put(addMoney.getUserId(), addMoney.getMoney());
-            }
-        }
+        return queryAccount(null, accountPageSize, headers);
+    }
 
-        Iterator ite1 = map.entrySet().iterator();
-        while (ite1.hasNext()) {
-            Map.Entry entry = (Map.Entry) ite1.next();
-            String userId = (String) entry.getKey();
-            String money = (String) entry.getValue();
-
-            List<Payment> payments = paymentRepository.findByUserId(userId);
-            Iterator<Payment> iterator = payments.iterator();
-            String totalExpand = "0";
-            while (iterator.hasNext()) {
-                Payment p = iterator.next();
-                BigDecimal expand = new BigDecimal(totalExpand);
-                totalExpand = expand.add(new BigDecimal(p.getPrice())).toString();
-            }
-            String balanceMoney = new BigDecimal(money).subtract(new BigDecimal(totalExpand)).toString();
+    @Override
+    public Response queryAccount(String afterUserId, int size, HttpHeaders headers) {
+        List<BalanceView> page = addMoneyRepository.findBalancePage(afterUserId == null ? "" : afterUserId,
+                size > 0 ? size : accountPageSize);
+        List<Balance> result = new ArrayList<>(page.size());
+        for (BalanceView view : page) {
             Balance balance = new Balance();
-            balance.setUserId(userId);
-            balance.setBalance(balanceMoney);
+            balance.setUserId(view.getUserId());
+            balance.setBalance(view.getBalance().stripTrailingZeros().toPlainString());
             result.add(balance);
         }
-
         return new Response<>(1, "Success", result);
     }
 
     public String queryAccount(String userId, HttpHeaders headers) {
-        List<Payment> payments = paymentRepository.findByUserId(userId);
-        List<Money> addMonies = addMoneyRepository.findByUserId(userId);
-        Iterator<Payment> paymentsIterator = payments.iterator();
-        Iterator<Money> addMoniesIterator = addMonies.iterator();
-
-        BigDecimal totalExpand = new BigDecimal("0");
-        while (paymentsIterator.hasNext()) {
-            Payment p = paymentsIterator.next();
-            totalExpand.add(new BigDecimal(p.getPrice()));
-        }
-
-        BigDecimal money = new BigDecimal("0");
-        while (addMoniesIterator.hasNext()) {
-            Money addMoney = addMoniesIterator.next();
-            money.add(new BigDecimal(addMoney.getMoney()));
-        }
-
-        return money.subtract(totalExpand).toString();
+        return balanceLedger.balance(userId).toPlainString();
     }
 
     @Override
@@ -243,12 +210,30 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
 
     @Override
     public Response drawBack(String userId, String money, HttpHeaders headers) {
+        return drawBack(userId, money, null, headers);
+    }
+
+    @Override
+    public Response drawBack(String userId, String money, String requestId, HttpHeaders headers) {
+        if (requestId != null && addMoneyRepository.existsByRequestId(requestId)) {
+            LOGGER.info("[drawBack][Draw back already done][userId: {}, requestId: {}]", userId, requestId);
+            return new Response<>(1, "Draw Back Money Success", null);
+        }
         if (addMoneyRepository.findByUserId(userId) != null) {
             Money addMoney = new Money();
             addMoney.setUserId(userId);
             addMoney.setMoney(money);
             addMoney.setType(MoneyType.D);
-            addMoneyRepository.save(addMoney);
+            addMoney.setRequestId(requestId);
+            try {
+                balanceLedger.credit(addMoney);
+            } catch (DataIntegrityViolationException e) {
+                if (requestId == null || !addMoneyRepository.existsByRequestId(requestId)) {
+                    throw e;
+                }
+                //a retry of the same refund got in first
+                LOGGER.info("[drawBack][Draw back already done][userId: {}, requestId: {}]", userId, requestId);
+            }
             return new Response<>(1, "Draw Back Money Success", null);
         } else {
             LOGGER.error("[drawBack][Draw Back Money Failed][addMoneyRepository.findByUserId null][userId: {}]", userId);
@@ -256,6 +241,108 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
         }
     }
 
+    @Override
+    @Transactional
+    public Response completePayment(PaymentCallback info, HttpHeaders headers) {
+        Optional<PendingPayment> op = pendingPaymentRepository.lockById(info.getToken());
+        if (!op.isPresent()) {
+            LOGGER.warn("[completePayment][Pending payment not found][token: {}]", info.getToken());
+            return new Response<>(0, "Pending Payment Not Found", null);
+        }
+        PendingPayment pending = op.get();
+        //a success reported after the payment was given up still took the money, it is recorded and paid or refunded
+        if (pending.getStatus() == PendingPaymentStatus.SUCCEEDED || pending.getStatus() == PendingPaymentStatus.REFUNDED
+                || (pending.getStatus() == PendingPaymentStatus.FAILED && info.getStatus() != 1)) {
+            return new Response<>(1, "Payment Already Completed", pending);
+        }
+        if (!Objects.equals(pending.getOrderId(), info.getOrderId()) || !samePrice(pending.getPrice(), info.getPrice())) {
+            LOGGER.error("[completePayment][Payment result does not match the pending payment][token: {}, orderId: {}, reported orderId: {}, price: {}, reported price: {}]",
+                    info.getToken(), pending.getOrderId(), info.getOrderId(), pending.getPrice(), info.getPrice());
+            return new Response<>(0, "Payment Result Mismatch", null);
+        }
+        pending.setMsg(info.getMsg());
+        if (info.getStatus() != 1) {
+            pending.setStatus(PendingPaymentStatus.FAILED);
+            pendingPaymentRepository.save(pending);
+            LOGGER.error("[completePayment][Outside payment failed][orderId: {}, msg: {}]", pending.getOrderId(), info.getMsg());
+            return new Response<>(1, "Payment Failed", pending);
+        }
+        Payment payment = new Payment();
+        payment.setOrderId(pending.getOrderId());
+        payment.setUserId(pending.getUserId());
+        payment.setPrice(pending.getPrice());
+        payment.setType(pending.getType());
+        //the money was taken, so the payment is recorded either way
+        balanceLedger.recordOutside(payment);
+        if (!markOrderPaid(pending.getTripId(), pending.getOrderId())) {
+            //the order left not paid meanwhile, e.g. cancelled after the payment expired
+            Money refund = new Money();
+            refund.setUserId(pending.getUserId());
+            refund.setMoney(pending.getPrice());
+            refund.setType(MoneyType.D);
+            refund.setRequestId("late-payment:" + pending.getId());
+            balanceLedger.credit(refund);
+            pending.setStatus(PendingPaymentStatus.REFUNDED);
+            pendingPaymentRepository.save(pending);
+            LOGGER.warn("[completePayment][Outside payment succeeded for an order no longer waiting for it, refunded][orderId: {}, price: {}]",
+                    pending.getOrderId(), pending.getPrice());
+            return new Response<>(1, "Payment Refunded", pending);
+        }
+        pending.setStatus(PendingPaymentStatus.SUCCEEDED);
+        pendingPaymentRepository.save(pending);
+        LOGGER.info("[completePayment][Outside payment success][orderId: {}]", pending.getOrderId());
+        return new Response<>(1, "Payment Success", pending);
+    }
+
+    private static boolean samePrice(String stored, String reported) {
+        if (stored == null || reported == null) {
+            return Objects.equals(stored, reported);
+        }
+        try {
+            return new BigDecimal(stored).compareTo(new BigDecimal(reported)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Move the order to paid only while it is still not paid.
+     *
+     * @return false when the order was in another status
+     */
+    private boolean markOrderPaid(String tripId, String orderId) {
+        String url = tripId.startsWith("G") || tripId.startsWith("D")
+                ? getServiceUrl("ts-order-service") + "/api/v1/orderservice/order/status/batch"
+                : getServiceUrl("ts-order-other-service") + "/api/v1/orderOtherService/orderOther/status/batch";
+        OrderStatusChangeInfo change = new OrderStatusChangeInfo(Collections.singletonList(orderId), OrderStatus.PAID.getCode());
+        ResponseEntity<Response<List<OrderStatusChangeResult>>> re = restTemplate.exchange(
+                url,
+                HttpMethod.POST,
+                new HttpEntity<>(change, ServiceToken.headers("ts-inside-payment-service")),
+                new ParameterizedTypeReference<Response<List<OrderStatusChangeResult>>>() {
+                });
+        Response<List<OrderStatusChangeResult>> result = re.getBody();
+        if (result == null || result.getStatus() != 1 || result.getData() == null) {
+            //rolled back, the payment service sends the result again
+            throw new IllegalStateException("Mark order paid failed: " + (result == null ? null : result.getMsg()));
+        }
+        for (OrderStatusChangeResult r : result.getData()) {
+            if (orderId.equals(r.getOrderId())) {
+                return r.getStatus() == 1;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Response queryPendingPayment(String token, HttpHeaders headers) {
+        Optional<PendingPayment> op = pendingPaymentRepository.findById(token);
+        if (!op.isPresent()) {
+            return new Response<>(0, "Pending Payment Not Found", null);
+        }
+        return new Response<>(1, "Success", op.get());
+    }
+
     @Override
     public Response payDifference(PaymentInfo info, HttpHeaders headers) {
 
@@ -267,25 +354,8 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
         payment.setUserId(info.getUserId());
 
 
-        List<Payment> payments = paymentRepository.findByUserId(userId);
-        List<Money> addMonies = addMoneyRepository.findByUserId(userId);
-        Iterator<Payment> paymentsIterator = payments.iterator();
-        Iterator<Money> addMoniesIterator = addMonies.iterator();
-
-        BigDecimal totalExpand = new BigDecimal("0");
-        while (paymentsIterator.hasNext()) {
-            Payment p = paymentsIterator.next();
-            totalExpand.add(new BigDecimal(p.getPrice()));
-        }
-        totalExpand.add(new BigDecimal(info.getPrice()));
-
-        BigDecimal money = new BigDecimal("0");
-        while (addMoniesIterator.hasNext()) {
-            Money addMoney = addMoniesIterator.next();
-            money.add(new BigDecimal(addMoney.getMoney()));
-        }
-
-        if (totalExpand.compareTo(money) > 0) {
+        payment.setType(PaymentType.D);
+        if (!balanceLedger.pay(payment)) {
             //站外支付
             Payment outsidePaymentInfo = new Payment();
             outsidePaymentInfo.setOrderId(info.getOrderId());
@@ -303,15 +373,12 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
 
             if (outsidePaySuccess.getStatus() == 1) {
                 payment.setType(PaymentType.E);
-                paymentRepository.save(payment);
+                balanceLedger.recordOutside(payment);
                 return new Response<>(1, "Pay Difference Success", null);
             } else {
                 LOGGER.error("[payDifference][Pay Difference Failed][outsidePaySuccess status not 1][orderId: {}]", info.getOrderId());
                 return new Response<>(0, "Pay Difference Failed", null);
             }
-        } else {
-            payment.setType(PaymentType.E);
-            paymentRepository.save(payment);
         }
         return new Response<>(1, "Pay Difference Success", null);
     }
@@ -357,11 +424,20 @@ public class InsidePaymentServiceImpl implements InsidePaymentService {
         return result;
     }
 
+    private static HttpHeaders authorizationOf(HttpHeaders headers) {
+        HttpHeaders newHeaders = new HttpHeaders();
+        if (headers != null && headers.containsKey(HttpHeaders.AUTHORIZATION)) {
+            newHeaders.set(HttpHeaders.AUTHORIZATION, headers.getFirst(HttpHeaders.AUTHORIZATION));
+        }
+        return newHeaders;
+    }
+
     @Override
     public void initPayment(Payment payment, HttpHeaders headers) {
         Optional<Payment> paymentTemp = paymentRepository.findById(payment.getId());
         if (paymentTemp == null) {
             paymentRepository.save(payment);
+            balanceLedger.resync(payment.getUserId());
         } else {
             InsidePaymentServiceImpl.LOGGER.error("[initPayment][paymentTemp Already Exists][paymentId: {}, orderId: {}]", payment.getId(), payment.getOrderId());
         }
@@ -0,0 +1,33 @@
+package inside_payment.service;
+
+import inside_payment.repository.PendingPaymentRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Expires outside payments the payment service never reported back, so
+ * their orders can be paid again.
+ *
+ * @author fdse
+ */
+@Component
+public class PendingPaymentSweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PendingPaymentSweeper.class);
+
+    @Autowired
+    private PendingPaymentRepository pendingPaymentRepository;
+
+    @Transactional
+    @Scheduled(fixedDelayString = "${inside-payment.external.sweep-interval-ms:30000}")
+    public void sweep() {
+        int expired = pendingPaymentRepository.expirePending(System.currentTimeMillis());
+        if (expired > 0) {
+            LOGGER.warn("[sweep][Outside payments expired][count: {}]", expired);
+        }
+    }
+}
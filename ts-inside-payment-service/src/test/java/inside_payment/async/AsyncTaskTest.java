@@ -0,0 +1,84 @@
+package inside_payment.async;
+
+import edu.fudan.common.util.Response;
+import inside_payment.entity.OutsidePaymentInfo;
+import inside_payment.entity.PendingPayment;
+import inside_payment.entity.PendingPaymentStatus;
+import inside_payment.repository.PendingPaymentRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.*;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+public class AsyncTaskTest {
+
+    @InjectMocks
+    private AsyncTask asyncTask;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Mock
+    private PendingPaymentRepository pendingPaymentRepository;
+
+    private HttpHeaders headers = new HttpHeaders();
+
+    private PendingPayment pending = new PendingPayment();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        pending.setId("token");
+        pending.setStatus(PendingPaymentStatus.PENDING);
+        Mockito.when(pendingPaymentRepository.findById("token")).thenReturn(Optional.of(pending));
+    }
+
+    @Test
+    public void testRefusedPaymentFails() throws Exception {
+        mockPaymentService().thenReturn(new ResponseEntity<>(new Response<>(0, "Card declined", null), HttpStatus.OK));
+        Assert.assertFalse(asyncTask.sendAsyncCallToPaymentService(outsidePaymentInfo(), headers).get());
+        Assert.assertEquals(PendingPaymentStatus.FAILED, pending.getStatus());
+        Assert.assertEquals("Card declined", pending.getMsg());
+    }
+
+    @Test
+    public void testUnreachablePaymentServiceLeavesPending() throws Exception {
+        //the request may have reached the payment service and the money may be taken
+        mockPaymentService().thenThrow(new ResourceAccessException("Read timed out"));
+        Assert.assertFalse(asyncTask.sendAsyncCallToPaymentService(outsidePaymentInfo(), headers).get());
+        Assert.assertEquals(PendingPaymentStatus.PENDING, pending.getStatus());
+        Mockito.verify(pendingPaymentRepository, Mockito.never()).save(Mockito.any(PendingPayment.class));
+    }
+
+    @Test
+    public void testEmptyAnswerLeavesPending() throws Exception {
+        mockPaymentService().thenReturn(new ResponseEntity<>(null, HttpStatus.OK));
+        Assert.assertFalse(asyncTask.sendAsyncCallToPaymentService(outsidePaymentInfo(), headers).get());
+        Assert.assertEquals(PendingPaymentStatus.PENDING, pending.getStatus());
+    }
+
+    private OutsidePaymentInfo outsidePaymentInfo() {
+        OutsidePaymentInfo info = new OutsidePaymentInfo();
+        info.setToken("token");
+        return info;
+    }
+
+    private org.mockito.stubbing.OngoingStubbing<ResponseEntity<Response>> mockPaymentService() {
+        return Mockito.when(restTemplate.exchange(
+                Mockito.contains("/paymentservice/payment/async"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)));
+    }
+}
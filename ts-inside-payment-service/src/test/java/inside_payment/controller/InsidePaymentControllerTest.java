@@ -86,7 +86,7 @@ public class InsidePaymentControllerTest {
 
     @Test
     public void testQueryAccount() throws Exception {
-        Mockito.when(service.queryAccount(Mockito.any(HttpHeaders.class))).thenReturn(response);
+        Mockito.when(service.queryAccount(Mockito.any(), Mockito.anyInt(), Mockito.any(HttpHeaders.class))).thenReturn(response);
         String result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/inside_pay_service/inside_payment/account"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andReturn().getResponse().getContentAsString();
@@ -95,7 +95,7 @@ public class InsidePaymentControllerTest {
 
     @Test
     public void testDrawBack() throws Exception {
-        Mockito.when(service.drawBack(Mockito.anyString(), Mockito.anyString(), Mockito.any(HttpHeaders.class))).thenReturn(response);
+        Mockito.when(service.drawBack(Mockito.anyString(), Mockito.anyString(), Mockito.isNull(), Mockito.any(HttpHeaders.class))).thenReturn(response);
         String result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/inside_pay_service/inside_payment/drawback/user_id/money"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andReturn().getResponse().getContentAsString();
@@ -0,0 +1,102 @@
+package inside_payment.service;
+
+import inside_payment.entity.*;
+import inside_payment.repository.AccountBalanceRepository;
+import inside_payment.repository.AddMoneyRepository;
+import inside_payment.repository.PaymentRepository;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+public class BalanceLedgerTest {
+
+    @InjectMocks
+    private BalanceLedger balanceLedger;
+
+    @Mock
+    private AccountBalanceRepository accountBalanceRepository;
+
+    @Mock
+    private AddMoneyRepository addMoneyRepository;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    public void testPayDebitsSnapshot() {
+        Mockito.when(accountBalanceRepository.findById("user_id")).thenReturn(Optional.of(snapshot("10.0")));
+        Assert.assertTrue(balanceLedger.pay(payment("4.0")));
+        Assert.assertFalse(balanceLedger.pay(payment("7.0")));
+
+        ArgumentCaptor<AccountBalance> stored = ArgumentCaptor.forClass(AccountBalance.class);
+        Mockito.verify(accountBalanceRepository).save(stored.capture());
+        Assert.assertEquals(0, new BigDecimal("6.0").compareTo(new BigDecimal(stored.getValue().getBalance())));
+        Mockito.verify(paymentRepository, Mockito.times(1)).save(Mockito.any(Payment.class));
+        //the snapshot alone answers, the ledger is never read
+        Mockito.verify(paymentRepository, Mockito.never()).findByUserId(Mockito.anyString());
+    }
+
+    @Test
+    public void testPayRetriesLostRace() {
+        Mockito.when(accountBalanceRepository.findById("user_id"))
+                .thenReturn(Optional.of(snapshot("10.0")))
+                .thenReturn(Optional.of(snapshot("5.0")));
+        Mockito.when(accountBalanceRepository.save(Mockito.any(AccountBalance.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(AccountBalance.class, "user_id"))
+                .thenReturn(null);
+        //the retry sees the balance left by the winner and refuses
+        Assert.assertFalse(balanceLedger.pay(payment("8.0")));
+    }
+
+    @Test
+    public void testResyncRepairsDriftedSnapshot() {
+        AccountBalance snapshot = snapshot("10.0");
+        Mockito.when(accountBalanceRepository.lockById("user_id")).thenReturn(Optional.of(snapshot));
+        Mockito.when(addMoneyRepository.sumByUserId("user_id")).thenReturn(new BigDecimal("100"));
+        Mockito.when(paymentRepository.sumFromBalanceByUserId("user_id")).thenReturn(new BigDecimal("30"));
+        balanceLedger.resync("user_id");
+        Assert.assertEquals("70", snapshot.getBalance());
+        Mockito.verify(accountBalanceRepository).save(snapshot);
+    }
+
+    private AccountBalance snapshot(String balance) {
+        AccountBalance snapshot = new AccountBalance();
+        snapshot.setUserId("user_id");
+        snapshot.setBalance(balance);
+        snapshot.setVersion(1L);
+        return snapshot;
+    }
+
+    private Payment payment(String price) {
+        Payment payment = new Payment();
+        payment.setUserId("user_id");
+        payment.setOrderId("order_id");
+        payment.setPrice(price);
+        payment.setType(PaymentType.P);
+        return payment;
+    }
+}
@@ -1,15 +1,19 @@
 package inside_payment.service;
 
 import edu.fudan.common.entity.Order;
+import edu.fudan.common.entity.OrderStatusChangeResult;
 import edu.fudan.common.util.Response;
+import inside_payment.async.AsyncTask;
 import inside_payment.entity.*;
 import inside_payment.repository.AddMoneyRepository;
 import inside_payment.repository.PaymentRepository;
+import inside_payment.repository.PendingPaymentRepository;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -18,8 +22,11 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.mockito.internal.verification.VerificationModeFactory.times;
 
@@ -38,6 +45,15 @@ public class InsidePaymentServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private BalanceLedger balanceLedger;
+
+    @Mock
+    private PendingPaymentRepository pendingPaymentRepository;
+
+    @Mock
+    private AsyncTask asyncTask;
+
     private HttpHeaders headers = new HttpHeaders();
     HttpEntity httpEntity = new HttpEntity(headers);
 
@@ -61,13 +77,7 @@ public class InsidePaymentServiceImplTest {
                 new ParameterizedTypeReference<Response<Order>>() {
                 })).thenReturn(re);
 
-        List<Payment> payments = new ArrayList<>();
-        List<Money> monies = new ArrayList<>();
-        Money money = new Money();
-        money.setMoney("2.0");
-        monies.add(money);
-        Mockito.when(paymentRepository.findByUserId(Mockito.anyString())).thenReturn(payments);
-        Mockito.when(addMoneyRepository.findByUserId(Mockito.anyString())).thenReturn(monies);
+        Mockito.when(balanceLedger.pay(Mockito.any(Payment.class))).thenReturn(true);
         //mock setOrderStatus()
         Response response2 = new Response(1, "", null);
         ResponseEntity<Response> re2 = new ResponseEntity<>(response2, HttpStatus.OK);
@@ -76,11 +86,134 @@ public class InsidePaymentServiceImplTest {
                 HttpMethod.GET,
                 httpEntity,
                 Response.class)).thenReturn(re2);
-        Mockito.when(paymentRepository.save(Mockito.any(Payment.class))).thenReturn(null);
         Response result = insidePaymentServiceImpl.pay(info, headers);
         Assert.assertEquals(new Response<>(1, "Payment Success", null), result);
     }
 
+    @Test
+    public void testPayOutsideIsPending() {
+        PaymentInfo info = new PaymentInfo("user_id", "order_id", "G", "1.0");
+        Order order = new Order();
+        order.setStatus(0);
+        order.setPrice("100.0");
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/orderservice/order/order_id"),
+                Mockito.eq(HttpMethod.GET),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, null, order), HttpStatus.OK));
+        Mockito.when(balanceLedger.pay(Mockito.any(Payment.class))).thenReturn(false);
+        Mockito.when(pendingPaymentRepository.findFirstByOrderIdAndStatus("order_id", PendingPaymentStatus.PENDING)).thenReturn(Optional.empty());
+
+        Response result = insidePaymentServiceImpl.pay(info, headers);
+        Assert.assertEquals("Payment Pending", result.getMsg());
+        Mockito.verify(asyncTask).sendAsyncCallToPaymentService(Mockito.any(OutsidePaymentInfo.class), Mockito.any(HttpHeaders.class));
+        //the order is only marked paid by the callback
+        Mockito.verify(restTemplate, Mockito.never()).exchange(
+                Mockito.contains("/status/"), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.eq(Response.class));
+    }
+
+    @Test
+    public void testCompletePaymentOnce() {
+        PendingPayment pending = pendingPayment(PendingPaymentStatus.PENDING);
+        Mockito.when(pendingPaymentRepository.lockById("token")).thenReturn(Optional.of(pending));
+        mockMarkOrderPaid(1);
+
+        Assert.assertEquals("Payment Success", insidePaymentServiceImpl.completePayment(callback("order_id", "100.0"), headers).getMsg());
+        Assert.assertEquals(PendingPaymentStatus.SUCCEEDED, pending.getStatus());
+        Assert.assertEquals("Payment Already Completed", insidePaymentServiceImpl.completePayment(callback("order_id", "100.0"), headers).getMsg());
+        Mockito.verify(balanceLedger, Mockito.times(1)).recordOutside(Mockito.any(Payment.class));
+        Mockito.verify(balanceLedger, Mockito.never()).credit(Mockito.any(Money.class));
+    }
+
+    @Test
+    public void testCompletePaymentRejectsMismatch() {
+        PendingPayment pending = pendingPayment(PendingPaymentStatus.PENDING);
+        Mockito.when(pendingPaymentRepository.lockById("token")).thenReturn(Optional.of(pending));
+
+        Assert.assertEquals("Payment Result Mismatch", insidePaymentServiceImpl.completePayment(callback("other_order_id", "100.0"), headers).getMsg());
+        Assert.assertEquals("Payment Result Mismatch", insidePaymentServiceImpl.completePayment(callback("order_id", "0.01"), headers).getMsg());
+        Assert.assertEquals(PendingPaymentStatus.PENDING, pending.getStatus());
+        Mockito.verify(balanceLedger, Mockito.never()).recordOutside(Mockito.any(Payment.class));
+        Mockito.verify(restTemplate, Mockito.never()).exchange(
+                Mockito.anyString(), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void testLatePaymentOfGivenUpOrderIsRefunded() {
+        PendingPayment pending = pendingPayment(PendingPaymentStatus.EXPIRED);
+        Mockito.when(pendingPaymentRepository.lockById("token")).thenReturn(Optional.of(pending));
+        //the order was cancelled after the payment expired
+        mockMarkOrderPaid(0);
+
+        Assert.assertEquals("Payment Refunded", insidePaymentServiceImpl.completePayment(callback("order_id", "100.0"), headers).getMsg());
+        Assert.assertEquals(PendingPaymentStatus.REFUNDED, pending.getStatus());
+        Mockito.verify(balanceLedger).recordOutside(Mockito.any(Payment.class));
+        ArgumentCaptor<Money> refund = ArgumentCaptor.forClass(Money.class);
+        Mockito.verify(balanceLedger).credit(refund.capture());
+        Assert.assertEquals("user_id", refund.getValue().getUserId());
+        Assert.assertEquals("100.0", refund.getValue().getMoney());
+        Assert.assertEquals(MoneyType.D, refund.getValue().getType());
+        Assert.assertEquals("Payment Already Completed", insidePaymentServiceImpl.completePayment(callback("order_id", "100.0"), headers).getMsg());
+    }
+
+    @Test
+    public void testLateSuccessOfFailedPaymentIsRecorded() {
+        PendingPayment pending = pendingPayment(PendingPaymentStatus.FAILED);
+        Mockito.when(pendingPaymentRepository.lockById("token")).thenReturn(Optional.of(pending));
+        mockMarkOrderPaid(1);
+
+        //a repeated failure changes nothing
+        PaymentCallback failure = callback("order_id", "100.0");
+        failure.setStatus(0);
+        Assert.assertEquals("Payment Already Completed", insidePaymentServiceImpl.completePayment(failure, headers).getMsg());
+        Mockito.verify(balanceLedger, Mockito.never()).recordOutside(Mockito.any(Payment.class));
+
+        Assert.assertEquals("Payment Success", insidePaymentServiceImpl.completePayment(callback("order_id", "100.0"), headers).getMsg());
+        Assert.assertEquals(PendingPaymentStatus.SUCCEEDED, pending.getStatus());
+        Mockito.verify(balanceLedger).recordOutside(Mockito.any(Payment.class));
+        Mockito.verify(balanceLedger, Mockito.never()).credit(Mockito.any(Money.class));
+    }
+
+    @Test
+    public void testLateSuccessOfFailedPaymentForGivenUpOrderIsRefunded() {
+        PendingPayment pending = pendingPayment(PendingPaymentStatus.FAILED);
+        Mockito.when(pendingPaymentRepository.lockById("token")).thenReturn(Optional.of(pending));
+        mockMarkOrderPaid(0);
+
+        Assert.assertEquals("Payment Refunded", insidePaymentServiceImpl.completePayment(callback("order_id", "100.0"), headers).getMsg());
+        Assert.assertEquals(PendingPaymentStatus.REFUNDED, pending.getStatus());
+        Mockito.verify(balanceLedger).recordOutside(Mockito.any(Payment.class));
+        Mockito.verify(balanceLedger).credit(Mockito.any(Money.class));
+    }
+
+    private PendingPayment pendingPayment(PendingPaymentStatus status) {
+        PendingPayment pending = new PendingPayment();
+        pending.setId("token");
+        pending.setOrderId("order_id");
+        pending.setUserId("user_id");
+        pending.setTripId("G1234");
+        pending.setPrice("100.0");
+        pending.setType(PaymentType.O);
+        pending.setStatus(status);
+        return pending;
+    }
+
+    private PaymentCallback callback(String orderId, String price) {
+        return new PaymentCallback("token", 1, null, orderId, price);
+    }
+
+    private void mockMarkOrderPaid(int status) {
+        Response<List<OrderStatusChangeResult>> moved = new Response<>(1, "Success",
+                Collections.singletonList(new OrderStatusChangeResult("order_id", status, null)));
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/orderservice/order/status/batch"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(moved, HttpStatus.OK));
+    }
+
     @Test
     public void testCreateAccount1() {
         AccountInfo info = new AccountInfo();
@@ -119,10 +252,13 @@ public class InsidePaymentServiceImplTest {
 
     @Test
     public void testQueryAccount() {
-        List<Money> list = new ArrayList<>();
-        Mockito.when(addMoneyRepository.findAll()).thenReturn(list);
-        Response result = insidePaymentServiceImpl.queryAccount(headers);
+        BalanceView view = Mockito.mock(BalanceView.class);
+        Mockito.when(view.getUserId()).thenReturn("user_id");
+        Mockito.when(view.getBalance()).thenReturn(new BigDecimal("70.5000"));
+        Mockito.when(addMoneyRepository.findBalancePage("", 10)).thenReturn(Collections.singletonList(view));
+        Response result = insidePaymentServiceImpl.queryAccount(null, 10, headers);
         Assert.assertEquals("Success", result.getMsg());
+        Assert.assertEquals("70.5", ((List<Balance>) result.getData()).get(0).getBalance());
     }
 
     @Test
@@ -157,17 +293,18 @@ public class InsidePaymentServiceImplTest {
         Assert.assertEquals(new Response<>(0, "Draw Back Money Failed", null), result);
     }
 
+    @Test
+    public void testDrawBackWithUsedRequestId() {
+        Mockito.when(addMoneyRepository.existsByRequestId("job_id:order_id")).thenReturn(true);
+        Response result = insidePaymentServiceImpl.drawBack("user_id", "1.0", "job_id:order_id", headers);
+        Assert.assertEquals(new Response<>(1, "Draw Back Money Success", null), result);
+        Mockito.verify(balanceLedger, Mockito.never()).credit(Mockito.any(Money.class));
+    }
+
     @Test
     public void testPayDifference() {
         PaymentInfo info = new PaymentInfo("user_id", "order_id", "G", "1.0");
-        List<Payment> payments = new ArrayList<>();
-        List<Money> monies = new ArrayList<>();
-        Money money = new Money();
-        money.setMoney("2.0");
-        monies.add(money);
-        Mockito.when(paymentRepository.findByUserId(Mockito.anyString())).thenReturn(payments);
-        Mockito.when(addMoneyRepository.findByUserId(Mockito.anyString())).thenReturn(monies);
-        Mockito.when(paymentRepository.save(Mockito.any(Payment.class))).thenReturn(null);
+        Mockito.when(balanceLedger.pay(Mockito.any(Payment.class))).thenReturn(true);
         Response result = insidePaymentServiceImpl.payDifference(info, headers);
         Assert.assertEquals(new Response<>(1, "Pay Difference Success", null), result);
     }
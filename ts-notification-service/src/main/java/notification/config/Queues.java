@@ -1,6 +1,11 @@
 package notification.config;
 
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -9,8 +14,53 @@ public class Queues {
 
     public final static String queueName = "email";
 
+    public final static String bookingCompletedExchange = "booking_completed";
+
+    public final static String bookingCompletedDeadLetterExchange = "booking_completed_dlx";
+
+    public final static String bookingCompletedQueue = "booking_completed_notification";
+
+    /**
+     * holds deliveries that failed every retry, for inspection and manual replay
+     */
+    public final static String bookingCompletedDeadLetterQueue = "booking_completed_notification_dlq";
+
     @Bean
     public Queue emailQueue() {
         return new Queue(queueName);
     }
+
+    @Bean
+    public FanoutExchange bookingCompletedExchange() {
+        return new FanoutExchange(bookingCompletedExchange);
+    }
+
+    @Bean
+    public DirectExchange bookingCompletedDeadLetterExchange() {
+        return new DirectExchange(bookingCompletedDeadLetterExchange);
+    }
+
+    @Bean
+    public Queue bookingCompletedQueue() {
+        return QueueBuilder.durable(bookingCompletedQueue)
+                .withArgument("x-dead-letter-exchange", bookingCompletedDeadLetterExchange)
+                .withArgument("x-dead-letter-routing-key", bookingCompletedDeadLetterQueue)
+                .build();
+    }
+
+    @Bean
+    public Queue bookingCompletedDeadLetterQueue() {
+        return QueueBuilder.durable(bookingCompletedDeadLetterQueue).build();
+    }
+
+    @Bean
+    public Binding bookingCompletedBinding() {
+        return BindingBuilder.bind(bookingCompletedQueue()).to(bookingCompletedExchange());
+    }
+
+    @Bean
+    public Binding bookingCompletedDeadLetterBinding() {
+        return BindingBuilder.bind(bookingCompletedDeadLetterQueue()).to(bookingCompletedDeadLetterExchange())
+                .with(bookingCompletedDeadLetterQueue);
+    }
 }
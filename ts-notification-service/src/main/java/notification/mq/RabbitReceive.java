@@ -1,5 +1,9 @@
 package notification.mq;
 
+import edu.fudan.common.entity.BookingCompletedInfo;
+import edu.fudan.common.entity.SeatClass;
+import edu.fudan.common.entity.User;
+import edu.fudan.common.security.jwt.ServiceToken;
 import edu.fudan.common.util.JsonUtils;
 import edu.fudan.common.util.Response;
 import notification.config.Queues;
@@ -9,11 +13,14 @@ import notification.repository.NotifyRepository;
 import notification.service.MailService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitHandler;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
@@ -58,7 +65,56 @@ public class RabbitReceive {
         }
 
         logger.info("[process][Receive email object][info: {}]", info);
+        info.setId(UUID.randomUUID().toString());
+        sendAndSave(info);
+    }
+
+    /**
+     * Mails the ticket of a stored order to its owner. The notify record is keyed
+     * by the order id, so a redelivered message does not send a second mail.
+     */
+    @RabbitListener(queues = Queues.bookingCompletedQueue)
+    public void processBookingCompleted(String payload) {
+        BookingCompletedInfo booking = JsonUtils.json2Object(payload, BookingCompletedInfo.class);
+        if (booking == null) {
+            logger.error("[processBookingCompleted][json2Object][Receive booking completed object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable booking completed message");
+        }
+        if (notifyRepository.findById(booking.getOrderId()).isPresent()) {
+            logger.info("[processBookingCompleted][Notification already sent, skip][OrderId: {}]", booking.getOrderId());
+            return;
+        }
 
+        //a failing user service propagates, the message is retried and then dead-lettered
+        HttpHeaders headers = ServiceToken.headers("ts-notification-service");
+        ResponseEntity<Response<User>> re = restTemplate.exchange(
+                "http://ts-user-service/api/v1/userservice/users/id/" + booking.getAccountId(),
+                HttpMethod.GET,
+                new HttpEntity(headers),
+                new ParameterizedTypeReference<Response<User>>() {
+                });
+        User user = re.getBody() == null ? null : re.getBody().getData();
+        if (user == null) {
+            logger.error("[processBookingCompleted][Get user fail][AccountId: {}, OrderId: {}]", booking.getAccountId(), booking.getOrderId());
+            throw new IllegalStateException("user " + booking.getAccountId() + " not found");
+        }
+
+        NotifyInfo info = new NotifyInfo();
+        info.setId(booking.getOrderId());
+        info.setEmail(user.getEmail());
+        info.setUsername(user.getUserName());
+        info.setOrderNumber(booking.getOrderId());
+        info.setStartPlace(booking.getFrom());
+        info.setEndPlace(booking.getTo());
+        info.setStartTime(booking.getTravelTime());
+        info.setDate(booking.getTravelDate());
+        info.setSeatClass(SeatClass.getNameByCode(booking.getSeatClass()));
+        info.setSeatNumber(booking.getSeatNumber());
+        info.setPrice(booking.getPrice());
+        sendAndSave(info);
+    }
+
+    private void sendAndSave(NotifyInfo info) {
         Mail mail = new Mail();
         mail.setMailFrom(email);
         mail.setMailTo(info.getEmail());
@@ -84,8 +140,6 @@ public class RabbitReceive {
             info.setSendStatus(false);
         }
 
-
-        info.setId(UUID.randomUUID().toString());
         logger.info("[process][Save notify info object [{}] into database]", info.getId());
         notifyRepository.save(info);
     }
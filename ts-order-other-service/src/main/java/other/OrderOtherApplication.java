@@ -1,14 +1,21 @@
 package other;
 
+import edu.fudan.common.outbox.OrderOutbox;
+import edu.fudan.common.outbox.OrderOutboxRepository;
+import other.entity.Order;
+import other.repository.OrderOtherRepository;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
@@ -18,9 +25,12 @@ import springfox.documentation.swagger2.annotations.EnableSwagger2;
 @SpringBootApplication
 @EnableAspectJAutoProxy(proxyTargetClass = true)
 @EnableAsync
+@EnableScheduling
 @IntegrationComponentScan
 @EnableSwagger2
 @EnableDiscoveryClient
+@EntityScan(basePackageClasses = {Order.class, OrderOutbox.class})
+@EnableJpaRepositories(basePackageClasses = {OrderOtherRepository.class, OrderOutboxRepository.class})
 public class OrderOtherApplication {
 
     public static void main(String[] args) {
@@ -1,5 +1,6 @@
 package other.controller;
 
+import edu.fudan.common.entity.OrderStatusChangeInfo;
 import edu.fudan.common.entity.Seat;
 import edu.fudan.common.util.StringUtils;
 import org.slf4j.Logger;
@@ -15,6 +16,7 @@ import other.entity.QueryInfo;
 import other.service.OrderOtherService;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -50,6 +52,13 @@ public class OrderOtherController {
         return ok(orderService.create(createOrder, headers));
     }
 
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/orderOther/batch")
+    public HttpEntity createNewOrders(@RequestBody List<Order> createOrders, @RequestHeader HttpHeaders headers) {
+        OrderOtherController.LOGGER.info("[createOrders][Create Orders][Count: {}]", createOrders.size());
+        return ok(orderService.createOrders(createOrders, headers));
+    }
+
     @CrossOrigin(origins = "*")
     @PostMapping(path = "/orderOther/admin")
     public HttpEntity addcreateNewOrder(@RequestBody Order order, @RequestHeader HttpHeaders headers) {
@@ -111,6 +120,27 @@ public class OrderOtherController {
         return ok(orderService.modifyOrder(orderId, status, headers));
     }
 
+    /**
+     * orders of a train on a date in id order, page by page with after = last id of the previous page
+     */
+    @CrossOrigin(origins = "*")
+    @GetMapping(path = "/orderOther/bytrain")
+    public HttpEntity queryOrdersByTrain(@RequestParam String trainNumber, @RequestParam String travelDate,
+                                         @RequestParam List<Integer> statuses,
+                                         @RequestParam(value = "after", required = false) String afterId,
+                                         @RequestParam(value = "size", defaultValue = "200") int size,
+                                         @RequestHeader HttpHeaders headers) {
+        OrderOtherController.LOGGER.info("[queryOrdersByTrain][Query Orders By Train][TrainNumber: {}, TravelDate: {}, after: {}]", trainNumber, travelDate, afterId);
+        return ok(orderService.queryOrdersByTrain(trainNumber, travelDate, statuses, afterId, size, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/orderOther/status/batch")
+    public HttpEntity modifyOrders(@RequestBody OrderStatusChangeInfo info, @RequestHeader HttpHeaders headers) {
+        OrderOtherController.LOGGER.info("[modifyOrders][Modify Orders Status][Status: {}]", info.getStatus());
+        return ok(orderService.modifyOrders(info, headers));
+    }
+
     @CrossOrigin(origins = "*")
     @GetMapping(path = "/orderOther/security/{checkDate}/{accountId}")
     public HttpEntity securityInfoCheck(@PathVariable String checkDate, @PathVariable String accountId,
@@ -128,6 +158,13 @@ public class OrderOtherController {
         return ok(orderService.saveChanges(orderInfo, headers));
     }
 
+    @CrossOrigin(origins = "*")
+    @PutMapping(path = "/orderOther/rebook")
+    public HttpEntity rebookOrder(@RequestBody Order order, @RequestHeader HttpHeaders headers) {
+        OrderOtherController.LOGGER.info("[rebookOrder][Rebook Order][OrderId: {}, TrainNumber: {}]", order.getId(), order.getTrainNumber());
+        return ok(orderService.rebookOrder(order, headers));
+    }
+
     @CrossOrigin(origins = "*")
     @PutMapping(path = "/orderOther/admin")
     public HttpEntity updateOrder(@RequestBody Order order, @RequestHeader HttpHeaders headers) {
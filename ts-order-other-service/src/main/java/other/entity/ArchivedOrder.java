@@ -0,0 +1,83 @@
+package other.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Data;
+import org.springframework.beans.BeanUtils;
+
+import javax.persistence.*;
+
+/**
+ * Cold copy of an order that has travelled or reached a terminal state.
+ * The table is partitioned by archiveMonth, the travel month as yyyy-MM.
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "orders_other_archive", indexes = {
+        @Index(name = "idx_other_archive_month", columnList = "archiveMonth"),
+        @Index(name = "idx_other_archive_account_id", columnList = "accountId")})
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ArchivedOrder {
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    private String boughtDate;
+
+    private String travelDate;
+
+    private String travelTime;
+
+    @Column(length = 36)
+    private String accountId;
+
+    private String contactsName;
+
+    private int documentType;
+
+    private String contactsDocumentNumber;
+
+    private String trainNumber;
+
+    private int coachNumber;
+
+    private int seatClass;
+
+    private String seatNumber;
+
+    @Column(name = "from_station")
+    private String from;
+
+    @Column(name = "to_station")
+    private String to;
+
+    private int status;
+
+    private String price;
+
+    @Column(length = 7)
+    private String archiveMonth;
+
+    private long archivedAt;
+
+    public ArchivedOrder() {
+        //Default Constructor
+    }
+
+    public static ArchivedOrder of(Order order) {
+        ArchivedOrder archivedOrder = new ArchivedOrder();
+        BeanUtils.copyProperties(order, archivedOrder);
+        String travelDate = order.getTravelDate();
+        archivedOrder.setArchiveMonth(travelDate != null && travelDate.length() >= 7 ? travelDate.substring(0, 7) : "0000-00");
+        archivedOrder.setArchivedAt(System.currentTimeMillis());
+        return archivedOrder;
+    }
+
+    public Order toOrder() {
+        Order order = new Order();
+        BeanUtils.copyProperties(this, order);
+        return order;
+    }
+}
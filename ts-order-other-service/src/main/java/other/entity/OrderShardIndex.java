@@ -0,0 +1,33 @@
+package other.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Shard of an order, kept on the directory shard so orders can be found
+ * by id or account without asking every shard.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+@Entity
+@Table(name = "orders_other_shard_index", indexes = {@Index(name = "idx_other_shard_index_account_id", columnList = "accountId")})
+public class OrderShardIndex {
+
+    @Id
+    @Column(length = 36)
+    private String orderId;
+
+    @Column(length = 36)
+    private String accountId;
+
+    private int shard;
+
+    public OrderShardIndex() {
+        //Default Constructor
+    }
+
+}
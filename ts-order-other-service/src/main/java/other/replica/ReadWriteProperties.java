@@ -0,0 +1,56 @@
+package other.replica;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author fdse
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.readwrite")
+public class ReadWriteProperties {
+
+    private boolean enabled = false;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * replica lag accepted by endpoints without their own entry
+     */
+    private long maxStalenessMs = 1000;
+
+    /**
+     * replica lag accepted per @ReplicaRead endpoint
+     */
+    private Map<String, Long> endpointStalenessMs = new HashMap<>();
+
+    /**
+     * how long a read carrying a write time, or touching an account or order
+     * written here, only goes to replicas that caught up with the write
+     */
+    private long stickyWindowMs = 5000;
+
+    /**
+     * replica lag is measured at this interval, so it may be this much older than the read
+     */
+    private long heartbeatIntervalMs = 500;
+
+    @Data
+    public static class Replica {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private String driverClassName;
+    }
+}
@@ -0,0 +1,40 @@
+package other.replica;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends read-only transactions to a replica fresh enough for the current
+ * ReplicaReadContext, everything else to the primary. Must sit behind a
+ * LazyConnectionDataSourceProxy so the choice is made after the
+ * transaction has been marked read-only.
+ *
+ * @author fdse
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private final ReplicaLagMonitor monitor;
+
+    private final long defaultMaxStalenessMs;
+
+    public ReadWriteRoutingDataSource(ReplicaLagMonitor monitor, long defaultMaxStalenessMs) {
+        this.monitor = monitor;
+        this.defaultMaxStalenessMs = defaultMaxStalenessMs;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        ReplicaReadContext context = ReplicaReadContext.get();
+        if (context != null && context.isPrimaryRequired()) {
+            return PRIMARY;
+        }
+        long maxStalenessMs = context != null ? context.getMaxStalenessMs() : defaultMaxStalenessMs;
+        int replica = monitor.pickReplica(maxStalenessMs);
+        return replica < 0 ? PRIMARY : replica;
+    }
+}
@@ -0,0 +1,118 @@
+package other.replica;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-your-writes for replica reads, carried by the client. A write answers
+ * with the time it was made in the X-Order-Written-At header and cookie; a
+ * read that sends it back only goes to a replica whose lag shows it already
+ * has that write, whichever instance serves it. Writes of this instance are
+ * also remembered by account and order for callers that do not pass the
+ * time on. Reads never ask the primary whether something was written.
+ *
+ * @author fdse
+ */
+@Component
+public class RecentOrderWrites {
+
+    public static final String WRITTEN_AT_HEADER = "X-Order-Written-At";
+
+    public static final String WRITTEN_AT_COOKIE = "order_written_at";
+
+    private final Map<String, Long> writes = new ConcurrentHashMap<>();
+
+    @Autowired
+    private ReadWriteProperties properties;
+
+    public static String accountKey(String accountId) {
+        return "account:" + accountId;
+    }
+
+    public static String orderKey(String orderId) {
+        return "order:" + orderId;
+    }
+
+    public void markWritten(String accountId, String orderId) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        writes.put(accountKey(accountId), now);
+        writes.put(orderKey(orderId), now);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletResponse response = ((ServletRequestAttributes) attributes).getResponse();
+            if (response != null && !response.isCommitted()) {
+                response.setHeader(WRITTEN_AT_HEADER, String.valueOf(now));
+                Cookie cookie = new Cookie(WRITTEN_AT_COOKIE, String.valueOf(now));
+                cookie.setPath("/");
+                cookie.setHttpOnly(true);
+                cookie.setMaxAge((int) Math.max(1, properties.getStickyWindowMs() / 1000));
+                response.addCookie(cookie);
+            }
+        }
+    }
+
+    /**
+     * @return time of the latest write within the sticky window the read must see, 0 for none
+     */
+    public long lastWrittenAt(Collection<String> keys) {
+        long now = System.currentTimeMillis();
+        long writtenAfter = now - properties.getStickyWindowMs();
+        long latest = 0;
+        for (String key : keys) {
+            Long writtenAt = writes.get(key);
+            if (writtenAt != null && writtenAt >= writtenAfter) {
+                latest = Math.max(latest, writtenAt);
+            }
+        }
+        long sent = writtenAtOfRequest();
+        if (sent >= writtenAfter) {
+            //a time from the future only sends this read to the primary
+            latest = Math.max(latest, Math.min(sent, now));
+        }
+        return latest;
+    }
+
+    private static long writtenAtOfRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return 0;
+        }
+        HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+        String value = request.getHeader(WRITTEN_AT_HEADER);
+        if (value == null && request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                if (WRITTEN_AT_COOKIE.equals(cookie.getName())) {
+                    value = cookie.getValue();
+                }
+            }
+        }
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${order.readwrite.sticky-window-ms:5000}")
+    public void purge() {
+        long expiredBefore = System.currentTimeMillis() - properties.getStickyWindowMs();
+        writes.values().removeIf(writtenAt -> writtenAt < expiredBefore);
+    }
+}
@@ -0,0 +1,100 @@
+package other.replica;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures replica lag with a heartbeat row: the primary stamps
+ * replica_heartbeat, each replica's copy of the stamp tells how far
+ * behind it is. Unreachable replicas count as infinitely stale.
+ *
+ * @author fdse
+ */
+public class ReplicaLagMonitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private static final int HEARTBEAT_ID = 1;
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final AtomicLongArray lagMs;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaLagMonitor(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.lagMs = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            lagMs.set(i, Long.MAX_VALUE);
+        }
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    @Scheduled(fixedDelayString = "${order.readwrite.heartbeat-interval-ms:500}")
+    public void heartbeat() {
+        long now = System.currentTimeMillis();
+        try {
+            JdbcTemplate jdbc = new JdbcTemplate(primary);
+            if (jdbc.update("UPDATE replica_heartbeat SET beat = ? WHERE id = ?", now, HEARTBEAT_ID) == 0) {
+                jdbc.update("INSERT INTO replica_heartbeat (id, beat) VALUES (?, ?)", HEARTBEAT_ID, now);
+            }
+        } catch (Exception e) {
+            LOGGER.error("[heartbeat][Write Heartbeat Fail][message: {}]", e.getMessage());
+            return;
+        }
+        for (int i = 0; i < replicas.size(); i++) {
+            long lag;
+            try {
+                Long beat = new JdbcTemplate(replicas.get(i)).queryForObject(
+                        "SELECT beat FROM replica_heartbeat WHERE id = ?", Long.class, HEARTBEAT_ID);
+                lag = beat == null ? Long.MAX_VALUE : Math.max(0, now - beat);
+            } catch (Exception e) {
+                LOGGER.warn("[heartbeat][Read Replica Heartbeat Fail][replica: {}, message: {}]", i, e.getMessage());
+                lag = Long.MAX_VALUE;
+            }
+            lagMs.set(i, lag);
+        }
+    }
+
+    public long getLagMs(int replica) {
+        return lagMs.get(replica);
+    }
+
+    /**
+     * Round robin over the replicas whose last measured lag is within the
+     * tolerance, -1 when none is.
+     */
+    public int pickReplica(long maxStalenessMs) {
+        int size = replicas.size();
+        if (size == 0) {
+            return -1;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            int replica = (start + i) % size;
+            if (lagMs.get(replica) <= maxStalenessMs) {
+                return replica;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,19 @@
+package other.replica;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only service method that may be served by a replica. The
+ * value names the endpoint in order.readwrite.endpoint-staleness-ms.
+ *
+ * @author fdse
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReplicaRead {
+
+    String value();
+}
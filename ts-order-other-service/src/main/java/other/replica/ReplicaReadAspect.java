@@ -0,0 +1,71 @@
+package other.replica;
+
+import other.entity.Order;
+import other.entity.QueryInfo;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sets the replica read rule for a @ReplicaRead method: the endpoint's
+ * staleness tolerance, narrowed so that a read following a write of its
+ * client, account or order only goes to a replica that already has it.
+ *
+ * @author fdse
+ */
+@Aspect
+@Component
+public class ReplicaReadAspect {
+
+    @Autowired
+    private ReadWriteProperties properties;
+
+    @Autowired
+    private RecentOrderWrites recentOrderWrites;
+
+    @Around("@annotation(replicaRead)")
+    public Object route(ProceedingJoinPoint joinPoint, ReplicaRead replicaRead) throws Throwable {
+        if (!properties.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        Long staleness = properties.getEndpointStalenessMs().get(replicaRead.value());
+        long maxStalenessMs = staleness != null ? staleness : properties.getMaxStalenessMs();
+        boolean primaryRequired = false;
+        long writtenAt = recentOrderWrites.lastWrittenAt(keysOf(joinPoint.getArgs()));
+        if (writtenAt > 0) {
+            //the lag was measured up to one heartbeat ago, a replica within this lag has the write
+            long caughtUpLag = System.currentTimeMillis() - writtenAt - properties.getHeartbeatIntervalMs();
+            primaryRequired = caughtUpLag < 0;
+            maxStalenessMs = Math.min(maxStalenessMs, caughtUpLag);
+        }
+        ReplicaReadContext previous = ReplicaReadContext.get();
+        ReplicaReadContext.set(new ReplicaReadContext(maxStalenessMs, primaryRequired));
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaReadContext.set(previous);
+        }
+    }
+
+    private static List<String> keysOf(Object[] args) {
+        List<String> keys = new ArrayList<>();
+        for (Object arg : args) {
+            if (arg instanceof Order) {
+                keys.add(RecentOrderWrites.orderKey(((Order) arg).getId()));
+                keys.add(RecentOrderWrites.accountKey(((Order) arg).getAccountId()));
+            } else if (arg instanceof QueryInfo) {
+                keys.add(RecentOrderWrites.accountKey(((QueryInfo) arg).getLoginId()));
+            } else if (arg instanceof String) {
+                // a bare id may be an account or an order id
+                keys.add(RecentOrderWrites.accountKey((String) arg));
+                keys.add(RecentOrderWrites.orderKey((String) arg));
+            }
+        }
+        return keys;
+    }
+}
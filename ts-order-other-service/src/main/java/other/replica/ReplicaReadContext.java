@@ -0,0 +1,41 @@
+package other.replica;
+
+/**
+ * Replica read rule of the current thread, set by ReplicaReadAspect and
+ * read by ReadWriteRoutingDataSource when the connection is fetched.
+ *
+ * @author fdse
+ */
+public final class ReplicaReadContext {
+
+    private static final ThreadLocal<ReplicaReadContext> CURRENT = new ThreadLocal<>();
+
+    private final long maxStalenessMs;
+
+    private final boolean primaryRequired;
+
+    public ReplicaReadContext(long maxStalenessMs, boolean primaryRequired) {
+        this.maxStalenessMs = maxStalenessMs;
+        this.primaryRequired = primaryRequired;
+    }
+
+    public long getMaxStalenessMs() {
+        return maxStalenessMs;
+    }
+
+    public boolean isPrimaryRequired() {
+        return primaryRequired;
+    }
+
+    public static ReplicaReadContext get() {
+        return CURRENT.get();
+    }
+
+    public static void set(ReplicaReadContext context) {
+        if (context == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(context);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package other.repository;
+
+import other.entity.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface ArchivedOrderOtherRepository extends JpaRepository<ArchivedOrder, String> {
+
+    /**
+     * find archived orders by account id
+     *
+     * @param accountId account id
+     * @return ArrayList<ArchivedOrder>
+     */
+    ArrayList<ArchivedOrder> findByAccountId(String accountId);
+
+    /**
+     * find all archived orders
+     *
+     * @return ArrayList<ArchivedOrder>
+     */
+    @Override
+    ArrayList<ArchivedOrder> findAll();
+}
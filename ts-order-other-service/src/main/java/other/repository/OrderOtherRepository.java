@@ -1,11 +1,16 @@
 package other.repository;
 
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import other.entity.Order;
 import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,7 +18,7 @@ import java.util.UUID;
  * @author fdse
  */
 @Repository
-public interface OrderOtherRepository extends CrudRepository<Order, String> {
+public interface OrderOtherRepository extends CrudRepository<Order, String>, OrderOtherRepositoryCustom {
 
     /**
      * find order by id
@@ -52,6 +57,27 @@ public interface OrderOtherRepository extends CrudRepository<Order, String> {
 //    @Query("{ 'travelDate' : ?0 , trainNumber : ?1 }")
     ArrayList<Order> findByTravelDateAndTrainNumber(String travelDate, String trainNumber);
 
+    /**
+     * find orders by ids and lock them for a status transition
+     *
+     * @param ids order ids
+     * @return ArrayList<Order>
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    ArrayList<Order> findByIdIn(Collection<String> ids);
+
+    /**
+     * find orders to move to the archive
+     *
+     * @param travelDateBefore archive any order travelling before this date
+     * @param terminalStatus terminal order status
+     * @param terminalTravelDateBefore archive terminal orders travelling before this date
+     * @param limit batch size
+     * @return ArrayList<Order>
+     */
+    @Query(value = "SELECT * FROM orders_other WHERE travel_date < ?1 OR (status IN ?2 AND travel_date < ?3) LIMIT ?4", nativeQuery = true)
+    ArrayList<Order> findArchiveCandidates(String travelDateBefore, List<Integer> terminalStatus, String terminalTravelDateBefore, int limit);
+
     /**
      * delete order by id
      *
@@ -60,4 +86,10 @@ public interface OrderOtherRepository extends CrudRepository<Order, String> {
      */
     @Override
     void deleteById(String id);
+
+    /**
+     * Orders of one train and date in the given statuses, in id order after afterId
+     */
+    @Query(value = "SELECT * FROM orders_other WHERE train_number = ?1 AND travel_date = ?2 AND status IN ?3 AND id > ?4 ORDER BY id LIMIT ?5", nativeQuery = true)
+    ArrayList<Order> findTrainPage(String trainNumber, String travelDate, Collection<Integer> statuses, String afterId, int limit);
 }
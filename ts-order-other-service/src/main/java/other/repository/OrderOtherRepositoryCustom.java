@@ -0,0 +1,37 @@
+package other.repository;
+
+import other.entity.Order;
+
+import java.util.ArrayList;
+import java.util.Optional;
+
+/**
+ * Reads that span the hot orders table and the archive.
+ *
+ * @author fdse
+ */
+public interface OrderOtherRepositoryCustom {
+
+    /**
+     * find order by id, falling back to the archive
+     *
+     * @param id id
+     * @return Optional<Order>
+     */
+    Optional<Order> findByIdInAllTiers(String id);
+
+    /**
+     * find orders of an account in both tiers
+     *
+     * @param accountId account id
+     * @return ArrayList<Order>
+     */
+    ArrayList<Order> findByAccountIdInAllTiers(String accountId);
+
+    /**
+     * find all orders in both tiers
+     *
+     * @return ArrayList<Order>
+     */
+    ArrayList<Order> findAllInAllTiers();
+}
@@ -0,0 +1,49 @@
+package other.repository;
+
+import other.entity.ArchivedOrder;
+import other.entity.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import java.util.ArrayList;
+import java.util.Optional;
+
+/**
+ * @author fdse
+ */
+public class OrderOtherRepositoryImpl implements OrderOtherRepositoryCustom {
+
+    @Lazy
+    @Autowired
+    private OrderOtherRepository orderOtherRepository;
+
+    @Autowired
+    private ArchivedOrderOtherRepository archivedOrderOtherRepository;
+
+    @Override
+    public Optional<Order> findByIdInAllTiers(String id) {
+        Optional<Order> op = orderOtherRepository.findById(id);
+        if (op.isPresent()) {
+            return op;
+        }
+        return archivedOrderOtherRepository.findById(id).map(ArchivedOrder::toOrder);
+    }
+
+    @Override
+    public ArrayList<Order> findByAccountIdInAllTiers(String accountId) {
+        ArrayList<Order> orders = orderOtherRepository.findByAccountId(accountId);
+        for (ArchivedOrder archivedOrder : archivedOrderOtherRepository.findByAccountId(accountId)) {
+            orders.add(archivedOrder.toOrder());
+        }
+        return orders;
+    }
+
+    @Override
+    public ArrayList<Order> findAllInAllTiers() {
+        ArrayList<Order> orders = orderOtherRepository.findAll();
+        for (ArchivedOrder archivedOrder : archivedOrderOtherRepository.findAll()) {
+            orders.add(archivedOrder.toOrder());
+        }
+        return orders;
+    }
+}
@@ -1,6 +1,7 @@
 package other.service;
 
 
+import edu.fudan.common.entity.OrderStatusChangeInfo;
 import edu.fudan.common.entity.Seat;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
@@ -9,6 +10,7 @@ import other.entity.QueryInfo;
 import other.entity.OrderAlterInfo;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author fdse
@@ -19,10 +21,18 @@ public interface OrderOtherService {
 
     Response create(Order newOrder, HttpHeaders headers);
 
+    Response createOrders(List<Order> orders, HttpHeaders headers);
+
     Response updateOrder(Order order, HttpHeaders headers);
 
     Response saveChanges(Order order, HttpHeaders headers);
 
+    /**
+     * Move a paid order to its new trip and seat, or move a rebooked order back.
+     * Fails when the stored order is not in the expected status.
+     */
+    Response rebookOrder(Order order, HttpHeaders headers);
+
     Response cancelOrder(String accountId, String orderId, HttpHeaders headers);
 
     Response addNewOrder(Order order, HttpHeaders headers);
@@ -37,6 +47,13 @@ public interface OrderOtherService {
 
     Response modifyOrder(String orderId, int status, HttpHeaders headers);
 
+    Response modifyOrders(OrderStatusChangeInfo info, HttpHeaders headers);
+
+    /**
+     * One page of the orders of a train on a date, for bulk processing
+     */
+    Response queryOrdersByTrain(String trainNumber, String travelDate, List<Integer> statuses, String afterId, int size, HttpHeaders headers);
+
     Response getAllOrders(HttpHeaders headers);
 
     Response getSoldTickets(Seat seatRequest, HttpHeaders headers);
@@ -1,6 +1,8 @@
 package other.service;
 
 import edu.fudan.common.entity.*;
+import edu.fudan.common.outbox.OrderOutbox;
+import edu.fudan.common.outbox.OrderOutboxRepository;
 import edu.fudan.common.util.Response;
 import edu.fudan.common.util.StringUtils;
 import org.slf4j.Logger;
@@ -16,8 +18,12 @@ import other.entity.*;
 import other.entity.Order;
 import other.entity.OrderAlterInfo;
 import other.repository.OrderOtherRepository;
+import other.replica.RecentOrderWrites;
+import other.replica.ReplicaRead;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 
@@ -30,6 +36,12 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     @Autowired
     private OrderOtherRepository orderOtherRepository;
 
+    @Autowired
+    private OrderOutboxRepository orderOtherOutboxRepository;
+
+    @Autowired
+    private RecentOrderWrites recentOrderWrites;
+
     @Autowired
     private RestTemplate restTemplate;
 
@@ -48,7 +60,25 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     String success = "Success";
     String orderNotFound = "Order Not Found";
 
+    @Value("${spring.application.name:ts-order-other-service}")
+    String serviceName;
+
+    /**
+     * Write an order event to the outbox, callers must run inside the
+     * transaction that changes the order.
+     */
+    private void recordEvent(Order order, OrderEventType type) {
+        OrderEvent event = new OrderEvent(UUID.randomUUID().toString(), serviceName, type, order.getId(),
+                order.getAccountId(), order.getTrainNumber(), order.getTravelDate(), order.getBoughtDate(),
+                order.getSeatClass(), order.getSeatNumber(), order.getFrom(), order.getTo(), order.getStatus(),
+                order.getPrice(), System.currentTimeMillis());
+        orderOtherOutboxRepository.save(OrderOutbox.of(event));
+        recentOrderWrites.markWritten(order.getAccountId(), order.getId());
+    }
+
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("tickets")
     public Response getSoldTickets(Seat seatRequest, HttpHeaders headers) {
         ArrayList<Order> list = orderOtherRepository.findByTravelDateAndTrainNumber(seatRequest.getTravelDate(),
                 seatRequest.getTrainNumber());
@@ -75,8 +105,10 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("order")
     public Response findOrderById(String id, HttpHeaders headers) {
-        Optional<Order> op = orderOtherRepository.findById(id);
+        Optional<Order> op = orderOtherRepository.findByIdInAllTiers(id);
         if (!op.isPresent()) {
             OrderOtherServiceImpl.LOGGER.warn("[findOrderById][Find Order By Id Fail][No content][id: {}]",id);
             return new Response<>(0, "No Content by this id", null);
@@ -88,6 +120,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional
     public Response create(Order order, HttpHeaders headers) {
         OrderOtherServiceImpl.LOGGER.info("[create][Create Order][Ready Create Order]");
         ArrayList<Order> accountOrders = orderOtherRepository.findByAccountId(order.getAccountId());
@@ -97,11 +130,37 @@ public class OrderOtherServiceImpl implements OrderOtherService {
         } else {
             order.setId(UUID.randomUUID().toString());
             order=orderOtherRepository.save(order);
+            recordEvent(order, OrderEventType.CREATED);
             OrderOtherServiceImpl.LOGGER.info("[create][Order Create Success][OrderId:{},Price: {}]",order.getId(),order.getPrice());
             return new Response<>(1, success, order);
         }
     }
 
+    /**
+     * The orders of a group booking are stored together or not at all.
+     */
+    @Override
+    @Transactional
+    public Response createOrders(List<Order> orders, HttpHeaders headers) {
+        Map<String, ArrayList<Order>> accountOrders = new HashMap<>();
+        for (Order order : orders) {
+            if (accountOrders.computeIfAbsent(order.getAccountId(), orderOtherRepository::findByAccountId).contains(order)) {
+                OrderOtherServiceImpl.LOGGER.error("[createOrders][Orders Create Fail][Order already exists][OrderId: {}]", order.getId());
+                return new Response<>(0, "Order already exist", null);
+            }
+        }
+        for (Order order : orders) {
+            order.setId(UUID.randomUUID().toString());
+        }
+        List<Order> created = new ArrayList<>();
+        orderOtherRepository.saveAll(orders).forEach(created::add);
+        for (Order order : created) {
+            recordEvent(order, OrderEventType.CREATED);
+        }
+        OrderOtherServiceImpl.LOGGER.info("[createOrders][Orders Create Success][count: {}]", created.size());
+        return new Response<>(1, success, created);
+    }
+
     @Override
     public void initOrder(Order order, HttpHeaders headers) {
         Optional<Order> op = orderOtherRepository.findById(order.getId());
@@ -116,6 +175,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
 
 
     @Override
+    @Transactional
     public Response alterOrder(OrderAlterInfo oai, HttpHeaders headers) {
 
         String oldOrderId = oai.getPreviousOrderId();
@@ -125,8 +185,10 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             return new Response<>(0, "Old Order Does Not Exists", null);
         }
         Order oldOrder = orderOtherRepository.findById(oldOrderId).get();
+        //saveChanges would read back this managed order, see no status change and record no event
         oldOrder.setStatus(OrderStatus.CANCEL.getCode());
-        saveChanges(oldOrder, headers);
+        orderOtherRepository.save(oldOrder);
+        recordEvent(oldOrder, OrderEventType.CANCELLED);
         Order newOrder = oai.getNewOrderInfo();
         newOrder.setId(UUID.randomUUID().toString());
         Response cor = create(oai.getNewOrderInfo(), headers);
@@ -140,9 +202,11 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("query")
     public Response<ArrayList<Order>> queryOrders(QueryInfo qi, String accountId, HttpHeaders headers) {
         //1.Get all orders of the user
-        ArrayList<Order> list = orderOtherRepository.findByAccountId(accountId);
+        ArrayList<Order> list = orderOtherRepository.findByAccountIdInAllTiers(accountId);
         OrderOtherServiceImpl.LOGGER.info("[queryOrders][Step 1][Get Orders Number of Account][size: {}]", list.size());
         //2.Check is these orders fit the requirement/
         if (qi.isEnableStateQuery() || qi.isEnableBoughtDateQuery() || qi.isEnableTravelDateQuery()) {
@@ -206,6 +270,8 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("query")
     public Response queryOrdersForRefresh(QueryInfo qi, String accountId, HttpHeaders headers) {
         ArrayList<Order> orders = queryOrders(qi, accountId, headers).getData();
         ArrayList<String> stationIds = new ArrayList<>();
@@ -234,7 +300,78 @@ public class OrderOtherServiceImpl implements OrderOtherService {
         return re.getBody().getData();
     }
 
+    /**
+     * The stored order is locked, so two rebooks of one order cannot both pass
+     * the status check. Only PAID -> CHANGE and its undo CHANGE -> PAID are
+     * allowed. The CHANGED event describes the seat the order leaves.
+     */
     @Override
+    @Transactional
+    public Response rebookOrder(Order order, HttpHeaders headers) {
+        ArrayList<Order> locked = orderOtherRepository.findByIdIn(Collections.singletonList(order.getId()));
+        if (locked.isEmpty()) {
+            OrderOtherServiceImpl.LOGGER.error("[rebookOrder][Rebook Order Fail][Order not found][OrderId: {}]", order.getId());
+            return new Response<>(0, orderNotFound, null);
+        }
+        Order stored = locked.get(0);
+        if (!isRebookTransition(stored.getStatus(), order.getStatus())) {
+            OrderOtherServiceImpl.LOGGER.warn("[rebookOrder][Rebook Order Fail][Status changed][OrderId: {}, status: {}, target: {}]", order.getId(), stored.getStatus(), order.getStatus());
+            return new Response<>(0, "Order status changed, can't rebook", null);
+        }
+        int targetStatus = order.getStatus();
+        stored.setStatus(OrderStatus.CHANGE.getCode());
+        recordEvent(stored, OrderEventType.CHANGED);
+        stored.setTrainNumber(order.getTrainNumber());
+        stored.setTravelDate(order.getTravelDate());
+        stored.setTravelTime(order.getTravelTime());
+        stored.setBoughtDate(order.getBoughtDate());
+        stored.setSeatClass(order.getSeatClass());
+        stored.setSeatNumber(order.getSeatNumber());
+        stored.setPrice(order.getPrice());
+        stored.setStatus(targetStatus);
+        stored = orderOtherRepository.save(stored);
+        recentOrderWrites.markWritten(stored.getAccountId(), stored.getId());
+        OrderOtherServiceImpl.LOGGER.info("[rebookOrder][Rebook Order Success][OrderId: {}, TrainNumber: {}, SeatNumber: {}]", stored.getId(), stored.getTrainNumber(), stored.getSeatNumber());
+        return new Response<>(1, success, stored);
+    }
+
+    private static boolean isRebookTransition(int from, int to) {
+        return (from == OrderStatus.PAID.getCode() && to == OrderStatus.CHANGE.getCode())
+                || (from == OrderStatus.CHANGE.getCode() && to == OrderStatus.PAID.getCode());
+    }
+
+    /**
+     * Store a rebooked order moving in from another shard under its own id.
+     * No event is written here, the shard it leaves publishes the move.
+     */
+    @Transactional
+    public Response moveIn(Order order) {
+        if (orderOtherRepository.findById(order.getId()).isPresent()) {
+            OrderOtherServiceImpl.LOGGER.error("[moveIn][Move In Order Fail][Order already exists][OrderId: {}]", order.getId());
+            return new Response<>(0, "Order already exist", null);
+        }
+        Order stored = orderOtherRepository.save(order);
+        recentOrderWrites.markWritten(stored.getAccountId(), stored.getId());
+        return new Response<>(1, success, stored);
+    }
+
+    /**
+     * Drop an order that moved to another shard and publish the move.
+     */
+    @Transactional
+    public Response moveOut(String orderId) {
+        Optional<Order> op = orderOtherRepository.findById(orderId);
+        if (!op.isPresent()) {
+            OrderOtherServiceImpl.LOGGER.error("[moveOut][Move Out Order Fail][Order not found][OrderId: {}]", orderId);
+            return new Response<>(0, orderNotFound, null);
+        }
+        orderOtherRepository.deleteById(orderId);
+        recordEvent(op.get(), OrderEventType.MOVED);
+        return new Response<>(1, success, op.get());
+    }
+
+    @Override
+    @Transactional
     public Response saveChanges(Order order, HttpHeaders headers) {
         Optional<Order> op = orderOtherRepository.findById(order.getId());
         if (!op.isPresent() ) {
@@ -242,6 +379,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             return new Response<>(0, orderNotFound, null);
         } else {
             Order oldOrder = op.get();
+            int oldStatus = oldOrder.getStatus();
             oldOrder.setAccountId(order.getAccountId());
             oldOrder.setBoughtDate(order.getBoughtDate());
             oldOrder.setTravelDate(order.getTravelDate());
@@ -260,12 +398,16 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             oldOrder.setContactsDocumentNumber(order.getContactsDocumentNumber());
 
             orderOtherRepository.save(oldOrder);
+            if (oldStatus != oldOrder.getStatus()) {
+                recordEvent(oldOrder, OrderEventType.fromStatus(oldOrder.getStatus()));
+            }
             OrderOtherServiceImpl.LOGGER.info("[saveChanges][Modify Order Success][OrderId: {}]",order.getId());
             return new Response<>(1, success, oldOrder);
         }
     }
 
     @Override
+    @Transactional
     public Response cancelOrder(String accountId, String orderId, HttpHeaders headers) {
 
         Optional<Order> op = orderOtherRepository.findById(orderId);
@@ -276,12 +418,15 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             Order oldOrder = op.get();
             oldOrder.setStatus(OrderStatus.CANCEL.getCode());
             orderOtherRepository.save(oldOrder);
+            recordEvent(oldOrder, OrderEventType.CANCELLED);
             OrderOtherServiceImpl.LOGGER.info("[cancelOrder][Cancel Order Success][OrderId: {}]",oldOrder.getId());
             return new Response<>(1, success, oldOrder);
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("sold")
     public Response queryAlreadySoldOrders(Date travelDate, String trainNumber, HttpHeaders headers) {
         ArrayList<Order> orders = orderOtherRepository.findByTravelDateAndTrainNumber(StringUtils.Date2String(travelDate), trainNumber);
         SoldTicket cstr = new SoldTicket();
@@ -318,8 +463,10 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("all")
     public Response getAllOrders(HttpHeaders headers) {
-        ArrayList<Order> orders = orderOtherRepository.findAll();
+        ArrayList<Order> orders = orderOtherRepository.findAllInAllTiers();
         if (orders == null) {
             OrderOtherServiceImpl.LOGGER.warn("[getAllOrders][Find all orders warn][{}]","No content");
             return new Response<>(0, "No Content", null);
@@ -330,6 +477,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional
     public Response modifyOrder(String orderId, int status, HttpHeaders headers) {
         Optional<Order> op = orderOtherRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -339,12 +487,55 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             Order order = op.get();
             order.setStatus(status);
             orderOtherRepository.save(order);
+            recordEvent(order, OrderEventType.fromStatus(status));
             OrderOtherServiceImpl.LOGGER.info("[modifyOrder][Modify order Success][OrderId: {}]",orderId);
             return new Response<>(1, success, order);
         }
     }
 
     @Override
+    @Transactional
+    public Response modifyOrders(OrderStatusChangeInfo info, HttpHeaders headers) {
+        List<String> orderIds = info.getOrderIds() == null ? new ArrayList<>() : info.getOrderIds();
+        List<Integer> allowedStatus = OrderStatus.getAllowedSourceCodes(info.getStatus());
+        Map<String, Order> orders = new HashMap<>();
+        for (Order order : orderOtherRepository.findByIdIn(orderIds)) {
+            orders.put(order.getId(), order);
+        }
+        List<OrderStatusChangeResult> results = new ArrayList<>(orderIds.size());
+        List<Order> changedOrders = new ArrayList<>();
+        for (String orderId : orderIds) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                results.add(new OrderStatusChangeResult(orderId, 0, orderNotFound));
+            } else if (!allowedStatus.contains(order.getStatus())) {
+                results.add(new OrderStatusChangeResult(orderId, 0, "Order Status Wrong"));
+            } else {
+                order.setStatus(info.getStatus());
+                changedOrders.add(order);
+                results.add(new OrderStatusChangeResult(orderId, 1, success));
+            }
+        }
+        orderOtherRepository.saveAll(changedOrders);
+        for (Order order : changedOrders) {
+            recordEvent(order, OrderEventType.fromStatus(info.getStatus()));
+        }
+        OrderOtherServiceImpl.LOGGER.info("[modifyOrders][Modify orders status][target status: {}, requested: {}, modified: {}]",
+                info.getStatus(), orderIds.size(), changedOrders.size());
+        return new Response<>(1, "Modify Orders Finished", results);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Response queryOrdersByTrain(String trainNumber, String travelDate, List<Integer> statuses, String afterId, int size, HttpHeaders headers) {
+        ArrayList<Order> orders = orderOtherRepository.findTrainPage(trainNumber, travelDate, statuses, afterId == null ? "" : afterId, size);
+        OrderOtherServiceImpl.LOGGER.info("[queryOrdersByTrain][Query orders of train][TrainNumber: {}, TravelDate: {}, after: {}, size: {}]", trainNumber, travelDate, afterId, orders.size());
+        return new Response<>(1, success, orders);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("order")
     public Response getOrderPrice(String orderId, HttpHeaders headers) {
         Optional<Order> op = orderOtherRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -358,6 +549,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional
     public Response payOrder(String orderId, HttpHeaders headers) {
         Optional<Order> op = orderOtherRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -367,14 +559,17 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             Order order = op.get();
             order.setStatus(OrderStatus.PAID.getCode());
             orderOtherRepository.save(order);
+            recordEvent(order, OrderEventType.PAID);
             OrderOtherServiceImpl.LOGGER.info("[payOrder][Pay order Success][OrderId: {}]",orderId);
             return new Response<>(1, success, order);
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("order")
     public Response getOrderById(String orderId, HttpHeaders headers) {
-        Optional<Order> op = orderOtherRepository.findById(orderId);
+        Optional<Order> op = orderOtherRepository.findByIdInAllTiers(orderId);
 
         if(!op.isPresent()) {
             OrderOtherServiceImpl.LOGGER.error("[getOrderById][Get Order By ID Fail][Order not found][OrderId: {}]",orderId);
@@ -387,6 +582,8 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("security")
     public Response checkSecurityAboutOrder(Date dateFrom, String accountId, HttpHeaders headers) {
         OrderSecurity result = new OrderSecurity();
         ArrayList<Order> orders = orderOtherRepository.findByAccountId(accountId);
@@ -413,6 +610,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
     }
 
     @Override
+    @Transactional
     public Response deleteOrder(String orderId, HttpHeaders headers) {
         String orderUuid = UUID.fromString(orderId).toString();
         Optional<Order> op = orderOtherRepository.findById(orderUuid);
@@ -422,12 +620,14 @@ public class OrderOtherServiceImpl implements OrderOtherService {
         } else {
             Order order = op.get();
             orderOtherRepository.deleteById(orderUuid);
+            recordEvent(order, OrderEventType.DELETED);
             OrderOtherServiceImpl.LOGGER.info("[deleteOrder][Delete order Success][OrderId: {}]",orderId);
             return new Response<>(1, success, orderUuid);
         }
     }
 
     @Override
+    @Transactional
     public Response addNewOrder(Order order, HttpHeaders headers) {
         OrderOtherServiceImpl.LOGGER.info("[addNewOrder][Admin Add Order][Ready to Add Order]");
         ArrayList<Order> accountOrders = orderOtherRepository.findByAccountId(order.getAccountId());
@@ -437,12 +637,14 @@ public class OrderOtherServiceImpl implements OrderOtherService {
         } else {
             order.setId(UUID.randomUUID().toString());
             orderOtherRepository.save(order);
+            recordEvent(order, OrderEventType.CREATED);
             OrderOtherServiceImpl.LOGGER.info("[addNewOrder][Admin Add Order Success][OrderId:{} , Price:{}]",order.getId(),order.getPrice());
             return new Response<>(1, success, order);
         }
     }
 
     @Override
+    @Transactional
     public Response updateOrder(Order order, HttpHeaders headers) {
         LOGGER.info("[updateOrder][Admin Update Order][Order Info:{}]",order.toString());
 
@@ -452,6 +654,7 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             return new Response<>(0, orderNotFound, null);
         } else {
             Order oldOrder = op.get();
+            int oldStatus = oldOrder.getStatus();
             //OrderOtherServiceImpl.LOGGER.info("{}", oldOrder.toString());
             oldOrder.setAccountId(order.getAccountId());
             oldOrder.setBoughtDate(order.getBoughtDate());
@@ -469,6 +672,9 @@ public class OrderOtherServiceImpl implements OrderOtherService {
             oldOrder.setContactsDocumentNumber(order.getContactsDocumentNumber());
             oldOrder.setDocumentType(order.getDocumentType());
             orderOtherRepository.save(oldOrder);
+            if (oldStatus != oldOrder.getStatus()) {
+                recordEvent(oldOrder, OrderEventType.fromStatus(oldOrder.getStatus()));
+            }
             OrderOtherServiceImpl.LOGGER.info("[updateOrder][Admin Update Order Success][OrderId:{}]",oldOrder.getId());
             return new Response<>(1, success, oldOrder);
         }
@@ -0,0 +1,27 @@
+package other.sharding;
+
+/**
+ * Shard the current thread reads and writes orders on.
+ *
+ * @author fdse
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    public static Integer get() {
+        return CURRENT_SHARD.get();
+    }
+
+    public static void set(Integer shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+CREATE TABLE IF NOT EXISTS orders_other (
+    id VARCHAR(36) NOT NULL PRIMARY KEY,
+    bought_date VARCHAR(255),
+    travel_date VARCHAR(255),
+    travel_time VARCHAR(255),
+    account_id VARCHAR(36),
+    contacts_name VARCHAR(255),
+    document_type INT NOT NULL,
+    contacts_document_number VARCHAR(255),
+    train_number VARCHAR(255),
+    coach_number INT NOT NULL,
+    seat_class INT NOT NULL,
+    seat_number VARCHAR(255),
+    from_station VARCHAR(255),
+    to_station VARCHAR(255),
+    status INT NOT NULL,
+    price VARCHAR(255)
+);
+
+CREATE TABLE IF NOT EXISTS orders_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    event_id VARCHAR(36),
+    order_id VARCHAR(36),
+    event_type VARCHAR(255),
+    payload TEXT,
+    created_at BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS orders_other_archive (
+    id VARCHAR(36) NOT NULL PRIMARY KEY,
+    bought_date VARCHAR(255),
+    travel_date VARCHAR(255),
+    travel_time VARCHAR(255),
+    account_id VARCHAR(36),
+    contacts_name VARCHAR(255),
+    document_type INT NOT NULL,
+    contacts_document_number VARCHAR(255),
+    train_number VARCHAR(255),
+    coach_number INT NOT NULL,
+    seat_class INT NOT NULL,
+    seat_number VARCHAR(255),
+    from_station VARCHAR(255),
+    to_station VARCHAR(255),
+    status INT NOT NULL,
+    price VARCHAR(255),
+    archive_month VARCHAR(7),
+    archived_at BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS orders_other_shard_index (
+    order_id VARCHAR(36) NOT NULL PRIMARY KEY,
+    account_id VARCHAR(36),
+    shard INT NOT NULL
+);
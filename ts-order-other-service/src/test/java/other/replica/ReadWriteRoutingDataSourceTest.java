@@ -0,0 +1,81 @@
+package other.replica;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Collections;
+import java.util.UUID;
+
+@RunWith(JUnit4.class)
+public class ReadWriteRoutingDataSourceTest {
+
+    private static final String HEARTBEAT_TABLE = "CREATE TABLE replica_heartbeat (id INT NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)";
+
+    private ReplicaLagMonitor monitor;
+
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    private JdbcTemplate replicaJdbcTemplate;
+
+    @Before
+    public void setUp() {
+        String run = UUID.randomUUID().toString();
+        DataSource primary = new DriverManagerDataSource("jdbc:h2:mem:order_other_primary_" + run + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        DataSource replica = new DriverManagerDataSource("jdbc:h2:mem:order_other_replica_" + run + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        new JdbcTemplate(primary).execute(HEARTBEAT_TABLE);
+        replicaJdbcTemplate = new JdbcTemplate(replica);
+        replicaJdbcTemplate.execute(HEARTBEAT_TABLE);
+        monitor = new ReplicaLagMonitor(primary, Collections.singletonList(replica));
+        routingDataSource = new ReadWriteRoutingDataSource(monitor, 1000);
+    }
+
+    @After
+    public void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        ReplicaReadContext.set(null);
+    }
+
+    private void replicateBeatAged(long ageMs) {
+        replicaJdbcTemplate.update("MERGE INTO replica_heartbeat (id, beat) KEY (id) VALUES (1, ?)", System.currentTimeMillis() - ageMs);
+        monitor.heartbeat();
+    }
+
+    @Test
+    public void testReadWriteTransactionUsesPrimary() {
+        replicateBeatAged(-60000);
+        Assert.assertEquals(ReadWriteRoutingDataSource.PRIMARY, routingDataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void testReadOnlyTransactionUsesFreshReplica() {
+        replicateBeatAged(-60000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Assert.assertEquals(0L, monitor.getLagMs(0));
+        Assert.assertEquals(0, routingDataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void testStaleReplicaFallsBackToPrimary() {
+        replicateBeatAged(60000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        Assert.assertEquals(ReadWriteRoutingDataSource.PRIMARY, routingDataSource.determineCurrentLookupKey());
+        ReplicaReadContext.set(new ReplicaReadContext(Long.MAX_VALUE, false));
+        Assert.assertEquals(0, routingDataSource.determineCurrentLookupKey());
+    }
+
+    @Test
+    public void testRecentWriteKeepsReadOnPrimary() {
+        replicateBeatAged(-60000);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        ReplicaReadContext.set(new ReplicaReadContext(Long.MAX_VALUE, true));
+        Assert.assertEquals(ReadWriteRoutingDataSource.PRIMARY, routingDataSource.determineCurrentLookupKey());
+    }
+}
@@ -0,0 +1,89 @@
+package other.replica;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.servlet.http.Cookie;
+import java.util.Collections;
+
+@RunWith(JUnit4.class)
+public class RecentOrderWritesTest {
+
+    private ReadWriteProperties properties;
+
+    @Before
+    public void setUp() {
+        properties = new ReadWriteProperties();
+        properties.setEnabled(true);
+        properties.setStickyWindowMs(60000);
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    private RecentOrderWrites instance() {
+        RecentOrderWrites recentOrderWrites = new RecentOrderWrites();
+        ReflectionTestUtils.setField(recentOrderWrites, "properties", properties);
+        return recentOrderWrites;
+    }
+
+    private MockHttpServletResponse request(MockHttpServletRequest request) {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    @Test
+    public void testWriteTimeCarriedByClient() {
+        MockHttpServletResponse written = request(new MockHttpServletRequest());
+        instance().markWritten("account_id", "order_id");
+        String writtenAt = written.getHeader(RecentOrderWrites.WRITTEN_AT_HEADER);
+        Assert.assertNotNull(writtenAt);
+        Assert.assertEquals(writtenAt, written.getCookie(RecentOrderWrites.WRITTEN_AT_COOKIE).getValue());
+
+        //another instance knows of the write only through the client
+        RecentOrderWrites other = instance();
+        request(new MockHttpServletRequest());
+        Assert.assertEquals(0, other.lastWrittenAt(Collections.singletonList(RecentOrderWrites.orderKey("order_id"))));
+        MockHttpServletRequest withHeader = new MockHttpServletRequest();
+        withHeader.addHeader(RecentOrderWrites.WRITTEN_AT_HEADER, writtenAt);
+        request(withHeader);
+        Assert.assertEquals(Long.parseLong(writtenAt), other.lastWrittenAt(Collections.emptyList()));
+        MockHttpServletRequest withCookie = new MockHttpServletRequest();
+        withCookie.setCookies(new Cookie(RecentOrderWrites.WRITTEN_AT_COOKIE, writtenAt));
+        request(withCookie);
+        Assert.assertEquals(Long.parseLong(writtenAt), other.lastWrittenAt(Collections.emptyList()));
+    }
+
+    @Test
+    public void testWriteLeavesWindow() {
+        RecentOrderWrites writer = instance();
+        writer.markWritten("account_id", "order_id");
+        Assert.assertTrue(writer.lastWrittenAt(Collections.singletonList(RecentOrderWrites.accountKey("account_id"))) > 0);
+        properties.setStickyWindowMs(-1);
+        writer.purge();
+        properties.setStickyWindowMs(60000);
+        Assert.assertEquals(0, writer.lastWrittenAt(Collections.singletonList(RecentOrderWrites.accountKey("account_id"))));
+    }
+
+    @Test
+    public void testFutureWriteTimeKeptToNow() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(RecentOrderWrites.WRITTEN_AT_HEADER, String.valueOf(Long.MAX_VALUE));
+        request(request);
+        long before = System.currentTimeMillis();
+        long writtenAt = instance().lastWrittenAt(Collections.emptyList());
+        Assert.assertTrue(writtenAt >= before && writtenAt <= System.currentTimeMillis());
+    }
+}
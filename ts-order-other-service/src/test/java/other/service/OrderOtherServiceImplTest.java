@@ -1,7 +1,11 @@
 package other.service;
 
+import edu.fudan.common.entity.OrderEventType;
 import edu.fudan.common.entity.OrderSecurity;;
+import edu.fudan.common.entity.OrderStatus;
 import edu.fudan.common.entity.Seat;
+import edu.fudan.common.outbox.OrderOutbox;
+import edu.fudan.common.outbox.OrderOutboxRepository;
 import edu.fudan.common.util.Response;
 import other.entity.Order;
 import other.entity.OrderAlterInfo;
@@ -10,6 +14,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -18,9 +23,12 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
 import other.entity.*;
+import other.replica.RecentOrderWrites;
 import other.repository.OrderOtherRepository;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -37,6 +45,12 @@ public class OrderOtherServiceImplTest {
     @Mock
     private OrderOtherRepository orderOtherRepository;
 
+    @Mock
+    private OrderOutboxRepository orderOtherOutboxRepository;
+
+    @Mock
+    private RecentOrderWrites recentOrderWrites;
+
     @Mock
     private RestTemplate restTemplate;
 
@@ -68,7 +82,7 @@ public class OrderOtherServiceImplTest {
     @Test
     public void testFindOrderById1() {
         String id = UUID.randomUUID().toString();
-        Mockito.when(orderOtherRepository.findById(Mockito.any(String.class))).thenReturn(Optional.empty());
+        Mockito.when(orderOtherRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.empty());
         Response result = orderOtherServiceImpl.findOrderById(id, headers);
         Assert.assertEquals(new Response<>(0, "No Content by this id", null), result);
     }
@@ -77,7 +91,7 @@ public class OrderOtherServiceImplTest {
     public void testFindOrderById2() {
         String id = UUID.randomUUID().toString();
         Order order = new Order();
-        Mockito.when(orderOtherRepository.findById(Mockito.any(String.class))).thenReturn(Optional.of(order));
+        Mockito.when(orderOtherRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.of(order));
         Response result = orderOtherServiceImpl.findOrderById(id, headers);
         Assert.assertEquals(new Response<>(1, "Success", order), result);
     }
@@ -102,6 +116,45 @@ public class OrderOtherServiceImplTest {
         Mockito.when(orderOtherRepository.save(Mockito.any(Order.class))).thenReturn(order);
         Response result = orderOtherServiceImpl.create(order, headers);
         Assert.assertEquals("Success", result.getMsg());
+        Mockito.verify(orderOtherOutboxRepository, times(1)).save(Mockito.any(OrderOutbox.class));
+    }
+
+    @Test
+    public void testCreateOrders() {
+        Order first = new Order();
+        first.setAccountId("test-account");
+        Order second = new Order();
+        second.setAccountId("test-account");
+        List<Order> orders = Arrays.asList(first, second);
+        Mockito.when(orderOtherRepository.findByAccountId(Mockito.any(String.class))).thenReturn(new ArrayList<>());
+        Mockito.when(orderOtherRepository.saveAll(orders)).thenReturn(orders);
+        Response result = orderOtherServiceImpl.createOrders(orders, headers);
+        Assert.assertEquals(orders, result.getData());
+        Mockito.verify(orderOtherRepository, times(1)).findByAccountId("test-account");
+        Mockito.verify(orderOtherOutboxRepository, times(2)).save(Mockito.any(OrderOutbox.class));
+    }
+
+    @Test
+    public void testRebookOrder() {
+        Order stored = new Order();
+        stored.setId("order_id");
+        stored.setTrainNumber("G1234");
+        stored.setSeatNumber("5");
+        stored.setStatus(OrderStatus.PAID.getCode());
+        Order rebooked = new Order();
+        rebooked.setId("order_id");
+        rebooked.setTrainNumber("G1236");
+        rebooked.setSeatNumber("7");
+        rebooked.setStatus(OrderStatus.CHANGE.getCode());
+        Mockito.when(orderOtherRepository.findByIdIn(Collections.singletonList("order_id"))).thenReturn(new ArrayList<>(Collections.singletonList(stored)));
+        Mockito.when(orderOtherRepository.save(stored)).thenReturn(stored);
+        Response result = orderOtherServiceImpl.rebookOrder(rebooked, headers);
+        Assert.assertEquals("G1236", ((Order) result.getData()).getTrainNumber());
+        Assert.assertEquals("7", ((Order) result.getData()).getSeatNumber());
+        Mockito.verify(orderOtherOutboxRepository, times(1)).save(Mockito.any(OrderOutbox.class));
+
+        //the order is already rebooked, a second rebook must not pass
+        Assert.assertEquals(new Response<>(0, "Order status changed, can't rebook", null), orderOtherServiceImpl.rebookOrder(rebooked, headers));
     }
 
     @Test
@@ -146,6 +199,26 @@ public class OrderOtherServiceImplTest {
         Assert.assertEquals("Alter Order Success", result.getMsg());
     }
 
+    @Test
+    public void testAlterOrderRecordsCancellation() {
+        Order oldOrder = new Order();
+        oldOrder.setId("old_order_id");
+        oldOrder.setStatus(OrderStatus.PAID.getCode());
+        Order newOrder = new Order();
+        OrderAlterInfo oai = new OrderAlterInfo("account_id", "old_order_id", "login_token", newOrder);
+        //the repository hands back the same managed instance on every read
+        Mockito.when(orderOtherRepository.findById("old_order_id")).thenReturn(Optional.of(oldOrder));
+        Mockito.when(orderOtherRepository.save(Mockito.any(Order.class))).then(invocation -> invocation.getArgument(0));
+        Mockito.when(orderOtherRepository.findByAccountId(Mockito.any())).thenReturn(new ArrayList<>());
+        Assert.assertEquals(1, orderOtherServiceImpl.alterOrder(oai, headers).getStatus().intValue());
+
+        ArgumentCaptor<OrderOutbox> events = ArgumentCaptor.forClass(OrderOutbox.class);
+        Mockito.verify(orderOtherOutboxRepository, times(2)).save(events.capture());
+        Assert.assertEquals("old_order_id", events.getAllValues().get(0).getOrderId());
+        Assert.assertEquals(OrderEventType.CANCELLED.name(), events.getAllValues().get(0).getEventType());
+        Assert.assertEquals(OrderEventType.CREATED.name(), events.getAllValues().get(1).getEventType());
+    }
+
     @Test
     public void testQueryOrders() {
         ArrayList<Order> list = new ArrayList<>();
@@ -155,7 +228,7 @@ public class OrderOtherServiceImplTest {
         order.setBoughtDate("2023-01-01 10:00:00");
         order.setTravelDate("2023-01-02 10:00:00");
         list.add(order);
-        Mockito.when(orderOtherRepository.findByAccountId(Mockito.any(String.class))).thenReturn(list);
+        Mockito.when(orderOtherRepository.findByAccountIdInAllTiers(Mockito.any(String.class))).thenReturn(list);
         QueryInfo qi = new QueryInfo();
         qi.setEnableStateQuery(true);
         qi.setEnableBoughtDateQuery(false);
@@ -172,7 +245,7 @@ public class OrderOtherServiceImplTest {
     @Test
     public void testQueryOrdersForRefresh() {
         ArrayList<Order> list = new ArrayList<>();
-        Mockito.when(orderOtherRepository.findByAccountId(Mockito.any(String.class))).thenReturn(list);
+        Mockito.when(orderOtherRepository.findByAccountIdInAllTiers(Mockito.any(String.class))).thenReturn(list);
         //mock queryForStationId()
         Response<List<String>> response = new Response<>();
         ResponseEntity<Response<List<String>>> re = new ResponseEntity<>(response, HttpStatus.OK);
@@ -250,7 +323,7 @@ public class OrderOtherServiceImplTest {
 
     @Test
     public void testGetAllOrders1() {
-        Mockito.when(orderOtherRepository.findAll()).thenReturn(null);
+        Mockito.when(orderOtherRepository.findAllInAllTiers()).thenReturn(null);
         Response result = orderOtherServiceImpl.getAllOrders(headers);
         Assert.assertEquals(new Response<>(0, "No Content", null), result);
     }
@@ -258,7 +331,7 @@ public class OrderOtherServiceImplTest {
     @Test
     public void testGetAllOrders2() {
         ArrayList<Order> orders = new ArrayList<>();
-        Mockito.when(orderOtherRepository.findAll()).thenReturn(orders);
+        Mockito.when(orderOtherRepository.findAllInAllTiers()).thenReturn(orders);
         Response result = orderOtherServiceImpl.getAllOrders(headers);
         Assert.assertEquals(new Response<>(1, "Success", orders), result);
     }
@@ -312,7 +385,7 @@ public class OrderOtherServiceImplTest {
 
     @Test
     public void testGetOrderById1() {
-        Mockito.when(orderOtherRepository.findById(Mockito.any(String.class))).thenReturn(Optional.empty());
+        Mockito.when(orderOtherRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.empty());
         Response result = orderOtherServiceImpl.getOrderById(UUID.randomUUID().toString().toString(), headers);
         Assert.assertEquals(new Response<>(0, "Order Not Found", null), result);
     }
@@ -320,7 +393,7 @@ public class OrderOtherServiceImplTest {
     @Test
     public void testGetOrderById2() {
         Order order = new Order();
-        Mockito.when(orderOtherRepository.findById(Mockito.any(String.class))).thenReturn(Optional.of(order));
+        Mockito.when(orderOtherRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.of(order));
         Response result = orderOtherServiceImpl.getOrderById(UUID.randomUUID().toString().toString(), headers);
         Assert.assertEquals(new Response<>(1, "Success", order), result);
     }
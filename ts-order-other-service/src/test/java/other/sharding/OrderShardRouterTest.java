@@ -0,0 +1,81 @@
+package other.sharding;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RunWith(JUnit4.class)
+public class OrderShardRouterTest {
+
+    private static final int SHARD_COUNT = 3;
+
+    private OrderShardRouter orderShardRouter;
+
+    private List<DataSource> shardDataSources = new ArrayList<>();
+
+    private JdbcTemplate routingJdbcTemplate;
+
+    @Before
+    public void setUp() {
+        OrderShardingProperties properties = new OrderShardingProperties();
+        properties.setEnabled(true);
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("db/order-other-shard-schema.sql"));
+        Map<Object, Object> targets = new HashMap<>();
+        String run = UUID.randomUUID().toString();
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            OrderShardingProperties.Shard shard = new OrderShardingProperties.Shard();
+            shard.setUrl("jdbc:h2:mem:order_other_shard_" + i + "_" + run + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+            properties.getShards().add(shard);
+            DataSource dataSource = new DriverManagerDataSource(shard.getUrl(), "sa", "");
+            populator.execute(dataSource);
+            shardDataSources.add(dataSource);
+            targets.put(i, dataSource);
+        }
+        orderShardRouter = new OrderShardRouter(properties);
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.afterPropertiesSet();
+        routingJdbcTemplate = new JdbcTemplate(routingDataSource);
+    }
+
+    @Test
+    public void testShardForIgnoresTimeOfDay() {
+        int shard = orderShardRouter.shardFor("G1234", "2023-01-01");
+        Assert.assertEquals(shard, orderShardRouter.shardFor("G1234", "2023-01-01 08:00:00"));
+        Assert.assertTrue(shard >= 0 && shard < SHARD_COUNT);
+    }
+
+    @Test
+    public void testOrdersOfOneTripLandOnOneShard() {
+        int shard = orderShardRouter.shardFor("D1345", "2023-01-01 00:00:00");
+        for (int i = 0; i < 5; i++) {
+            orderShardRouter.inShard(shard, () -> routingJdbcTemplate.update(
+                    "INSERT INTO orders_other (id, train_number, travel_date, document_type, coach_number, seat_class, status) VALUES (?, 'D1345', '2023-01-01 00:00:00', 1, 5, 2, 1)",
+                    UUID.randomUUID().toString()));
+        }
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            Integer count = new JdbcTemplate(shardDataSources.get(i)).queryForObject("SELECT COUNT(*) FROM orders_other", Integer.class);
+            Assert.assertEquals(i == shard ? 5 : 0, count.intValue());
+        }
+    }
+
+    @Test
+    public void testDisabledRouterUsesDirectoryShard() {
+        OrderShardRouter disabled = new OrderShardRouter(new OrderShardingProperties());
+        Assert.assertEquals(1, disabled.shardCount());
+        Assert.assertEquals(OrderShardRouter.DIRECTORY_SHARD, disabled.shardFor("G1234", "2023-01-01"));
+    }
+}
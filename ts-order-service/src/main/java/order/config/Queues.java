@@ -0,0 +1,34 @@
+package order.config;
+
+import edu.fudan.common.outbox.OrderEventRelay;
+import edu.fudan.common.outbox.OrderOutboxRepository;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import order.sharding.OrderShardRouter;
+
+/**
+ * @author fdse
+ */
+@Configuration
+public class Queues {
+
+    /**
+     * every consumer binds its own queue to this exchange
+     */
+    public final static String orderEventExchange = "order_event";
+
+    @Bean
+    public FanoutExchange orderEventExchange() {
+        return new FanoutExchange(orderEventExchange);
+    }
+
+    @Bean
+    public OrderEventRelay orderEventRelay(AmqpTemplate rabbitTemplate, OrderOutboxRepository orderOutboxRepository,
+                                           OrderShardRouter orderShardRouter,
+                                           @Value("${order.outbox.batch-size:200}") int batchSize) {
+        return new OrderEventRelay(rabbitTemplate, orderOutboxRepository, orderEventExchange, orderShardRouter::forEachShard, batchSize);
+    }
+}
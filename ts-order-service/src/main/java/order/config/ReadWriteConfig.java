@@ -0,0 +1,62 @@
+package order.config;
+
+import order.replica.ReadWriteProperties;
+import order.replica.ReadWriteRoutingDataSource;
+import order.replica.ReplicaLagMonitor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Puts read replicas behind the order datasource. Writes and read-write
+ * transactions stay on spring.datasource, read-only ones may go to a
+ * replica. Only applies to the unsharded store.
+ *
+ * @author fdse
+ */
+@Configuration
+@ConditionalOnExpression("${order.readwrite.enabled:false} && !${order.sharding.enabled:false}")
+public class ReadWriteConfig {
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(DataSourceProperties dataSourceProperties, ReadWriteProperties properties) {
+        DataSource primary = dataSourceProperties.initializeDataSourceBuilder().build();
+        new JdbcTemplate(primary).execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT NOT NULL PRIMARY KEY, beat BIGINT NOT NULL)");
+        List<DataSource> replicas = new ArrayList<>();
+        for (ReadWriteProperties.Replica replica : properties.getReplicas()) {
+            replicas.add(DataSourceBuilder.create()
+                    .url(replica.getUrl())
+                    .username(replica.getUsername())
+                    .password(replica.getPassword())
+                    .driverClassName(replica.getDriverClassName())
+                    .build());
+        }
+        return new ReplicaLagMonitor(primary, replicas);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaLagMonitor monitor, ReadWriteProperties properties) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.PRIMARY, monitor.getPrimary());
+        for (int i = 0; i < monitor.getReplicas().size(); i++) {
+            targets.put(i, monitor.getReplicas().get(i));
+        }
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(monitor, properties.getMaxStalenessMs());
+        routingDataSource.setTargetDataSources(targets);
+        routingDataSource.setDefaultTargetDataSource(monitor.getPrimary());
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -72,7 +72,7 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
                 .and()
                 .authorizeRequests()
-                .antMatchers(HttpMethod.POST, order).hasAnyRole(admin, "USER")
+                .antMatchers(HttpMethod.POST, order).hasAnyRole(admin, "USER", "SERVICE")
                 .antMatchers(HttpMethod.PUT, order).hasAnyRole(admin, "USER")
                 .antMatchers(HttpMethod.DELETE, order).hasAnyRole(admin, "USER")
                 .antMatchers(HttpMethod.POST, "/api/v1/orderservice/order/admin").hasAnyRole(admin)
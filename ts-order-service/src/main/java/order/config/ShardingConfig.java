@@ -0,0 +1,50 @@
+package order.config;
+
+import order.sharding.OrderShardingProperties;
+import order.sharding.ShardRoutingDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the single order datasource by one routing over the configured
+ * shards. Every shard gets the order schema on startup since hibernate only
+ * updates the directory shard.
+ *
+ * @author fdse
+ */
+@Configuration
+@ConditionalOnProperty(name = "order.sharding.enabled", havingValue = "true")
+public class ShardingConfig {
+
+    @Bean
+    @Primary
+    public DataSource dataSource(OrderShardingProperties properties) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource("db/order-shard-schema.sql"));
+        Map<Object, Object> shards = new HashMap<>();
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            OrderShardingProperties.Shard shard = properties.getShards().get(i);
+            DataSource dataSource = DataSourceBuilder.create()
+                    .url(shard.getUrl())
+                    .username(shard.getUsername())
+                    .password(shard.getPassword())
+                    .driverClassName(shard.getDriverClassName())
+                    .build();
+            populator.execute(dataSource);
+            shards.put(i, dataSource);
+        }
+        ShardRoutingDataSource routingDataSource = new ShardRoutingDataSource();
+        routingDataSource.setTargetDataSources(shards);
+        routingDataSource.setDefaultTargetDataSource(shards.get(0));
+        routingDataSource.afterPropertiesSet();
+        return routingDataSource;
+    }
+}
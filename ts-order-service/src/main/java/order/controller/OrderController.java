@@ -1,5 +1,6 @@
 package order.controller;
 
+import edu.fudan.common.entity.OrderStatusChangeInfo;
 import edu.fudan.common.entity.Seat;
 import edu.fudan.common.util.StringUtils;
 import order.entity.*;
@@ -12,6 +13,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Date;
+import java.util.List;
 
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -47,6 +49,13 @@ public class OrderController {
         return ok(orderService.create(createOrder, headers));
     }
 
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/order/batch")
+    public HttpEntity createNewOrders(@RequestBody List<Order> createOrders, @RequestHeader HttpHeaders headers) {
+        OrderController.LOGGER.info("[createOrders][Create Orders][Count: {}]", createOrders.size());
+        return ok(orderService.createOrders(createOrders, headers));
+    }
+
     @CrossOrigin(origins = "*")
     @PostMapping(path = "/order/admin")
     public HttpEntity addcreateNewOrder(@RequestBody Order order, @RequestHeader HttpHeaders headers) {
@@ -110,6 +119,27 @@ public class OrderController {
         return ok(orderService.modifyOrder(orderId, status, headers));
     }
 
+    /**
+     * orders of a train on a date in id order, page by page with after = last id of the previous page
+     */
+    @CrossOrigin(origins = "*")
+    @GetMapping(path = "/order/bytrain")
+    public HttpEntity queryOrdersByTrain(@RequestParam String trainNumber, @RequestParam String travelDate,
+                                         @RequestParam List<Integer> statuses,
+                                         @RequestParam(value = "after", required = false) String afterId,
+                                         @RequestParam(value = "size", defaultValue = "200") int size,
+                                         @RequestHeader HttpHeaders headers) {
+        OrderController.LOGGER.info("[queryOrdersByTrain][Query Orders By Train][TrainNumber: {}, TravelDate: {}, after: {}]", trainNumber, travelDate, afterId);
+        return ok(orderService.queryOrdersByTrain(trainNumber, travelDate, statuses, afterId, size, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(path = "/order/status/batch")
+    public HttpEntity modifyOrders(@RequestBody OrderStatusChangeInfo info, @RequestHeader HttpHeaders headers) {
+        OrderController.LOGGER.info("[modifyOrders][Modify Orders Status][Status: {}]", info.getStatus());
+        return ok(orderService.modifyOrders(info, headers));
+    }
+
 
     @CrossOrigin(origins = "*")
     @GetMapping(path = "/order/security/{checkDate}/{accountId}")
@@ -129,6 +159,13 @@ public class OrderController {
         return ok(orderService.saveChanges(orderInfo, headers));
     }
 
+    @CrossOrigin(origins = "*")
+    @PutMapping(path = "/order/rebook")
+    public HttpEntity rebookOrder(@RequestBody Order order, @RequestHeader HttpHeaders headers) {
+        OrderController.LOGGER.info("[rebookOrder][Rebook Order][OrderId: {}, TrainNumber: {}]", order.getId(), order.getTrainNumber());
+        return ok(orderService.rebookOrder(order, headers));
+    }
+
     @CrossOrigin(origins = "*")
     @PutMapping(path = "/order/admin")
     public HttpEntity updateOrder(@RequestBody Order order, @RequestHeader HttpHeaders headers) {
@@ -0,0 +1,19 @@
+package order.repository;
+
+import order.entity.ArchivedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface ArchivedOrderRepository extends JpaRepository<ArchivedOrder, String> {
+
+    ArrayList<ArchivedOrder> findByAccountId(String accountId);
+
+    @Override
+    ArrayList<ArchivedOrder> findAll();
+}
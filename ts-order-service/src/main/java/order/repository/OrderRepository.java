@@ -2,10 +2,16 @@ package order.repository;
 
 import order.entity.Order;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -13,7 +19,7 @@ import java.util.UUID;
  * @author fdse
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, String>, OrderRepositoryCustom {
 
     @Override
     Optional<Order> findById(String id);
@@ -25,6 +31,18 @@ public interface OrderRepository extends JpaRepository<Order, String> {
 
     ArrayList<Order> findByTravelDateAndTrainNumber(String travelDate,String trainNumber);
 
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    ArrayList<Order> findByIdIn(Collection<String> ids);
+
+    @Query(value = "SELECT * FROM orders WHERE travel_date < ?1 OR (status IN ?2 AND travel_date < ?3) LIMIT ?4", nativeQuery = true)
+    ArrayList<Order> findArchiveCandidates(String travelDateBefore, List<Integer> terminalStatus, String terminalTravelDateBefore, int limit);
+
+    /**
+     * Orders of one train and date in the given statuses, in id order after afterId
+     */
+    @Query(value = "SELECT * FROM orders WHERE train_number = ?1 AND travel_date = ?2 AND status IN ?3 AND id > ?4 ORDER BY id LIMIT ?5", nativeQuery = true)
+    ArrayList<Order> findTrainPage(String trainNumber, String travelDate, Collection<Integer> statuses, String afterId, int limit);
+
     @Override
     void deleteById(String id);
 }
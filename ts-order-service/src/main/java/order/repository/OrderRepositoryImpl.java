@@ -0,0 +1,49 @@
+package order.repository;
+
+import order.entity.ArchivedOrder;
+import order.entity.Order;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+
+import java.util.ArrayList;
+import java.util.Optional;
+
+/**
+ * @author fdse
+ */
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+    @Lazy
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Override
+    public Optional<Order> findByIdInAllTiers(String id) {
+        Optional<Order> op = orderRepository.findById(id);
+        if (op.isPresent()) {
+            return op;
+        }
+        return archivedOrderRepository.findById(id).map(ArchivedOrder::toOrder);
+    }
+
+    @Override
+    public ArrayList<Order> findByAccountIdInAllTiers(String accountId) {
+        ArrayList<Order> orders = orderRepository.findByAccountId(accountId);
+        for (ArchivedOrder archivedOrder : archivedOrderRepository.findByAccountId(accountId)) {
+            orders.add(archivedOrder.toOrder());
+        }
+        return orders;
+    }
+
+    @Override
+    public ArrayList<Order> findAllInAllTiers() {
+        ArrayList<Order> orders = orderRepository.findAll();
+        for (ArchivedOrder archivedOrder : archivedOrderRepository.findAll()) {
+            orders.add(archivedOrder.toOrder());
+        }
+        return orders;
+    }
+}
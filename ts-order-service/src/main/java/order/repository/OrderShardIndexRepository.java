@@ -0,0 +1,18 @@
+package order.repository;
+
+import order.entity.OrderShardIndex;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface OrderShardIndexRepository extends JpaRepository<OrderShardIndex, String> {
+
+    @Query(value = "SELECT DISTINCT shard FROM orders_shard_index WHERE account_id = ?1", nativeQuery = true)
+    List<Integer> findShardsByAccountId(String accountId);
+}
@@ -0,0 +1,91 @@
+package order.service;
+
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.util.StringUtils;
+import order.entity.ArchivedOrder;
+import order.entity.Order;
+import order.repository.ArchivedOrderRepository;
+import order.repository.OrderRepository;
+import order.sharding.OrderShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves travelled and terminal orders from the hot table to the archive,
+ * one batch per transaction.
+ *
+ * @author fdse
+ */
+@Component
+public class OrderArchiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderArchiver.class);
+
+    private static final List<Integer> TERMINAL_STATUS = Arrays.asList(OrderStatus.CHANGE.getCode(),
+            OrderStatus.CANCEL.getCode(), OrderStatus.REFUNDS.getCode(), OrderStatus.USED.getCode());
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    /**
+     * days after travel date before any order is archived
+     */
+    @Value("${order.archive.horizon-days:30}")
+    private int horizonDays;
+
+    /**
+     * days after travel date before a terminal order is archived
+     */
+    @Value("${order.archive.terminal-grace-days:1}")
+    private int terminalGraceDays;
+
+    @Value("${order.archive.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(cron = "${order.archive.cron:0 0 3 * * ?}")
+    public void archive() {
+        long now = System.currentTimeMillis();
+        String horizon = StringUtils.Date2String(new Date(now - TimeUnit.DAYS.toMillis(horizonDays)));
+        String terminalHorizon = StringUtils.Date2String(new Date(now - TimeUnit.DAYS.toMillis(terminalGraceDays)));
+        orderShardRouter.forEachShard(() -> {
+            int total = 0;
+            int moved;
+            do {
+                moved = transactionTemplate.execute(status -> archiveBatch(horizon, terminalHorizon));
+                total += moved;
+            } while (moved == batchSize);
+            LOGGER.info("[archive][Archive orders finished][count: {}]", total);
+        });
+    }
+
+    private int archiveBatch(String horizon, String terminalHorizon) {
+        ArrayList<Order> orders = orderRepository.findArchiveCandidates(horizon, TERMINAL_STATUS, terminalHorizon, batchSize);
+        List<ArchivedOrder> archivedOrders = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            archivedOrders.add(ArchivedOrder.of(order));
+        }
+        archivedOrderRepository.saveAll(archivedOrders);
+        orderRepository.deleteInBatch(orders);
+        return orders.size();
+    }
+}
@@ -1,11 +1,13 @@
 package order.service;
 
+import edu.fudan.common.entity.OrderStatusChangeInfo;
 import edu.fudan.common.entity.Seat;
 import edu.fudan.common.util.Response;
 import order.entity.*;
 import org.springframework.http.HttpHeaders;
 
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -17,8 +19,16 @@ public interface OrderService {
 
     Response create(Order newOrder, HttpHeaders headers);
 
+    Response createOrders(List<Order> orders, HttpHeaders headers);
+
     Response saveChanges(Order order, HttpHeaders headers);
 
+    /**
+     * Move a paid order to its new trip and seat, or move a rebooked order back.
+     * Fails when the stored order is not in the expected status.
+     */
+    Response rebookOrder(Order order, HttpHeaders headers);
+
     Response cancelOrder(String accountId, String orderId, HttpHeaders headers);
 
     Response queryOrders(OrderInfo qi, String accountId, HttpHeaders headers);
@@ -33,6 +43,13 @@ public interface OrderService {
 
     Response modifyOrder(String orderId, int status, HttpHeaders headers);
 
+    Response modifyOrders(OrderStatusChangeInfo info, HttpHeaders headers);
+
+    /**
+     * One page of the orders of a train on a date, for bulk processing
+     */
+    Response queryOrdersByTrain(String trainNumber, String travelDate, List<Integer> statuses, String afterId, int size, HttpHeaders headers);
+
     Response getOrderPrice(String orderId, HttpHeaders headers);
 
     Response payOrder(String orderId, HttpHeaders headers);
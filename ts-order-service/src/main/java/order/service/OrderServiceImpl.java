@@ -1,11 +1,15 @@
 package order.service;
 
 import edu.fudan.common.entity.*;
+import edu.fudan.common.outbox.OrderOutbox;
+import edu.fudan.common.outbox.OrderOutboxRepository;
 import edu.fudan.common.util.Response;
 import edu.fudan.common.util.StringUtils;
 import order.entity.OrderAlterInfo;
 import order.entity.Order;
 import order.entity.OrderInfo;
+import order.replica.RecentOrderWrites;
+import order.replica.ReplicaRead;
 import order.repository.OrderRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +23,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
@@ -32,6 +37,12 @@ public class OrderServiceImpl implements OrderService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private RecentOrderWrites recentOrderWrites;
+
     @Autowired
     private RestTemplate restTemplate;
 
@@ -49,8 +60,26 @@ public class OrderServiceImpl implements OrderService {
     String success = "Success";
     String orderNotFound = "Order Not Found";
 
+    @Value("${spring.application.name:ts-order-service}")
+    String serviceName;
+
+    /**
+     * Write an order event to the outbox, callers must run inside the
+     * transaction that changes the order.
+     */
+    private void recordEvent(Order order, OrderEventType type) {
+        OrderEvent event = new OrderEvent(UUID.randomUUID().toString(), serviceName, type, order.getId(),
+                order.getAccountId(), order.getTrainNumber(), order.getTravelDate(), order.getBoughtDate(),
+                order.getSeatClass(), order.getSeatNumber(), order.getFrom(), order.getTo(), order.getStatus(),
+                order.getPrice(), System.currentTimeMillis());
+        orderOutboxRepository.save(OrderOutbox.of(event));
+        recentOrderWrites.markWritten(order.getAccountId(), order.getId());
+    }
+
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("tickets")
     public Response getSoldTickets(Seat seatRequest, HttpHeaders headers) {
         ArrayList<Order> list = orderRepository.findByTravelDateAndTrainNumber(seatRequest.getTravelDate(),
                 seatRequest.getTrainNumber());
@@ -71,8 +100,10 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("order")
     public Response findOrderById(String id, HttpHeaders headers) {
-        Optional<Order> op = orderRepository.findById(id);
+        Optional<Order> op = orderRepository.findByIdInAllTiers(id);
         if (!op.isPresent()) {
             OrderServiceImpl.LOGGER.warn("[findOrderById][Find Order By Id Fail][No content][id: {}] ",id);  //获取资源但资源为空
             return new Response<>(0, "No Content by this id", null);
@@ -84,6 +115,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional
     public Response create(Order order, HttpHeaders headers) {
         OrderServiceImpl.LOGGER.info("[create][Create Order][Ready to Create Order]");
         ArrayList<Order> accountOrders = orderRepository.findByAccountId(order.getAccountId());
@@ -93,12 +125,14 @@ public class OrderServiceImpl implements OrderService {
         } else {
             order.setId(UUID.randomUUID().toString());
             order=orderRepository.save(order);
+            recordEvent(order, OrderEventType.CREATED);
             OrderServiceImpl.LOGGER.info("[create][Order Create Success][Order Price][OrderId:{} , Price: {}]",order.getId(),order.getPrice());
             return new Response<>(1, success, order);
         }
     }
 
     @Override
+    @Transactional
     public Response alterOrder(OrderAlterInfo oai, HttpHeaders headers) {
 
         String oldOrderId = oai.getPreviousOrderId();
@@ -108,8 +142,10 @@ public class OrderServiceImpl implements OrderService {
             return new Response<>(0, "Old Order Does Not Exists", null);
         }
         Order oldOrder = op.get();
+        //saveChanges would read back this managed order, see no status change and record no event
         oldOrder.setStatus(OrderStatus.CANCEL.getCode());
-        saveChanges(oldOrder, headers);
+        orderRepository.save(oldOrder);
+        recordEvent(oldOrder, OrderEventType.CANCELLED);
         Order newOrder = oai.getNewOrderInfo();
         newOrder.setId(UUID.randomUUID().toString());
         Response cor = create(oai.getNewOrderInfo(), headers);
@@ -123,9 +159,11 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("query")
     public Response<ArrayList<Order>> queryOrders(OrderInfo qi, String accountId, HttpHeaders headers) {
         //1.Get all orders of the user
-        ArrayList<Order> list = orderRepository.findByAccountId(accountId);
+        ArrayList<Order> list = orderRepository.findByAccountIdInAllTiers(accountId);
         OrderServiceImpl.LOGGER.info("[queryOrders][Step 1][Get Orders Number of Account][size: {}]", list.size());
         //2.Check is these orders fit the requirement/
         if (qi.isEnableStateQuery() || qi.isEnableBoughtDateQuery() || qi.isEnableTravelDateQuery()) {
@@ -189,6 +227,8 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("query")
     public Response queryOrdersForRefresh(OrderInfo qi, String accountId, HttpHeaders headers) {
         ArrayList<Order> orders =   queryOrders(qi, accountId, headers).getData();
         ArrayList<String> stationIds = new ArrayList<>();
@@ -219,7 +259,78 @@ public class OrderServiceImpl implements OrderService {
         return re.getBody().getData();
     }
 
+    /**
+     * The stored order is locked, so two rebooks of one order cannot both pass
+     * the status check. Only PAID -> CHANGE and its undo CHANGE -> PAID are
+     * allowed. The CHANGED event describes the seat the order leaves.
+     */
+    @Override
+    @Transactional
+    public Response rebookOrder(Order order, HttpHeaders headers) {
+        ArrayList<Order> locked = orderRepository.findByIdIn(Collections.singletonList(order.getId()));
+        if (locked.isEmpty()) {
+            OrderServiceImpl.LOGGER.error("[rebookOrder][Rebook Order Fail][Order not found][OrderId: {}]", order.getId());
+            return new Response<>(0, orderNotFound, null);
+        }
+        Order stored = locked.get(0);
+        if (!isRebookTransition(stored.getStatus(), order.getStatus())) {
+            OrderServiceImpl.LOGGER.warn("[rebookOrder][Rebook Order Fail][Status changed][OrderId: {}, status: {}, target: {}]", order.getId(), stored.getStatus(), order.getStatus());
+            return new Response<>(0, "Order status changed, can't rebook", null);
+        }
+        int targetStatus = order.getStatus();
+        stored.setStatus(OrderStatus.CHANGE.getCode());
+        recordEvent(stored, OrderEventType.CHANGED);
+        stored.setTrainNumber(order.getTrainNumber());
+        stored.setTravelDate(order.getTravelDate());
+        stored.setTravelTime(order.getTravelTime());
+        stored.setBoughtDate(order.getBoughtDate());
+        stored.setSeatClass(order.getSeatClass());
+        stored.setSeatNumber(order.getSeatNumber());
+        stored.setPrice(order.getPrice());
+        stored.setStatus(targetStatus);
+        stored = orderRepository.save(stored);
+        recentOrderWrites.markWritten(stored.getAccountId(), stored.getId());
+        OrderServiceImpl.LOGGER.info("[rebookOrder][Rebook Order Success][OrderId: {}, TrainNumber: {}, SeatNumber: {}]", stored.getId(), stored.getTrainNumber(), stored.getSeatNumber());
+        return new Response<>(1, success, stored);
+    }
+
+    private static boolean isRebookTransition(int from, int to) {
+        return (from == OrderStatus.PAID.getCode() && to == OrderStatus.CHANGE.getCode())
+                || (from == OrderStatus.CHANGE.getCode() && to == OrderStatus.PAID.getCode());
+    }
+
+    /**
+     * Store a rebooked order moving in from another shard under its own id.
+     * No event is written here, the shard it leaves publishes the move.
+     */
+    @Transactional
+    public Response moveIn(Order order) {
+        if (orderRepository.findById(order.getId()).isPresent()) {
+            OrderServiceImpl.LOGGER.error("[moveIn][Move In Order Fail][Order already exists][OrderId: {}]", order.getId());
+            return new Response<>(0, "Order already exist", null);
+        }
+        Order stored = orderRepository.save(order);
+        recentOrderWrites.markWritten(stored.getAccountId(), stored.getId());
+        return new Response<>(1, success, stored);
+    }
+
+    /**
+     * Drop an order that moved to another shard and publish the move.
+     */
+    @Transactional
+    public Response moveOut(String orderId) {
+        Optional<Order> op = orderRepository.findById(orderId);
+        if (!op.isPresent()) {
+            OrderServiceImpl.LOGGER.error("[moveOut][Move Out Order Fail][Order not found][OrderId: {}]", orderId);
+            return new Response<>(0, orderNotFound, null);
+        }
+        orderRepository.deleteById(orderId);
+        recordEvent(op.get(), OrderEventType.MOVED);
+        return new Response<>(1, success, op.get());
+    }
+
     @Override
+    @Transactional
     public Response saveChanges(Order order, HttpHeaders headers) {
         Optional<Order> op = orderRepository.findById(order.getId());
         if (!op.isPresent()) {
@@ -227,6 +338,7 @@ public class OrderServiceImpl implements OrderService {
             return new Response<>(0, orderNotFound, null);
         } else {
             Order oldOrder = op.get();
+            int oldStatus = oldOrder.getStatus();
             oldOrder.setAccountId(order.getAccountId());
             oldOrder.setBoughtDate(order.getBoughtDate());
             oldOrder.setTravelDate(order.getTravelDate());
@@ -243,12 +355,16 @@ public class OrderServiceImpl implements OrderService {
             oldOrder.setContactsDocumentNumber(order.getContactsDocumentNumber());
             oldOrder.setDocumentType(order.getDocumentType());
             orderRepository.save(oldOrder);
+            if (oldStatus != oldOrder.getStatus()) {
+                recordEvent(oldOrder, OrderEventType.fromStatus(oldOrder.getStatus()));
+            }
             OrderServiceImpl.LOGGER.info("[saveChanges][Modify Order Success][OrderId: {}]", order.getId());
             return new Response<>(1, success, oldOrder);
         }
     }
 
     @Override
+    @Transactional
     public Response cancelOrder(String accountId, String orderId, HttpHeaders headers) {
         Optional<Order> op = orderRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -258,12 +374,15 @@ public class OrderServiceImpl implements OrderService {
             Order oldOrder = op.get();
             oldOrder.setStatus(OrderStatus.CANCEL.getCode());
             orderRepository.save(oldOrder);
+            recordEvent(oldOrder, OrderEventType.CANCELLED);
             OrderServiceImpl.LOGGER.info("[cancelOrder][Cancel Order Success][OrderId: {}]", orderId);
             return new Response<>(1, success, oldOrder);
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("sold")
     public Response queryAlreadySoldOrders(Date travelDate, String trainNumber, HttpHeaders headers) {
         ArrayList<Order> orders = orderRepository.findByTravelDateAndTrainNumber(StringUtils.Date2String(travelDate), trainNumber);
         SoldTicket cstr = new SoldTicket();
@@ -300,8 +419,10 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("all")
     public Response getAllOrders(HttpHeaders headers) {
-        ArrayList<Order> orders = orderRepository.findAll();
+        ArrayList<Order> orders = orderRepository.findAllInAllTiers();
         if (orders != null && !orders.isEmpty()) {
             OrderServiceImpl.LOGGER.warn("[getAllOrders][Find all orders Success][size:{}]",orders.size());
             return new Response<>(1, "Success.", orders);
@@ -312,6 +433,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional
     public Response modifyOrder(String orderId, int status, HttpHeaders headers) {
         Optional<Order> op = orderRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -321,12 +443,55 @@ public class OrderServiceImpl implements OrderService {
             Order order = op.get();
             order.setStatus(status);
             orderRepository.save(order);
+            recordEvent(order, OrderEventType.fromStatus(status));
             OrderServiceImpl.LOGGER.info("[modifyOrder][Modify order Success][OrderId: {}]",orderId);
             return new Response<>(1, "Modify Order Success", order);
         }
     }
 
     @Override
+    @Transactional
+    public Response modifyOrders(OrderStatusChangeInfo info, HttpHeaders headers) {
+        List<String> orderIds = info.getOrderIds() == null ? new ArrayList<>() : info.getOrderIds();
+        List<Integer> allowedStatus = OrderStatus.getAllowedSourceCodes(info.getStatus());
+        Map<String, Order> orders = new HashMap<>();
+        for (Order order : orderRepository.findByIdIn(orderIds)) {
+            orders.put(order.getId(), order);
+        }
+        List<OrderStatusChangeResult> results = new ArrayList<>(orderIds.size());
+        List<Order> changedOrders = new ArrayList<>();
+        for (String orderId : orderIds) {
+            Order order = orders.get(orderId);
+            if (order == null) {
+                results.add(new OrderStatusChangeResult(orderId, 0, orderNotFound));
+            } else if (!allowedStatus.contains(order.getStatus())) {
+                results.add(new OrderStatusChangeResult(orderId, 0, "Order Status Wrong"));
+            } else {
+                order.setStatus(info.getStatus());
+                changedOrders.add(order);
+                results.add(new OrderStatusChangeResult(orderId, 1, success));
+            }
+        }
+        orderRepository.saveAll(changedOrders);
+        for (Order order : changedOrders) {
+            recordEvent(order, OrderEventType.fromStatus(info.getStatus()));
+        }
+        OrderServiceImpl.LOGGER.info("[modifyOrders][Modify orders status][target status: {}, requested: {}, modified: {}]",
+                info.getStatus(), orderIds.size(), changedOrders.size());
+        return new Response<>(1, "Modify Orders Finished", results);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Response queryOrdersByTrain(String trainNumber, String travelDate, List<Integer> statuses, String afterId, int size, HttpHeaders headers) {
+        ArrayList<Order> orders = orderRepository.findTrainPage(trainNumber, travelDate, statuses, afterId == null ? "" : afterId, size);
+        OrderServiceImpl.LOGGER.info("[queryOrdersByTrain][Query orders of train][TrainNumber: {}, TravelDate: {}, after: {}, size: {}]", trainNumber, travelDate, afterId, orders.size());
+        return new Response<>(1, success, orders);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("order")
     public Response getOrderPrice(String orderId, HttpHeaders headers) {
         Optional<Order> op = orderRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -340,6 +505,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional
     public Response payOrder(String orderId, HttpHeaders headers) {
         Optional<Order> op = orderRepository.findById(orderId);
         if (!op.isPresent()) {
@@ -349,14 +515,17 @@ public class OrderServiceImpl implements OrderService {
             Order order = op.get();
             order.setStatus(OrderStatus.PAID.getCode());
             orderRepository.save(order);
+            recordEvent(order, OrderEventType.PAID);
             OrderServiceImpl.LOGGER.info("[payOrder][Pay order Success][OrderId: {}]",orderId);
             return new Response<>(1, "Pay Order Success.", order);
         }
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("order")
     public Response getOrderById(String orderId, HttpHeaders headers) {
-        Optional<Order> op = orderRepository.findById(orderId);
+        Optional<Order> op = orderRepository.findByIdInAllTiers(orderId);
         if (!op.isPresent()) {
             OrderServiceImpl.LOGGER.warn("[getOrderById][Get Order By ID Fail][Order not found][OrderId: {}]",orderId);
             return new Response<>(0, orderNotFound, null);
@@ -367,6 +536,31 @@ public class OrderServiceImpl implements OrderService {
         }
     }
 
+    /**
+     * The orders of a group booking are stored together or not at all.
+     */
+    @Override
+    @Transactional
+    public Response createOrders(List<Order> orders, HttpHeaders headers) {
+        Map<String, ArrayList<Order>> accountOrders = new HashMap<>();
+        for (Order order : orders) {
+            if (accountOrders.computeIfAbsent(order.getAccountId(), orderRepository::findByAccountId).contains(order)) {
+                OrderServiceImpl.LOGGER.error("[createOrders][Orders Create Fail][Order already exists][OrderId: {}]", order.getId());
+                return new Response<>(0, "Order already exist", null);
+            }
+        }
+        for (Order order : orders) {
+            order.setId(UUID.randomUUID().toString());
+        }
+        List<Order> created = new ArrayList<>();
+        orderRepository.saveAll(orders).forEach(created::add);
+        for (Order order : created) {
+            recordEvent(order, OrderEventType.CREATED);
+        }
+        OrderServiceImpl.LOGGER.info("[createOrders][Orders Create Success][count: {}]", created.size());
+        return new Response<>(1, success, created);
+    }
+
     @Override
     public void initOrder(Order order, HttpHeaders headers) {
         Optional<Order> op = orderRepository.findById(order.getId());
@@ -380,6 +574,8 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional(readOnly = true)
+    @ReplicaRead("security")
     public Response checkSecurityAboutOrder(Date dateFrom, String accountId, HttpHeaders headers) {
         OrderSecurity result = new OrderSecurity();
         ArrayList<Order> orders = orderRepository.findByAccountId(accountId);
@@ -406,6 +602,7 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional
     public Response deleteOrder(String orderId, HttpHeaders headers) {
         String orderUuid = UUID.fromString(orderId).toString();
 
@@ -416,12 +613,14 @@ public class OrderServiceImpl implements OrderService {
         } else {
             Order order = op.get();
             orderRepository.deleteById(orderUuid);
+            recordEvent(order, OrderEventType.DELETED);
             OrderServiceImpl.LOGGER.info("[deleteOrder][Delete order Success][OrderId: {}]",orderId);
             return new Response<>(1, "Delete Order Success", order);
         }
     }
 
     @Override
+    @Transactional
     public Response addNewOrder(Order order, HttpHeaders headers) {
         OrderServiceImpl.LOGGER.info("[addNewOrder][Admin Add Order][Ready to Add Order]");
         ArrayList<Order> accountOrders = orderRepository.findByAccountId(order.getAccountId());
@@ -431,12 +630,14 @@ public class OrderServiceImpl implements OrderService {
         } else {
             order.setId(UUID.randomUUID().toString());
             orderRepository.save(order);
+            recordEvent(order, OrderEventType.CREATED);
             OrderServiceImpl.LOGGER.info("[addNewOrder][Admin Add Order Success][OrderId: {} , Price: {}]",order.getId() ,order.getPrice());
             return new Response<>(1, "Add new Order Success", order);
         }
     }
 
     @Override
+    @Transactional
     public Response updateOrder(Order order, HttpHeaders headers) {
         LOGGER.info("[updateOrder][Admin Update Order][Order Info:{}] ", order.toString());
         Optional<Order> op = orderRepository.findById(order.getId());
@@ -445,6 +646,7 @@ public class OrderServiceImpl implements OrderService {
             return new Response<>(0, "Order Not Found, Can't update", null);
         } else {
             Order oldOrder = op.get();
+            int oldStatus = oldOrder.getStatus();
             //OrderServiceImpl.LOGGER.info("{}", oldOrder.toString());
             oldOrder.setAccountId(order.getAccountId());
             oldOrder.setBoughtDate(order.getBoughtDate());
@@ -462,6 +664,9 @@ public class OrderServiceImpl implements OrderService {
             oldOrder.setContactsDocumentNumber(order.getContactsDocumentNumber());
             oldOrder.setDocumentType(order.getDocumentType());
             orderRepository.save(oldOrder);
+            if (oldStatus != oldOrder.getStatus()) {
+                recordEvent(oldOrder, OrderEventType.fromStatus(oldOrder.getStatus()));
+            }
             OrderServiceImpl.LOGGER.info("[updateOrder][Admin Update Order Success][OrderId: {}]",order.getId());
             return new Response<>(1, "Admin Update Order Success", oldOrder);
         }
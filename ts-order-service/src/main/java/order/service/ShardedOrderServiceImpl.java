@@ -0,0 +1,352 @@
+package order.service;
+
+import edu.fudan.common.entity.*;
+import edu.fudan.common.util.Response;
+import edu.fudan.common.util.StringUtils;
+import order.entity.Order;
+import order.entity.OrderAlterInfo;
+import order.entity.OrderInfo;
+import order.entity.OrderShardIndex;
+import order.repository.OrderRepository;
+import order.repository.OrderShardIndexRepository;
+import order.sharding.OrderShardRouter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Routes every order operation to the shard owning it. Orders are placed by
+ * (trainNumber, travelDate); lookups by order id or account go through the
+ * shard index kept on the directory shard. Each call on a single shard is
+ * handled by OrderServiceImpl inside that shard's transaction.
+ *
+ * @author fdse
+ */
+@Primary
+@Service
+@ConditionalOnProperty(name = "order.sharding.enabled", havingValue = "true")
+public class ShardedOrderServiceImpl implements OrderService {
+
+    @Autowired
+    private OrderServiceImpl orderServiceImpl;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderShardIndexRepository orderShardIndexRepository;
+
+    @Autowired
+    private OrderShardRouter orderShardRouter;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedOrderServiceImpl.class);
+
+    @Override
+    public Response findOrderById(String id, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(id), () -> orderServiceImpl.findOrderById(id, headers));
+    }
+
+    @Override
+    public Response create(Order newOrder, HttpHeaders headers) {
+        int shard = orderShardRouter.shardFor(newOrder.getTrainNumber(), newOrder.getTravelDate());
+        Response result = orderShardRouter.inShard(shard, () -> orderServiceImpl.create(newOrder, headers));
+        indexOrder(result, shard);
+        return result;
+    }
+
+    /**
+     * Each shard stores its part in one transaction. The orders of a group
+     * booking share train and date, so they always land on a single shard.
+     */
+    @Override
+    public Response createOrders(List<Order> orders, HttpHeaders headers) {
+        Map<Integer, List<Order>> ordersByShard = new LinkedHashMap<>();
+        for (Order order : orders) {
+            ordersByShard.computeIfAbsent(orderShardRouter.shardFor(order.getTrainNumber(), order.getTravelDate()),
+                    k -> new ArrayList<>()).add(order);
+        }
+        List<Order> created = new ArrayList<>();
+        for (Map.Entry<Integer, List<Order>> entry : ordersByShard.entrySet()) {
+            Response result = orderShardRouter.inShard(entry.getKey(), () -> orderServiceImpl.createOrders(entry.getValue(), headers));
+            if (result.getStatus() != 1) {
+                return result;
+            }
+            for (Order order : (List<Order>) result.getData()) {
+                indexOrder(new Response<>(1, null, order), entry.getKey());
+                created.add(order);
+            }
+        }
+        return new Response<>(1, "Success", created);
+    }
+
+    @Override
+    public Response saveChanges(Order order, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(order.getId()), () -> orderServiceImpl.saveChanges(order, headers));
+    }
+
+    /**
+     * A rebooked order may belong to another shard afterwards. It is then
+     * copied to the new shard under its own id before it leaves the old one,
+     * so the sold tickets of its new train never miss its seat; the old
+     * shard publishes the move when it drops its copy.
+     */
+    @Override
+    public Response rebookOrder(Order order, HttpHeaders headers) {
+        int from = locateOrder(order.getId());
+        int to = orderShardRouter.shardFor(order.getTrainNumber(), order.getTravelDate());
+        if (to == from) {
+            return orderShardRouter.inShard(from, () -> orderServiceImpl.rebookOrder(order, headers));
+        }
+        Optional<Order> before = orderShardRouter.inShard(from, () -> orderRepository.findById(order.getId()));
+        Response result = orderShardRouter.inShard(from, () -> orderServiceImpl.rebookOrder(order, headers));
+        if (result.getStatus() != 1) {
+            return result;
+        }
+        Order moved = (Order) result.getData();
+        Response copied = orderShardRouter.inShard(to, () -> orderServiceImpl.moveIn(moved));
+        if (copied.getStatus() != 1) {
+            Order undo = before.get();
+            undo.setStatus(OrderStatus.PAID.getCode());
+            orderShardRouter.inShard(from, () -> orderServiceImpl.rebookOrder(undo, headers));
+            ShardedOrderServiceImpl.LOGGER.error("[rebookOrder][Move order to new shard fail][OrderId: {}, from: {}, to: {}]", moved.getId(), from, to);
+            return copied;
+        }
+        indexOrder(copied, to);
+        Response dropped = orderShardRouter.inShard(from, () -> orderServiceImpl.moveOut(moved.getId()));
+        if (dropped.getStatus() != 1) {
+            ShardedOrderServiceImpl.LOGGER.warn("[rebookOrder][Drop moved order fail][OrderId: {}, from: {}]", moved.getId(), from);
+        }
+        ShardedOrderServiceImpl.LOGGER.info("[rebookOrder][Order moved shard][OrderId: {}, from: {}, to: {}]", moved.getId(), from, to);
+        return copied;
+    }
+
+    @Override
+    public Response cancelOrder(String accountId, String orderId, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(orderId), () -> orderServiceImpl.cancelOrder(accountId, orderId, headers));
+    }
+
+    @Override
+    public Response queryOrders(OrderInfo qi, String accountId, HttpHeaders headers) {
+        ArrayList<Order> orders = new ArrayList<>();
+        for (Integer shard : locateAccount(accountId)) {
+            Response<ArrayList<Order>> result = orderShardRouter.inShard(shard, () -> orderServiceImpl.queryOrders(qi, accountId, headers));
+            orders.addAll(result.getData());
+        }
+        return new Response<>(1, "Get order num", orders);
+    }
+
+    @Override
+    public Response queryOrdersForRefresh(OrderInfo qi, String accountId, HttpHeaders headers) {
+        ArrayList<Order> orders = new ArrayList<>();
+        for (Integer shard : locateAccount(accountId)) {
+            Response result = orderShardRouter.inShard(shard, () -> orderServiceImpl.queryOrdersForRefresh(qi, accountId, headers));
+            orders.addAll((List<Order>) result.getData());
+        }
+        return new Response<>(1, "Query Orders For Refresh Success", orders);
+    }
+
+    /**
+     * The new order may belong to another shard than the old one, so the two
+     * steps run in their own shard transactions and are not atomic. When the
+     * new order cannot be stored the old one gets its status back; a crash
+     * between the two steps leaves the old order cancelled without a new one.
+     */
+    @Override
+    public Response alterOrder(OrderAlterInfo oai, HttpHeaders headers) {
+        Response oldResult = findOrderById(oai.getPreviousOrderId(), headers);
+        if (oldResult.getStatus() != 1) {
+            ShardedOrderServiceImpl.LOGGER.error("[alterOrder][Alter Order Fail][Order do not exist][OrderId: {}]", oai.getPreviousOrderId());
+            return new Response<>(0, "Old Order Does Not Exists", null);
+        }
+        Order oldOrder = (Order) oldResult.getData();
+        int oldStatus = oldOrder.getStatus();
+        oldOrder.setStatus(OrderStatus.CANCEL.getCode());
+        Response cancelled = saveChanges(oldOrder, headers);
+        if (cancelled.getStatus() != 1) {
+            return new Response<>(0, cancelled.getMsg(), null);
+        }
+        Response cor;
+        try {
+            cor = create(oai.getNewOrderInfo(), headers);
+        } catch (RuntimeException e) {
+            cor = new Response<>(0, e.getMessage(), null);
+        }
+        if (cor.getStatus() == 1) {
+            return new Response<>(1, "Success", cor.getData());
+        }
+        oldOrder.setStatus(oldStatus);
+        saveChanges(oldOrder, headers);
+        ShardedOrderServiceImpl.LOGGER.error("[alterOrder][Alter Order Fail][Old order restored][OrderId: {}, message: {}]", oldOrder.getId(), cor.getMsg());
+        return new Response<>(0, cor.getMsg(), null);
+    }
+
+    @Override
+    public Response queryAlreadySoldOrders(Date travelDate, String trainNumber, HttpHeaders headers) {
+        int shard = orderShardRouter.shardFor(trainNumber, StringUtils.Date2String(travelDate));
+        return orderShardRouter.inShard(shard, () -> orderServiceImpl.queryAlreadySoldOrders(travelDate, trainNumber, headers));
+    }
+
+    @Override
+    public Response getAllOrders(HttpHeaders headers) {
+        ArrayList<Order> orders = new ArrayList<>();
+        for (int shard = 0; shard < orderShardRouter.shardCount(); shard++) {
+            Response result = orderShardRouter.inShard(shard, () -> orderServiceImpl.getAllOrders(headers));
+            if (result.getData() != null) {
+                orders.addAll((List<Order>) result.getData());
+            }
+        }
+        if (orders.isEmpty()) {
+            return new Response<>(0, "No Content.", null);
+        }
+        return new Response<>(1, "Success.", orders);
+    }
+
+    @Override
+    public Response modifyOrder(String orderId, int status, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(orderId), () -> orderServiceImpl.modifyOrder(orderId, status, headers));
+    }
+
+    @Override
+    public Response modifyOrders(OrderStatusChangeInfo info, HttpHeaders headers) {
+        List<String> orderIds = info.getOrderIds() == null ? new ArrayList<>() : info.getOrderIds();
+        Map<Integer, List<String>> idsByShard = new HashMap<>();
+        for (String orderId : orderIds) {
+            idsByShard.computeIfAbsent(locateOrder(orderId), k -> new ArrayList<>()).add(orderId);
+        }
+        Map<String, OrderStatusChangeResult> resultMap = new HashMap<>();
+        for (Map.Entry<Integer, List<String>> entry : idsByShard.entrySet()) {
+            OrderStatusChangeInfo shardInfo = new OrderStatusChangeInfo(entry.getValue(), info.getStatus());
+            Response result = orderShardRouter.inShard(entry.getKey(), () -> orderServiceImpl.modifyOrders(shardInfo, headers));
+            for (OrderStatusChangeResult changeResult : (List<OrderStatusChangeResult>) result.getData()) {
+                resultMap.put(changeResult.getOrderId(), changeResult);
+            }
+        }
+        List<OrderStatusChangeResult> results = new ArrayList<>(orderIds.size());
+        for (String orderId : orderIds) {
+            results.add(resultMap.get(orderId));
+        }
+        return new Response<>(1, "Modify Orders Finished", results);
+    }
+
+    @Override
+    public Response queryOrdersByTrain(String trainNumber, String travelDate, List<Integer> statuses, String afterId, int size, HttpHeaders headers) {
+        int shard = orderShardRouter.shardFor(trainNumber, travelDate);
+        return orderShardRouter.inShard(shard, () -> orderServiceImpl.queryOrdersByTrain(trainNumber, travelDate, statuses, afterId, size, headers));
+    }
+
+    @Override
+    public Response getOrderPrice(String orderId, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(orderId), () -> orderServiceImpl.getOrderPrice(orderId, headers));
+    }
+
+    @Override
+    public Response payOrder(String orderId, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(orderId), () -> orderServiceImpl.payOrder(orderId, headers));
+    }
+
+    @Override
+    public Response getOrderById(String orderId, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(orderId), () -> orderServiceImpl.getOrderById(orderId, headers));
+    }
+
+    @Override
+    public Response checkSecurityAboutOrder(Date checkDate, String accountId, HttpHeaders headers) {
+        OrderSecurity security = new OrderSecurity();
+        for (Integer shard : locateAccount(accountId)) {
+            Response result = orderShardRouter.inShard(shard, () -> orderServiceImpl.checkSecurityAboutOrder(checkDate, accountId, headers));
+            OrderSecurity shardSecurity = (OrderSecurity) result.getData();
+            security.setOrderNumInLastOneHour(security.getOrderNumInLastOneHour() + shardSecurity.getOrderNumInLastOneHour());
+            security.setOrderNumOfValidOrder(security.getOrderNumOfValidOrder() + shardSecurity.getOrderNumOfValidOrder());
+        }
+        return new Response<>(1, "Check Security Success . ", security);
+    }
+
+    @Override
+    public void initOrder(Order order, HttpHeaders headers) {
+        int shard = orderShardRouter.shardFor(order.getTrainNumber(), order.getTravelDate());
+        orderShardRouter.inShard(shard, () -> {
+            orderServiceImpl.initOrder(order, headers);
+            return null;
+        });
+        indexOrder(new Response<>(1, null, order), shard);
+    }
+
+    @Override
+    public Response deleteOrder(String orderId, HttpHeaders headers) {
+        Response result = orderShardRouter.inShard(locateOrder(orderId), () -> orderServiceImpl.deleteOrder(orderId, headers));
+        if (result.getStatus() == 1) {
+            unindexOrder(orderId);
+        }
+        return result;
+    }
+
+    @Override
+    public Response getSoldTickets(Seat seatRequest, HttpHeaders headers) {
+        int shard = orderShardRouter.shardFor(seatRequest.getTrainNumber(), seatRequest.getTravelDate());
+        return orderShardRouter.inShard(shard, () -> orderServiceImpl.getSoldTickets(seatRequest, headers));
+    }
+
+    @Override
+    public Response addNewOrder(Order order, HttpHeaders headers) {
+        int shard = orderShardRouter.shardFor(order.getTrainNumber(), order.getTravelDate());
+        Response result = orderShardRouter.inShard(shard, () -> orderServiceImpl.addNewOrder(order, headers));
+        indexOrder(result, shard);
+        return result;
+    }
+
+    @Override
+    public Response updateOrder(Order order, HttpHeaders headers) {
+        return orderShardRouter.inShard(locateOrder(order.getId()), () -> orderServiceImpl.updateOrder(order, headers));
+    }
+
+    private void indexOrder(Response result, int shard) {
+        if (result.getStatus() != 1 || !(result.getData() instanceof Order)) {
+            return;
+        }
+        Order order = (Order) result.getData();
+        try {
+            orderShardRouter.inShard(OrderShardRouter.DIRECTORY_SHARD,
+                    () -> orderShardIndexRepository.save(new OrderShardIndex(order.getId(), order.getAccountId(), shard)));
+        } catch (Exception e) {
+            // the order stays reachable by id through the shard scan in locateOrder
+            ShardedOrderServiceImpl.LOGGER.error("[indexOrder][Index order shard fail][OrderId: {}, shard: {}, exception: {}]", order.getId(), shard, e.getMessage());
+        }
+    }
+
+    private void unindexOrder(String orderId) {
+        try {
+            orderShardRouter.inShard(OrderShardRouter.DIRECTORY_SHARD, () -> {
+                orderShardIndexRepository.deleteById(orderId);
+                return null;
+            });
+        } catch (Exception e) {
+            // a stale entry only points the lookup of a removed order at its old shard
+            ShardedOrderServiceImpl.LOGGER.warn("[unindexOrder][Remove order shard index fail][OrderId: {}, exception: {}]", orderId, e.getMessage());
+        }
+    }
+
+    private int locateOrder(String orderId) {
+        Optional<OrderShardIndex> index = orderShardRouter.inShard(OrderShardRouter.DIRECTORY_SHARD,
+                () -> orderShardIndexRepository.findById(orderId));
+        if (index.isPresent()) {
+            return index.get().getShard();
+        }
+        for (int shard = 0; shard < orderShardRouter.shardCount(); shard++) {
+            if (orderShardRouter.inShard(shard, () -> orderRepository.findByIdInAllTiers(orderId)).isPresent()) {
+                return shard;
+            }
+        }
+        return OrderShardRouter.DIRECTORY_SHARD;
+    }
+
+    private List<Integer> locateAccount(String accountId) {
+        return orderShardRouter.inShard(OrderShardRouter.DIRECTORY_SHARD,
+                () -> orderShardIndexRepository.findShardsByAccountId(accountId));
+    }
+}
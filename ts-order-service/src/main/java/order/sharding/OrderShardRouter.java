@@ -0,0 +1,69 @@
+package order.sharding;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Maps (trainNumber, travelDate) to a logical shard, so all orders of one
+ * train on one day live together. With sharding disabled there is a single
+ * shard and routing is a no-op.
+ *
+ * @author fdse
+ */
+@Component
+public class OrderShardRouter {
+
+    /**
+     * shard holding the order id and account id index
+     */
+    public static final int DIRECTORY_SHARD = 0;
+
+    @Autowired
+    private OrderShardingProperties properties;
+
+    public OrderShardRouter() {
+        //Default Constructor
+    }
+
+    public OrderShardRouter(OrderShardingProperties properties) {
+        this.properties = properties;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled() && properties.getShards().size() > 1;
+    }
+
+    public int shardCount() {
+        return isEnabled() ? properties.getShards().size() : 1;
+    }
+
+    public int shardFor(String trainNumber, String travelDate) {
+        if (!isEnabled()) {
+            return DIRECTORY_SHARD;
+        }
+        // only the day counts, "yyyy-MM-dd" and "yyyy-MM-dd HH:mm:ss" map to the same shard
+        String day = travelDate != null && travelDate.length() > 10 ? travelDate.substring(0, 10) : travelDate;
+        return Math.floorMod((trainNumber + "|" + day).hashCode(), shardCount());
+    }
+
+    public <T> T inShard(int shard, Supplier<T> action) {
+        Integer previous = ShardContext.get();
+        ShardContext.set(shard);
+        try {
+            return action.get();
+        } finally {
+            ShardContext.set(previous);
+        }
+    }
+
+    public void forEachShard(Runnable action) {
+        for (int shard = 0; shard < shardCount(); shard++) {
+            inShard(shard, () -> {
+                action.run();
+                return null;
+            });
+        }
+    }
+}
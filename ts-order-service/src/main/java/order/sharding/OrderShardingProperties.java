@@ -0,0 +1,36 @@
+package order.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author fdse
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "order.sharding")
+public class OrderShardingProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * one entry per logical shard, shard 0 also holds the shard index
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    @Data
+    public static class Shard {
+
+        private String url;
+
+        private String username;
+
+        private String password;
+
+        private String driverClassName;
+    }
+}
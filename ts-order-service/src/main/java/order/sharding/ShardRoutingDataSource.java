@@ -0,0 +1,18 @@
+package order.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Hands out connections of the shard set in ShardContext, the directory
+ * shard when none is set.
+ *
+ * @author fdse
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.get();
+        return shard == null ? OrderShardRouter.DIRECTORY_SHARD : shard;
+    }
+}
@@ -0,0 +1,77 @@
+package order.replica;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@RunWith(JUnit4.class)
+public class ReplicaReadAspectTest {
+
+    private ReplicaReadAspect aspect = new ReplicaReadAspect();
+
+    private ReadWriteProperties properties = new ReadWriteProperties();
+
+    private ReplicaRead replicaRead = Mockito.mock(ReplicaRead.class);
+
+    @Before
+    public void setUp() {
+        properties.setEnabled(true);
+        properties.setMaxStalenessMs(1000);
+        properties.setStickyWindowMs(60000);
+        properties.setHeartbeatIntervalMs(500);
+        RecentOrderWrites recentOrderWrites = new RecentOrderWrites();
+        ReflectionTestUtils.setField(recentOrderWrites, "properties", properties);
+        ReflectionTestUtils.setField(aspect, "properties", properties);
+        ReflectionTestUtils.setField(aspect, "recentOrderWrites", recentOrderWrites);
+        Mockito.when(replicaRead.value()).thenReturn("order");
+    }
+
+    @After
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testReadWithoutWriteUsesEndpointStaleness() throws Throwable {
+        ReplicaReadContext context = route(null);
+        Assert.assertFalse(context.isPrimaryRequired());
+        Assert.assertEquals(1000, context.getMaxStalenessMs());
+    }
+
+    @Test
+    public void testReadRightAfterWriteGoesToPrimary() throws Throwable {
+        Assert.assertTrue(route(System.currentTimeMillis()).isPrimaryRequired());
+    }
+
+    @Test
+    public void testReadAfterWriteNeedsReplicaThatCaughtUp() throws Throwable {
+        long writtenAt = System.currentTimeMillis() - 800;
+        ReplicaReadContext context = route(writtenAt);
+        Assert.assertFalse(context.isPrimaryRequired());
+        //lag is measured up to one heartbeat ago, so the replica must be within the write minus that
+        Assert.assertTrue(context.getMaxStalenessMs() <= System.currentTimeMillis() - writtenAt - 500);
+        Assert.assertTrue(context.getMaxStalenessMs() < 1000);
+    }
+
+    private ReplicaReadContext route(Long writtenAt) throws Throwable {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (writtenAt != null) {
+            request.addHeader(RecentOrderWrites.WRITTEN_AT_HEADER, String.valueOf(writtenAt));
+        }
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, new MockHttpServletResponse()));
+        ProceedingJoinPoint joinPoint = Mockito.mock(ProceedingJoinPoint.class);
+        Mockito.when(joinPoint.getArgs()).thenReturn(new Object[]{"order_id"});
+        Mockito.when(joinPoint.proceed()).thenAnswer(invocation -> ReplicaReadContext.get());
+        return (ReplicaReadContext) aspect.route(joinPoint, replicaRead);
+    }
+}
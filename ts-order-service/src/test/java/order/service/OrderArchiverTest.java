@@ -0,0 +1,130 @@
+package order.service;
+
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.util.StringUtils;
+import order.entity.ArchivedOrder;
+import order.entity.Order;
+import order.repository.ArchivedOrderRepository;
+import order.repository.OrderRepository;
+import order.sharding.OrderShardRouter;
+import order.sharding.OrderShardingProperties;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JUnit4.class)
+public class OrderArchiverTest {
+
+    @InjectMocks
+    private OrderArchiver orderArchiver;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private ArchivedOrderRepository archivedOrderRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private OrderShardRouter orderShardRouter = new OrderShardRouter(new OrderShardingProperties());
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(orderArchiver, "horizonDays", 30);
+        ReflectionTestUtils.setField(orderArchiver, "terminalGraceDays", 1);
+        ReflectionTestUtils.setField(orderArchiver, "batchSize", 2);
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    public void testArchiveSelectsByHorizons() {
+        Mockito.when(orderRepository.findArchiveCandidates(Mockito.anyString(), Mockito.anyList(), Mockito.anyString(), Mockito.anyInt()))
+                .thenReturn(new ArrayList<>());
+        long now = System.currentTimeMillis();
+        orderArchiver.archive();
+
+        ArgumentCaptor<String> horizon = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> terminalHorizon = ArgumentCaptor.forClass(String.class);
+        Mockito.verify(orderRepository).findArchiveCandidates(horizon.capture(),
+                Mockito.eq(Arrays.asList(OrderStatus.CHANGE.getCode(), OrderStatus.CANCEL.getCode(), OrderStatus.REFUNDS.getCode(), OrderStatus.USED.getCode())),
+                terminalHorizon.capture(), Mockito.eq(2));
+        //every order travelled before the horizon, terminal ones already a day after travel
+        assertNear(now - TimeUnit.DAYS.toMillis(30), horizon.getValue());
+        assertNear(now - TimeUnit.DAYS.toMillis(1), terminalHorizon.getValue());
+    }
+
+    @Test
+    public void testArchiveMovesBatchesUntilShort() {
+        ArrayList<Order> first = orders("o1", "o2");
+        ArrayList<Order> second = orders("o3");
+        Mockito.when(orderRepository.findArchiveCandidates(Mockito.anyString(), Mockito.anyList(), Mockito.anyString(), Mockito.anyInt()))
+                .thenReturn(first).thenReturn(second);
+        orderArchiver.archive();
+
+        ArgumentCaptor<List<ArchivedOrder>> archived = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(archivedOrderRepository, Mockito.times(2)).saveAll(archived.capture());
+        Assert.assertEquals(Arrays.asList("o1", "o2"), ids(archived.getAllValues().get(0)));
+        Assert.assertEquals(Arrays.asList("o3"), ids(archived.getAllValues().get(1)));
+        Mockito.verify(orderRepository).deleteInBatch(first);
+        Mockito.verify(orderRepository).deleteInBatch(second);
+        Mockito.verify(transactionTemplate, Mockito.times(2)).execute(Mockito.any());
+    }
+
+    @Test
+    public void testArchiveAgainMovesNothing() {
+        Mockito.when(orderRepository.findArchiveCandidates(Mockito.anyString(), Mockito.anyList(), Mockito.anyString(), Mockito.anyInt()))
+                .thenReturn(orders("o1")).thenReturn(new ArrayList<>());
+        orderArchiver.archive();
+        orderArchiver.archive();
+
+        //the moved order left the hot table, the second run finds and writes nothing
+        ArgumentCaptor<List<ArchivedOrder>> archived = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(archivedOrderRepository, Mockito.times(2)).saveAll(archived.capture());
+        Assert.assertEquals(Arrays.asList("o1"), ids(archived.getAllValues().get(0)));
+        Assert.assertTrue(archived.getAllValues().get(1).isEmpty());
+    }
+
+    private void assertNear(long expected, String date) {
+        long actual = StringUtils.String2Date(date).getTime();
+        Assert.assertTrue(date, Math.abs(expected - actual) < TimeUnit.MINUTES.toMillis(1));
+    }
+
+    private ArrayList<Order> orders(String... ids) {
+        ArrayList<Order> orders = new ArrayList<>();
+        for (String id : ids) {
+            Order order = new Order();
+            order.setId(id);
+            order.setStatus(OrderStatus.USED.getCode());
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private List<String> ids(List<ArchivedOrder> archivedOrders) {
+        List<String> ids = new ArrayList<>();
+        for (ArchivedOrder archivedOrder : archivedOrders) {
+            ids.add(archivedOrder.getId());
+        }
+        return ids;
+    }
+}
@@ -1,16 +1,24 @@
 package order.service;
 
 
+import edu.fudan.common.entity.OrderEventType;
 import edu.fudan.common.entity.OrderSecurity;
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.entity.OrderStatusChangeInfo;
+import edu.fudan.common.entity.OrderStatusChangeResult;
 import edu.fudan.common.entity.Seat;
+import edu.fudan.common.outbox.OrderOutbox;
+import edu.fudan.common.outbox.OrderOutboxRepository;
 import edu.fudan.common.util.Response;
 import order.entity.*;
+import order.replica.RecentOrderWrites;
 import order.repository.OrderRepository;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -20,6 +28,8 @@ import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
@@ -36,6 +46,12 @@ public class OrderServiceImplTest {
     @Mock
     private OrderRepository orderRepository;
 
+    @Mock
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Mock
+    private RecentOrderWrites recentOrderWrites;
+
     @Mock
     private RestTemplate restTemplate;
 
@@ -67,7 +83,7 @@ public class OrderServiceImplTest {
     @Test
     public void testFindOrderById1() {
         String id = UUID.randomUUID().toString();
-        Mockito.when(orderRepository.findById(Mockito.any(String.class))).thenReturn(Optional.empty());
+        Mockito.when(orderRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.empty());
         Response result = orderServiceImpl.findOrderById(id, headers);
         Assert.assertEquals(new Response<>(0, "No Content by this id", null), result);
     }
@@ -76,7 +92,7 @@ public class OrderServiceImplTest {
     public void testFindOrderById2() {
         String id = UUID.randomUUID().toString();
         Order order = new Order();
-        Mockito.when(orderRepository.findById(Mockito.any(String.class))).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.of(order));
         Response result = orderServiceImpl.findOrderById(id, headers);
         Assert.assertEquals(new Response<>(1, "Success", order), result);
     }
@@ -101,6 +117,58 @@ public class OrderServiceImplTest {
         Mockito.when(orderRepository.save(Mockito.any(Order.class))).thenReturn(order);
         Response result = orderServiceImpl.create(order, headers);
         Assert.assertEquals("Success", result.getMsg());
+        Mockito.verify(orderOutboxRepository, times(1)).save(Mockito.any(OrderOutbox.class));
+    }
+
+    @Test
+    public void testCreateOrders() {
+        Order first = new Order();
+        first.setAccountId("test-account");
+        Order second = new Order();
+        second.setAccountId("test-account");
+        List<Order> orders = Arrays.asList(first, second);
+        Mockito.when(orderRepository.findByAccountId(Mockito.any(String.class))).thenReturn(new ArrayList<>());
+        Mockito.when(orderRepository.saveAll(orders)).thenReturn(orders);
+        Response result = orderServiceImpl.createOrders(orders, headers);
+        Assert.assertEquals(orders, result.getData());
+        Mockito.verify(orderRepository, times(1)).findByAccountId("test-account");
+        Mockito.verify(orderOutboxRepository, times(2)).save(Mockito.any(OrderOutbox.class));
+    }
+
+    @Test
+    public void testRebookOrder() {
+        Order stored = new Order();
+        stored.setId("order_id");
+        stored.setTrainNumber("G1234");
+        stored.setSeatNumber("5");
+        stored.setStatus(OrderStatus.PAID.getCode());
+        Order rebooked = new Order();
+        rebooked.setId("order_id");
+        rebooked.setTrainNumber("G1236");
+        rebooked.setSeatNumber("7");
+        rebooked.setStatus(OrderStatus.CHANGE.getCode());
+        Mockito.when(orderRepository.findByIdIn(Collections.singletonList("order_id"))).thenReturn(new ArrayList<>(Collections.singletonList(stored)));
+        Mockito.when(orderRepository.save(stored)).thenReturn(stored);
+        Response result = orderServiceImpl.rebookOrder(rebooked, headers);
+        Assert.assertEquals("G1236", ((Order) result.getData()).getTrainNumber());
+        Assert.assertEquals("7", ((Order) result.getData()).getSeatNumber());
+        Mockito.verify(orderOutboxRepository, times(1)).save(Mockito.any(OrderOutbox.class));
+
+        //the order is already rebooked, a second rebook must not pass
+        Assert.assertEquals(new Response<>(0, "Order status changed, can't rebook", null), orderServiceImpl.rebookOrder(rebooked, headers));
+    }
+
+    @Test
+    public void testMoveOutRecordsMove() {
+        Order order = new Order();
+        order.setId("order_id");
+        order.setStatus(OrderStatus.CHANGE.getCode());
+        Mockito.when(orderRepository.findById("order_id")).thenReturn(Optional.of(order));
+        Assert.assertEquals(1, orderServiceImpl.moveOut("order_id").getStatus().intValue());
+        Mockito.verify(orderRepository).deleteById("order_id");
+        ArgumentCaptor<OrderOutbox> events = ArgumentCaptor.forClass(OrderOutbox.class);
+        Mockito.verify(orderOutboxRepository).save(events.capture());
+        Assert.assertEquals(OrderEventType.MOVED.name(), events.getValue().getEventType());
     }
 
     @Test
@@ -143,6 +211,26 @@ public class OrderServiceImplTest {
         Assert.assertEquals("Success", result.getMsg());
     }
 
+    @Test
+    public void testAlterOrderRecordsCancellation() {
+        Order oldOrder = new Order();
+        oldOrder.setId("old_order_id");
+        oldOrder.setStatus(OrderStatus.PAID.getCode());
+        Order newOrder = new Order();
+        OrderAlterInfo oai = new OrderAlterInfo("account_id", "old_order_id", "login_token", newOrder);
+        //the repository hands back the same managed instance on every read
+        Mockito.when(orderRepository.findById("old_order_id")).thenReturn(Optional.of(oldOrder));
+        Mockito.when(orderRepository.save(Mockito.any(Order.class))).then(invocation -> invocation.getArgument(0));
+        Mockito.when(orderRepository.findByAccountId(Mockito.any())).thenReturn(new ArrayList<>());
+        Assert.assertEquals(1, orderServiceImpl.alterOrder(oai, headers).getStatus().intValue());
+
+        ArgumentCaptor<OrderOutbox> events = ArgumentCaptor.forClass(OrderOutbox.class);
+        Mockito.verify(orderOutboxRepository, times(2)).save(events.capture());
+        Assert.assertEquals("old_order_id", events.getAllValues().get(0).getOrderId());
+        Assert.assertEquals(OrderEventType.CANCELLED.name(), events.getAllValues().get(0).getEventType());
+        Assert.assertEquals(OrderEventType.CREATED.name(), events.getAllValues().get(1).getEventType());
+    }
+
     @Test
     public void testQueryOrders() {
         ArrayList<Order> list = new ArrayList<>();
@@ -151,7 +239,7 @@ public class OrderServiceImplTest {
         order.setBoughtDate("2023-01-01 10:00:00");
         order.setTravelDate("2023-01-02 10:00:00");
         list.add(order);
-        Mockito.when(orderRepository.findByAccountId(Mockito.any(String.class))).thenReturn(list);
+        Mockito.when(orderRepository.findByAccountIdInAllTiers(Mockito.any(String.class))).thenReturn(list);
         OrderInfo qi = new OrderInfo();
         qi.setEnableStateQuery(true);
         qi.setEnableBoughtDateQuery(false);
@@ -167,7 +255,7 @@ public class OrderServiceImplTest {
     @Test
     public void testQueryOrdersForRefresh() {
         ArrayList<Order> list = new ArrayList<>();
-        Mockito.when(orderRepository.findByAccountId(Mockito.any(String.class))).thenReturn(list);
+        Mockito.when(orderRepository.findByAccountIdInAllTiers(Mockito.any(String.class))).thenReturn(list);
         //mock queryForStationId()
         Response<List<String>> response = new Response<>();
         ResponseEntity<Response<List<String>>> re = new ResponseEntity<>(response, HttpStatus.OK);
@@ -246,7 +334,7 @@ public class OrderServiceImplTest {
 
     @Test
     public void testGetAllOrders1() {
-        Mockito.when(orderRepository.findAll()).thenReturn(null);
+        Mockito.when(orderRepository.findAllInAllTiers()).thenReturn(null);
         Response result = orderServiceImpl.getAllOrders(headers);
         Assert.assertEquals(new Response<>(0, "No Content.", null), result);
     }
@@ -255,7 +343,7 @@ public class OrderServiceImplTest {
     public void testGetAllOrders2() {
         ArrayList<Order> orders = new ArrayList<>();
         orders.add(new Order());
-        Mockito.when(orderRepository.findAll()).thenReturn(orders);
+        Mockito.when(orderRepository.findAllInAllTiers()).thenReturn(orders);
         Response result = orderServiceImpl.getAllOrders(headers);
         Assert.assertEquals(new Response<>(1, "Success.", orders), result);
     }
@@ -276,6 +364,27 @@ public class OrderServiceImplTest {
         Assert.assertEquals("Modify Order Success", result.getMsg());
     }
 
+    @Test
+    public void testModifyOrders() {
+        Order paidOrder = new Order();
+        paidOrder.setId("paid-order");
+        Order usedOrder = new Order();
+        usedOrder.setId("used-order");
+        usedOrder.setStatus(OrderStatus.USED.getCode());
+        ArrayList<Order> orders = new ArrayList<>();
+        orders.add(paidOrder);
+        orders.add(usedOrder);
+        Mockito.when(orderRepository.findByIdIn(Mockito.anyCollection())).thenReturn(orders);
+        OrderStatusChangeInfo info = new OrderStatusChangeInfo(Arrays.asList("paid-order", "used-order", "missing-order"),
+                OrderStatus.COLLECTED.getCode());
+        Response<List<OrderStatusChangeResult>> result = orderServiceImpl.modifyOrders(info, headers);
+        Assert.assertEquals(1, result.getData().get(0).getStatus());
+        Assert.assertEquals("Order Status Wrong", result.getData().get(1).getMsg());
+        Assert.assertEquals("Order Not Found", result.getData().get(2).getMsg());
+        Assert.assertEquals(OrderStatus.COLLECTED.getCode(), paidOrder.getStatus());
+        Mockito.verify(orderOutboxRepository, times(1)).save(Mockito.any(OrderOutbox.class));
+    }
+
     @Test
     public void testGetOrderPrice1() {
         Mockito.when(orderRepository.findById(Mockito.any(String.class))).thenReturn(Optional.empty());
@@ -310,7 +419,7 @@ public class OrderServiceImplTest {
 
     @Test
     public void testGetOrderById1() {
-        Mockito.when(orderRepository.findById(Mockito.any(String.class))).thenReturn(Optional.empty());
+        Mockito.when(orderRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.empty());
         Response result = orderServiceImpl.getOrderById(UUID.randomUUID().toString(), headers);
         Assert.assertEquals(new Response<>(0, "Order Not Found", null), result);
     }
@@ -318,7 +427,7 @@ public class OrderServiceImplTest {
     @Test
     public void testGetOrderById2() {
         Order order = new Order();
-        Mockito.when(orderRepository.findById(Mockito.any(String.class))).thenReturn(Optional.of(order));
+        Mockito.when(orderRepository.findByIdInAllTiers(Mockito.any(String.class))).thenReturn(Optional.of(order));
         Response result = orderServiceImpl.getOrderById(UUID.randomUUID().toString(), headers);
         Assert.assertEquals(new Response<>(1, "Success.", order), result);
     }
@@ -0,0 +1,151 @@
+package order.service;
+
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.util.Response;
+import order.entity.Order;
+import order.entity.OrderAlterInfo;
+import order.entity.OrderShardIndex;
+import order.repository.OrderRepository;
+import order.repository.OrderShardIndexRepository;
+import order.sharding.OrderShardRouter;
+import order.sharding.OrderShardingProperties;
+import order.sharding.ShardContext;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+public class ShardedOrderServiceImplTest {
+
+    @InjectMocks
+    private ShardedOrderServiceImpl shardedOrderServiceImpl;
+
+    @Mock
+    private OrderServiceImpl orderServiceImpl;
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderShardIndexRepository orderShardIndexRepository;
+
+    private HttpHeaders headers = new HttpHeaders();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        OrderShardingProperties properties = new OrderShardingProperties();
+        properties.setEnabled(true);
+        properties.setShards(Arrays.asList(new OrderShardingProperties.Shard(), new OrderShardingProperties.Shard(),
+                new OrderShardingProperties.Shard()));
+        ReflectionTestUtils.setField(shardedOrderServiceImpl, "orderShardRouter", new OrderShardRouter(properties));
+    }
+
+    @Test
+    public void testAlterOrderRestoresOldOrderWhenCreateFails() {
+        Order oldOrder = new Order();
+        oldOrder.setId("old_order_id");
+        oldOrder.setStatus(OrderStatus.PAID.getCode());
+        OrderAlterInfo oai = new OrderAlterInfo();
+        oai.setPreviousOrderId("old_order_id");
+        Order newOrder = new Order();
+        newOrder.setTrainNumber("G1234");
+        newOrder.setTravelDate("2026-10-20");
+        oai.setNewOrderInfo(newOrder);
+        Mockito.when(orderShardIndexRepository.findById("old_order_id"))
+                .thenReturn(Optional.of(new OrderShardIndex("old_order_id", "account_id", 1)));
+        Mockito.when(orderServiceImpl.findOrderById("old_order_id", headers)).thenReturn(new Response<>(1, "Success", oldOrder));
+        List<Integer> savedStatuses = new ArrayList<>();
+        List<Integer> savedShards = new ArrayList<>();
+        Mockito.when(orderServiceImpl.saveChanges(oldOrder, headers)).thenAnswer(inv -> {
+            savedStatuses.add(oldOrder.getStatus());
+            savedShards.add(ShardContext.get());
+            return new Response<>(1, "Success", oldOrder);
+        });
+        Mockito.when(orderServiceImpl.create(newOrder, headers)).thenThrow(new IllegalStateException("shard down"));
+        Response result = shardedOrderServiceImpl.alterOrder(oai, headers);
+        Assert.assertEquals(0, result.getStatus().intValue());
+        Assert.assertEquals(Arrays.asList(OrderStatus.CANCEL.getCode(), OrderStatus.PAID.getCode()), savedStatuses);
+        Assert.assertEquals(Arrays.asList(1, 1), savedShards);
+    }
+
+    @Test
+    public void testLocateOrderMissingFromIndex() {
+        Order order = new Order();
+        order.setId("order_id");
+        Mockito.when(orderShardIndexRepository.findById("order_id")).thenReturn(Optional.empty());
+        Mockito.when(orderRepository.findByIdInAllTiers("order_id"))
+                .thenAnswer(inv -> Integer.valueOf(2).equals(ShardContext.get()) ? Optional.of(order) : Optional.empty());
+        List<Integer> shards = new ArrayList<>();
+        Mockito.when(orderServiceImpl.findOrderById("order_id", headers)).thenAnswer(inv -> {
+            shards.add(ShardContext.get());
+            return new Response<>(1, "Success", order);
+        });
+        Response result = shardedOrderServiceImpl.findOrderById("order_id", headers);
+        Assert.assertEquals(new Response<>(1, "Success", order), result);
+        Assert.assertEquals(Collections.singletonList(2), shards);
+    }
+
+    @Test
+    public void testDeleteOrderOnIndexedShard() {
+        Mockito.when(orderShardIndexRepository.findById("order_id"))
+                .thenReturn(Optional.of(new OrderShardIndex("order_id", "account_id", 1)));
+        List<Integer> shards = new ArrayList<>();
+        Mockito.when(orderServiceImpl.deleteOrder("order_id", headers)).thenAnswer(inv -> {
+            shards.add(ShardContext.get());
+            return new Response<>(1, "Delete Order Success", null);
+        });
+        Mockito.doAnswer(inv -> {
+            shards.add(ShardContext.get());
+            return null;
+        }).when(orderShardIndexRepository).deleteById("order_id");
+        Response result = shardedOrderServiceImpl.deleteOrder("order_id", headers);
+        Assert.assertEquals(1, result.getStatus().intValue());
+        Assert.assertEquals(Arrays.asList(1, OrderShardRouter.DIRECTORY_SHARD), shards);
+        Mockito.verify(orderRepository, Mockito.never()).findByIdInAllTiers("order_id");
+    }
+
+    @Test
+    public void testRebookOrderMovesShardUnderSameId() {
+        Order order = new Order();
+        order.setId("order_id");
+        order.setTrainNumber("G1236");
+        order.setTravelDate("2026-10-20");
+        order.setStatus(OrderStatus.CHANGE.getCode());
+        OrderShardRouter router = (OrderShardRouter) ReflectionTestUtils.getField(shardedOrderServiceImpl, "orderShardRouter");
+        int to = router.shardFor("G1236", "2026-10-20");
+        int from = (to + 1) % router.shardCount();
+        Mockito.when(orderShardIndexRepository.findById("order_id"))
+                .thenReturn(Optional.of(new OrderShardIndex("order_id", "account_id", from)));
+        Mockito.when(orderRepository.findById("order_id")).thenReturn(Optional.of(new Order()));
+        Mockito.when(orderServiceImpl.rebookOrder(order, headers)).thenReturn(new Response<>(1, "Success", order));
+        List<Integer> shards = new ArrayList<>();
+        Mockito.when(orderServiceImpl.moveIn(order)).thenAnswer(inv -> {
+            shards.add(ShardContext.get());
+            return new Response<>(1, "Success", order);
+        });
+        Mockito.when(orderServiceImpl.moveOut("order_id")).thenAnswer(inv -> {
+            shards.add(ShardContext.get());
+            return new Response<>(1, "Success", order);
+        });
+        Response result = shardedOrderServiceImpl.rebookOrder(order, headers);
+        Assert.assertEquals("order_id", ((Order) result.getData()).getId());
+        Assert.assertEquals(Arrays.asList(to, from), shards);
+        Mockito.verify(orderServiceImpl, Mockito.never()).create(Mockito.any(Order.class), Mockito.any(HttpHeaders.class));
+        Mockito.verify(orderRepository, Mockito.never()).deleteById("order_id");
+    }
+}
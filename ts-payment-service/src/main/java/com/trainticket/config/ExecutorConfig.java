@@ -0,0 +1,35 @@
+package com.trainticket.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * @author fdse
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${payment.async.workers:8}")
+    private int workers;
+
+    @Value("${payment.async.queue-capacity:500}")
+    private int queueCapacity;
+
+    /**
+     * runs the asynchronous payments; a full queue rejects the payment, so the caller fails fast
+     */
+    @Bean
+    public Executor paymentExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workers);
+        executor.setMaxPoolSize(workers);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("PaymentExecutor-");
+        executor.initialize();
+        return executor;
+    }
+}
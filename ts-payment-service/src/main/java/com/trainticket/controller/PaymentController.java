@@ -1,5 +1,6 @@
 package com.trainticket.controller;
 
+import com.trainticket.entity.AsyncPaymentInfo;
 import com.trainticket.entity.Payment;
 import com.trainticket.service.PaymentService;
 import org.slf4j.Logger;
@@ -35,6 +36,12 @@ public class PaymentController {
         return ok(service.pay(info, headers));
     }
 
+    @PostMapping(path = "/payment/async")
+    public HttpEntity payAsync(@RequestBody AsyncPaymentInfo info, @RequestHeader HttpHeaders headers) {
+        PaymentController.LOGGER.info("[payAsync][Pay async][Token: {}, OrderId: {}]", info.getToken(), info.getOrderId());
+        return ok(service.payAsync(info, headers));
+    }
+
     @PostMapping(path = "/payment/money")
     public HttpEntity addMoney(@RequestBody Payment info, @RequestHeader HttpHeaders headers) {
         PaymentController.LOGGER.info("[addMoney][Add money][PaymentId: {}]", info.getId());
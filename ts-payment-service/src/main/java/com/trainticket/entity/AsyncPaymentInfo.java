@@ -0,0 +1,30 @@
+package com.trainticket.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Payment completed in the background and reported back to inside payment
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class AsyncPaymentInfo {
+
+    /**
+     * token of the pending payment at inside payment, sent back with the result
+     */
+    private String token;
+
+    private String orderId;
+
+    private String userId;
+
+    private String price;
+
+    public AsyncPaymentInfo() {
+        //Default Constructor
+    }
+
+}
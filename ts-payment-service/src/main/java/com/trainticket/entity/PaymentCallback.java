@@ -0,0 +1,35 @@
+package com.trainticket.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Result of an asynchronous payment
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class PaymentCallback {
+
+    private String token;
+
+    /**
+     * 1 if the payment succeeded, 0 otherwise
+     */
+    private int status;
+
+    private String msg;
+
+    /**
+     * order and price the payment was made for, checked against the pending payment
+     */
+    private String orderId;
+
+    private String price;
+
+    public PaymentCallback() {
+        //Default Constructor
+    }
+
+}
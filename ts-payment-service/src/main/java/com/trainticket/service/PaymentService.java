@@ -1,5 +1,6 @@
 package com.trainticket.service;
 
+import com.trainticket.entity.AsyncPaymentInfo;
 import com.trainticket.entity.Payment;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
@@ -12,6 +13,15 @@ public interface PaymentService {
 
     Response pay(Payment info, HttpHeaders headers);
 
+    /**
+     * accept a payment, pay it in the background and report the result to inside payment
+     *
+     * @param info    payment and the token to report it with
+     * @param headers headers
+     * @return Response
+     */
+    Response payAsync(AsyncPaymentInfo info, HttpHeaders headers);
+
     Response addMoney(Payment info, HttpHeaders headers);
 
     Response query(HttpHeaders headers);
@@ -1,18 +1,29 @@
 package com.trainticket.service;
 
+import com.trainticket.entity.AsyncPaymentInfo;
 import com.trainticket.entity.Money;
 import com.trainticket.entity.Payment;
+import com.trainticket.entity.PaymentCallback;
 import com.trainticket.repository.AddMoneyRepository;
 import com.trainticket.repository.PaymentRepository;
+import edu.fudan.common.security.jwt.ServiceToken;
 import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author  Administrator
@@ -27,6 +38,16 @@ public class PaymentServiceImpl implements PaymentService{
     @Autowired
     AddMoneyRepository addMoneyRepository;
 
+    @Autowired
+    RestTemplate restTemplate;
+
+    @Autowired
+    @Qualifier("paymentExecutor")
+    Executor paymentExecutor;
+
+    @Value("${payment.async.callback-attempts:3}")
+    int callbackAttempts = 3;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(PaymentServiceImpl.class);
 
     @Override
@@ -45,6 +66,45 @@ public class PaymentServiceImpl implements PaymentService{
         }
     }
 
+    @Override
+    public Response payAsync(AsyncPaymentInfo info, HttpHeaders headers) {
+        Payment payment = new Payment();
+        payment.setOrderId(info.getOrderId());
+        payment.setPrice(info.getPrice());
+        payment.setUserId(info.getUserId());
+        try {
+            paymentExecutor.execute(() -> {
+                Response result = pay(payment, headers);
+                callback(new PaymentCallback(info.getToken(), result.getStatus(), result.getMsg(), info.getOrderId(), info.getPrice()),
+                        ServiceToken.headers("ts-payment-service"));
+            });
+        } catch (RejectedExecutionException e) {
+            PaymentServiceImpl.LOGGER.warn("[payAsync][Payment rejected, executor full][Token: {}, OrderId: {}]", info.getToken(), info.getOrderId());
+            return new Response<>(0, "Payment Busy", null);
+        }
+        return new Response<>(1, "Payment Accepted", info.getToken());
+    }
+
+    /**
+     * Sent with a service token, only services may report results to inside payment.
+     * A callback that never arrives leaves the payment to the expiry at inside payment.
+     */
+    void callback(PaymentCallback result, HttpHeaders headers) {
+        for (int attempt = 1; attempt <= callbackAttempts; attempt++) {
+            try {
+                restTemplate.exchange(
+                        "http://ts-inside-payment-service/api/v1/inside_pay_service/inside_payment/callback",
+                        HttpMethod.POST,
+                        new HttpEntity<>(result, headers),
+                        Response.class);
+                return;
+            } catch (RestClientException e) {
+                PaymentServiceImpl.LOGGER.warn("[callback][Payment callback failed][Token: {}, attempt: {}, error: {}]", result.getToken(), attempt, e.getMessage());
+            }
+        }
+        PaymentServiceImpl.LOGGER.error("[callback][Payment callback given up][Token: {}, status: {}]", result.getToken(), result.getStatus());
+    }
+
     @Override
     public Response addMoney(Payment info, HttpHeaders headers){
         Money addMoney = new Money();
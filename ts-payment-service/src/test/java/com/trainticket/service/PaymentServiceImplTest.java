@@ -1,7 +1,9 @@
 package com.trainticket.service;
 
+import com.trainticket.entity.AsyncPaymentInfo;
 import com.trainticket.entity.Money;
 import com.trainticket.entity.Payment;
+import com.trainticket.entity.PaymentCallback;
 import com.trainticket.repository.AddMoneyRepository;
 import com.trainticket.repository.PaymentRepository;
 import edu.fudan.common.util.Response;
@@ -10,11 +12,16 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,11 +38,15 @@ public class PaymentServiceImplTest {
     @Mock
     private AddMoneyRepository addMoneyRepository;
 
+    @Mock
+    private RestTemplate restTemplate;
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        paymentServiceImpl.paymentExecutor = Runnable::run;
     }
 
     @Test
@@ -55,6 +66,30 @@ public class PaymentServiceImplTest {
         Assert.assertEquals(new Response<>(0, "Pay Failed, order not found with order id", null), result);
     }
 
+    @Test
+    public void testPayAsyncReportsResult() {
+        Mockito.when(paymentRepository.findByOrderId("order_id")).thenReturn(null);
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/inside_payment/callback"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)))
+                .thenThrow(new RestClientException("refused"))
+                .thenReturn(null);
+        Response result = paymentServiceImpl.payAsync(new AsyncPaymentInfo("token", "order_id", "user_id", "100.0"), headers);
+        Assert.assertEquals(new Response<>(1, "Payment Accepted", "token"), result);
+        Mockito.verify(paymentRepository).save(Mockito.any(Payment.class));
+        //a failed callback is retried
+        ArgumentCaptor<HttpEntity> callback = ArgumentCaptor.forClass(HttpEntity.class);
+        Mockito.verify(restTemplate, Mockito.times(2)).exchange(
+                Mockito.contains("/inside_payment/callback"), Mockito.eq(HttpMethod.POST), callback.capture(), Mockito.eq(Response.class));
+        //reported as the payment service, not as the paying user
+        Assert.assertTrue(callback.getValue().getHeaders().getFirst(HttpHeaders.AUTHORIZATION).startsWith("Bearer "));
+        PaymentCallback reported = (PaymentCallback) callback.getValue().getBody();
+        Assert.assertEquals("order_id", reported.getOrderId());
+        Assert.assertEquals("100.0", reported.getPrice());
+    }
+
     @Test
     public void testAddMoney() {
         Payment info = new Payment();
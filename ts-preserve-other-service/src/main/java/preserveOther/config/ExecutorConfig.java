@@ -0,0 +1,40 @@
+package preserveOther.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Pool running the independent stages of a booking.
+ *
+ * @author fdse
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Value("${preserve.executor.core-pool-size:20}")
+    private int corePoolSize;
+
+    @Value("${preserve.executor.max-pool-size:200}")
+    private int maxPoolSize;
+
+    @Value("${preserve.executor.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Bean
+    public Executor preserveExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(maxPoolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("PreserveOtherExecutor-");
+        // a saturated pool runs the stage on the request thread instead of failing the booking
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+}
@@ -1,11 +1,15 @@
 package preserveOther.controller;
 
+import edu.fudan.common.admission.AdmissionControl;
+import edu.fudan.common.entity.AdmissionTicket;
+import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
+import edu.fudan.common.entity.GroupOrderTicketsInfo;
 import edu.fudan.common.entity.OrderTicketsInfo;
 import preserveOther.service.PreserveOtherService;
 
@@ -21,6 +25,9 @@ public class PreserveOtherController {
     @Autowired
     private PreserveOtherService preserveService;
 
+    @Autowired
+    private AdmissionControl admissionControl;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(PreserveOtherController.class);
 
     @GetMapping(path = "/welcome")
@@ -31,9 +38,44 @@ public class PreserveOtherController {
     @CrossOrigin(origins = "*")
     @PostMapping(value = "/preserveOther")
     public HttpEntity preserve(@RequestBody OrderTicketsInfo oti,
+                               @RequestParam(value = "admissionTicket", required = false) String admissionTicket,
                                @RequestHeader HttpHeaders headers) {
         PreserveOtherController.LOGGER.info("[preserve][Preserve Account order][from {} to {} at {}]", oti.getFrom(), oti.getTo(), oti.getDate());
-        return ok(preserveService.preserve(oti, headers));
+        AdmissionTicket admission = admissionControl.admit(oti.getTripId(), oti.getDate(), oti.getSeatType(), admissionTicket, 1);
+        if (admission.getState() != AdmissionTicket.State.ADMITTED) {
+            return ok(new Response<>(0, admission.getMsg(), admission));
+        }
+        Response result = preserveService.preserve(oti, headers);
+        return ok(result);
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/preserveOther/group")
+    public HttpEntity preserveGroup(@RequestBody GroupOrderTicketsInfo goti,
+                                    @RequestParam(value = "admissionTicket", required = false) String admissionTicket,
+                                    @RequestHeader HttpHeaders headers) {
+        PreserveOtherController.LOGGER.info("[preserveGroup][Preserve Account group order][from {} to {} at {}, passengers: {}]", goti.getFrom(), goti.getTo(), goti.getDate(),
+                goti.getContactsIds() == null ? 0 : goti.getContactsIds().size());
+        int passengers = goti.getContactsIds() == null ? 1 : Math.max(1, goti.getContactsIds().size());
+        AdmissionTicket admission = admissionControl.admit(goti.getTripId(), goti.getDate(), goti.getSeatType(), admissionTicket, passengers);
+        if (admission.getState() != AdmissionTicket.State.ADMITTED) {
+            return ok(new Response<>(0, admission.getMsg(), admission));
+        }
+        Response result = preserveService.preserveGroup(goti, headers);
+        return ok(result);
+    }
+
+    /**
+     * poll a ticket of the waiting room
+     *
+     * @param ticketId ticket returned by a booking that had to wait
+     * @return HttpEntity
+     */
+    @CrossOrigin(origins = "*")
+    @GetMapping(value = "/admission/{ticketId}")
+    public HttpEntity pollAdmission(@PathVariable String ticketId) {
+        AdmissionTicket admission = admissionControl.poll(ticketId);
+        return ok(new Response<>(admission.getState() == AdmissionTicket.State.REJECTED ? 0 : 1, admission.getMsg(), admission));
     }
 
 }
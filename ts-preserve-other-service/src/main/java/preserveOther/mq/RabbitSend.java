@@ -22,4 +22,9 @@ public class RabbitSend {
         this.rabbitTemplate.convertAndSend(Queues.queueName, val);
     }
 
+    public void sendBookingCompleted(String val) {
+        logger.info("send booking completed to mq:" + val);
+        this.rabbitTemplate.convertAndSend(Queues.bookingCompletedExchange, "", val);
+    }
+
 }
@@ -1,5 +1,6 @@
 package preserveOther.service;
 
+import edu.fudan.common.entity.GroupOrderTicketsInfo;
 import edu.fudan.common.entity.OrderTicketsInfo;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
@@ -11,4 +12,6 @@ import org.springframework.http.HttpHeaders;
 public interface PreserveOtherService {
 
     Response preserve(OrderTicketsInfo oti, HttpHeaders headers);
+
+    Response preserveGroup(GroupOrderTicketsInfo goti, HttpHeaders headers);
 }
@@ -1,5 +1,6 @@
 package preserveOther.service;
 
+import edu.fudan.common.admission.AdmissionControl;
 import edu.fudan.common.entity.*;
 import edu.fudan.common.util.JsonUtils;
 import edu.fudan.common.util.Response;
@@ -7,6 +8,8 @@ import edu.fudan.common.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -17,9 +20,16 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 import preserveOther.mq.RabbitSend;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author fdse
@@ -36,6 +46,21 @@ public class PreserveOtherServiceImpl implements PreserveOtherService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    @Qualifier("preserveExecutor")
+    private Executor preserveExecutor;
+
+    @Value("${preserve.deadline-ms:10000}")
+    private long deadlineMs = 10000;
+
+    @Value("${preserve.group.max-size:9}")
+    private int maxGroupSize = 9;
+
+    private static final String PRESERVE_TIMEOUT = "Preserve Timeout";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(PreserveOtherServiceImpl.class);
 
     private String getServiceUrl(String serviceName) {
@@ -46,28 +71,12 @@ public class PreserveOtherServiceImpl implements PreserveOtherService {
     public Response preserve(OrderTicketsInfo oti, HttpHeaders httpHeaders) {
 
         PreserveOtherServiceImpl.LOGGER.info("[preserve][Verify Login] Success");
-        //1.detect ticket scalper
-        //PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 1][Check Security]");
-
-        Response result = checkSecurity(oti.getAccountId(), httpHeaders);
-
-        if (result.getStatus() == 0) {
-            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 1][Check Security Fail][AccountId: {}]",oti.getAccountId());
-            return new Response<>(0, result.getMsg(), null);
-        }
-        PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 1][Check Security Complete][AccountId: {}]",oti.getAccountId());
-        //2.Querying contact information -- modification, mediated by the underlying information micro service
-        //PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 2][Find contacts][Contacts Id: {}]", oti.getContactsId());
-
-        Response<Contacts> gcr = getContactsById(oti.getContactsId(), httpHeaders);
-        if (gcr.getStatus() == 0) {
-            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 2][Find Contacts Fail][ContactsId: {},message: {}]",oti.getContactsId(),gcr.getMsg());
-            return new Response<>(0, gcr.getMsg(), null);
-        }
-
-        PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 2][Find contacts Complete][ContactsId: {}]",oti.getContactsId());
-        //3.Check the info of train and the number of remaining tickets
-        //PreserveOtherServiceImpl.LOGGER.info("[Step 3] Check tickets num");
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        //1.detect ticket scalper, 2.query contacts and 3.query the trip do not depend on each other
+        CompletableFuture<Response> securityStage = CompletableFuture.supplyAsync(
+                () -> checkSecurity(oti.getAccountId(), httpHeaders), preserveExecutor);
+        CompletableFuture<Response<Contacts>> contactsStage = CompletableFuture.supplyAsync(
+                () -> getContactsById(oti.getContactsId(), httpHeaders), preserveExecutor);
         TripAllDetailInfo gtdi = new TripAllDetailInfo();
 
         gtdi.setFrom(oti.getFrom());
@@ -76,18 +85,45 @@ public class PreserveOtherServiceImpl implements PreserveOtherService {
         gtdi.setTravelDate(oti.getDate());
         gtdi.setTripId(oti.getTripId());
         PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 3][Check tickets num][TripId: {}]", oti.getTripId());
-        Response<TripAllDetail> response = getTripAllDetailInformation(gtdi, httpHeaders);
+        CompletableFuture<Response<TripAllDetail>> tripStage = CompletableFuture.supplyAsync(
+                () -> getTripAllDetailInformation(gtdi, httpHeaders), preserveExecutor);
+
+        Response result;
+        Response<Contacts> gcr;
+        Response<TripAllDetail> response;
+        try {
+            result = await(securityStage, deadline);
+            if (result.getStatus() == 0) {
+                PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 1][Check Security Fail][AccountId: {}]",oti.getAccountId());
+                return new Response<>(0, result.getMsg(), null);
+            }
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 1][Check Security Complete][AccountId: {}]",oti.getAccountId());
+            gcr = await(contactsStage, deadline);
+            if (gcr.getStatus() == 0) {
+                PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 2][Find Contacts Fail][ContactsId: {},message: {}]",oti.getContactsId(),gcr.getMsg());
+                return new Response<>(0, gcr.getMsg(), null);
+            }
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 2][Find contacts Complete][ContactsId: {}]",oti.getContactsId());
+            response = await(tripStage, deadline);
+        } catch (TimeoutException e) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 1-3][Preserve Timeout][AccountId: {}, TripId: {}]", oti.getAccountId(), oti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        } finally {
+            //a step left behind by a failure or the deadline is not started any more
+            cancel(securityStage, contactsStage, tripStage);
+        }
         TripAllDetail gtdr = response.getData();
-        //LOGGER.info("TripAllDetail : " + gtdr.toString());
+        //LOGGER.info("TripAllDetail:" + gtdr.toString());
         if (response.getStatus() == 0) {
             PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 3][Check tickets num][Search For Trip Detail Information error][TripId: {}, message: {}]", gtdi.getTripId(), response.getMsg());
             return new Response<>(0, response.getMsg(), null);
         } else {
             TripResponse tripResponse = gtdr.getTripResponse();
-            //LOGGER.info("TripResponse : " + tripResponse.toString());
+            //LOGGER.info("TripResponse:" + tripResponse.toString());
             if (oti.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
                 if (tripResponse.getConfortClass() == 0) {
                     PreserveOtherServiceImpl.LOGGER.warn("[preserve][Step 3][Check seat][Check seat is enough][TripId: {}]",oti.getTripId());
+                    admissionControl.soldOut(oti.getTripId(), oti.getDate(), oti.getSeatType());
                     return new Response<>(0, "Seat Not Enough", null);
                 }
             } else {
@@ -120,129 +156,418 @@ public class PreserveOtherServiceImpl implements PreserveOtherService {
         order.setDocumentType(contacts.getDocumentType());
 
 
-        Travel query = new Travel();
-        query.setTrip(trip);
-        query.setStartPlace(oti.getFrom());
-        query.setEndPlace(oti.getTo());
-        query.setDepartureTime(StringUtils.Date2String(new Date()));
-
-
-        HttpEntity requestEntity = new HttpEntity(query, httpHeaders);
-        String basic_service_url = getServiceUrl("ts-basic-service");
-        ResponseEntity<Response<TravelResult>> re = restTemplate.exchange(
-                basic_service_url + "/api/v1/basicservice/basic/travel",
-                HttpMethod.POST,
-                requestEntity,
-                new ParameterizedTypeReference<Response<TravelResult>>() {
-                });
-        if(re.getBody().getStatus() == 0){
-            PreserveOtherServiceImpl.LOGGER.info("[Preserve 3][Get basic travel response status is 0][response is: {}]", re.getBody());
-            return new Response<>(0, re.getBody().getMsg(), null);
+        //the travel service sends the route, train type and prices it looked up with the trip detail
+        TravelResult resultForTravel = gtdr.getTravelResult();
+        if (resultForTravel == null) {
+            Response<TravelResult> re = queryTravelResult(trip, oti, httpHeaders);
+            if (re.getStatus() == 0) {
+                PreserveOtherServiceImpl.LOGGER.info("[Preserve 3][Get basic travel response status is 0][response is: {}]", re);
+                return new Response<>(0, re.getMsg(), null);
+            }
+            resultForTravel = re.getData();
         }
-        TravelResult resultForTravel = re.getBody().getData();
 
         order.setSeatClass(oti.getSeatType());
         PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 4][Do Order][Travel Date][Date is: {}]", oti.getDate().toString());
         order.setTravelDate(oti.getDate());
         order.setTravelTime(gtdr.getTripResponse().getStartTime());
 
-        //Dispatch the seat
+        if (System.currentTimeMillis() > deadline) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 4][Preserve Timeout][TripId: {}]", oti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        }
+        //Hold the seat, it is confirmed with the order id or released when the order fails
         List<String> stationList = resultForTravel.getRoute().getStations();
+        int totalNum;
         if (oti.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
-            int firstClassTotalNum = resultForTravel.getTrainType().getConfortClass();
-            Ticket ticket =
-                    dipatchSeat(oti.getDate(),
-                            order.getTrainNumber(), fromStationName, toStationName,
-                            SeatClass.FIRSTCLASS.getCode(), firstClassTotalNum, stationList, httpHeaders);
+            totalNum = resultForTravel.getTrainType().getConfortClass();
             order.setSeatClass(SeatClass.FIRSTCLASS.getCode());
-            order.setSeatNumber("" + ticket.getSeatNo());
             order.setPrice(resultForTravel.getPrices().get("confortClass"));
         } else {
-            int secondClassTotalNum = resultForTravel.getTrainType().getEconomyClass();
-            Ticket ticket =
-                    dipatchSeat(oti.getDate(),
-                            order.getTrainNumber(), fromStationName, toStationName,
-                            SeatClass.SECONDCLASS.getCode(), secondClassTotalNum, stationList, httpHeaders);
+            totalNum = resultForTravel.getTrainType().getEconomyClass();
             order.setSeatClass(SeatClass.SECONDCLASS.getCode());
-            order.setSeatNumber("" + ticket.getSeatNo());
-
             order.setPrice(resultForTravel.getPrices().get("economyClass"));
         }
+        SeatHold seatHold = holdSeat(oti.getDate(), order.getTrainNumber(), fromStationName, toStationName,
+                order.getSeatClass(), totalNum, stationList, httpHeaders);
+        if (seatHold == null) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 4][Do Order][No Seat Left][TripId: {}, SeatType: {}]", oti.getTripId(), oti.getSeatType());
+            admissionControl.soldOut(oti.getTripId(), oti.getDate(), oti.getSeatType());
+            return new Response<>(0, "No seat left", null);
+        }
+        order.setSeatNumber("" + seatHold.getSeatNo());
         PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 4][Do Order][Order Price][Price is: {}]", order.getPrice());
 
         Response<Order> cor = createOrder(order, httpHeaders);
         if (cor.getStatus() == 0) {
             PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 4][Do Order][Create Order Fail][OrderId: {},  Reason: {}]", order.getId(), cor.getMsg());
+            releaseSeatHold(seatHold.getHoldId(), httpHeaders);
             return new Response<>(0, cor.getMsg(), null);
         }
-
         PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 4][Do Order][Do Order Complete]");
         Response returnResponse = new Response<>(1, "Success.", cor.getMsg());
-        //5.Check insurance options
-        if (oti.getAssurance() == 0) {
-            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Do not need to buy assurance]");
+        //5.assurance, 6.food, 7.consign and 8.notification only need the created order
+        Order createdOrder = cor.getData();
+        confirmSeatHold(seatHold.getHoldId(), createdOrder.getId(), httpHeaders);
+        if (publishBookingCompleted(oti, createdOrder)) {
+            return returnResponse;
+        }
+        //the broker is unreachable, do the side effects within the request
+        String failure = completeInRequest(oti, createdOrder, httpHeaders, deadline);
+        if (failure != null) {
+            returnResponse.setMsg(failure);
+        }
+        return returnResponse;
+    }
+
+    /**
+     * Book one order per passenger of the group. The security check and the
+     * trip are shared, the seats are held together in one call and the orders
+     * are stored in one batch, so either all valid passengers get an order or none.
+     */
+    @Override
+    public Response preserveGroup(GroupOrderTicketsInfo goti, HttpHeaders httpHeaders) {
+        List<String> contactsIds = goti.getContactsIds();
+        if (contactsIds == null || contactsIds.isEmpty() || contactsIds.size() > maxGroupSize) {
+            PreserveOtherServiceImpl.LOGGER.warn("[preserveGroup][Group size invalid][AccountId: {}, max: {}]", goti.getAccountId(), maxGroupSize);
+            return new Response<>(0, "Group size must be between 1 and " + maxGroupSize, null);
+        }
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        OrderTicketsInfo oti = goti.toOrderTicketsInfo(null);
+        CompletableFuture<Response> securityStage = CompletableFuture.supplyAsync(
+                () -> checkSecurity(goti.getAccountId(), httpHeaders), preserveExecutor);
+        List<CompletableFuture<Response<Contacts>>> contactsStages = new ArrayList<>(contactsIds.size());
+        for (String contactsId : contactsIds) {
+            contactsStages.add(CompletableFuture.supplyAsync(() -> getContactsById(contactsId, httpHeaders), preserveExecutor));
+        }
+        TripAllDetailInfo gtdi = new TripAllDetailInfo();
+        gtdi.setFrom(goti.getFrom());
+        gtdi.setTo(goti.getTo());
+        gtdi.setTravelDate(goti.getDate());
+        gtdi.setTripId(goti.getTripId());
+        CompletableFuture<Response<TripAllDetail>> tripStage = CompletableFuture.supplyAsync(
+                () -> getTripAllDetailInformation(gtdi, httpHeaders), preserveExecutor);
+
+        //one result per contacts id, in the order of the request
+        PassengerBookingResult[] results = new PassengerBookingResult[contactsIds.size()];
+        List<Contacts> passengers = new ArrayList<>(contactsIds.size());
+        List<Integer> passengerPositions = new ArrayList<>(contactsIds.size());
+        Response<TripAllDetail> response;
+        try {
+            Response result = await(securityStage, deadline);
+            if (result.getStatus() == 0) {
+                PreserveOtherServiceImpl.LOGGER.error("[preserveGroup][Step 1][Check Security Fail][AccountId: {}]", goti.getAccountId());
+                return new Response<>(0, result.getMsg(), null);
+            }
+            response = await(tripStage, deadline);
+            for (int i = 0; i < contactsIds.size(); i++) {
+                Response<Contacts> gcr = await(contactsStages.get(i), deadline);
+                if (gcr.getStatus() == 0) {
+                    results[i] = new PassengerBookingResult(contactsIds.get(i), 0, gcr.getMsg(), null, null);
+                } else {
+                    passengers.add(gcr.getData());
+                    passengerPositions.add(i);
+                }
+            }
+        } catch (TimeoutException e) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserveGroup][Step 1-3][Preserve Timeout][AccountId: {}, TripId: {}]", goti.getAccountId(), goti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        } finally {
+            cancel(securityStage, tripStage);
+            cancel(contactsStages.toArray(new CompletableFuture[0]));
+        }
+        if (response.getStatus() == 0) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserveGroup][Step 3][Search For Trip Detail Information error][TripId: {}, message: {}]", goti.getTripId(), response.getMsg());
+            return new Response<>(0, response.getMsg(), null);
+        }
+        if (passengers.isEmpty()) {
+            return new Response<>(0, "No passenger could be booked", Arrays.asList(results));
+        }
+        TripAllDetail gtdr = response.getData();
+        TripResponse tripResponse = gtdr.getTripResponse();
+        int leftTickets = goti.getSeatType() == SeatClass.FIRSTCLASS.getCode() ? tripResponse.getConfortClass() : tripResponse.getEconomyClass();
+        if (leftTickets < passengers.size()) {
+            PreserveOtherServiceImpl.LOGGER.warn("[preserveGroup][Step 3][Check seat][Seat Not Enough][TripId: {}, left: {}, passengers: {}]", goti.getTripId(), leftTickets, passengers.size());
+            if (leftTickets == 0) {
+                admissionControl.soldOut(goti.getTripId(), goti.getDate(), goti.getSeatType());
+            }
+            return new Response<>(0, "Seat Not Enough", null);
+        }
+        TravelResult resultForTravel = gtdr.getTravelResult();
+        if (resultForTravel == null) {
+            Response<TravelResult> re = queryTravelResult(gtdr.getTrip(), oti, httpHeaders);
+            if (re.getStatus() == 0) {
+                return new Response<>(0, re.getMsg(), null);
+            }
+            resultForTravel = re.getData();
+        }
+        if (System.currentTimeMillis() > deadline) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserveGroup][Step 4][Preserve Timeout][TripId: {}]", goti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        }
+
+        //4.hold adjacent seats for the whole group and store all orders in one batch
+        int seatClass;
+        int totalNum;
+        String price;
+        if (goti.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
+            seatClass = SeatClass.FIRSTCLASS.getCode();
+            totalNum = resultForTravel.getTrainType().getConfortClass();
+            price = resultForTravel.getPrices().get("confortClass");
         } else {
-            Response<Assurance> addAssuranceResult = addAssuranceForOrder(
-                    oti.getAssurance(), cor.getData().getId().toString(), httpHeaders);
-            if (addAssuranceResult.getStatus() == 1) {
-                PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Preserve Buy Assurance Success]");
-            } else {
-                PreserveOtherServiceImpl.LOGGER.warn("[preserve][Step 5][Buy Assurance][Buy Assurance Fail][assurance: {}, OrderId: {}]", oti.getAssurance(),cor.getData().getId());
-                returnResponse.setMsg("Success.But Buy Assurance Fail.");
+            seatClass = SeatClass.SECONDCLASS.getCode();
+            totalNum = resultForTravel.getTrainType().getEconomyClass();
+            price = resultForTravel.getPrices().get("economyClass");
+        }
+        List<SeatHold> seatHolds = holdSeats(goti.getDate(), goti.getTripId(), goti.getFrom(), goti.getTo(),
+                seatClass, totalNum, resultForTravel.getRoute().getStations(), passengers.size(), httpHeaders);
+        if (seatHolds == null) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserveGroup][Step 4][No Seat Left][TripId: {}, passengers: {}]", goti.getTripId(), passengers.size());
+            if (passengers.size() == 1) {
+                admissionControl.soldOut(goti.getTripId(), goti.getDate(), goti.getSeatType());
             }
+            return new Response<>(0, "No seat left", null);
+        }
+        List<Order> orders = new ArrayList<>(passengers.size());
+        for (int i = 0; i < passengers.size(); i++) {
+            Contacts contacts = passengers.get(i);
+            Order order = new Order();
+            order.setId(UUID.randomUUID().toString());
+            order.setTrainNumber(goti.getTripId());
+            order.setAccountId(goti.getAccountId());
+            order.setFrom(goti.getFrom());
+            order.setTo(goti.getTo());
+            order.setBoughtDate(StringUtils.Date2String(new Date()));
+            order.setStatus(OrderStatus.NOTPAID.getCode());
+            order.setContactsDocumentNumber(contacts.getDocumentNumber());
+            order.setContactsName(contacts.getName());
+            order.setDocumentType(contacts.getDocumentType());
+            order.setTravelDate(goti.getDate());
+            order.setTravelTime(tripResponse.getStartTime());
+            order.setSeatClass(seatClass);
+            order.setSeatNumber("" + seatHolds.get(i).getSeatNo());
+            order.setPrice(price);
+            orders.add(order);
         }
+        Response<List<Order>> cor = createOrders(orders, httpHeaders);
+        if (cor.getStatus() == 0) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserveGroup][Step 4][Create Orders Fail][TripId: {}, Reason: {}]", goti.getTripId(), cor.getMsg());
+            List<String> holdIds = new ArrayList<>(seatHolds.size());
+            for (SeatHold seatHold : seatHolds) {
+                holdIds.add(seatHold.getHoldId());
+            }
+            releaseSeatHolds(holdIds, httpHeaders);
+            return new Response<>(0, cor.getMsg(), null);
+        }
+        List<Order> createdOrders = cor.getData();
+        for (int i = 0; i < createdOrders.size(); i++) {
+            seatHolds.get(i).setOrderId(createdOrders.get(i).getId());
+        }
+        confirmSeatHolds(seatHolds, httpHeaders);
+
+        //5.assurance and 8.notification of every order
+        for (int i = 0; i < createdOrders.size(); i++) {
+            Order createdOrder = createdOrders.get(i);
+            int position = passengerPositions.get(i);
+            OrderTicketsInfo passengerOti = goti.toOrderTicketsInfo(contactsIds.get(position));
+            String msg = "Success.";
+            if (!publishBookingCompleted(passengerOti, createdOrder)) {
+                String failure = completeInRequest(passengerOti, createdOrder, httpHeaders, deadline);
+                msg = failure == null ? msg : failure;
+            }
+            results[position] = new PassengerBookingResult(passengerOti.getContactsId(), 1, msg, createdOrder.getId(), createdOrder.getSeatNumber());
+        }
+        PreserveOtherServiceImpl.LOGGER.info("[preserveGroup][Group Booked][TripId: {}, orders: {}, failed: {}]", goti.getTripId(), createdOrders.size(), contactsIds.size() - createdOrders.size());
+        return new Response<>(1, "Success.", Arrays.asList(results));
+    }
 
-        //6.Increase the food order
-        if (oti.getFoodType() != 0) {
-            FoodOrder foodOrder = new FoodOrder();
-            foodOrder.setOrderId(cor.getData().getId());
-            foodOrder.setFoodType(oti.getFoodType());
-            foodOrder.setFoodName(oti.getFoodName());
-            foodOrder.setPrice(oti.getFoodPrice());
-            if (oti.getFoodType() == 2) {
-                foodOrder.setStationName(oti.getStationName());
-                foodOrder.setStoreName(oti.getStoreName());
+    /**
+     * Assurance, food, consign and the notification of a stored order, done
+     * within the request when the booking_completed message cannot be published.
+     *
+     * @return the message of the last failing step, null when all succeeded
+     */
+    private String completeInRequest(OrderTicketsInfo oti, Order order, HttpHeaders httpHeaders, long deadline) {
+        CompletableFuture<String> assuranceStage = CompletableFuture.supplyAsync(
+                () -> buyAssurance(oti, order, httpHeaders), preserveExecutor);
+        CompletableFuture<String> foodStage = CompletableFuture.supplyAsync(
+                () -> buyFood(oti, order, httpHeaders), preserveExecutor);
+        CompletableFuture<String> consignStage = CompletableFuture.supplyAsync(
+                () -> addConsign(oti, order, httpHeaders), preserveExecutor);
+
+        //8.send notification, the booking does not wait for it
+        CompletableFuture.supplyAsync(() -> getAccount(order.getAccountId(), httpHeaders), preserveExecutor)
+                .thenAccept(user -> notifyUser(order, user))
+                .exceptionally(e -> {
+                    PreserveOtherServiceImpl.LOGGER.warn("[preserve][Step 8][Send Notification Fail][OrderId: {}, message: {}]", order.getId(), e.getMessage());
+                    return null;
+                });
+
+        // a later failure overrides the message of an earlier one, as when the steps ran one after another
+        String[] failures = {
+                awaitSideEffect(assuranceStage, deadline, "Success.But Buy Assurance Fail.", order.getId()),
+                awaitSideEffect(foodStage, deadline, "Success.But Buy Food Fail.", order.getId()),
+                awaitSideEffect(consignStage, deadline, "Consign Fail.", order.getId())};
+        String lastFailure = null;
+        for (String failure : failures) {
+            if (failure != null) {
+                lastFailure = failure;
             }
-            Response afor = createFoodOrder(foodOrder, httpHeaders);
-            if (afor.getStatus() == 1) {
-                PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Buy Food Success]");
-            } else {
-                PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 6][Buy Food][Buy Food Fail][OrderId: {}]",cor.getData().getId());
-                returnResponse.setMsg("Success.But Buy Food Fail.");
+        }
+        return lastFailure;
+    }
+
+    private <T> T await(CompletableFuture<T> stage, long deadline) throws TimeoutException {
+        try {
+            return stage.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            stage.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-        } else {
-            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Do not need to buy food]");
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * A cancelled stage that has not started yet never runs; one already
+     * waiting on a service is ended by the read timeout of the RestTemplate.
+     */
+    private static void cancel(CompletableFuture<?>... stages) {
+        for (CompletableFuture<?> stage : stages) {
+            stage.cancel(true);
+        }
+    }
+
+    /**
+     * @return the failure message of a post-booking step, null when it succeeded
+     */
+    private String awaitSideEffect(CompletableFuture<String> stage, long deadline, String failMsg, String orderId) {
+        try {
+            return await(stage, deadline);
+        } catch (TimeoutException e) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 5-7][Preserve Timeout][OrderId: {}, message: {}]", orderId, failMsg);
+            return failMsg;
+        } catch (RuntimeException e) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 5-7][Post Booking Step Fail][OrderId: {}, message: {}]", orderId, e.getMessage());
+            return failMsg;
         }
+    }
 
-        //7.add consign
+    /**
+     * Hand assurance, food, consign and the notification of a stored order
+     * to their services over the booking_completed exchange.
+     *
+     * @return false when the message could not be published
+     */
+    private boolean publishBookingCompleted(OrderTicketsInfo oti, Order order) {
+        BookingCompletedInfo info = new BookingCompletedInfo();
+        info.setOrderId(order.getId());
+        info.setAccountId(order.getAccountId());
+        info.setTrainNumber(order.getTrainNumber());
+        info.setTravelDate(order.getTravelDate());
+        info.setTravelTime(order.getTravelTime());
+        info.setFrom(order.getFrom());
+        info.setTo(order.getTo());
+        info.setSeatClass(order.getSeatClass());
+        info.setSeatNumber(order.getSeatNumber());
+        info.setPrice(order.getPrice());
+        info.setAssurance(oti.getAssurance());
+        if (oti.getFoodType() != 0) {
+            info.setFoodOrder(foodOrderOf(oti, order));
+        }
         if (null != oti.getConsigneeName() && !"".equals(oti.getConsigneeName())) {
-            Consign consignRequest = new Consign();
-            consignRequest.setOrderId(cor.getData().getId());
-            consignRequest.setAccountId(cor.getData().getAccountId());
-            consignRequest.setHandleDate(oti.getHandleDate());
-            consignRequest.setTargetDate(cor.getData().getTravelDate().toString());
-            consignRequest.setFrom(cor.getData().getFrom());
-            consignRequest.setTo(cor.getData().getTo());
-            consignRequest.setConsignee(oti.getConsigneeName());
-            consignRequest.setPhone(oti.getConsigneePhone());
-            consignRequest.setWeight(oti.getConsigneeWeight());
-            consignRequest.setWithin(oti.isWithin());
-            //LOGGER.info("CONSIGN INFO : " + consignRequest.toString());
-            Response icresult = createConsign(consignRequest, httpHeaders);
-            if (icresult.getStatus() == 1) {
-                PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Consign Success]");
-            } else {
-                PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 7][Add Consign][Preserve Consign Fail][OrderId: {}]", cor.getData().getId());
-                returnResponse.setMsg("Consign Fail.");
-            }
-        } else {
-            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Do not need to consign]");
+            info.setConsign(consignOf(oti, order));
         }
+        info.setOccurredAt(System.currentTimeMillis());
+        try {
+            sendService.sendBookingCompleted(JsonUtils.object2Json(info));
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 5-8][Publish Booking Completed Success][OrderId: {}]", order.getId());
+            return true;
+        } catch (Exception e) {
+            PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 5-8][Publish Booking Completed Fail][OrderId: {}, message: {}]", order.getId(), e.getMessage());
+            return false;
+        }
+    }
 
-        //8.send notification
+    private FoodOrder foodOrderOf(OrderTicketsInfo oti, Order order) {
+        FoodOrder foodOrder = new FoodOrder();
+        foodOrder.setOrderId(order.getId());
+        foodOrder.setFoodType(oti.getFoodType());
+        foodOrder.setFoodName(oti.getFoodName());
+        foodOrder.setPrice(oti.getFoodPrice());
 
-        User getUser = getAccount(order.getAccountId().toString(), httpHeaders);
+        if (oti.getFoodType() == 2) {
+            foodOrder.setStationName(oti.getStationName());
+            foodOrder.setStoreName(oti.getStoreName());
+        }
+        return foodOrder;
+    }
 
+    private Consign consignOf(OrderTicketsInfo oti, Order order) {
+        Consign consignRequest = new Consign();
+        consignRequest.setOrderId(order.getId());
+        consignRequest.setAccountId(order.getAccountId());
+        consignRequest.setHandleDate(oti.getHandleDate());
+        consignRequest.setTargetDate(order.getTravelDate());
+        consignRequest.setFrom(order.getFrom());
+        consignRequest.setTo(order.getTo());
+        consignRequest.setConsignee(oti.getConsigneeName());
+        consignRequest.setPhone(oti.getConsigneePhone());
+        consignRequest.setWeight(oti.getConsigneeWeight());
+        consignRequest.setWithin(oti.isWithin());
+        return consignRequest;
+    }
+
+    private String buyAssurance(OrderTicketsInfo oti, Order order, HttpHeaders httpHeaders) {
+        if (oti.getAssurance() == 0) {
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Do not need to buy assurance]");
+            return null;
+        }
+        Response<Assurance> addAssuranceResult = addAssuranceForOrder(
+                oti.getAssurance(), order.getId(), httpHeaders);
+        if (addAssuranceResult.getStatus() == 1) {
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Preserve Buy Assurance Success]");
+            return null;
+        }
+        PreserveOtherServiceImpl.LOGGER.warn("[preserve][Step 5][Buy Assurance][Buy Assurance Fail][assurance: {}, OrderId: {}]", oti.getAssurance(), order.getId());
+        return "Success.But Buy Assurance Fail.";
+    }
+
+    private String buyFood(OrderTicketsInfo oti, Order order, HttpHeaders httpHeaders) {
+        if (oti.getFoodType() == 0) {
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Do not need to buy food]");
+            return null;
+        }
+        Response afor = createFoodOrder(foodOrderOf(oti, order), httpHeaders);
+        if (afor.getStatus() == 1) {
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Buy Food Success]");
+            return null;
+        }
+        PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 6][Buy Food][Buy Food Fail][OrderId: {}]", order.getId());
+        return "Success.But Buy Food Fail.";
+    }
+
+    private String addConsign(OrderTicketsInfo oti, Order order, HttpHeaders httpHeaders) {
+        if (null == oti.getConsigneeName() || "".equals(oti.getConsigneeName())) {
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Do not need to consign]");
+            return null;
+        }
+        Response icresult = createConsign(consignOf(oti, order), httpHeaders);
+        if (icresult.getStatus() == 1) {
+            PreserveOtherServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Consign Success]");
+            return null;
+        }
+        PreserveOtherServiceImpl.LOGGER.error("[preserve][Step 7][Add Consign][Preserve Consign Fail][OrderId: {}]", order.getId());
+        return "Consign Fail.";
+    }
+
+    private void notifyUser(Order order, User getUser) {
         NotifyInfo notifyInfo = new NotifyInfo();
         notifyInfo.setDate(new Date().toString());
 
@@ -251,37 +576,139 @@ public class PreserveOtherServiceImpl implements PreserveOtherService {
         notifyInfo.setEndPlace(order.getTo());
         notifyInfo.setUsername(getUser.getUserName());
         notifyInfo.setSeatNumber(order.getSeatNumber());
-        notifyInfo.setOrderNumber(order.getId().toString());
+        notifyInfo.setOrderNumber(order.getId());
         notifyInfo.setPrice(order.getPrice());
         notifyInfo.setSeatClass(SeatClass.getNameByCode(order.getSeatClass()));
-        notifyInfo.setStartTime(order.getTravelTime().toString());
+        notifyInfo.setStartTime(order.getTravelTime());
 
         // TODO: change to async message serivce
         // sendEmail(notifyInfo, httpHeaders);
+    }
 
-        return returnResponse;
+    private Response<TravelResult> queryTravelResult(Trip trip, OrderTicketsInfo oti, HttpHeaders httpHeaders) {
+        Travel query = new Travel();
+        query.setTrip(trip);
+        query.setStartPlace(oti.getFrom());
+        query.setEndPlace(oti.getTo());
+        query.setDepartureTime(StringUtils.Date2String(new Date()));
+
+        HttpEntity requestEntity = new HttpEntity(query, httpHeaders);
+        String basic_service_url = getServiceUrl("ts-basic-service");
+        ResponseEntity<Response<TravelResult>> re = restTemplate.exchange(
+                basic_service_url + "/api/v1/basicservice/basic/travel",
+                HttpMethod.POST,
+                requestEntity,
+                new ParameterizedTypeReference<Response<TravelResult>>() {
+                });
+        return re.getBody();
     }
 
-    public Ticket dipatchSeat(String date, String tripId, String startStationId, String endStataionId, int seatType, int totalNum, List<String> stationList, HttpHeaders httpHeaders) {
+    private SeatHold holdSeat(String date, String tripId, String startStation, String endStataion, int seatType, int totalNum, List<String> stationList, HttpHeaders httpHeaders) {
         Seat seatRequest = new Seat();
         seatRequest.setTravelDate(date);
         seatRequest.setTrainNumber(tripId);
-        seatRequest.setStartStation(startStationId);
+        seatRequest.setStartStation(startStation);
+        seatRequest.setDestStation(endStataion);
         seatRequest.setSeatType(seatType);
-        seatRequest.setDestStation(endStataionId);
         seatRequest.setTotalNum(totalNum);
         seatRequest.setStations(stationList);
 
-        HttpEntity requestEntityTicket = new HttpEntity(seatRequest, httpHeaders);
+        HttpEntity requestEntityHold = new HttpEntity(seatRequest, httpHeaders);
         String seat_service_url = getServiceUrl("ts-seat-service");
-        ResponseEntity<Response<Ticket>> reTicket = restTemplate.exchange(
-                seat_service_url + "/api/v1/seatservice/seats",
+        ResponseEntity<Response<SeatHold>> reHold = restTemplate.exchange(
+                seat_service_url + "/api/v1/seatservice/seats/holds",
                 HttpMethod.POST,
-                requestEntityTicket,
-                new ParameterizedTypeReference<Response<Ticket>>() {
+                requestEntityHold,
+                new ParameterizedTypeReference<Response<SeatHold>>() {
                 });
+        return reHold.getBody().getData();
+    }
 
-        return reTicket.getBody().getData();
+    private void confirmSeatHold(String holdId, String orderId, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            ResponseEntity<Response<SeatHold>> reConfirm = restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/" + holdId + "/confirm/" + orderId,
+                    HttpMethod.POST,
+                    new HttpEntity(httpHeaders),
+                    new ParameterizedTypeReference<Response<SeatHold>>() {
+                    });
+            if (reConfirm.getBody().getStatus() == 0) {
+                //the stored order keeps the seat taken from now on
+                PreserveOtherServiceImpl.LOGGER.warn("[confirmSeatHold][Hold expired before confirmation][HoldId: {}, OrderId: {}]", holdId, orderId);
+            }
+        } catch (Exception e) {
+            PreserveOtherServiceImpl.LOGGER.warn("[confirmSeatHold][Confirm seat hold fail][HoldId: {}, OrderId: {}, message: {}]", holdId, orderId, e.getMessage());
+        }
+    }
+
+    private void releaseSeatHold(String holdId, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/" + holdId,
+                    HttpMethod.DELETE,
+                    new HttpEntity(httpHeaders),
+                    new ParameterizedTypeReference<Response<String>>() {
+                    });
+        } catch (Exception e) {
+            //the hold expires on its own
+            PreserveOtherServiceImpl.LOGGER.warn("[releaseSeatHold][Release seat hold fail][HoldId: {}, message: {}]", holdId, e.getMessage());
+        }
+    }
+
+    private List<SeatHold> holdSeats(String date, String tripId, String startStation, String endStataion, int seatType, int totalNum, List<String> stationList, int count, HttpHeaders httpHeaders) {
+        Seat seatRequest = new Seat();
+        seatRequest.setTravelDate(date);
+        seatRequest.setTrainNumber(tripId);
+        seatRequest.setStartStation(startStation);
+        seatRequest.setDestStation(endStataion);
+        seatRequest.setSeatType(seatType);
+        seatRequest.setTotalNum(totalNum);
+        seatRequest.setStations(stationList);
+
+        HttpEntity requestEntityHold = new HttpEntity(seatRequest, httpHeaders);
+        String seat_service_url = getServiceUrl("ts-seat-service");
+        ResponseEntity<Response<List<SeatHold>>> reHold = restTemplate.exchange(
+                seat_service_url + "/api/v1/seatservice/seats/holds/group?count=" + count,
+                HttpMethod.POST,
+                requestEntityHold,
+                new ParameterizedTypeReference<Response<List<SeatHold>>>() {
+                });
+        return reHold.getBody().getData();
+    }
+
+    private void confirmSeatHolds(List<SeatHold> seatHolds, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            ResponseEntity<Response<List<SeatHold>>> reConfirm = restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/confirm",
+                    HttpMethod.POST,
+                    new HttpEntity(seatHolds, httpHeaders),
+                    new ParameterizedTypeReference<Response<List<SeatHold>>>() {
+                    });
+            if (reConfirm.getBody().getStatus() == 0) {
+                //the stored orders keep their seats taken from now on
+                PreserveOtherServiceImpl.LOGGER.warn("[confirmSeatHolds][Holds expired before confirmation][message: {}]", reConfirm.getBody().getMsg());
+            }
+        } catch (Exception e) {
+            PreserveOtherServiceImpl.LOGGER.warn("[confirmSeatHolds][Confirm seat holds fail][count: {}, message: {}]", seatHolds.size(), e.getMessage());
+        }
+    }
+
+    private void releaseSeatHolds(List<String> holdIds, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/release",
+                    HttpMethod.POST,
+                    new HttpEntity(holdIds, httpHeaders),
+                    new ParameterizedTypeReference<Response<Integer>>() {
+                    });
+        } catch (Exception e) {
+            //the holds expire on their own
+            PreserveOtherServiceImpl.LOGGER.warn("[releaseSeatHolds][Release seat holds fail][count: {}, message: {}]", holdIds.size(), e.getMessage());
+        }
     }
 
     public boolean sendEmail(NotifyInfo notifyInfo, HttpHeaders httpHeaders) {
@@ -405,6 +832,21 @@ public class PreserveOtherServiceImpl implements PreserveOtherService {
         return reCreateOrderResult.getBody();
     }
 
+    private Response<List<Order>> createOrders(List<Order> orders, HttpHeaders httpHeaders) {
+        PreserveOtherServiceImpl.LOGGER.info("[createOrders][Preserve Service][create orders][count: {}]", orders.size());
+
+        HttpEntity requestEntityCreateOrders = new HttpEntity(orders, httpHeaders);
+        String order_service_url = getServiceUrl("ts-order-other-service");
+        ResponseEntity<Response<List<Order>>> reCreateOrders = restTemplate.exchange(
+                order_service_url + "/api/v1/orderOtherService/orderOther/batch",
+                HttpMethod.POST,
+                requestEntityCreateOrders,
+                new ParameterizedTypeReference<Response<List<Order>>>() {
+                });
+
+        return reCreateOrders.getBody();
+    }
+
     private Response createFoodOrder(FoodOrder afi, HttpHeaders httpHeaders) {
         PreserveOtherServiceImpl.LOGGER.info("[createFoodOrder][Preserve Service][Add Preserve food Order]");
 
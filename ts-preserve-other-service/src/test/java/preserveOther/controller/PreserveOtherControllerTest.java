@@ -11,11 +11,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.*;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.test.util.ReflectionTestUtils;
+import edu.fudan.common.admission.AdmissionControl;
+import edu.fudan.common.entity.AdmissionTicket;
 import edu.fudan.common.entity.OrderTicketsInfo;
 import preserveOther.service.PreserveOtherService;
 
@@ -27,6 +31,10 @@ public class PreserveOtherControllerTest {
 
     @Mock
     private PreserveOtherService preserveService;
+
+    @Spy
+    private AdmissionControl admissionControl = new AdmissionControl();
+
     private MockMvc mockMvc;
     private Response response = new Response();
 
@@ -54,4 +62,47 @@ public class PreserveOtherControllerTest {
         Assert.assertEquals(response, JSONObject.parseObject(result, Response.class));
     }
 
+    @Test
+    public void testPreserveWaitingRoom() throws Exception {
+        ReflectionTestUtils.setField(admissionControl, "burst", 1.0);
+        ReflectionTestUtils.setField(admissionControl, "permitsPerSecond", 0.001);
+        OrderTicketsInfo oti = new OrderTicketsInfo();
+        oti.setTripId("G1234");
+        oti.setDate("2026-01-01");
+        Mockito.when(preserveService.preserve(Mockito.any(OrderTicketsInfo.class), Mockito.any(HttpHeaders.class))).thenReturn(response);
+        String requestJson = JSONObject.toJSONString(oti);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/preserveotherservice/preserveOther").contentType(MediaType.APPLICATION_JSON).content(requestJson))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        String result = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/preserveotherservice/preserveOther").contentType(MediaType.APPLICATION_JSON).content(requestJson))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        AdmissionTicket ticket = JSONObject.parseObject(JSONObject.parseObject(result).getString("data"), AdmissionTicket.class);
+        Assert.assertEquals(AdmissionTicket.State.WAITING, ticket.getState());
+        Assert.assertEquals(0, ticket.getPosition());
+        Mockito.verify(preserveService, Mockito.times(1)).preserve(Mockito.any(OrderTicketsInfo.class), Mockito.any(HttpHeaders.class));
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/preserveotherservice/admission/" + ticket.getTicketId()))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    public void testPreserveShedWhenSeatClassSoldOut() throws Exception {
+        admissionControl.soldOut("G1234", "2026-01-01", 1);
+        OrderTicketsInfo oti = new OrderTicketsInfo();
+        oti.setTripId("G1234");
+        oti.setDate("2026-01-01");
+        oti.setSeatType(1);
+        Mockito.when(preserveService.preserve(Mockito.any(OrderTicketsInfo.class), Mockito.any(HttpHeaders.class))).thenReturn(response);
+        String result = mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/preserveotherservice/preserveOther").contentType(MediaType.APPLICATION_JSON).content(JSONObject.toJSONString(oti)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Assert.assertEquals("Seat Not Enough", JSONObject.parseObject(result, Response.class).getMsg());
+        Mockito.verify(preserveService, Mockito.never()).preserve(Mockito.any(OrderTicketsInfo.class), Mockito.any(HttpHeaders.class));
+
+        //the other class of the trip is still booked
+        oti.setSeatType(2);
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/v1/preserveotherservice/preserveOther").contentType(MediaType.APPLICATION_JSON).content(JSONObject.toJSONString(oti)))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        Mockito.verify(preserveService, Mockito.times(1)).preserve(Mockito.any(OrderTicketsInfo.class), Mockito.any(HttpHeaders.class));
+    }
+
 }
@@ -11,14 +11,23 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.core.task.SyncTaskExecutor;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
+import edu.fudan.common.admission.AdmissionControl;
 import edu.fudan.common.entity.*;
+import preserveOther.mq.RabbitSend;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Executor;
 
 @RunWith(JUnit4.class)
 public class PreserveOtherServiceImplTest {
@@ -29,6 +38,15 @@ public class PreserveOtherServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private RabbitSend sendService;
+
+    @Mock
+    private AdmissionControl admissionControl;
+
+    @Spy
+    private Executor preserveExecutor = new SyncTaskExecutor();
+
     private HttpHeaders headers = new HttpHeaders();
     private HttpEntity requestEntity = new HttpEntity(headers);
 
@@ -63,17 +81,12 @@ public class PreserveOtherServiceImplTest {
         //response for checkSecurity()、createFoodOrder()、createConsign()
         Response response1 = new Response<>(1, null, null);
         ResponseEntity<Response> re1 = new ResponseEntity<>(response1, HttpStatus.OK);
-
-        //response for sendEmail()
-        ResponseEntity<Boolean> re10 = new ResponseEntity<>(true, HttpStatus.OK);
-
         Mockito.when(restTemplate.exchange(
                 Mockito.anyString(),
                 Mockito.any(HttpMethod.class),
                 Mockito.any(HttpEntity.class),
                 Mockito.any(Class.class)))
-                .thenReturn(re1).thenReturn(re1).thenReturn(re1).thenReturn(re10);
-
+                .thenReturn(re1);
 
         //response for getContactsById()
         Contacts contacts = new Contacts();
@@ -82,30 +95,30 @@ public class PreserveOtherServiceImplTest {
         contacts.setDocumentType(1);
         Response<Contacts> response2 = new Response<>(1, null, contacts);
         ResponseEntity<Response<Contacts>> re2 = new ResponseEntity<>(response2, HttpStatus.OK);
+        mockTypedExchange("/contactservice/contacts/", re2);
+
+        //travel result sent along with the trip detail
+        TravelResult travelResult = new TravelResult();
+        travelResult.setTrainType(new TrainType("DongCheOne", 100, 50));
+        travelResult.setRoute(new Route(Arrays.asList("from_station", "to_station"), Arrays.asList(0, 100), "from_station", "to_station"));
+        travelResult.setPrices( new HashMap<String, String>(){{ put("confortClass", "1.0"); }} );
 
         //response for getTripAllDetailInformation()
         TripResponse tripResponse = new TripResponse();
         tripResponse.setConfortClass(1);
         tripResponse.setStartTime(StringUtils.Date2String(new Date()));
-        TripAllDetail tripAllDetail = new TripAllDetail(true, "message", tripResponse, new Trip());
+        TripAllDetail tripAllDetail = new TripAllDetail(true, "message", tripResponse, new Trip(), travelResult);
         Response<TripAllDetail> response3 = new Response<>(1, null, tripAllDetail);
         ResponseEntity<Response<TripAllDetail>> re3 = new ResponseEntity<>(response3, HttpStatus.OK);
+        mockTypedExchange("/travel2service/trip_detail", re3);
 
-        //response for queryForStationId()
-        Response<String> response4 = new Response<>(null, null, "");
-        ResponseEntity<Response<String>> re4 = new ResponseEntity<>(response4, HttpStatus.OK);
-
-        //response for travel result
-        TravelResult travelResult = new TravelResult();
-        travelResult.setPrices( new HashMap<String, String>(){{ put("confortClass", "1.0"); }} );
-        Response<TravelResult> response5 = new Response<>(null, null, travelResult);
-        ResponseEntity<Response<TravelResult>> re5 = new ResponseEntity<>(response5, HttpStatus.OK);
-
-        //response for dipatchSeat()
-        Ticket ticket = new Ticket();
-        ticket.setSeatNo(1);
-        Response<Ticket> response6 = new Response<>(null, null, ticket);
-        ResponseEntity<Response<Ticket>> re6 = new ResponseEntity<>(response6, HttpStatus.OK);
+        //response for holdSeat() and confirmSeatHold()
+        SeatHold seatHold = new SeatHold();
+        seatHold.setHoldId(UUID.randomUUID().toString());
+        seatHold.setSeatNo(1);
+        Response<SeatHold> response6 = new Response<>(1, null, seatHold);
+        ResponseEntity<Response<SeatHold>> re6 = new ResponseEntity<>(response6, HttpStatus.OK);
+        mockTypedExchange("/seatservice/seats/holds", re6);
 
         //response for createOrder()
         Order order = new Order();
@@ -116,10 +129,12 @@ public class PreserveOtherServiceImplTest {
         order.setTo("to_station");
         Response<Order> response7 = new Response<>(1, null, order);
         ResponseEntity<Response<Order>> re7 = new ResponseEntity<>(response7, HttpStatus.OK);
+        mockTypedExchange("/orderOtherService/orderOther", re7);
 
         //response for addAssuranceForOrder()
         Response<Assurance> response8 = new Response<>(1, null, null);
         ResponseEntity<Response<Assurance>> re8 = new ResponseEntity<>(response8, HttpStatus.OK);
+        mockTypedExchange("/assuranceservice/assurances/", re8);
 
         //response for getAccount()
         User user = new User();
@@ -127,33 +142,130 @@ public class PreserveOtherServiceImplTest {
         user.setUserName("user_name");
         Response<User> response9 = new Response<>(1, null, user);
         ResponseEntity<Response<User>> re9 = new ResponseEntity<>(response9, HttpStatus.OK);
+        mockTypedExchange("/userservice/users/id/", re9);
+
+        Response result = preserveOtherServiceImpl.preserve(oti, headers);
+        Assert.assertEquals(new Response<>(1, "Success.", null), result);
+        Mockito.verify(sendService).sendBookingCompleted(Mockito.anyString());
+    }
 
+    @Test
+    public void testPreserveGroup() {
+        String missingContactsId = UUID.randomUUID().toString();
+        String contactsId = UUID.randomUUID().toString();
+        GroupOrderTicketsInfo goti = new GroupOrderTicketsInfo();
+        goti.setAccountId(UUID.randomUUID().toString());
+        goti.setContactsIds(Arrays.asList(contactsId, missingContactsId));
+        goti.setFrom("from_station");
+        goti.setTo("to_station");
+        goti.setDate(StringUtils.Date2String(new Date()));
+        goti.setTripId("K1255");
+        goti.setSeatType(2);
+
+        //response for checkSecurity()
+        Response response1 = new Response<>(1, null, null);
+        ResponseEntity<Response> re1 = new ResponseEntity<>(response1, HttpStatus.OK);
         Mockito.when(restTemplate.exchange(
                 Mockito.anyString(),
                 Mockito.any(HttpMethod.class),
                 Mockito.any(HttpEntity.class),
-                Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re2).thenReturn(re3).thenReturn(re4).thenReturn(re4).thenReturn(re5).thenReturn(re6).thenReturn(re7).thenReturn(re8).thenReturn(re9);
+                Mockito.any(Class.class)))
+                .thenReturn(re1);
 
-        Response result = preserveOtherServiceImpl.preserve(oti, headers);
-        Assert.assertEquals(new Response<>(1, "Success.", null), result);
+        //response for getContactsById()
+        Contacts contacts = new Contacts();
+        contacts.setDocumentNumber("document_number");
+        contacts.setName("name");
+        mockTypedExchange("/contactservice/contacts/", new ResponseEntity<>(new Response<>(1, null, contacts), HttpStatus.OK));
+        mockTypedExchange("/contactservice/contacts/" + missingContactsId, new ResponseEntity<>(new Response<>(0, "No contacts according to contacts id", null), HttpStatus.OK));
+
+        //response for getTripAllDetailInformation()
+        TravelResult travelResult = new TravelResult();
+        travelResult.setTrainType(new TrainType("DongCheOne", 100, 50));
+        travelResult.setRoute(new Route(Arrays.asList("from_station", "to_station"), Arrays.asList(0, 100), "from_station", "to_station"));
+        travelResult.setPrices( new HashMap<String, String>(){{ put("confortClass", "1.0"); }} );
+        TripResponse tripResponse = new TripResponse();
+        tripResponse.setConfortClass(2);
+        tripResponse.setStartTime(StringUtils.Date2String(new Date()));
+        TripAllDetail tripAllDetail = new TripAllDetail(true, "message", tripResponse, new Trip(), travelResult);
+        mockTypedExchange("/travel2service/trip_detail", new ResponseEntity<>(new Response<>(1, null, tripAllDetail), HttpStatus.OK));
+
+        //response for holdSeats() and confirmSeatHolds()
+        SeatHold seatHold = new SeatHold();
+        seatHold.setHoldId(UUID.randomUUID().toString());
+        seatHold.setSeatNo(7);
+        mockTypedExchange("/seatservice/seats/holds", new ResponseEntity<>(new Response<>(1, null, Arrays.asList(seatHold)), HttpStatus.OK));
+
+        //response for createOrders()
+        Order order = new Order();
+        order.setId(UUID.randomUUID().toString());
+        order.setSeatNumber("7");
+        mockTypedExchange("/orderOtherService/orderOther/batch", new ResponseEntity<>(new Response<>(1, null, Arrays.asList(order)), HttpStatus.OK));
+
+        Response result = preserveOtherServiceImpl.preserveGroup(goti, headers);
+        //results follow the order of the contacts ids, not the order they were decided in
+        Assert.assertEquals(Arrays.asList(
+                new PassengerBookingResult(contactsId, 1, "Success.", order.getId(), "7"),
+                new PassengerBookingResult(missingContactsId, 0, "No contacts according to contacts id", null, null)), result.getData());
+        Mockito.verify(sendService).sendBookingCompleted(Mockito.anyString());
     }
 
     @Test
-    public void testDipatchSeat() {
-        long mills = System.currentTimeMillis();
-        Seat seatRequest = new Seat(StringUtils.Date2String(new Date()), "G1234", "start_station", "dest_station", 2, 100, null);
-        HttpEntity requestEntityTicket = new HttpEntity<>(seatRequest, headers);
-        Response<Ticket> response = new Response<>();
-        ResponseEntity<Response<Ticket>> reTicket = new ResponseEntity<>(response, HttpStatus.OK);
+    public void testPreserveGroupShortageKeepsSeatClassOpen() {
+        GroupOrderTicketsInfo goti = new GroupOrderTicketsInfo();
+        goti.setAccountId(UUID.randomUUID().toString());
+        goti.setContactsIds(Arrays.asList(UUID.randomUUID().toString(), UUID.randomUUID().toString()));
+        goti.setDate(StringUtils.Date2String(new Date()));
+        goti.setTripId("G1255");
+        goti.setSeatType(2);
         Mockito.when(restTemplate.exchange(
-                "http://ts-seat-service:18898/api/v1/seatservice/seats",
-                HttpMethod.POST,
-                requestEntityTicket,
-                new ParameterizedTypeReference<Response<Ticket>>() {
-                })).thenReturn(reTicket);
-        Ticket result = preserveOtherServiceImpl.dipatchSeat(StringUtils.Date2String(new Date()), "G1234", "start_station", "dest_station", 2, 100, null, headers);
-        Assert.assertNull(result);
+                Mockito.anyString(),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(Class.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, null, null), HttpStatus.OK));
+        mockTypedExchange("/contactservice/contacts/", new ResponseEntity<>(new Response<>(1, null, new Contacts()), HttpStatus.OK));
+        TripResponse tripResponse = new TripResponse();
+        tripResponse.setConfortClass(1);
+        TripAllDetail tripAllDetail = new TripAllDetail(true, "message", tripResponse, new Trip(), new TravelResult());
+        mockTypedExchange("/travelservice/trip_detail", new ResponseEntity<>(new Response<>(1, null, tripAllDetail), HttpStatus.OK));
+
+        Response result = preserveOtherServiceImpl.preserveGroup(goti, headers);
+        Assert.assertEquals(new Response<>(0, "Seat Not Enough", null), result);
+        //one seat is left, a single passenger may still get it
+        Mockito.verify(admissionControl, Mockito.never()).soldOut(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
+
+        tripResponse.setConfortClass(0);
+        preserveOtherServiceImpl.preserveGroup(goti, headers);
+        Mockito.verify(admissionControl).soldOut("G1255", goti.getDate(), 2);
+    }
+
+    @Test
+    public void testPreserveTimeout() {
+        OrderTicketsInfo oti = OrderTicketsInfo.builder()
+                .accountId(UUID.randomUUID().toString())
+                .contactsId(UUID.randomUUID().toString())
+                .tripId("G1255")
+                .date(StringUtils.Date2String(new Date()))
+                .build();
+        // stages handed to this executor only run when the test runs them
+        List<Runnable> queued = new ArrayList<>();
+        ReflectionTestUtils.setField(preserveOtherServiceImpl, "preserveExecutor", (Executor) queued::add);
+        ReflectionTestUtils.setField(preserveOtherServiceImpl, "deadlineMs", 10L);
+        Response result = preserveOtherServiceImpl.preserve(oti, headers);
+        Assert.assertEquals(new Response<>(0, "Preserve Timeout", null), result);
+        //the stages were cancelled at the deadline, started late they call nothing
+        queued.forEach(Runnable::run);
+        Mockito.verifyNoInteractions(restTemplate);
+    }
+
+    private void mockTypedExchange(String path, ResponseEntity responseEntity) {
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains(path),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(responseEntity);
     }
 
     @Test
@@ -1,5 +1,7 @@
 package preserve;
 
+import edu.fudan.common.admission.AdmissionControl;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.web.client.RestTemplateBuilder;
@@ -9,15 +11,19 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
 import org.springframework.integration.annotation.IntegrationComponentScan;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.time.Duration;
+
 /**
  * @author fdse
  */
 @SpringBootApplication
 @EnableAspectJAutoProxy(proxyTargetClass = true)
 @EnableAsync
+@EnableScheduling
 @IntegrationComponentScan
 @EnableSwagger2
 @EnableDiscoveryClient
@@ -29,8 +35,17 @@ public class PreserveApplication {
 
     @LoadBalanced
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.build();
+    public RestTemplate restTemplate(RestTemplateBuilder builder,
+                                     @Value("${preserve.deadline-ms:10000}") long deadlineMs) {
+        //a stage cancelled at the deadline while waiting on a service ends here
+        return builder.setConnectTimeout(Duration.ofMillis(deadlineMs))
+                .setReadTimeout(Duration.ofMillis(deadlineMs))
+                .build();
+    }
+
+    @Bean
+    public AdmissionControl admissionControl() {
+        return new AdmissionControl();
     }
 
 }
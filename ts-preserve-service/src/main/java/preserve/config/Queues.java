@@ -1,5 +1,6 @@
 package preserve.config;
 
+import org.springframework.amqp.core.FanoutExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,8 +10,18 @@ public class Queues {
 
     public final static String queueName = "email";
 
+    /**
+     * fanout to the booking_completed_* queues of assurance, food, consign and notification
+     */
+    public final static String bookingCompletedExchange = "booking_completed";
+
     @Bean
     public Queue emailQueue() {
         return new Queue(queueName);
     }
+
+    @Bean
+    public FanoutExchange bookingCompletedExchange() {
+        return new FanoutExchange(bookingCompletedExchange);
+    }
 }
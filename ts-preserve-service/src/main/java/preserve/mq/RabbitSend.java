@@ -20,4 +20,9 @@ public class RabbitSend {
         this.rabbitTemplate.convertAndSend(Queues.queueName, val);
     }
 
+    public void sendBookingCompleted(String val) {
+        logger.info("send booking completed to mq:" + val);
+        this.rabbitTemplate.convertAndSend(Queues.bookingCompletedExchange, "", val);
+    }
+
 }
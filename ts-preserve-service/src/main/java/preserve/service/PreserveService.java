@@ -2,6 +2,7 @@ package preserve.service;
 
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
+import edu.fudan.common.entity.GroupOrderTicketsInfo;
 import edu.fudan.common.entity.OrderTicketsInfo;
 
 /**
@@ -10,4 +11,6 @@ import edu.fudan.common.entity.OrderTicketsInfo;
 public interface PreserveService {
 
     Response preserve(OrderTicketsInfo oti, HttpHeaders headers);
+
+    Response preserveGroup(GroupOrderTicketsInfo goti, HttpHeaders headers);
 }
@@ -6,6 +6,7 @@ import edu.fudan.common.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.ServiceInstance;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
@@ -16,12 +17,20 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import edu.fudan.common.admission.AdmissionControl;
 import edu.fudan.common.entity.*;
 import preserve.mq.RabbitSend;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * @author fdse
@@ -38,6 +47,20 @@ public class PreserveServiceImpl implements PreserveService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private AdmissionControl admissionControl;
+
+    @Autowired
+    @Qualifier("preserveExecutor")
+    private Executor preserveExecutor;
+
+    @Value("${preserve.deadline-ms:10000}")
+    private long deadlineMs = 10000;
+
+    @Value("${preserve.group.max-size:9}")
+    private int maxGroupSize = 9;
+
+    private static final String PRESERVE_TIMEOUT = "Preserve Timeout";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(PreserveServiceImpl.class);
 
@@ -46,27 +69,12 @@ public class PreserveServiceImpl implements PreserveService {
 
     @Override
     public Response preserve(OrderTicketsInfo oti, HttpHeaders headers) {
-        //1.detect ticket scalper
-        //PreserveServiceImpl.LOGGER.info("[Step 1] Check Security");
-
-        Response result = checkSecurity(oti.getAccountId(), headers);
-        if (result.getStatus() == 0) {
-            PreserveServiceImpl.LOGGER.error("[preserve][Step 1][Check Security Fail][AccountId: {}]",oti.getAccountId());
-            return new Response<>(0, result.getMsg(), null);
-        }
-        PreserveServiceImpl.LOGGER.info("[preserve][Step 1][Check Security Complete][AccountId: {}]",oti.getAccountId());
-        //2.Querying contact information -- modification, mediated by the underlying information micro service
-        //PreserveServiceImpl.LOGGER.info("[Step 2] Find contacts");
-        //PreserveServiceImpl.LOGGER.info("[Step 2] Contacts Id: {}", oti.getContactsId());
-
-        Response<Contacts> gcr = getContactsById(oti.getContactsId(), headers);
-        if (gcr.getStatus() == 0) {
-            PreserveServiceImpl.LOGGER.error("[preserve][Step 2][Find Contacts Fail][ContactsId: {},message: {}]",oti.getContactsId(),gcr.getMsg());
-            return new Response<>(0, gcr.getMsg(), null);
-        }
-        PreserveServiceImpl.LOGGER.info("[preserve][Step 2][Find contacts Complete][ContactsId: {}]",oti.getContactsId());
-        //3.Check the info of train and the number of remaining tickets
-        //PreserveServiceImpl.LOGGER.info("[Step 3] Check tickets num");
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        //1.detect ticket scalper, 2.query contacts and 3.query the trip do not depend on each other
+        CompletableFuture<Response> securityStage = CompletableFuture.supplyAsync(
+                () -> checkSecurity(oti.getAccountId(), headers), preserveExecutor);
+        CompletableFuture<Response<Contacts>> contactsStage = CompletableFuture.supplyAsync(
+                () -> getContactsById(oti.getContactsId(), headers), preserveExecutor);
         TripAllDetailInfo gtdi = new TripAllDetailInfo();
 
         gtdi.setFrom(oti.getFrom());
@@ -75,7 +83,33 @@ public class PreserveServiceImpl implements PreserveService {
         gtdi.setTravelDate(oti.getDate());
         gtdi.setTripId(oti.getTripId());
         PreserveServiceImpl.LOGGER.info("[preserve][Step 3][Check tickets num][TripId: {}]", oti.getTripId());
-        Response<TripAllDetail> response = getTripAllDetailInformation(gtdi, headers);
+        CompletableFuture<Response<TripAllDetail>> tripStage = CompletableFuture.supplyAsync(
+                () -> getTripAllDetailInformation(gtdi, headers), preserveExecutor);
+
+        Response result;
+        Response<Contacts> gcr;
+        Response<TripAllDetail> response;
+        try {
+            result = await(securityStage, deadline);
+            if (result.getStatus() == 0) {
+                PreserveServiceImpl.LOGGER.error("[preserve][Step 1][Check Security Fail][AccountId: {}]",oti.getAccountId());
+                return new Response<>(0, result.getMsg(), null);
+            }
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 1][Check Security Complete][AccountId: {}]",oti.getAccountId());
+            gcr = await(contactsStage, deadline);
+            if (gcr.getStatus() == 0) {
+                PreserveServiceImpl.LOGGER.error("[preserve][Step 2][Find Contacts Fail][ContactsId: {},message: {}]",oti.getContactsId(),gcr.getMsg());
+                return new Response<>(0, gcr.getMsg(), null);
+            }
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 2][Find contacts Complete][ContactsId: {}]",oti.getContactsId());
+            response = await(tripStage, deadline);
+        } catch (TimeoutException e) {
+            PreserveServiceImpl.LOGGER.error("[preserve][Step 1-3][Preserve Timeout][AccountId: {}, TripId: {}]", oti.getAccountId(), oti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        } finally {
+            //a step left behind by a failure or the deadline is not started any more
+            cancel(securityStage, contactsStage, tripStage);
+        }
         TripAllDetail gtdr = response.getData();
         //LOGGER.info("TripAllDetail:" + gtdr.toString());
         if (response.getStatus() == 0) {
@@ -87,6 +121,7 @@ public class PreserveServiceImpl implements PreserveService {
             if (oti.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
                 if (tripResponse.getConfortClass() == 0) {
                     PreserveServiceImpl.LOGGER.warn("[preserve][Step 3][Check seat][Check seat is enough][TripId: {}]",oti.getTripId());
+                    admissionControl.soldOut(oti.getTripId(), oti.getDate(), oti.getSeatType());
                     return new Response<>(0, "Seat Not Enough", null);
                 }
             } else {
@@ -118,132 +153,419 @@ public class PreserveServiceImpl implements PreserveService {
         order.setContactsName(contacts.getName());
         order.setDocumentType(contacts.getDocumentType());
 
-        Travel query = new Travel();
-        query.setTrip(trip);
-        query.setStartPlace(oti.getFrom());
-        query.setEndPlace(oti.getTo());
-        query.setDepartureTime(StringUtils.Date2String(new Date()));
-
-        HttpEntity requestEntity = new HttpEntity(query, headers);
-        String basic_service_url = getServiceUrl("ts-basic-service");
-        ResponseEntity<Response<TravelResult>> re = restTemplate.exchange(
-                basic_service_url + "/api/v1/basicservice/basic/travel",
-                HttpMethod.POST,
-                requestEntity,
-                new ParameterizedTypeReference<Response<TravelResult>>() {
-                });
-        if(re.getBody().getStatus() == 0){
-            PreserveServiceImpl.LOGGER.info("[Preserve 3][Get basic travel response status is 0][response is: {}]", re.getBody());
-            return new Response<>(0, re.getBody().getMsg(), null);
+        //the travel service sends the route, train type and prices it looked up with the trip detail
+        TravelResult resultForTravel = gtdr.getTravelResult();
+        if (resultForTravel == null) {
+            Response<TravelResult> re = queryTravelResult(trip, oti, headers);
+            if (re.getStatus() == 0) {
+                PreserveServiceImpl.LOGGER.info("[Preserve 3][Get basic travel response status is 0][response is: {}]", re);
+                return new Response<>(0, re.getMsg(), null);
+            }
+            resultForTravel = re.getData();
         }
-        TravelResult resultForTravel = re.getBody().getData();
 
         order.setSeatClass(oti.getSeatType());
         PreserveServiceImpl.LOGGER.info("[preserve][Step 4][Do Order][Travel Date][Date is: {}]", oti.getDate().toString());
         order.setTravelDate(oti.getDate());
         order.setTravelTime(gtdr.getTripResponse().getStartTime());
 
-        //Dispatch the seat
+        if (System.currentTimeMillis() > deadline) {
+            PreserveServiceImpl.LOGGER.error("[preserve][Step 4][Preserve Timeout][TripId: {}]", oti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        }
+        //Hold the seat, it is confirmed with the order id or released when the order fails
         List<String> stationList = resultForTravel.getRoute().getStations();
+        int totalNum;
         if (oti.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
-            int firstClassTotalNum = resultForTravel.getTrainType().getConfortClass();
-            Ticket ticket =
-                    dipatchSeat(oti.getDate(),
-                            order.getTrainNumber(), fromStationName, toStationName,
-                            SeatClass.FIRSTCLASS.getCode(), firstClassTotalNum, stationList, headers);
-            order.setSeatNumber("" + ticket.getSeatNo());
+            totalNum = resultForTravel.getTrainType().getConfortClass();
             order.setSeatClass(SeatClass.FIRSTCLASS.getCode());
             order.setPrice(resultForTravel.getPrices().get("confortClass"));
         } else {
-            int secondClassTotalNum = resultForTravel.getTrainType().getEconomyClass();
-            Ticket ticket =
-                    dipatchSeat(oti.getDate(),
-                            order.getTrainNumber(), fromStationName, toStationName,
-                            SeatClass.SECONDCLASS.getCode(), secondClassTotalNum, stationList, headers);
+            totalNum = resultForTravel.getTrainType().getEconomyClass();
             order.setSeatClass(SeatClass.SECONDCLASS.getCode());
-            order.setSeatNumber("" + ticket.getSeatNo());
             order.setPrice(resultForTravel.getPrices().get("economyClass"));
         }
-
+        SeatHold seatHold = holdSeat(oti.getDate(), order.getTrainNumber(), fromStationName, toStationName,
+                order.getSeatClass(), totalNum, stationList, headers);
+        if (seatHold == null) {
+            PreserveServiceImpl.LOGGER.error("[preserve][Step 4][Do Order][No Seat Left][TripId: {}, SeatType: {}]", oti.getTripId(), oti.getSeatType());
+            admissionControl.soldOut(oti.getTripId(), oti.getDate(), oti.getSeatType());
+            return new Response<>(0, "No seat left", null);
+        }
+        order.setSeatNumber("" + seatHold.getSeatNo());
         PreserveServiceImpl.LOGGER.info("[preserve][Step 4][Do Order][Order Price][Price is: {}]", order.getPrice());
 
         Response<Order> cor = createOrder(order, headers);
         if (cor.getStatus() == 0) {
             PreserveServiceImpl.LOGGER.error("[preserve][Step 4][Do Order][Create Order Fail][OrderId: {},  Reason: {}]", order.getId(), cor.getMsg());
+            releaseSeatHold(seatHold.getHoldId(), headers);
             return new Response<>(0, cor.getMsg(), null);
         }
         PreserveServiceImpl.LOGGER.info("[preserve][Step 4][Do Order][Do Order Complete]");
 
         Response returnResponse = new Response<>(1, "Success.", cor.getMsg());
-        //5.Check insurance options
-        if (oti.getAssurance() == 0) {
-            PreserveServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Do not need to buy assurance]");
-        } else {
-            Response addAssuranceResult = addAssuranceForOrder(
-                    oti.getAssurance(), cor.getData().getId().toString(), headers);
-            if (addAssuranceResult.getStatus() == 1) {
-                PreserveServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Preserve Buy Assurance Success]");
-            } else {
-                PreserveServiceImpl.LOGGER.warn("[preserve][Step 5][Buy Assurance][Buy Assurance Fail][assurance: {}, OrderId: {}]", oti.getAssurance(),cor.getData().getId());
-                returnResponse.setMsg("Success.But Buy Assurance Fail.");
+        //5.assurance, 6.food, 7.consign and 8.notification only need the created order
+        Order createdOrder = cor.getData();
+        confirmSeatHold(seatHold.getHoldId(), createdOrder.getId(), headers);
+        if (publishBookingCompleted(oti, createdOrder)) {
+            return returnResponse;
+        }
+        //the broker is unreachable, do the side effects within the request
+        String failure = completeInRequest(oti, createdOrder, headers, deadline);
+        if (failure != null) {
+            returnResponse.setMsg(failure);
+        }
+        return returnResponse;
+    }
+
+    /**
+     * Book one order per passenger of the group. The security check and the
+     * trip are shared, the seats are held together in one call and the orders
+     * are stored in one batch, so either all valid passengers get an order or none.
+     */
+    @Override
+    public Response preserveGroup(GroupOrderTicketsInfo goti, HttpHeaders headers) {
+        List<String> contactsIds = goti.getContactsIds();
+        if (contactsIds == null || contactsIds.isEmpty() || contactsIds.size() > maxGroupSize) {
+            PreserveServiceImpl.LOGGER.warn("[preserveGroup][Group size invalid][AccountId: {}, max: {}]", goti.getAccountId(), maxGroupSize);
+            return new Response<>(0, "Group size must be between 1 and " + maxGroupSize, null);
+        }
+        long deadline = System.currentTimeMillis() + deadlineMs;
+        OrderTicketsInfo oti = goti.toOrderTicketsInfo(null);
+        CompletableFuture<Response> securityStage = CompletableFuture.supplyAsync(
+                () -> checkSecurity(goti.getAccountId(), headers), preserveExecutor);
+        List<CompletableFuture<Response<Contacts>>> contactsStages = new ArrayList<>(contactsIds.size());
+        for (String contactsId : contactsIds) {
+            contactsStages.add(CompletableFuture.supplyAsync(() -> getContactsById(contactsId, headers), preserveExecutor));
+        }
+        TripAllDetailInfo gtdi = new TripAllDetailInfo();
+        gtdi.setFrom(goti.getFrom());
+        gtdi.setTo(goti.getTo());
+        gtdi.setTravelDate(goti.getDate());
+        gtdi.setTripId(goti.getTripId());
+        CompletableFuture<Response<TripAllDetail>> tripStage = CompletableFuture.supplyAsync(
+                () -> getTripAllDetailInformation(gtdi, headers), preserveExecutor);
+
+        //one result per contacts id, in the order of the request
+        PassengerBookingResult[] results = new PassengerBookingResult[contactsIds.size()];
+        List<Contacts> passengers = new ArrayList<>(contactsIds.size());
+        List<Integer> passengerPositions = new ArrayList<>(contactsIds.size());
+        Response<TripAllDetail> response;
+        try {
+            Response result = await(securityStage, deadline);
+            if (result.getStatus() == 0) {
+                PreserveServiceImpl.LOGGER.error("[preserveGroup][Step 1][Check Security Fail][AccountId: {}]", goti.getAccountId());
+                return new Response<>(0, result.getMsg(), null);
             }
+            response = await(tripStage, deadline);
+            for (int i = 0; i < contactsIds.size(); i++) {
+                Response<Contacts> gcr = await(contactsStages.get(i), deadline);
+                if (gcr.getStatus() == 0) {
+                    results[i] = new PassengerBookingResult(contactsIds.get(i), 0, gcr.getMsg(), null, null);
+                } else {
+                    passengers.add(gcr.getData());
+                    passengerPositions.add(i);
+                }
+            }
+        } catch (TimeoutException e) {
+            PreserveServiceImpl.LOGGER.error("[preserveGroup][Step 1-3][Preserve Timeout][AccountId: {}, TripId: {}]", goti.getAccountId(), goti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
+        } finally {
+            cancel(securityStage, tripStage);
+            cancel(contactsStages.toArray(new CompletableFuture[0]));
+        }
+        if (response.getStatus() == 0) {
+            PreserveServiceImpl.LOGGER.error("[preserveGroup][Step 3][Search For Trip Detail Information error][TripId: {}, message: {}]", goti.getTripId(), response.getMsg());
+            return new Response<>(0, response.getMsg(), null);
+        }
+        if (passengers.isEmpty()) {
+            return new Response<>(0, "No passenger could be booked", Arrays.asList(results));
+        }
+        TripAllDetail gtdr = response.getData();
+        TripResponse tripResponse = gtdr.getTripResponse();
+        int leftTickets = goti.getSeatType() == SeatClass.FIRSTCLASS.getCode() ? tripResponse.getConfortClass() : tripResponse.getEconomyClass();
+        if (leftTickets < passengers.size()) {
+            PreserveServiceImpl.LOGGER.warn("[preserveGroup][Step 3][Check seat][Seat Not Enough][TripId: {}, left: {}, passengers: {}]", goti.getTripId(), leftTickets, passengers.size());
+            if (leftTickets == 0) {
+                admissionControl.soldOut(goti.getTripId(), goti.getDate(), goti.getSeatType());
+            }
+            return new Response<>(0, "Seat Not Enough", null);
+        }
+        TravelResult resultForTravel = gtdr.getTravelResult();
+        if (resultForTravel == null) {
+            Response<TravelResult> re = queryTravelResult(gtdr.getTrip(), oti, headers);
+            if (re.getStatus() == 0) {
+                return new Response<>(0, re.getMsg(), null);
+            }
+            resultForTravel = re.getData();
+        }
+        if (System.currentTimeMillis() > deadline) {
+            PreserveServiceImpl.LOGGER.error("[preserveGroup][Step 4][Preserve Timeout][TripId: {}]", goti.getTripId());
+            return new Response<>(0, PRESERVE_TIMEOUT, null);
         }
 
-        //6.Increase the food order
-        if (oti.getFoodType() != 0) {
+        //4.hold adjacent seats for the whole group and store all orders in one batch
+        int seatClass;
+        int totalNum;
+        String price;
+        if (goti.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
+            seatClass = SeatClass.FIRSTCLASS.getCode();
+            totalNum = resultForTravel.getTrainType().getConfortClass();
+            price = resultForTravel.getPrices().get("confortClass");
+        } else {
+            seatClass = SeatClass.SECONDCLASS.getCode();
+            totalNum = resultForTravel.getTrainType().getEconomyClass();
+            price = resultForTravel.getPrices().get("economyClass");
+        }
+        List<SeatHold> seatHolds = holdSeats(goti.getDate(), goti.getTripId(), goti.getFrom(), goti.getTo(),
+                seatClass, totalNum, resultForTravel.getRoute().getStations(), passengers.size(), headers);
+        if (seatHolds == null) {
+            PreserveServiceImpl.LOGGER.error("[preserveGroup][Step 4][No Seat Left][TripId: {}, passengers: {}]", goti.getTripId(), passengers.size());
+            if (passengers.size() == 1) {
+                admissionControl.soldOut(goti.getTripId(), goti.getDate(), goti.getSeatType());
+            }
+            return new Response<>(0, "No seat left", null);
+        }
+        List<Order> orders = new ArrayList<>(passengers.size());
+        for (int i = 0; i < passengers.size(); i++) {
+            Contacts contacts = passengers.get(i);
+            Order order = new Order();
+            order.setId(UUID.randomUUID().toString());
+            order.setTrainNumber(goti.getTripId());
+            order.setAccountId(goti.getAccountId());
+            order.setFrom(goti.getFrom());
+            order.setTo(goti.getTo());
+            order.setBoughtDate(StringUtils.Date2String(new Date()));
+            order.setStatus(OrderStatus.NOTPAID.getCode());
+            order.setContactsDocumentNumber(contacts.getDocumentNumber());
+            order.setContactsName(contacts.getName());
+            order.setDocumentType(contacts.getDocumentType());
+            order.setTravelDate(goti.getDate());
+            order.setTravelTime(tripResponse.getStartTime());
+            order.setSeatClass(seatClass);
+            order.setSeatNumber("" + seatHolds.get(i).getSeatNo());
+            order.setPrice(price);
+            orders.add(order);
+        }
+        Response<List<Order>> cor = createOrders(orders, headers);
+        if (cor.getStatus() == 0) {
+            PreserveServiceImpl.LOGGER.error("[preserveGroup][Step 4][Create Orders Fail][TripId: {}, Reason: {}]", goti.getTripId(), cor.getMsg());
+            List<String> holdIds = new ArrayList<>(seatHolds.size());
+            for (SeatHold seatHold : seatHolds) {
+                holdIds.add(seatHold.getHoldId());
+            }
+            releaseSeatHolds(holdIds, headers);
+            return new Response<>(0, cor.getMsg(), null);
+        }
+        List<Order> createdOrders = cor.getData();
+        for (int i = 0; i < createdOrders.size(); i++) {
+            seatHolds.get(i).setOrderId(createdOrders.get(i).getId());
+        }
+        confirmSeatHolds(seatHolds, headers);
+
+        //5.assurance and 8.notification of every order
+        for (int i = 0; i < createdOrders.size(); i++) {
+            Order createdOrder = createdOrders.get(i);
+            int position = passengerPositions.get(i);
+            OrderTicketsInfo passengerOti = goti.toOrderTicketsInfo(contactsIds.get(position));
+            String msg = "Success.";
+            if (!publishBookingCompleted(passengerOti, createdOrder)) {
+                String failure = completeInRequest(passengerOti, createdOrder, headers, deadline);
+                msg = failure == null ? msg : failure;
+            }
+            results[position] = new PassengerBookingResult(passengerOti.getContactsId(), 1, msg, createdOrder.getId(), createdOrder.getSeatNumber());
+        }
+        PreserveServiceImpl.LOGGER.info("[preserveGroup][Group Booked][TripId: {}, orders: {}, failed: {}]", goti.getTripId(), createdOrders.size(), contactsIds.size() - createdOrders.size());
+        return new Response<>(1, "Success.", Arrays.asList(results));
+    }
 
-            FoodOrder foodOrder = new FoodOrder();
-            foodOrder.setOrderId(cor.getData().getId());
-            foodOrder.setFoodType(oti.getFoodType());
-            foodOrder.setFoodName(oti.getFoodName());
-            foodOrder.setPrice(oti.getFoodPrice());
+    /**
+     * Assurance, food, consign and the notification of a stored order, done
+     * within the request when the booking_completed message cannot be published.
+     *
+     * @return the message of the last failing step, null when all succeeded
+     */
+    private String completeInRequest(OrderTicketsInfo oti, Order order, HttpHeaders headers, long deadline) {
+        CompletableFuture<String> assuranceStage = CompletableFuture.supplyAsync(
+                () -> buyAssurance(oti, order, headers), preserveExecutor);
+        CompletableFuture<String> foodStage = CompletableFuture.supplyAsync(
+                () -> buyFood(oti, order, headers), preserveExecutor);
+        CompletableFuture<String> consignStage = CompletableFuture.supplyAsync(
+                () -> addConsign(oti, order, headers), preserveExecutor);
+
+        //8.send notification, the booking does not wait for it
+        CompletableFuture.supplyAsync(() -> getAccount(order.getAccountId(), headers), preserveExecutor)
+                .thenAccept(user -> notifyUser(order, user))
+                .exceptionally(e -> {
+                    PreserveServiceImpl.LOGGER.warn("[preserve][Step 8][Send Notification Fail][OrderId: {}, message: {}]", order.getId(), e.getMessage());
+                    return null;
+                });
 
-            if (oti.getFoodType() == 2) {
-                foodOrder.setStationName(oti.getStationName());
-                foodOrder.setStoreName(oti.getStoreName());
-                //PreserveServiceImpl.LOGGER.info("foodstore= {}   {}   {}", foodOrder.getFoodType(), foodOrder.getStationName(), foodOrder.getStoreName());
+        // a later failure overrides the message of an earlier one, as when the steps ran one after another
+        String[] failures = {
+                awaitSideEffect(assuranceStage, deadline, "Success.But Buy Assurance Fail.", order.getId()),
+                awaitSideEffect(foodStage, deadline, "Success.But Buy Food Fail.", order.getId()),
+                awaitSideEffect(consignStage, deadline, "Consign Fail.", order.getId())};
+        String lastFailure = null;
+        for (String failure : failures) {
+            if (failure != null) {
+                lastFailure = failure;
             }
-            Response afor = createFoodOrder(foodOrder, headers);
-            if (afor.getStatus() == 1) {
-                PreserveServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Buy Food Success]");
-            } else {
-                PreserveServiceImpl.LOGGER.error("[preserve][Step 6][Buy Food][Buy Food Fail][OrderId: {}]",cor.getData().getId());
-                returnResponse.setMsg("Success.But Buy Food Fail.");
+        }
+        return lastFailure;
+    }
+
+    private <T> T await(CompletableFuture<T> stage, long deadline) throws TimeoutException {
+        try {
+            return stage.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            stage.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-        } else {
-            PreserveServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Do not need to buy food]");
+            throw new IllegalStateException(e.getCause());
         }
+    }
+
+    /**
+     * A cancelled stage that has not started yet never runs; one already
+     * waiting on a service is ended by the read timeout of the RestTemplate.
+     */
+    private static void cancel(CompletableFuture<?>... stages) {
+        for (CompletableFuture<?> stage : stages) {
+            stage.cancel(true);
+        }
+    }
+
+    /**
+     * @return the failure message of a post-booking step, null when it succeeded
+     */
+    private String awaitSideEffect(CompletableFuture<String> stage, long deadline, String failMsg, String orderId) {
+        try {
+            return await(stage, deadline);
+        } catch (TimeoutException e) {
+            PreserveServiceImpl.LOGGER.error("[preserve][Step 5-7][Preserve Timeout][OrderId: {}, message: {}]", orderId, failMsg);
+            return failMsg;
+        } catch (RuntimeException e) {
+            PreserveServiceImpl.LOGGER.error("[preserve][Step 5-7][Post Booking Step Fail][OrderId: {}, message: {}]", orderId, e.getMessage());
+            return failMsg;
+        }
+    }
 
-        //7.add consign
+    /**
+     * Hand assurance, food, consign and the notification of a stored order
+     * to their services over the booking_completed exchange.
+     *
+     * @return false when the message could not be published
+     */
+    private boolean publishBookingCompleted(OrderTicketsInfo oti, Order order) {
+        BookingCompletedInfo info = new BookingCompletedInfo();
+        info.setOrderId(order.getId());
+        info.setAccountId(order.getAccountId());
+        info.setTrainNumber(order.getTrainNumber());
+        info.setTravelDate(order.getTravelDate());
+        info.setTravelTime(order.getTravelTime());
+        info.setFrom(order.getFrom());
+        info.setTo(order.getTo());
+        info.setSeatClass(order.getSeatClass());
+        info.setSeatNumber(order.getSeatNumber());
+        info.setPrice(order.getPrice());
+        info.setAssurance(oti.getAssurance());
+        if (oti.getFoodType() != 0) {
+            info.setFoodOrder(foodOrderOf(oti, order));
+        }
         if (null != oti.getConsigneeName() && !"".equals(oti.getConsigneeName())) {
+            info.setConsign(consignOf(oti, order));
+        }
+        info.setOccurredAt(System.currentTimeMillis());
+        try {
+            sendService.sendBookingCompleted(JsonUtils.object2Json(info));
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 5-8][Publish Booking Completed Success][OrderId: {}]", order.getId());
+            return true;
+        } catch (Exception e) {
+            PreserveServiceImpl.LOGGER.error("[preserve][Step 5-8][Publish Booking Completed Fail][OrderId: {}, message: {}]", order.getId(), e.getMessage());
+            return false;
+        }
+    }
 
-            Consign consignRequest = new Consign();
-            consignRequest.setOrderId(cor.getData().getId());
-            consignRequest.setAccountId(cor.getData().getAccountId());
-            consignRequest.setHandleDate(oti.getHandleDate());
-            consignRequest.setTargetDate(cor.getData().getTravelDate().toString());
-            consignRequest.setFrom(cor.getData().getFrom());
-            consignRequest.setTo(cor.getData().getTo());
-            consignRequest.setConsignee(oti.getConsigneeName());
-            consignRequest.setPhone(oti.getConsigneePhone());
-            consignRequest.setWeight(oti.getConsigneeWeight());
-            consignRequest.setWithin(oti.isWithin());
-            LOGGER.info("CONSIGN INFO : " +consignRequest.toString());
-            Response icresult = createConsign(consignRequest, headers);
-            if (icresult.getStatus() == 1) {
-                PreserveServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Consign Success]");
-            } else {
-                PreserveServiceImpl.LOGGER.error("[preserve][Step 7][Add Consign][Preserve Consign Fail][OrderId: {}]", cor.getData().getId());
-                returnResponse.setMsg("Consign Fail.");
-            }
-        } else {
-            PreserveServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Do not need to consign]");
+    private FoodOrder foodOrderOf(OrderTicketsInfo oti, Order order) {
+        FoodOrder foodOrder = new FoodOrder();
+        foodOrder.setOrderId(order.getId());
+        foodOrder.setFoodType(oti.getFoodType());
+        foodOrder.setFoodName(oti.getFoodName());
+        foodOrder.setPrice(oti.getFoodPrice());
+
+        if (oti.getFoodType() == 2) {
+            foodOrder.setStationName(oti.getStationName());
+            foodOrder.setStoreName(oti.getStoreName());
         }
+        return foodOrder;
+    }
 
-        //8.send notification
+    private Consign consignOf(OrderTicketsInfo oti, Order order) {
+        Consign consignRequest = new Consign();
+        consignRequest.setOrderId(order.getId());
+        consignRequest.setAccountId(order.getAccountId());
+        consignRequest.setHandleDate(oti.getHandleDate());
+        consignRequest.setTargetDate(order.getTravelDate());
+        consignRequest.setFrom(order.getFrom());
+        consignRequest.setTo(order.getTo());
+        consignRequest.setConsignee(oti.getConsigneeName());
+        consignRequest.setPhone(oti.getConsigneePhone());
+        consignRequest.setWeight(oti.getConsigneeWeight());
+        consignRequest.setWithin(oti.isWithin());
+        return consignRequest;
+    }
 
-        User getUser = getAccount(order.getAccountId().toString(), headers);
+    private String buyAssurance(OrderTicketsInfo oti, Order order, HttpHeaders headers) {
+        if (oti.getAssurance() == 0) {
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Do not need to buy assurance]");
+            return null;
+        }
+        Response addAssuranceResult = addAssuranceForOrder(
+                oti.getAssurance(), order.getId(), headers);
+        if (addAssuranceResult.getStatus() == 1) {
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 5][Buy Assurance][Preserve Buy Assurance Success]");
+            return null;
+        }
+        PreserveServiceImpl.LOGGER.warn("[preserve][Step 5][Buy Assurance][Buy Assurance Fail][assurance: {}, OrderId: {}]", oti.getAssurance(), order.getId());
+        return "Success.But Buy Assurance Fail.";
+    }
 
+    private String buyFood(OrderTicketsInfo oti, Order order, HttpHeaders headers) {
+        if (oti.getFoodType() == 0) {
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Do not need to buy food]");
+            return null;
+        }
+        Response afor = createFoodOrder(foodOrderOf(oti, order), headers);
+        if (afor.getStatus() == 1) {
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 6][Buy Food][Buy Food Success]");
+            return null;
+        }
+        PreserveServiceImpl.LOGGER.error("[preserve][Step 6][Buy Food][Buy Food Fail][OrderId: {}]", order.getId());
+        return "Success.But Buy Food Fail.";
+    }
+
+    private String addConsign(OrderTicketsInfo oti, Order order, HttpHeaders headers) {
+        if (null == oti.getConsigneeName() || "".equals(oti.getConsigneeName())) {
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Do not need to consign]");
+            return null;
+        }
+        Response icresult = createConsign(consignOf(oti, order), headers);
+        if (icresult.getStatus() == 1) {
+            PreserveServiceImpl.LOGGER.info("[preserve][Step 7][Add Consign][Consign Success]");
+            return null;
+        }
+        PreserveServiceImpl.LOGGER.error("[preserve][Step 7][Add Consign][Preserve Consign Fail][OrderId: {}]", order.getId());
+        return "Consign Fail.";
+    }
+
+    private void notifyUser(Order order, User getUser) {
         NotifyInfo notifyInfo = new NotifyInfo();
         notifyInfo.setDate(new Date().toString());
 
@@ -252,18 +574,34 @@ public class PreserveServiceImpl implements PreserveService {
         notifyInfo.setEndPlace(order.getTo());
         notifyInfo.setUsername(getUser.getUserName());
         notifyInfo.setSeatNumber(order.getSeatNumber());
-        notifyInfo.setOrderNumber(order.getId().toString());
+        notifyInfo.setOrderNumber(order.getId());
         notifyInfo.setPrice(order.getPrice());
         notifyInfo.setSeatClass(SeatClass.getNameByCode(order.getSeatClass()));
-        notifyInfo.setStartTime(order.getTravelTime().toString());
+        notifyInfo.setStartTime(order.getTravelTime());
 
         // TODO: change to async message serivce
         // sendEmail(notifyInfo, headers);
+    }
 
-        return returnResponse;
+    private Response<TravelResult> queryTravelResult(Trip trip, OrderTicketsInfo oti, HttpHeaders headers) {
+        Travel query = new Travel();
+        query.setTrip(trip);
+        query.setStartPlace(oti.getFrom());
+        query.setEndPlace(oti.getTo());
+        query.setDepartureTime(StringUtils.Date2String(new Date()));
+
+        HttpEntity requestEntity = new HttpEntity(query, headers);
+        String basic_service_url = getServiceUrl("ts-basic-service");
+        ResponseEntity<Response<TravelResult>> re = restTemplate.exchange(
+                basic_service_url + "/api/v1/basicservice/basic/travel",
+                HttpMethod.POST,
+                requestEntity,
+                new ParameterizedTypeReference<Response<TravelResult>>() {
+                });
+        return re.getBody();
     }
 
-    public Ticket dipatchSeat(String date, String tripId, String startStation, String endStataion, int seatType, int totalNum, List<String> stationList, HttpHeaders httpHeaders) {
+    private SeatHold holdSeat(String date, String tripId, String startStation, String endStataion, int seatType, int totalNum, List<String> stationList, HttpHeaders httpHeaders) {
         Seat seatRequest = new Seat();
         seatRequest.setTravelDate(date);
         seatRequest.setTrainNumber(tripId);
@@ -273,16 +611,102 @@ public class PreserveServiceImpl implements PreserveService {
         seatRequest.setTotalNum(totalNum);
         seatRequest.setStations(stationList);
 
-        HttpEntity requestEntityTicket = new HttpEntity(seatRequest, httpHeaders);
+        HttpEntity requestEntityHold = new HttpEntity(seatRequest, httpHeaders);
         String seat_service_url = getServiceUrl("ts-seat-service");
-        ResponseEntity<Response<Ticket>> reTicket = restTemplate.exchange(
-                seat_service_url + "/api/v1/seatservice/seats",
+        ResponseEntity<Response<SeatHold>> reHold = restTemplate.exchange(
+                seat_service_url + "/api/v1/seatservice/seats/holds",
                 HttpMethod.POST,
-                requestEntityTicket,
-                new ParameterizedTypeReference<Response<Ticket>>() {
+                requestEntityHold,
+                new ParameterizedTypeReference<Response<SeatHold>>() {
                 });
+        return reHold.getBody().getData();
+    }
 
-        return reTicket.getBody().getData();
+    private void confirmSeatHold(String holdId, String orderId, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            ResponseEntity<Response<SeatHold>> reConfirm = restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/" + holdId + "/confirm/" + orderId,
+                    HttpMethod.POST,
+                    new HttpEntity(httpHeaders),
+                    new ParameterizedTypeReference<Response<SeatHold>>() {
+                    });
+            if (reConfirm.getBody().getStatus() == 0) {
+                //the stored order keeps the seat taken from now on
+                PreserveServiceImpl.LOGGER.warn("[confirmSeatHold][Hold expired before confirmation][HoldId: {}, OrderId: {}]", holdId, orderId);
+            }
+        } catch (Exception e) {
+            PreserveServiceImpl.LOGGER.warn("[confirmSeatHold][Confirm seat hold fail][HoldId: {}, OrderId: {}, message: {}]", holdId, orderId, e.getMessage());
+        }
+    }
+
+    private void releaseSeatHold(String holdId, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/" + holdId,
+                    HttpMethod.DELETE,
+                    new HttpEntity(httpHeaders),
+                    new ParameterizedTypeReference<Response<String>>() {
+                    });
+        } catch (Exception e) {
+            //the hold expires on its own
+            PreserveServiceImpl.LOGGER.warn("[releaseSeatHold][Release seat hold fail][HoldId: {}, message: {}]", holdId, e.getMessage());
+        }
+    }
+
+    private List<SeatHold> holdSeats(String date, String tripId, String startStation, String endStataion, int seatType, int totalNum, List<String> stationList, int count, HttpHeaders httpHeaders) {
+        Seat seatRequest = new Seat();
+        seatRequest.setTravelDate(date);
+        seatRequest.setTrainNumber(tripId);
+        seatRequest.setStartStation(startStation);
+        seatRequest.setDestStation(endStataion);
+        seatRequest.setSeatType(seatType);
+        seatRequest.setTotalNum(totalNum);
+        seatRequest.setStations(stationList);
+
+        HttpEntity requestEntityHold = new HttpEntity(seatRequest, httpHeaders);
+        String seat_service_url = getServiceUrl("ts-seat-service");
+        ResponseEntity<Response<List<SeatHold>>> reHold = restTemplate.exchange(
+                seat_service_url + "/api/v1/seatservice/seats/holds/group?count=" + count,
+                HttpMethod.POST,
+                requestEntityHold,
+                new ParameterizedTypeReference<Response<List<SeatHold>>>() {
+                });
+        return reHold.getBody().getData();
+    }
+
+    private void confirmSeatHolds(List<SeatHold> seatHolds, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            ResponseEntity<Response<List<SeatHold>>> reConfirm = restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/confirm",
+                    HttpMethod.POST,
+                    new HttpEntity(seatHolds, httpHeaders),
+                    new ParameterizedTypeReference<Response<List<SeatHold>>>() {
+                    });
+            if (reConfirm.getBody().getStatus() == 0) {
+                //the stored orders keep their seats taken from now on
+                PreserveServiceImpl.LOGGER.warn("[confirmSeatHolds][Holds expired before confirmation][message: {}]", reConfirm.getBody().getMsg());
+            }
+        } catch (Exception e) {
+            PreserveServiceImpl.LOGGER.warn("[confirmSeatHolds][Confirm seat holds fail][count: {}, message: {}]", seatHolds.size(), e.getMessage());
+        }
+    }
+
+    private void releaseSeatHolds(List<String> holdIds, HttpHeaders httpHeaders) {
+        try {
+            String seat_service_url = getServiceUrl("ts-seat-service");
+            restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/release",
+                    HttpMethod.POST,
+                    new HttpEntity(holdIds, httpHeaders),
+                    new ParameterizedTypeReference<Response<Integer>>() {
+                    });
+        } catch (Exception e) {
+            //the holds expire on their own
+            PreserveServiceImpl.LOGGER.warn("[releaseSeatHolds][Release seat holds fail][count: {}, message: {}]", holdIds.size(), e.getMessage());
+        }
     }
 
     public boolean sendEmail(NotifyInfo notifyInfo, HttpHeaders httpHeaders) {
@@ -403,6 +827,21 @@ public class PreserveServiceImpl implements PreserveService {
         return reCreateOrderResult.getBody();
     }
 
+    private Response<List<Order>> createOrders(List<Order> orders, HttpHeaders httpHeaders) {
+        PreserveServiceImpl.LOGGER.info("[createOrders][Preserve Service][create orders][count: {}]", orders.size());
+
+        HttpEntity requestEntityCreateOrders = new HttpEntity(orders, httpHeaders);
+        String order_service_url = getServiceUrl("ts-order-service");
+        ResponseEntity<Response<List<Order>>> reCreateOrders = restTemplate.exchange(
+                order_service_url + "/api/v1/orderservice/order/batch",
+                HttpMethod.POST,
+                requestEntityCreateOrders,
+                new ParameterizedTypeReference<Response<List<Order>>>() {
+                });
+
+        return reCreateOrders.getBody();
+    }
+
     private Response createFoodOrder(FoodOrder afi, HttpHeaders httpHeaders) {
         PreserveServiceImpl.LOGGER.info("[createFoodOrder][Preserve Service][Add Preserve food Order]");
 
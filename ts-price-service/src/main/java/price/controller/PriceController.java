@@ -1,5 +1,6 @@
 package price.controller;
 
+import edu.fudan.common.entity.FareQuote;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -47,6 +48,13 @@ public class PriceController {
         return ok(service.findByRouteIdsAndTrainTypes(ridsAndTts, headers));
     }
 
+    @PostMapping(value = "/prices/quotes")
+    public HttpEntity quote(@RequestBody List<FareQuote> queries,
+                            @RequestHeader HttpHeaders headers) {
+        PriceController.LOGGER.info("[quoteFares][Quote fares][Queries: {}]", queries.size());
+        return ok(service.quoteFares(queries, headers));
+    }
+
     @GetMapping(value = "/prices")
     public HttpEntity queryAll(@RequestHeader HttpHeaders headers) {
         PriceController.LOGGER.info("[findAllPriceConfig][Query all prices]");
@@ -1,6 +1,5 @@
 package price.repository;
 
-import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 import price.entity.PriceConfig;
@@ -18,9 +17,6 @@ public interface PriceConfigRepository extends CrudRepository<PriceConfig, Strin
 
     PriceConfig findByRouteIdAndTrainType(String routeId,String trainType);
 
-    @Query(value="SELECT * FROM price_config WHERE route_id IN ?1 AND train_type IN ?2", nativeQuery = true)
-    List<PriceConfig> findByRouteIdsAndTrainTypes(List<String> routeIds, List<String> trainTypes);
-
     @Override
     List<PriceConfig> findAll();
 
@@ -0,0 +1,206 @@
+package price.service;
+
+import edu.fudan.common.entity.FareQuote;
+import edu.fudan.common.entity.Route;
+import edu.fudan.common.entity.RouteTopology;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import price.entity.PriceConfig;
+import price.repository.PriceConfigRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fares of every station pair, per route and train type, computed once from
+ * the price config and the route distances, so a quote is a lookup with no
+ * arithmetic and no call. A route is read from the route service on its
+ * first quote. The refresh reloads the configs and forgets routes and fares,
+ * which bounds how long an edited route distance keeps its old fares.
+ *
+ * @author fdse
+ */
+@Component
+public class FareTable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FareTable.class);
+
+    @Autowired
+    private PriceConfigRepository priceConfigRepository;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    /**
+     * routeId:trainType -> config, replaced as a whole on every change
+     */
+    private volatile Map<String, PriceConfig> configs = new HashMap<>();
+
+    private final Map<String, Fares> fares = new ConcurrentHashMap<>();
+
+    private final Map<String, RouteTopology> routes = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${price.fare-table.refresh-interval-ms:60000}",
+            initialDelayString = "${price.fare-table.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        Map<String, PriceConfig> loaded = new HashMap<>();
+        List<PriceConfig> all = priceConfigRepository.findAll();
+        if (all != null) {
+            for (PriceConfig config : all) {
+                loaded.put(keyOf(config.getRouteId(), config.getTrainType()), copyOf(config));
+            }
+        }
+        configs = loaded;
+        fares.clear();
+        routes.clear();
+        FareTable.LOGGER.info("[refresh][Fare table loaded][PriceConfigs: {}]", loaded.size());
+    }
+
+    /**
+     * Record a created or updated config, an earlier route and train type of the config is dropped.
+     */
+    public synchronized void put(PriceConfig config) {
+        Map<String, PriceConfig> changed = withoutId(config.getId());
+        changed.put(keyOf(config.getRouteId(), config.getTrainType()), copyOf(config));
+        configs = changed;
+    }
+
+    public synchronized void remove(String configId) {
+        configs = withoutId(configId);
+    }
+
+    public PriceConfig config(String routeId, String trainType) {
+        return configs.get(keyOf(routeId, trainType));
+    }
+
+    /**
+     * @return a quote per query, in the order asked
+     */
+    public List<FareQuote> quote(List<FareQuote> queries, HttpHeaders headers) {
+        Map<String, PriceConfig> current = configs;
+        Set<String> missingRoutes = new LinkedHashSet<>();
+        for (FareQuote query : queries) {
+            if (current.containsKey(keyOf(query.getRouteId(), query.getTrainType())) && !routes.containsKey(query.getRouteId())) {
+                missingRoutes.add(query.getRouteId());
+            }
+        }
+        if (!missingRoutes.isEmpty()) {
+            loadRoutes(new ArrayList<>(missingRoutes), headers);
+        }
+
+        List<FareQuote> quotes = new ArrayList<>(queries.size());
+        for (FareQuote query : queries) {
+            FareQuote quote = new FareQuote(query.getRouteId(), query.getTrainType(), query.getStartStation(), query.getEndStation());
+            String key = keyOf(query.getRouteId(), query.getTrainType());
+            PriceConfig config = current.get(key);
+            RouteTopology topology = routes.get(query.getRouteId());
+            if (config != null && topology != null) {
+                Fares routeFares = fares.get(key);
+                //built for an older config or route, rebuild
+                if (routeFares == null || routeFares.config != config || routeFares.topology != topology) {
+                    routeFares = new Fares(config, topology);
+                    fares.put(key, routeFares);
+                }
+                routeFares.fill(quote);
+            }
+            quotes.add(quote);
+        }
+        return quotes;
+    }
+
+    private void loadRoutes(List<String> routeIds, HttpHeaders headers) {
+        try {
+            ResponseEntity<Response<List<Route>>> re = restTemplate.exchange(
+                    "http://ts-route-service/api/v1/routeservice/routes/byIds",
+                    HttpMethod.POST,
+                    new HttpEntity<>(routeIds, null),
+                    new ParameterizedTypeReference<Response<List<Route>>>() {
+                    });
+            Response<List<Route>> result = re.getBody();
+            if (result == null || result.getStatus() != 1 || result.getData() == null) {
+                FareTable.LOGGER.warn("[loadRoutes][Get routes failed][RouteIds: {}]", routeIds);
+                return;
+            }
+            for (Route route : result.getData()) {
+                routes.put(route.getId(), route.topology());
+            }
+        } catch (RestClientException e) {
+            FareTable.LOGGER.error("[loadRoutes][Get routes error][RouteIds: {}, error: {}]", routeIds, e.getMessage());
+        }
+    }
+
+    private Map<String, PriceConfig> withoutId(String configId) {
+        Map<String, PriceConfig> changed = new HashMap<>(configs);
+        changed.values().removeIf(config -> config.getId().equals(configId));
+        return changed;
+    }
+
+    private static String keyOf(String routeId, String trainType) {
+        return routeId + ":" + trainType;
+    }
+
+    private static PriceConfig copyOf(PriceConfig config) {
+        return new PriceConfig(config.getId(), config.getTrainType(), config.getRouteId(),
+                config.getBasicPriceRate(), config.getFirstClassPriceRate());
+    }
+
+    /**
+     * fares of every station pair of one route and train type, [start * size + end]
+     */
+    private static class Fares {
+
+        private final PriceConfig config;
+
+        private final RouteTopology topology;
+
+        private final double[] economyClass;
+
+        private final double[] confortClass;
+
+        Fares(PriceConfig config, RouteTopology topology) {
+            this.config = config;
+            this.topology = topology;
+            int size = topology.size();
+            economyClass = new double[size * size];
+            confortClass = new double[size * size];
+            Arrays.fill(economyClass, Double.NaN);
+            Arrays.fill(confortClass, Double.NaN);
+            List<String> stations = topology.getStations();
+            for (int start = 0; start < size; start++) {
+                for (int end = start + 1; end < size; end++) {
+                    try {
+                        int distance = topology.distance(stations.get(start), stations.get(end));
+                        economyClass[start * size + end] = distance * config.getBasicPriceRate();
+                        confortClass[start * size + end] = distance * config.getFirstClassPriceRate();
+                    } catch (IllegalArgumentException e) {
+                        //no distance for the station, the pair stays unpriced
+                    }
+                }
+            }
+        }
+
+        void fill(FareQuote quote) {
+            int start = topology.indexOf(quote.getStartStation());
+            int end = topology.indexOf(quote.getEndStation());
+            if (start < 0 || end <= start || Double.isNaN(economyClass[start * topology.size() + end])) {
+                return;
+            }
+            quote.setPriced(true);
+            quote.setEconomyClass(economyClass[start * topology.size() + end]);
+            quote.setConfortClass(confortClass[start * topology.size() + end]);
+        }
+    }
+}
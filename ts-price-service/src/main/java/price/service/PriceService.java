@@ -1,5 +1,6 @@
 package price.service;
 
+import edu.fudan.common.entity.FareQuote;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
 
@@ -20,6 +21,8 @@ public interface PriceService {
 
     Response findByRouteIdsAndTrainTypes(List<String> ridsAndTts, HttpHeaders headers);
 
+    Response quoteFares(List<FareQuote> queries, HttpHeaders headers);
+
     Response findByRouteIdAndTrainType(String routeId, String trainType, HttpHeaders headers);
 
     Response findAllPriceConfig(HttpHeaders headers);
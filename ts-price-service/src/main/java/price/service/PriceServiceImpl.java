@@ -1,5 +1,6 @@
 package price.service;
 
+import edu.fudan.common.entity.FareQuote;
 import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,6 +22,9 @@ public class PriceServiceImpl implements PriceService {
     @Autowired(required=true)
     private PriceConfigRepository priceConfigRepository;
 
+    @Autowired
+    private FareTable fareTable;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(PriceServiceImpl.class);
 
     String noThatConfig = "No that config";
@@ -53,6 +57,7 @@ public class PriceServiceImpl implements PriceService {
             priceConfig.setTrainType(createAndModifyPriceConfig.getTrainType());
             priceConfigRepository.save(priceConfig);
         }
+        fareTable.put(priceConfig);
         return new Response<>(1, "Create success", priceConfig);
     }
 
@@ -82,23 +87,16 @@ public class PriceServiceImpl implements PriceService {
 
     @Override
     public Response findByRouteIdsAndTrainTypes(List<String> ridsAndTts, HttpHeaders headers){
-        List<String> routeIds = new ArrayList<>();
-        List<String> trainTypes = new ArrayList<>();
+        Map<String, PriceConfig> pcMap = new HashMap<>();
         for(String rts: ridsAndTts){
             List<String> r_t  = Arrays.asList(rts.split(":"));
-            routeIds.add(r_t.get(0));
-            trainTypes.add(r_t.get(1));
-        }
-        List<PriceConfig> pcs = priceConfigRepository.findByRouteIdsAndTrainTypes(routeIds, trainTypes);
-        Map<String, PriceConfig> pcMap = new HashMap<>();
-        for(PriceConfig pc: pcs){
-            String key = pc.getRouteId() + ":" + pc.getTrainType();
-            if(ridsAndTts.contains(key)){
-                pcMap.put(key, pc);
+            PriceConfig pc = r_t.size() < 2 ? null : fareTable.config(r_t.get(0), r_t.get(1));
+            if(pc != null){
+                pcMap.put(rts, pc);
             }
         }
         if (pcMap == null) {
-            PriceServiceImpl.LOGGER.warn("[findByRouteIdsAndTrainTypes][Find by routes and train types warn][PricrConfig not found][RouteIds: {}, TrainTypes: {}]",routeIds,trainTypes);
+            PriceServiceImpl.LOGGER.warn("[findByRouteIdsAndTrainTypes][Find by routes and train types warn][PricrConfig not found][RouteIds and TrainTypes: {}]",ridsAndTts);
             return new Response<>(0, noThatConfig, null);
         } else {
             return new Response<>(1, "Success", pcMap);
@@ -106,6 +104,16 @@ public class PriceServiceImpl implements PriceService {
     }
 
 
+    @Override
+    public Response quoteFares(List<FareQuote> queries, HttpHeaders headers) {
+        List<FareQuote> quotes = fareTable.quote(queries, headers);
+        if (quotes.isEmpty()) {
+            PriceServiceImpl.LOGGER.warn("[quoteFares][Quote fares warn][{}]", "No queries");
+            return new Response<>(0, "No fare queries", null);
+        }
+        return new Response<>(1, "Success", quotes);
+    }
+
     @Override
     public Response findAllPriceConfig(HttpHeaders headers) {
         List<PriceConfig> list = priceConfigRepository.findAll();
@@ -131,6 +139,7 @@ public class PriceServiceImpl implements PriceService {
         } else {
             PriceConfig pc = op.get();
             priceConfigRepository.delete(pc);
+            fareTable.remove(pc.getId());
             return new Response<>(1, "Delete success", pc);
         }
     }
@@ -149,6 +158,7 @@ public class PriceServiceImpl implements PriceService {
             priceConfig.setRouteId(c.getRouteId());
             priceConfig.setTrainType(c.getTrainType());
             priceConfigRepository.save(priceConfig);
+            fareTable.put(priceConfig);
             return new Response<>(1, "Update success", priceConfig);
         }
     }
@@ -1,5 +1,7 @@
 package price.service;
 
+import edu.fudan.common.entity.FareQuote;
+import edu.fudan.common.entity.Route;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -10,12 +12,19 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
-import org.springframework.http.HttpHeaders;
+import org.mockito.Spy;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
 import price.entity.PriceConfig;
 import price.repository.PriceConfigRepository;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @RunWith(JUnit4.class)
@@ -27,11 +36,19 @@ public class PriceServiceImplTest {
     @Mock
     private PriceConfigRepository priceConfigRepository;
 
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Spy
+    private FareTable fareTable = new FareTable();
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(fareTable, "priceConfigRepository", priceConfigRepository);
+        ReflectionTestUtils.setField(fareTable, "restTemplate", restTemplate);
     }
 
     @Test
@@ -123,4 +140,44 @@ public class PriceServiceImplTest {
         Assert.assertEquals(new Response<>(1, "Update success", c), result);
     }
 
+    @Test
+    public void testQuoteFares() {
+        PriceConfig config = new PriceConfig("config_id", "GaoTieOne", "route_id", 0.5, 2.0);
+        fareTable.put(config);
+        Route route = new Route("route_id", Arrays.asList("nanjing", "suzhou", "shanghai"), Arrays.asList(0, 200, 250), "nanjing", "shanghai");
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/routeservice/routes/byIds"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, null, Collections.singletonList(route)), HttpStatus.OK));
+
+        List<FareQuote> queries = Arrays.asList(
+                new FareQuote("route_id", "GaoTieOne", "suzhou", "shanghai"),
+                new FareQuote("route_id", "GaoTieOne", "shanghai", "suzhou"),
+                new FareQuote("route_id", "DongCheOne", "nanjing", "shanghai"));
+        List<FareQuote> quotes = (List<FareQuote>) priceServiceImpl.quoteFares(queries, headers).getData();
+        Assert.assertTrue(quotes.get(0).isPriced());
+        Assert.assertEquals(25.0, quotes.get(0).getEconomyClass(), 0.0);
+        Assert.assertEquals(100.0, quotes.get(0).getConfortClass(), 0.0);
+        Assert.assertFalse(quotes.get(1).isPriced());
+        Assert.assertFalse(quotes.get(2).isPriced());
+
+        //a changed rate is priced from the cached route
+        fareTable.put(new PriceConfig("config_id", "GaoTieOne", "route_id", 1.0, 2.0));
+        quotes = (List<FareQuote>) priceServiceImpl.quoteFares(queries, headers).getData();
+        Assert.assertEquals(250.0, fareTable.quote(Collections.singletonList(new FareQuote("route_id", "GaoTieOne", "nanjing", "shanghai")), headers).get(0).getEconomyClass(), 0.0);
+        Assert.assertEquals(50.0, quotes.get(0).getEconomyClass(), 0.0);
+        Mockito.verify(restTemplate, Mockito.times(1)).exchange(
+                Mockito.anyString(), Mockito.any(HttpMethod.class), Mockito.any(HttpEntity.class), Mockito.any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void testFindByRouteIdsAndTrainTypesExactPairs() {
+        fareTable.put(new PriceConfig("c1", "G", "r1", 1.0, 2.0));
+        fareTable.put(new PriceConfig("c2", "D", "r2", 1.0, 2.0));
+        Response result = priceServiceImpl.findByRouteIdsAndTrainTypes(Arrays.asList("r1:G", "r2:G"), headers);
+        Assert.assertEquals(Collections.singleton("r1:G"), ((Map) result.getData()).keySet());
+    }
+
 }
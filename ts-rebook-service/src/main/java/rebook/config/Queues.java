@@ -0,0 +1,38 @@
+package rebook.config;
+
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author fdse
+ */
+@Configuration
+public class Queues {
+
+    /**
+     * durable, claimed orders not yet deleted survive a restart of the rebook service
+     */
+    public final static String orderCleanupQueue = "rebook_order_cleanup";
+
+    /**
+     * cleanups wait here between attempts and expire back into orderCleanupQueue
+     */
+    public final static String orderCleanupRetryQueue = "rebook_order_cleanup_retry";
+
+    @Bean
+    public Queue orderCleanupQueue() {
+        return QueueBuilder.durable(orderCleanupQueue).build();
+    }
+
+    @Bean
+    public Queue orderCleanupRetryQueue(@Value("${rebook.cleanup.retry-delay-ms:30000}") long retryDelayMs) {
+        return QueueBuilder.durable(orderCleanupRetryQueue)
+                .withArgument("x-message-ttl", retryDelayMs)
+                .withArgument("x-dead-letter-exchange", "")
+                .withArgument("x-dead-letter-routing-key", orderCleanupQueue)
+                .build();
+    }
+}
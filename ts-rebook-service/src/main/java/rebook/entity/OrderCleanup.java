@@ -0,0 +1,28 @@
+package rebook.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Claimed copy of an order moved to the other order service, still to be
+ * deleted on the service of its old trip.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+public class OrderCleanup {
+
+    private String orderId;
+
+    /**
+     * the old trip, it picks the order service holding the copy
+     */
+    private String oldTripId;
+
+    private int attempts;
+
+    public OrderCleanup() {
+        //Default Constructor
+    }
+}
@@ -0,0 +1,36 @@
+package rebook.mq;
+
+import edu.fudan.common.security.jwt.ServiceToken;
+import edu.fudan.common.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import rebook.config.Queues;
+import rebook.entity.OrderCleanup;
+import rebook.service.ClaimedOrderCleanup;
+
+/**
+ * Claimed orders whose delete failed during the rebook, deleted with a
+ * service token since the user token of the rebook may have expired.
+ */
+@Component
+public class RabbitReceive {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitReceive.class);
+
+    @Autowired
+    private ClaimedOrderCleanup claimedOrderCleanup;
+
+    @RabbitListener(queues = Queues.orderCleanupQueue)
+    public void process(String payload) {
+        OrderCleanup cleanup = JsonUtils.json2Object(payload, OrderCleanup.class);
+        if (cleanup == null) {
+            logger.error("[process][json2Object][Receive order cleanup object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable order cleanup");
+        }
+        claimedOrderCleanup.retry(cleanup, ServiceToken.headers("ts-rebook-service"));
+    }
+}
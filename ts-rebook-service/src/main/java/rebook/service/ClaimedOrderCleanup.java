@@ -0,0 +1,107 @@
+package rebook.service;
+
+import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import rebook.config.Queues;
+import rebook.entity.OrderCleanup;
+
+/**
+ * Deletes the claimed copy of an order once it was created on the other
+ * order service. The delete is retried at once a few times; a copy still
+ * there is put on a durable queue and deleted from there by
+ * {@link rebook.mq.RabbitReceive}, so the order never stays live on both sides.
+ *
+ * @author fdse
+ */
+@Component
+public class ClaimedOrderCleanup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClaimedOrderCleanup.class);
+
+    /**
+     * answer of the order services for an order that is gone, e.g. deleted by an attempt whose answer was lost
+     */
+    private static final String ORDER_NOT_EXIST = "Order Not Exist.";
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private AmqpTemplate rabbitTemplate;
+
+    /**
+     * deletes tried during the rebook request before the cleanup is queued
+     */
+    @Value("${rebook.cleanup.attempts:3}")
+    private int attempts = 3;
+
+    /**
+     * Delete the copy, or queue its deletion when the order service does not take it now.
+     */
+    public void drop(String orderId, String oldTripId, HttpHeaders headers) {
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            if (delete(orderId, oldTripId, headers)) {
+                return;
+            }
+        }
+        OrderCleanup cleanup = new OrderCleanup(orderId, oldTripId, attempts);
+        try {
+            rabbitTemplate.convertAndSend(Queues.orderCleanupQueue, JsonUtils.object2Json(cleanup));
+            ClaimedOrderCleanup.LOGGER.warn("[drop][Delete old order queued][OrderId: {}, TripId: {}]", orderId, oldTripId);
+        } catch (AmqpException e) {
+            ClaimedOrderCleanup.LOGGER.error("[drop][Queue old order delete fail][OrderId: {}, TripId: {}, exception: {}]", orderId, oldTripId, e.getMessage());
+        }
+    }
+
+    /**
+     * One more attempt for a queued cleanup, parked on the retry queue when it fails again.
+     */
+    public void retry(OrderCleanup cleanup, HttpHeaders headers) {
+        if (delete(cleanup.getOrderId(), cleanup.getOldTripId(), headers)) {
+            ClaimedOrderCleanup.LOGGER.info("[retry][Delete old order success][OrderId: {}, attempts: {}]", cleanup.getOrderId(), cleanup.getAttempts() + 1);
+            return;
+        }
+        cleanup.setAttempts(cleanup.getAttempts() + 1);
+        rabbitTemplate.convertAndSend(Queues.orderCleanupRetryQueue, JsonUtils.object2Json(cleanup));
+    }
+
+    /**
+     * @return true when the copy is gone
+     */
+    boolean delete(String orderId, String oldTripId, HttpHeaders headers) {
+        String requestUrl;
+        if (oldTripId.startsWith("G") || oldTripId.startsWith("D")) {
+            requestUrl = "http://ts-order-service/api/v1/orderservice/order/" + orderId;
+        } else {
+            requestUrl = "http://ts-order-other-service/api/v1/orderOtherService/orderOther/" + orderId;
+        }
+        try {
+            ResponseEntity<Response> re = restTemplate.exchange(
+                    requestUrl,
+                    HttpMethod.DELETE,
+                    new HttpEntity(RebookServiceImpl.getAuthorizationHeadersFrom(headers)),
+                    Response.class);
+            Response result = re.getBody();
+            if (result != null && (result.getStatus() == 1 || ORDER_NOT_EXIST.equals(result.getMsg()))) {
+                return true;
+            }
+            ClaimedOrderCleanup.LOGGER.warn("[delete][Delete old order fail][OrderId: {}, TripId: {}, msg: {}]", orderId, oldTripId, result == null ? null : result.getMsg());
+        } catch (RestClientException e) {
+            ClaimedOrderCleanup.LOGGER.warn("[delete][Delete old order fail][OrderId: {}, TripId: {}, exception: {}]", orderId, oldTripId, e.getMessage());
+        }
+        return false;
+    }
+}
@@ -1,5 +1,6 @@
 package rebook.service;
 
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.Trip;
 import edu.fudan.common.entity.TripAllDetail;
 import edu.fudan.common.entity.TripAllDetailInfo;
@@ -11,6 +12,7 @@ import org.apache.tomcat.jni.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpEntity;
@@ -25,7 +27,9 @@ import rebook.entity.*;
 import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author fdse
@@ -37,9 +41,30 @@ public class RebookServiceImpl implements RebookService {
     private RestTemplate restTemplate;
     @Autowired
     private DiscoveryClient discoveryClient;
+    @Autowired
+    private TrainTypeClient trainTypeClient;
+    @Autowired
+    private ClaimedOrderCleanup claimedOrderCleanup;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RebookServiceImpl.class);
 
+    /**
+     * how long the new seat stays held while the money is settled and the order is moved
+     */
+    @Value("${rebook.seat-hold.ttl-seconds:60}")
+    private int seatHoldTtlSeconds = 60;
+
+    /**
+     * how long a price quote waits for payDifference
+     */
+    @Value("${rebook.quote.ttl-seconds:300}")
+    private long quoteTtlSeconds = 300;
+
+    /**
+     * order id -> quote of a rebook waiting for the user to pay the difference
+     */
+    private final Map<String, Quote> quotes = new ConcurrentHashMap<>();
+
     private String getServiceUrl(String serviceName) {
         return "http://" + serviceName;
     }
@@ -84,58 +109,28 @@ public class RebookServiceImpl implements RebookService {
         }
 
         //The departure and destination cannot be changed, only the train number, seat and time can be changed
-        //Check the info of seat availability and trains
-        TripAllDetailInfo gtdi = new TripAllDetailInfo();
-        gtdi.setFrom(order.getFrom());
-        gtdi.setTo(order.getTo());
-        gtdi.setTravelDate(info.getDate());
-        gtdi.setTripId(info.getTripId());
-        Response<TripAllDetail> gtdr = getTripAllDetailInformation(gtdi, info.getTripId(), httpHeaders);
+        //The seat itself is held when the order is swapped, the trip detail gives the price
+        Response<TripAllDetail> gtdr = getTripAllDetailInformation(order, info, httpHeaders);
         if (gtdr.getStatus() == 0) {
             RebookServiceImpl.LOGGER.warn("[rebook][Rebook warn][Trip detail not found][OrderId: {}]",info.getOrderId());
             return new Response<>(0, gtdr.getMsg(), null);
-        } else {
-            TripResponse tripResponse = gtdr.getData().getTripResponse();
-            if (info.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
-                if (tripResponse.getConfortClass() <= 0) {
-                    RebookServiceImpl.LOGGER.warn("[rebook][Rebook warn][Seat Not Enough][OrderId: {},SeatType: {}]",info.getOrderId(),info.getSeatType());
-                    return new Response<>(0, "Seat Not Enough", null);
-                }
-            } else {
-                if (tripResponse.getEconomyClass() == SeatClass.SECONDCLASS.getCode() && tripResponse.getConfortClass() <= 0) {
-                    RebookServiceImpl.LOGGER.warn("[rebook][Rebook warn][Seat Not Enough][OrderId: {},SeatType: {}]",info.getOrderId(),info.getSeatType());
-                    return new Response<>(0, "Seat Not Enough", null);
-                }
-            }
         }
 
         //Deal with the difference, more refund less compensation
-        //Return the original ticket so that someone else can book the corresponding seat
-
-        String ticketPrice = "0";
-        if (info.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
-            ticketPrice = ((TripAllDetail) gtdr.getData()).getTripResponse().getPriceForConfortClass();
-        } else if (info.getSeatType() == SeatClass.SECONDCLASS.getCode()) {
-            ticketPrice = ((TripAllDetail) gtdr.getData()).getTripResponse().getPriceForEconomyClass();
-        }
-        String oldPrice = order.getPrice();
-        BigDecimal priceOld = new BigDecimal(oldPrice);
+        String ticketPrice = ticketPriceOf(gtdr.getData(), info.getSeatType());
+        BigDecimal priceOld = new BigDecimal(order.getPrice());
         BigDecimal priceNew = new BigDecimal(ticketPrice);
         if (priceOld.compareTo(priceNew) > 0) {
             //Refund the difference
-            String difference = priceOld.subtract(priceNew).toString();
-            if (!drawBackMoney(info.getLoginId(), difference, httpHeaders)) {
-                RebookServiceImpl.LOGGER.warn("[rebook][Rebook warn][Can't draw back the difference money][OrderId: {},LoginId: {},difference: {}]",info.getOrderId(),info.getLoginId(),difference);
-                return new Response<>(0, "Can't draw back the difference money, please try again!", null);
-            }
-            return updateOrder(order, info, (TripAllDetail) gtdr.getData(), ticketPrice, httpHeaders);
-
+            return swapOrder(order, info, gtdr.getData(), ticketPrice, priceOld.subtract(priceNew).toString(), false, httpHeaders);
         } else if (priceOld.compareTo(priceNew) == 0) {
-            //do nothing
-            return updateOrder(order, info, (TripAllDetail) gtdr.getData(), ticketPrice, httpHeaders);
+            return swapOrder(order, info, gtdr.getData(), ticketPrice, null, false, httpHeaders);
         } else {
-            //make up the difference
+            //make up the difference, payDifference reuses this quote instead of asking for the trip detail again
             String difference = priceNew.subtract(priceOld).toString();
+            long now = System.currentTimeMillis();
+            quotes.values().removeIf(quote -> quote.expiresAt <= now);
+            quotes.put(info.getOrderId(), new Quote(info, gtdr.getData(), ticketPrice, now + quoteTtlSeconds * 1000));
             Order orderMoneyDifference = new Order();
             orderMoneyDifference.setDifferenceMoney(difference);
             return new Response<>(2, "Please pay the different money!", orderMoneyDifference);
@@ -151,113 +146,144 @@ public class RebookServiceImpl implements RebookService {
         }
         Order order = (Order) queryOrderResult.getData();
 
-        TripAllDetailInfo gtdi = new TripAllDetailInfo();
-        gtdi.setFrom(order.getFrom());
-        gtdi.setTo(order.getTo());
-        gtdi.setTravelDate(info.getDate());
-        gtdi.setTripId(info.getTripId());
-        // TripAllDetail
-        Response gtdrResposne = getTripAllDetailInformation(gtdi, info.getTripId(), httpHeaders);
-
-
-        TripAllDetail gtdr = (TripAllDetail) gtdrResposne.getData();
-
-
-        String ticketPrice = "0";
-        if (info.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {
-            ticketPrice = gtdr.getTripResponse().getPriceForConfortClass();
-        } else if (info.getSeatType() == SeatClass.SECONDCLASS.getCode()) {
-            ticketPrice = gtdr.getTripResponse().getPriceForEconomyClass();
+        TripAllDetail gtdr;
+        String ticketPrice;
+        Quote quote = quotes.remove(info.getOrderId());
+        if (quote != null && quote.matches(info, System.currentTimeMillis())) {
+            gtdr = quote.tripAllDetail;
+            ticketPrice = quote.ticketPrice;
+        } else {
+            Response<TripAllDetail> gtdrResponse = getTripAllDetailInformation(order, info, httpHeaders);
+            if (gtdrResponse.getStatus() == 0) {
+                RebookServiceImpl.LOGGER.warn("[payDifference][Pay difference warn][Trip detail not found][OrderId: {}]",info.getOrderId());
+                return new Response<>(0, gtdrResponse.getMsg(), null);
+            }
+            gtdr = gtdrResponse.getData();
+            ticketPrice = ticketPriceOf(gtdr, info.getSeatType());
         }
-        String oldPrice = order.getPrice();
-        BigDecimal priceOld = new BigDecimal(oldPrice);
+        BigDecimal priceOld = new BigDecimal(order.getPrice());
         BigDecimal priceNew = new BigDecimal(ticketPrice);
+        return swapOrder(order, info, gtdr, ticketPrice, priceNew.subtract(priceOld).toString(), true, httpHeaders);
+    }
 
-        if (payDifferentMoney(info.getOrderId(), info.getTripId(), info.getLoginId(), priceNew.subtract(priceOld).toString(), httpHeaders)) {
-            return updateOrder(order, info, gtdr, ticketPrice, httpHeaders);
+    /**
+     * Hold the new seat, settle the money and move the order in one step of
+     * the order service. A failure releases the hold and reverses the money,
+     * so the order keeps its old seat and the user is charged nothing.
+     *
+     * @param difference money to settle, null when the prices are equal
+     * @param userPays   true when the user pays the difference, false when it is refunded
+     */
+    private Response swapOrder(Order order, RebookInfo info, TripAllDetail gtdr, String ticketPrice, String difference,
+                               boolean userPays, HttpHeaders httpHeaders) {
+        Trip trip = gtdr.getTrip();
+        //the travel service sends route and train type with the trip detail, older ones leave it to us
+        Route route;
+        TrainType trainType;
+        if (gtdr.getTravelResult() != null) {
+            route = gtdr.getTravelResult().getRoute();
+            trainType = gtdr.getTravelResult().getTrainType();
         } else {
-            RebookServiceImpl.LOGGER.warn("[payDifference][Pay difference warn][Can't pay the difference money][OrderId: {},LoginId: {},TripId: {}]",info.getOrderId(),info.getLoginId(),info.getTripId());
-            return new Response<>(0, "Can't pay the difference,please try again", null);
+            route = getRouteByRouteId(trip.getRouteId(), httpHeaders);
+            trainType = queryTrainTypeByName(trip.getTrainTypeName(), httpHeaders);
+        }
+        int seatClass = info.getSeatType() == SeatClass.FIRSTCLASS.getCode() ? SeatClass.FIRSTCLASS.getCode() : SeatClass.SECONDCLASS.getCode();
+        Seat seatRequest = new Seat();
+        seatRequest.setTravelDate(info.getDate());
+        seatRequest.setTrainNumber(info.getTripId());
+        seatRequest.setSeatType(seatClass);
+        seatRequest.setStartStation(order.getFrom());
+        seatRequest.setDestStation(order.getTo());
+        seatRequest.setTotalNum(seatClass == SeatClass.FIRSTCLASS.getCode() ? trainType.getConfortClass() : trainType.getEconomyClass());
+        seatRequest.setStations(route.getStations());
+
+        //1.Hold the new seat, nobody else can get it from now on
+        Response<SeatHold> held = holdRebookSeat(seatRequest, order.getId(), httpHeaders);
+        if (held.getStatus() != 1) {
+            RebookServiceImpl.LOGGER.warn("[swapOrder][Rebook warn][Seat Not Enough][OrderId: {},SeatType: {}]",info.getOrderId(),info.getSeatType());
+            return new Response<>(0, "Seat Not Enough", null);
+        }
+        SeatHold hold = held.getData();
+
+        //2.Settle the money
+        if (difference != null) {
+            boolean settled = userPays
+                    ? payDifferentMoney(info.getOrderId(), info.getTripId(), info.getLoginId(), difference, httpHeaders)
+                    : drawBackMoney(info.getLoginId(), difference, httpHeaders);
+            if (!settled) {
+                releaseSeatHold(hold.getHoldId(), httpHeaders);
+                if (userPays) {
+                    RebookServiceImpl.LOGGER.warn("[payDifference][Pay difference warn][Can't pay the difference money][OrderId: {},LoginId: {},TripId: {}]",info.getOrderId(),info.getLoginId(),info.getTripId());
+                    return new Response<>(0, "Can't pay the difference,please try again", null);
+                }
+                RebookServiceImpl.LOGGER.warn("[rebook][Rebook warn][Can't draw back the difference money][OrderId: {},LoginId: {},difference: {}]",info.getOrderId(),info.getLoginId(),difference);
+                return new Response<>(0, "Can't draw back the difference money, please try again!", null);
+            }
         }
-    }
-
-    private Response updateOrder(Order order, RebookInfo info, TripAllDetail gtdr, String ticketPrice, HttpHeaders httpHeaders) {
 
-        //4.Modify the original order and set the information of the order
-        Trip trip = gtdr.getTrip();
+        //3.Move the order to the new seat, its old seat is free once this commits
         String oldTripId = order.getTrainNumber();
+        boolean crossService = tripGD(oldTripId) != tripGD(info.getTripId());
+        Order claimedOrder = null;
+        if (crossService) {
+            //the order moves between the order services, claim it on its old side first with the same
+            //PAID -> CHANGE transition, so a second rebook or a cancel can't race the move
+            order.setStatus(OrderStatus.CHANGE.getCode());
+            Response claimed = rebookOrder(order, oldTripId, httpHeaders);
+            if (claimed.getStatus() != 1) {
+                return undoSwap(hold, info, difference, userPays, claimed.getMsg(), httpHeaders);
+            }
+            claimedOrder = JsonUtils.conveterObject(claimed.getData(), Order.class);
+        }
         order.setTrainNumber(info.getTripId());
         order.setBoughtDate(StringUtils.Date2String(new Date()));
         order.setStatus(OrderStatus.CHANGE.getCode());
-        order.setPrice(ticketPrice);//Set ticket price
-        order.setSeatClass(info.getSeatType());
+        order.setPrice(ticketPrice);
+        order.setSeatClass(seatClass);
+        order.setSeatNumber("" + hold.getSeatNo());
         order.setTravelDate(info.getDate());
         order.setTravelTime(trip.getStartTime());
-
-        Route route = getRouteByRouteId(trip.getRouteId(), httpHeaders);
-        TrainType trainType = queryTrainTypeByName(trip.getTrainTypeName(), httpHeaders);
-        List<String> stations = route.getStations();
-        int firstClassTotalNum = trainType.getConfortClass();
-        int secondClassTotalNum = trainType.getEconomyClass();
-        if (info.getSeatType() == SeatClass.FIRSTCLASS.getCode()) {//Dispatch the seat
-            Ticket ticket =
-                    dipatchSeat(info.getDate(),
-                            order.getTrainNumber(), order.getFrom(), order.getTo(),
-                            SeatClass.FIRSTCLASS.getCode(), firstClassTotalNum, stations, httpHeaders);
-            order.setSeatClass(SeatClass.FIRSTCLASS.getCode());
-            order.setSeatNumber("" + ticket.getSeatNo());
+        Response swapped;
+        if (!crossService) {
+            swapped = rebookOrder(order, info.getTripId(), httpHeaders);
         } else {
-            Ticket ticket =
-                    dipatchSeat(info.getDate(),
-                            order.getTrainNumber(), order.getFrom(), order.getTo(),
-                            SeatClass.SECONDCLASS.getCode(), secondClassTotalNum, stations, httpHeaders);
-            order.setSeatClass(SeatClass.SECONDCLASS.getCode());
-            order.setSeatNumber("" + ticket.getSeatNo());
-        }
-
-        //Update order information
-        //If the original order and the new order are located in the high-speed train and other orders respectively, the original order should be deleted and created on the other side with a new id.
-        if ((tripGD(oldTripId) && tripGD(info.getTripId())) || (!tripGD(oldTripId) && !tripGD(info.getTripId()))) {
-
-            Response changeOrderResult = updateOrder(order, info.getTripId(), httpHeaders);
-            if (changeOrderResult.getStatus() == 1) {
-                return new Response<>(1, "Success!", order);
+            //it is created on the other side with a new id, the claimed one is dropped afterwards
+            swapped = createOrder(order, order.getTrainNumber(), httpHeaders);
+            if (swapped.getStatus() == 1) {
+                claimedOrderCleanup.drop(order.getId(), oldTripId, httpHeaders);
             } else {
-                RebookServiceImpl.LOGGER.error("[updateOrder][Update order error][OrderId: {},TripId: {}]",info.getOrderId(),info.getTripId());
-                return new Response<>(0, "Can't update Order!", null);
+                claimedOrder.setStatus(OrderStatus.PAID.getCode());
+                if (rebookOrder(claimedOrder, oldTripId, httpHeaders).getStatus() != 1) {
+                    RebookServiceImpl.LOGGER.error("[swapOrder][Undo order claim fail][OrderId: {},TripId: {}]",info.getOrderId(),oldTripId);
+                }
             }
-        } else {
-            //Delete the original order
-            deleteOrder(order.getId().toString(), oldTripId, httpHeaders);
-            //Create a new order on the other side
-            createOrder(order, order.getTrainNumber(), httpHeaders);
-            return new Response<>(1, "Success", order);
         }
+        if (swapped.getStatus() != 1) {
+            return undoSwap(hold, info, difference, userPays, swapped.getMsg(), httpHeaders);
+        }
+        Order rebooked = JsonUtils.conveterObject(swapped.getData(), Order.class);
+        confirmSeatHold(hold.getHoldId(), rebooked.getId(), httpHeaders);
+        return new Response<>(1, "Success!", rebooked);
     }
 
-    public Ticket dipatchSeat(String date, String tripId, String startStationId, String endStataionId, int seatType, int tatalNum, List<String> stations, HttpHeaders httpHeaders) {
-        Seat seatRequest = new Seat();
-        seatRequest.setTravelDate(date);
-        seatRequest.setTrainNumber(tripId);
-        seatRequest.setSeatType(seatType);
-        seatRequest.setStartStation(startStationId);
-        seatRequest.setDestStation(endStataionId);
-        seatRequest.setTotalNum(tatalNum);
-        seatRequest.setStations(stations);
-
-        HttpHeaders newHeaders = getAuthorizationHeadersFrom(httpHeaders);
-        HttpEntity requestEntityTicket = new HttpEntity(seatRequest, newHeaders);
-        String seat_service_url = getServiceUrl("ts-seat-service");
-        ResponseEntity<Response<Ticket>> reTicket = restTemplate.exchange(
-                seat_service_url + "/api/v1/seatservice/seats",
-                HttpMethod.POST,
-                requestEntityTicket,
-                new ParameterizedTypeReference<Response<Ticket>>() {
-                });
-        return reTicket.getBody().getData();
+    /**
+     * The order could not be moved: give the held seat back and reverse the settled money.
+     */
+    private Response undoSwap(SeatHold hold, RebookInfo info, String difference, boolean userPays, String msg,
+                              HttpHeaders httpHeaders) {
+        releaseSeatHold(hold.getHoldId(), httpHeaders);
+        if (difference != null) {
+            boolean reversed = userPays
+                    ? drawBackMoney(info.getLoginId(), difference, httpHeaders)
+                    : payDifferentMoney(info.getOrderId(), info.getTripId(), info.getLoginId(), difference, httpHeaders);
+            if (!reversed) {
+                RebookServiceImpl.LOGGER.error("[swapOrder][Reverse difference money fail][OrderId: {},LoginId: {},difference: {}]",info.getOrderId(),info.getLoginId(),difference);
+            }
+        }
+        RebookServiceImpl.LOGGER.error("[swapOrder][Update order error][OrderId: {},TripId: {}, msg: {}]",info.getOrderId(),info.getTripId(),msg);
+        return new Response<>(0, "Can't update Order!", null);
     }
 
-
     private boolean tripGD(String tripId) {
         return tripId.startsWith("G") || tripId.startsWith("D");
     }
@@ -292,6 +318,24 @@ public class RebookServiceImpl implements RebookService {
     }
 
 
+    private String ticketPriceOf(TripAllDetail gtdr, int seatType) {
+        if (seatType == SeatClass.FIRSTCLASS.getCode()) {
+            return gtdr.getTripResponse().getPriceForConfortClass();
+        } else if (seatType == SeatClass.SECONDCLASS.getCode()) {
+            return gtdr.getTripResponse().getPriceForEconomyClass();
+        }
+        return "0";
+    }
+
+    private Response<TripAllDetail> getTripAllDetailInformation(Order order, RebookInfo info, HttpHeaders httpHeaders) {
+        TripAllDetailInfo gtdi = new TripAllDetailInfo();
+        gtdi.setFrom(order.getFrom());
+        gtdi.setTo(order.getTo());
+        gtdi.setTravelDate(info.getDate());
+        gtdi.setTripId(info.getTripId());
+        return getTripAllDetailInformation(gtdi, info.getTripId(), httpHeaders);
+    }
+
     private Response<TripAllDetail> getTripAllDetailInformation(TripAllDetailInfo gtdi, String tripId, HttpHeaders httpHeaders) {
         Response<TripAllDetail> gtdr;
         String requestUrl = "";
@@ -316,65 +360,90 @@ public class RebookServiceImpl implements RebookService {
         return gtdr;
     }
 
-    private Response createOrder(Order order, String tripId, HttpHeaders httpHeaders) {
-        String requestUrl = "";
-        String order_service_url = getServiceUrl("ts-order-service");
-        String order_other_service_url = getServiceUrl("ts-order-other-service");
-        if (tripId.startsWith("G") || tripId.startsWith("D")) {
-            // ts-order-service:12031/order/create
-            requestUrl = order_service_url + "/api/v1/orderservice/order";
-        } else {
-            //ts-order-other-service:12032/orderOther/create
-            requestUrl = order_other_service_url + "/api/v1/orderOtherService/orderOther";
-        }
+    private Response<SeatHold> holdRebookSeat(Seat seatRequest, String orderId, HttpHeaders httpHeaders) {
         HttpHeaders newHeaders = getAuthorizationHeadersFrom(httpHeaders);
-        HttpEntity requestCreateOrder = new HttpEntity(order, newHeaders);
-        ResponseEntity<Response> reCreateOrder = restTemplate.exchange(
-                requestUrl,
+        HttpEntity requestEntityHold = new HttpEntity(seatRequest, newHeaders);
+        String seat_service_url = getServiceUrl("ts-seat-service");
+        ResponseEntity<Response<SeatHold>> reHold = restTemplate.exchange(
+                seat_service_url + "/api/v1/seatservice/seats/holds/rebook/" + orderId + "?ttlSeconds=" + seatHoldTtlSeconds,
                 HttpMethod.POST,
-                requestCreateOrder,
-                Response.class);
-        return reCreateOrder.getBody();
+                requestEntityHold,
+                new ParameterizedTypeReference<Response<SeatHold>>() {
+                });
+        return reHold.getBody();
+    }
+
+    private void confirmSeatHold(String holdId, String orderId, HttpHeaders httpHeaders) {
+        HttpHeaders newHeaders = getAuthorizationHeadersFrom(httpHeaders);
+        String seat_service_url = getServiceUrl("ts-seat-service");
+        try {
+            ResponseEntity<Response> reConfirm = restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/" + holdId + "/confirm/" + orderId,
+                    HttpMethod.POST,
+                    new HttpEntity(newHeaders),
+                    Response.class);
+            if (reConfirm.getBody() == null || reConfirm.getBody().getStatus() != 1) {
+                // the order is stored, its seat shows up in the sold tickets anyway
+                RebookServiceImpl.LOGGER.warn("[confirmSeatHold][Hold not confirmed][HoldId: {}, OrderId: {}]", holdId, orderId);
+            }
+        } catch (Exception e) {
+            RebookServiceImpl.LOGGER.warn("[confirmSeatHold][Confirm hold fail][HoldId: {}, OrderId: {}, exception: {}]", holdId, orderId, e.getMessage());
+        }
+    }
+
+    private void releaseSeatHold(String holdId, HttpHeaders httpHeaders) {
+        HttpHeaders newHeaders = getAuthorizationHeadersFrom(httpHeaders);
+        String seat_service_url = getServiceUrl("ts-seat-service");
+        try {
+            restTemplate.exchange(
+                    seat_service_url + "/api/v1/seatservice/seats/holds/" + holdId,
+                    HttpMethod.DELETE,
+                    new HttpEntity(newHeaders),
+                    Response.class);
+        } catch (Exception e) {
+            // the hold runs out on its own
+            RebookServiceImpl.LOGGER.warn("[releaseSeatHold][Release hold fail][HoldId: {}, exception: {}]", holdId, e.getMessage());
+        }
     }
 
-    private Response updateOrder(Order info, String tripId, HttpHeaders httpHeaders) {
+    private Response rebookOrder(Order order, String tripId, HttpHeaders httpHeaders) {
         String requestOrderUtl = "";
         String order_service_url = getServiceUrl("ts-order-service");
         String order_other_service_url = getServiceUrl("ts-order-other-service");
         if (tripGD(tripId)) {
-            requestOrderUtl = order_service_url + "/api/v1/orderservice/order";
+            requestOrderUtl = order_service_url + "/api/v1/orderservice/order/rebook";
         } else {
-            requestOrderUtl = order_other_service_url + "/api/v1/orderOtherService/orderOther";
+            requestOrderUtl = order_other_service_url + "/api/v1/orderOtherService/orderOther/rebook";
         }
         HttpHeaders newHeaders = getAuthorizationHeadersFrom(httpHeaders);
-        HttpEntity requestUpdateOrder = new HttpEntity(info, newHeaders);
-        ResponseEntity<Response> reUpdateOrder = restTemplate.exchange(
+        HttpEntity requestRebookOrder = new HttpEntity(order, newHeaders);
+        ResponseEntity<Response> reRebookOrder = restTemplate.exchange(
                 requestOrderUtl,
                 HttpMethod.PUT,
-                requestUpdateOrder,
+                requestRebookOrder,
                 Response.class);
-        return reUpdateOrder.getBody();
+        return reRebookOrder.getBody();
     }
 
-    private Response deleteOrder(String orderId, String tripId, HttpHeaders httpHeaders) {
-
+    private Response createOrder(Order order, String tripId, HttpHeaders httpHeaders) {
         String requestUrl = "";
         String order_service_url = getServiceUrl("ts-order-service");
         String order_other_service_url = getServiceUrl("ts-order-other-service");
-        if (tripGD(tripId)) {
-            requestUrl = order_service_url + "/api/v1/orderservice/order/" + orderId;
+        if (tripId.startsWith("G") || tripId.startsWith("D")) {
+            // ts-order-service:12031/order/create
+            requestUrl = order_service_url + "/api/v1/orderservice/order";
         } else {
-            requestUrl = order_other_service_url + "/api/v1/orderOtherService/orderOther/" + orderId;
+            //ts-order-other-service:12032/orderOther/create
+            requestUrl = order_other_service_url + "/api/v1/orderOtherService/orderOther";
         }
         HttpHeaders newHeaders = getAuthorizationHeadersFrom(httpHeaders);
-        HttpEntity requestDeleteOrder = new HttpEntity(newHeaders);
-        ResponseEntity<Response> reDeleteOrder = restTemplate.exchange(
+        HttpEntity requestCreateOrder = new HttpEntity(order, newHeaders);
+        ResponseEntity<Response> reCreateOrder = restTemplate.exchange(
                 requestUrl,
                 HttpMethod.POST,
-                requestDeleteOrder,
+                requestCreateOrder,
                 Response.class);
-
-        return reDeleteOrder.getBody();
+        return reCreateOrder.getBody();
     }
 
     private Response<Order> getOrderByRebookInfo(RebookInfo info, HttpHeaders httpHeaders) {
@@ -402,16 +471,7 @@ public class RebookServiceImpl implements RebookService {
     }
 
     public TrainType queryTrainTypeByName(String trainTypeName, HttpHeaders headers) {
-        HttpEntity requestEntity = new HttpEntity(null);
-        String train_service_url=getServiceUrl("ts-train-service");
-        ResponseEntity<Response> re = restTemplate.exchange(
-                train_service_url + "/api/v1/trainservice/trains/byName/" + trainTypeName,
-                HttpMethod.GET,
-                requestEntity,
-                Response.class);
-        Response  response = re.getBody();
-
-        return JsonUtils.conveterObject(response.getData(), TrainType.class);
+        return trainTypeClient.byName(trainTypeName);
     }
 
     private Route getRouteByRouteId(String routeId, HttpHeaders headers) {
@@ -472,4 +532,33 @@ public class RebookServiceImpl implements RebookService {
         }
         return newHeaders;
     }
+
+    private static class Quote {
+
+        private final String tripId;
+
+        private final String date;
+
+        private final int seatType;
+
+        private final TripAllDetail tripAllDetail;
+
+        private final String ticketPrice;
+
+        private final long expiresAt;
+
+        Quote(RebookInfo info, TripAllDetail tripAllDetail, String ticketPrice, long expiresAt) {
+            this.tripId = info.getTripId();
+            this.date = info.getDate();
+            this.seatType = info.getSeatType();
+            this.tripAllDetail = tripAllDetail;
+            this.ticketPrice = ticketPrice;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean matches(RebookInfo info, long now) {
+            return expiresAt > now && seatType == info.getSeatType()
+                    && Objects.equals(tripId, info.getTripId()) && Objects.equals(date, info.getDate());
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package rebook.service;
+
+import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.util.Response;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.http.*;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+import rebook.config.Queues;
+import rebook.entity.OrderCleanup;
+
+@RunWith(JUnit4.class)
+public class ClaimedOrderCleanupTest {
+
+    @InjectMocks
+    private ClaimedOrderCleanup claimedOrderCleanup;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    @Mock
+    private AmqpTemplate rabbitTemplate;
+
+    private HttpHeaders headers = new HttpHeaders();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testDropRetriesDelete() {
+        Mockito.when(restTemplate.exchange(
+                Mockito.eq("http://ts-order-service/api/v1/orderservice/order/order_id"),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)))
+                .thenThrow(new ResourceAccessException("timeout"))
+                .thenReturn(new ResponseEntity<>(new Response<>(1, "Delete Order Success", null), HttpStatus.OK));
+        claimedOrderCleanup.drop("order_id", "G1234", headers);
+        Mockito.verifyZeroInteractions(rabbitTemplate);
+    }
+
+    @Test
+    public void testDropQueuesDeleteStillFailing() {
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/orderOtherService/orderOther/order_id"),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)))
+                .thenThrow(new ResourceAccessException("connection refused"));
+        claimedOrderCleanup.drop("order_id", "K1345", headers);
+        Mockito.verify(restTemplate, Mockito.times(3)).exchange(
+                Mockito.anyString(), Mockito.eq(HttpMethod.DELETE), Mockito.any(HttpEntity.class), Mockito.eq(Response.class));
+        Mockito.verify(rabbitTemplate).convertAndSend(Queues.orderCleanupQueue,
+                JsonUtils.object2Json(new OrderCleanup("order_id", "K1345", 3)));
+    }
+
+    @Test
+    public void testRetryParksFailedCleanup() {
+        Mockito.when(restTemplate.exchange(
+                Mockito.anyString(),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)))
+                .thenReturn(new ResponseEntity<>(null, HttpStatus.SERVICE_UNAVAILABLE));
+        claimedOrderCleanup.retry(new OrderCleanup("order_id", "G1234", 3), headers);
+        Mockito.verify(rabbitTemplate).convertAndSend(Queues.orderCleanupRetryQueue,
+                JsonUtils.object2Json(new OrderCleanup("order_id", "G1234", 4)));
+    }
+
+    @Test
+    public void testRetryDoneWhenOrderAlreadyGone() {
+        Mockito.when(restTemplate.exchange(
+                Mockito.anyString(),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(0, "Order Not Exist.", null), HttpStatus.OK));
+        claimedOrderCleanup.retry(new OrderCleanup("order_id", "G1234", 3), headers);
+        Mockito.verifyZeroInteractions(rabbitTemplate);
+    }
+}
@@ -1,7 +1,7 @@
 package rebook.service;
 
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.Seat;
-import edu.fudan.common.entity.Ticket;
 import edu.fudan.common.entity.TripAllDetail;
 import edu.fudan.common.entity.TripResponse;
 import edu.fudan.common.util.Response;
@@ -21,6 +21,7 @@ import org.springframework.web.client.RestTemplate;
 import edu.fudan.common.entity.*;
 import rebook.entity.RebookInfo;
 
+import java.util.Arrays;
 import java.util.Date;
 
 @RunWith(JUnit4.class)
@@ -32,6 +33,12 @@ public class RebookServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private TrainTypeClient trainTypeClient;
+
+    @Mock
+    private ClaimedOrderCleanup claimedOrderCleanup;
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
@@ -43,6 +50,7 @@ public class RebookServiceImplTest {
     public void testRebook() {
         RebookInfo info = new RebookInfo();
         info.setOldTripId("G");
+        info.setTripId("G");
         info.setSeatType(2);
 
         //response for getOrderByRebookInfo()
@@ -90,57 +98,165 @@ public class RebookServiceImplTest {
     @Test
     public void testPayDifference() {
         RebookInfo info = new RebookInfo();
-        info.setTripId("G");
-        info.setOldTripId("G");
+        info.setTripId("G1236");
+        info.setOldTripId("G1234");
         info.setLoginId("login_id");
         info.setDate("");
-        info.setSeatType(0);
+        info.setSeatType(2);
+
+        //mock getOrderByRebookInfo(), getTripAllDetailInformation() and holdRebookSeat()
+        Order order = paidOrder("0");
+        mockTypedExchanges(order, tripAllDetail("1.0"));
 
-        //mock getOrderByRebookInfo() and getTripAllDetailInformation()
+        //paying the difference fails
+        mockExchange("/inside_payment/difference", new Response<>(0, null, null));
+        Response result = rebookServiceImpl.payDifference(info, headers);
+        Assert.assertEquals(new Response<>(0, "Can't pay the difference,please try again", null), result);
+        Mockito.verify(restTemplate).exchange(
+                Mockito.contains("/seats/holds/hold_id"),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class));
+    }
+
+    @Test
+    public void testRebookReversesRefundWhenOrderNotMoved() {
+        RebookInfo info = new RebookInfo();
+        info.setTripId("G1236");
+        info.setOldTripId("G1234");
+        info.setLoginId("login_id");
+        info.setDate(StringUtils.Date2String(new Date()));
+        info.setSeatType(2);
+
+        Order order = paidOrder("3.0");
+        mockTypedExchanges(order, tripAllDetail("2.0"));
+        mockExchange("/inside_payment/drawback/", new Response<>(1, null, null));
+        mockExchange("/inside_payment/difference", new Response<>(1, null, null));
+        //another rebook of this order won the race
+        mockExchange("/orderservice/order/rebook", new Response<>(0, "Order status changed, can't rebook", null));
+
+        Response result = rebookServiceImpl.rebook(info, headers);
+        Assert.assertEquals(new Response<>(0, "Can't update Order!", null), result);
+        Mockito.verify(restTemplate).exchange(
+                Mockito.contains("/inside_payment/difference"),
+                Mockito.eq(HttpMethod.POST),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class));
+        Mockito.verify(restTemplate).exchange(
+                Mockito.contains("/seats/holds/hold_id"),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class));
+    }
+
+    @Test
+    public void testRebookAcrossOrderServicesClaimsOldOrderFirst() {
+        RebookInfo info = new RebookInfo();
+        info.setTripId("K1345");
+        info.setOldTripId("G1234");
+        info.setLoginId("login_id");
+        info.setDate(StringUtils.Date2String(new Date()));
+        info.setSeatType(2);
+
+        Order order = paidOrder("2.0");
+        mockTypedExchanges(order, tripAllDetail("2.0"));
+        //the order was cancelled meanwhile, it can't go PAID -> CHANGE
+        mockExchange("/orderservice/order/rebook", new Response<>(0, "Order status changed, can't rebook", null));
+
+        Response result = rebookServiceImpl.rebook(info, headers);
+        Assert.assertEquals(new Response<>(0, "Can't update Order!", null), result);
+        Mockito.verify(restTemplate, Mockito.never()).exchange(
+                Mockito.contains("/orderOtherService/orderOther"),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class));
+        Mockito.verify(restTemplate).exchange(
+                Mockito.contains("/seats/holds/hold_id"),
+                Mockito.eq(HttpMethod.DELETE),
+                Mockito.any(HttpEntity.class),
+                Mockito.eq(Response.class));
+    }
+
+    @Test
+    public void testRebookAcrossOrderServicesDropsClaimedOrder() {
+        RebookInfo info = new RebookInfo();
+        info.setTripId("K1345");
+        info.setOldTripId("G1234");
+        info.setLoginId("login_id");
+        info.setDate(StringUtils.Date2String(new Date()));
+        info.setSeatType(2);
+
+        Order order = paidOrder("2.0");
+        mockTypedExchanges(order, tripAllDetail("2.0"));
+        mockExchange("/orderservice/order/rebook", new Response<>(1, null, order));
+        Order moved = paidOrder("2.0");
+        moved.setId("new_order_id");
+        moved.setTrainNumber("K1345");
+        mockExchange("/orderOtherService/orderOther", new Response<>(1, null, moved));
+
+        Response result = rebookServiceImpl.rebook(info, headers);
+        Assert.assertEquals(1, result.getStatus().intValue());
+        //the claimed copy is dropped on the side of the old trip, retried and queued there when it fails
+        Mockito.verify(claimedOrderCleanup).drop("order_id", "G1234", headers);
+    }
+
+    private Order paidOrder(String price) {
         Order order = new Order();
+        order.setId("order_id");
+        order.setStatus(1);
+        order.setTrainNumber("G1234");
         order.setFrom("from_station");
         order.setTo("to_station");
-        order.setPrice("0");
-        Response<Order> response = new Response<>(1, null, order);
-        ResponseEntity<Response<Order>> re = new ResponseEntity<>(response, HttpStatus.OK);
+        order.setPrice(price);
+        String date = StringUtils.Date2String(new Date());
+        order.setTravelDate(date);
+        order.setTravelTime(date);
+        return order;
+    }
 
+    private TripAllDetail tripAllDetail(String price) {
+        TripResponse tripResponse = new TripResponse();
+        tripResponse.setConfortClass(1);
+        tripResponse.setPriceForConfortClass(price);
+        Trip trip = new Trip();
+        trip.setStartTime(StringUtils.Date2String(new Date()));
+        TrainType trainType = new TrainType();
+        trainType.setConfortClass(10);
+        Route route = new Route();
+        route.setStations(Arrays.asList("from_station", "to_station"));
+        TravelResult travelResult = new TravelResult();
+        travelResult.setTrainType(trainType);
+        travelResult.setRoute(route);
         TripAllDetail tripAllDetail = new TripAllDetail();
-        Response<TripAllDetail> response2 = new Response<>(0, null, tripAllDetail);
-        ResponseEntity<Response<TripAllDetail>> re2 = new ResponseEntity<>(response2, HttpStatus.OK);
+        tripAllDetail.setTripResponse(tripResponse);
+        tripAllDetail.setTrip(trip);
+        tripAllDetail.setTravelResult(travelResult);
+        return tripAllDetail;
+    }
+
+    private void mockTypedExchanges(Order order, TripAllDetail tripAllDetail) {
+        SeatHold hold = new SeatHold();
+        hold.setHoldId("hold_id");
+        hold.setSeatNo(3);
+        ResponseEntity<Response<Order>> re = new ResponseEntity<>(new Response<>(1, null, order), HttpStatus.OK);
+        ResponseEntity<Response<TripAllDetail>> re2 = new ResponseEntity<>(new Response<>(1, null, tripAllDetail), HttpStatus.OK);
+        ResponseEntity<Response<SeatHold>> re3 = new ResponseEntity<>(new Response<>(1, null, hold), HttpStatus.OK);
         Mockito.when(restTemplate.exchange(
                 Mockito.anyString(),
                 Mockito.any(HttpMethod.class),
                 Mockito.any(HttpEntity.class),
                 Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re).thenReturn(re2);
+                .thenReturn(re).thenReturn(re2).thenReturn(re3);
+    }
 
-        //mock queryForStationName() and updateOrder()
-        Response response3 = new Response<>(0, null, "");
-        ResponseEntity<Response> re3 = new ResponseEntity<>(response3, HttpStatus.OK);
+    private void mockExchange(String path, Response response) {
+        ResponseEntity<Response> re = new ResponseEntity<>(response, HttpStatus.OK);
         Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
+                Mockito.contains(path),
                 Mockito.any(HttpMethod.class),
                 Mockito.any(HttpEntity.class),
                 Mockito.any(Class.class)))
-                .thenReturn(re3);
-        Response result = rebookServiceImpl.payDifference(info, headers);
-        Assert.assertEquals(new Response<>(0, "Can't pay the difference,please try again", null), result);
-    }
-
-    @Test
-    public void testDipatchSeat() {
-        Seat seatRequest = new Seat(StringUtils.Date2String(new Date()), "G1234", "start_station", "dest_station", 2, 100, null);
-        HttpEntity requestEntityTicket = new HttpEntity<>(seatRequest, headers);
-        Response<Ticket> response = new Response<>();
-        ResponseEntity<Response<Ticket>> reTicket = new ResponseEntity<>(response, HttpStatus.OK);
-        Mockito.when(restTemplate.exchange(
-                "http://ts-seat-service:18898/api/v1/seatservice/seats",
-                HttpMethod.POST,
-                requestEntityTicket,
-                new ParameterizedTypeReference<Response<Ticket>>() {
-                })).thenReturn(reTicket);
-        Ticket result = rebookServiceImpl.dipatchSeat(StringUtils.Date2String(new Date()), "G1234", "start_station", "dest_station", 2, 100, null,headers);
-        Assert.assertNull(result);
+                .thenReturn(re);
     }
 
 }
@@ -179,9 +179,7 @@ public class RoutePlanServiceImpl implements RoutePlanService {
         //2.Calculate how many stops there are between the two stations
         ArrayList<Integer> gapList = new ArrayList<>();
         for (int i = 0; i < routeList.size(); i++) {
-            int indexStart = routeList.get(i).getStations().indexOf(fromStationId);
-            int indexEnd = routeList.get(i).getStations().indexOf(toStationId);
-            gapList.add(indexEnd - indexStart);
+            gapList.add(routeList.get(i).topology().stopsBetween(fromStationId, toStationId));
         }
         //3.Pick the routes with the fewest stops
         ArrayList<String> resultRoutes = new ArrayList<>();
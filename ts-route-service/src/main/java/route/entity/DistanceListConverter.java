@@ -0,0 +1,35 @@
+package route.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Packs the distances of a route into one column, see {@link StationListConverter}.
+ *
+ * @author fdse
+ */
+@Converter
+public class DistanceListConverter implements AttributeConverter<List<Integer>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(List<Integer> distances) {
+        return distances == null ? null : distances.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public List<Integer> convertToEntityAttribute(String packed) {
+        if (packed == null) {
+            return null;
+        }
+        List<Integer> distances = new ArrayList<>();
+        if (!packed.isEmpty()) {
+            for (String distance : packed.split(",")) {
+                distances.add(Integer.parseInt(distance));
+            }
+        }
+        return distances;
+    }
+}
@@ -25,12 +25,12 @@ public class Route {
     @Column(length = 36)
     private String id;
 
-    @ElementCollection(targetClass = String.class)
-    @OrderColumn
+    @Column(name = "station_list", columnDefinition = "TEXT")
+    @Convert(converter = StationListConverter.class)
     private List<String> stations;
 
-    @ElementCollection(targetClass = Integer.class)
-    @OrderColumn
+    @Column(name = "distance_list", columnDefinition = "TEXT")
+    @Convert(converter = DistanceListConverter.class)
     private List<Integer> distances;
 
     private String startStation;
@@ -0,0 +1,30 @@
+package route.entity;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packs the stations of a route into one column, in the same comma separated
+ * form a route is created from, so a route loads with its row.
+ *
+ * @author fdse
+ */
+@Converter
+public class StationListConverter implements AttributeConverter<List<String>, String> {
+
+    @Override
+    public String convertToDatabaseColumn(List<String> stations) {
+        return stations == null ? null : String.join(",", stations);
+    }
+
+    @Override
+    public List<String> convertToEntityAttribute(String packed) {
+        if (packed == null) {
+            return null;
+        }
+        return packed.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(packed.split(",")));
+    }
+}
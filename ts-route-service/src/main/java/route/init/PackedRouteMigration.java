@@ -0,0 +1,61 @@
+package route.init;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import route.entity.Route;
+import route.repository.RouteRepository;
+import route.service.RouteIndex;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+/**
+ * Routes used to keep their stations and distances in the route_stations and
+ * route_distances tables. Packs the routes saved that way into their row once.
+ *
+ * @author fdse
+ */
+@Component
+public class PackedRouteMigration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PackedRouteMigration.class);
+
+    @Autowired
+    private RouteRepository routeRepository;
+
+    @Autowired
+    private RouteIndex routeIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    public void migrate() {
+        int migrated = 0;
+        for (Route route : routeRepository.findAll()) {
+            if (route.getStations() != null) {
+                continue;
+            }
+            try {
+                List<String> stations = jdbcTemplate.queryForList(
+                        "SELECT stations FROM route_stations WHERE route_id = ? ORDER BY stations_order", String.class, route.getId());
+                List<Integer> distances = jdbcTemplate.queryForList(
+                        "SELECT distances FROM route_distances WHERE route_id = ? ORDER BY distances_order", Integer.class, route.getId());
+                route.setStations(stations);
+                route.setDistances(distances);
+                routeRepository.save(route);
+                migrated++;
+            } catch (DataAccessException e) {
+                PackedRouteMigration.LOGGER.error("[migrate][Pack route failed][RouteId: {}, error: {}]", route.getId(), e.getMessage());
+            }
+        }
+        if (migrated > 0) {
+            PackedRouteMigration.LOGGER.info("[migrate][Routes packed][count: {}]", migrated);
+            routeIndex.refresh();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package route.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import route.entity.Route;
+import route.repository.RouteRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * Position of every station on every route, so finding the routes that pass
+ * a start station before an end station no longer loads all routes. Route
+ * writes of this service update it at once by building a new index; the
+ * full reload every refresh interval is what brings in routes written on
+ * other route service instances. Readers take the current index without a
+ * lock.
+ *
+ * @author fdse
+ */
+@Component
+public class RouteIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteIndex.class);
+
+    @Autowired
+    private RouteRepository routeRepository;
+
+    private volatile Index index = new Index(new LinkedHashMap<>());
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${route.index.refresh-interval-ms:60000}",
+            initialDelayString = "${route.index.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        LinkedHashMap<String, List<String>> stationsOfRoute = new LinkedHashMap<>();
+        for (Route route : routeRepository.findAll()) {
+            if (route.getStations() != null) {
+                stationsOfRoute.put(route.getId(), route.getStations());
+            }
+        }
+        index = new Index(stationsOfRoute);
+        RouteIndex.LOGGER.info("[refresh][Route index built][routes: {}]", stationsOfRoute.size());
+    }
+
+    public synchronized void put(Route route) {
+        LinkedHashMap<String, List<String>> stationsOfRoute = new LinkedHashMap<>(index.stationsOfRoute);
+        stationsOfRoute.put(route.getId(), new ArrayList<>(route.getStations()));
+        index = new Index(stationsOfRoute);
+    }
+
+    public synchronized void remove(String routeId) {
+        if (index.stationsOfRoute.containsKey(routeId)) {
+            LinkedHashMap<String, List<String>> stationsOfRoute = new LinkedHashMap<>(index.stationsOfRoute);
+            stationsOfRoute.remove(routeId);
+            index = new Index(stationsOfRoute);
+        }
+    }
+
+    /**
+     * @return ids of the routes passing the start station before the end station, in route order
+     */
+    public List<String> routesBetween(String startStation, String endStation) {
+        Index current = index;
+        Map<String, Integer> starts = current.positions.getOrDefault(startStation, Collections.emptyMap());
+        Map<String, Integer> ends = current.positions.getOrDefault(endStation, Collections.emptyMap());
+        List<String> routeIds = new ArrayList<>();
+        for (Map.Entry<String, Integer> start : starts.entrySet()) {
+            Integer end = ends.get(start.getKey());
+            if (end != null && start.getValue() < end) {
+                routeIds.add(start.getKey());
+            }
+        }
+        return routeIds;
+    }
+
+    private static class Index {
+
+        private final Map<String, List<String>> stationsOfRoute;
+
+        /**
+         * station -> route id -> first position of the station on the route, routes in route order
+         */
+        private final Map<String, Map<String, Integer>> positions = new HashMap<>();
+
+        Index(LinkedHashMap<String, List<String>> stationsOfRoute) {
+            this.stationsOfRoute = stationsOfRoute;
+            for (Map.Entry<String, List<String>> route : stationsOfRoute.entrySet()) {
+                List<String> stations = route.getValue();
+                for (int i = 0; i < stations.size(); i++) {
+                    positions.computeIfAbsent(stations.get(i), station -> new LinkedHashMap<>())
+                            .putIfAbsent(route.getKey(), i);
+                }
+            }
+        }
+    }
+}
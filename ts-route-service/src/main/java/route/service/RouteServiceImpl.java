@@ -12,7 +12,9 @@ import route.entity.RouteInfo;
 import route.repository.RouteRepository;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -24,6 +26,9 @@ public class RouteServiceImpl implements RouteService {
 
     @Autowired
     private RouteRepository routeRepository;
+
+    @Autowired
+    private RouteIndex routeIndex;
     private static final Logger LOGGER = LoggerFactory.getLogger(RouteServiceImpl.class);
 
     String success = "Success";
@@ -61,6 +66,7 @@ public class RouteServiceImpl implements RouteService {
         route.setStations(stationList);
         route.setDistances(distanceList);
         routeRepository.save(route);
+        routeIndex.put(route);
         return new Response<>(1, "Save and Modify success", route);
     }
 
@@ -70,6 +76,7 @@ public class RouteServiceImpl implements RouteService {
         routeRepository.removeRouteById(routeId);
         Optional<Route> route = routeRepository.findById(routeId);
         if (!route.isPresent()) {
+            routeIndex.remove(routeId);
             return new Response<>(1, "Delete Success", routeId);
         } else {
             RouteServiceImpl.LOGGER.error("[deleteRoute][Delete error][Route not found][RouteId: {}]",routeId);
@@ -102,14 +109,19 @@ public class RouteServiceImpl implements RouteService {
 
     @Override
     public Response getRouteByStartAndEnd(String startId, String terminalId, HttpHeaders headers) {
-        ArrayList<Route> routes = routeRepository.findAll();
-        RouteServiceImpl.LOGGER.info("[getRouteByStartAndEnd][Find All][size:{}]", routes.size());
+        List<String> routeIds = routeIndex.routesBetween(startId, terminalId);
+        RouteServiceImpl.LOGGER.info("[getRouteByStartAndEnd][Find in index][size:{}]", routeIds.size());
         List<Route> resultList = new ArrayList<>();
-        for (Route route : routes) {
-            if (route.getStations().contains(startId) &&
-                    route.getStations().contains(terminalId) &&
-                    route.getStations().indexOf(startId) < route.getStations().indexOf(terminalId)) {
-                resultList.add(route);
+        if (!routeIds.isEmpty()) {
+            Map<String, Route> routes = new HashMap<>();
+            for (Route route : routeRepository.findByIds(routeIds)) {
+                routes.put(route.getId(), route);
+            }
+            //keep the route order of the index, a route deleted meanwhile is left out
+            for (String routeId : routeIds) {
+                if (routes.containsKey(routeId)) {
+                    resultList.add(routes.get(routeId));
+                }
             }
         }
         if (!resultList.isEmpty()) {
@@ -10,13 +10,17 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpHeaders;
 import route.entity.Route;
 import route.entity.RouteInfo;
 import route.repository.RouteRepository;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @RunWith(JUnit4.class)
@@ -28,6 +32,9 @@ public class RouteServiceImplTest {
     @Mock
     private RouteRepository routeRepository;
 
+    @Spy
+    private RouteIndex routeIndex = new RouteIndex();
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
@@ -100,21 +107,46 @@ public class RouteServiceImplTest {
         distances.add(5);
         distances.add(10);
         Route route = new Route(UUID.randomUUID().toString(), stations, distances, "shanghai", "nanjing");
-        ArrayList<Route> routes = new ArrayList<>();
-        routes.add(route);
-        Mockito.when(routeRepository.findAll()).thenReturn(routes);
+        routeIndex.put(route);
+        Mockito.when(routeRepository.findByIds(Collections.singletonList(route.getId()))).thenReturn(Collections.singletonList(route));
         Response result = routeServiceImpl.getRouteByStartAndEnd("shanghai", "nanjing", headers);
         Assert.assertEquals("Success", result.getMsg());
+        Mockito.verify(routeRepository, Mockito.never()).findAll();
     }
 
     @Test
     public void testGetRouteByStartAndTerminal2() {
-        ArrayList<Route> routes = new ArrayList<>();
-        Mockito.when(routeRepository.findAll()).thenReturn(routes);
         Response result = routeServiceImpl.getRouteByStartAndEnd("shanghai", "nanjing", headers);
         Assert.assertEquals("No routes with the startId and terminalId", result.getMsg());
     }
 
+    @Test
+    public void testGetRouteByStartAndTerminalInRouteOrder() {
+        Route first = new Route("r1", Arrays.asList("nanjing", "suzhou", "shanghai"), Arrays.asList(0, 200, 250), "nanjing", "shanghai");
+        Route reverse = new Route("r2", Arrays.asList("shanghai", "suzhou", "nanjing"), Arrays.asList(0, 50, 250), "shanghai", "nanjing");
+        Route second = new Route("r3", Arrays.asList("hefei", "nanjing", "shanghai"), Arrays.asList(0, 150, 400), "hefei", "shanghai");
+        routeIndex.put(first);
+        routeIndex.put(reverse);
+        routeIndex.put(second);
+        Assert.assertEquals(Arrays.asList("r1", "r3"), routeIndex.routesBetween("nanjing", "shanghai"));
+
+        Mockito.when(routeRepository.findByIds(Arrays.asList("r1", "r3"))).thenReturn(Arrays.asList(second, first));
+        Response result = routeServiceImpl.getRouteByStartAndEnd("nanjing", "shanghai", headers);
+        Assert.assertEquals(Arrays.asList(first, second), result.getData());
+    }
+
+    @Test
+    public void testIndexFollowsModifyAndDelete() {
+        routeIndex.put(new Route("r1", Arrays.asList("nanjing", "shanghai"), Arrays.asList(0, 250), "nanjing", "shanghai"));
+        routeIndex.put(new Route("r1", Arrays.asList("shanghai", "nanjing"), Arrays.asList(0, 250), "shanghai", "nanjing"));
+        Assert.assertEquals(Collections.emptyList(), routeIndex.routesBetween("nanjing", "shanghai"));
+        Assert.assertEquals(Collections.singletonList("r1"), routeIndex.routesBetween("shanghai", "nanjing"));
+
+        Mockito.when(routeRepository.findById("r1")).thenReturn(Optional.empty());
+        routeServiceImpl.deleteRoute("r1", headers);
+        Assert.assertEquals(Collections.emptyList(), routeIndex.routesBetween("shanghai", "nanjing"));
+    }
+
     @Test
     public void testGetAllRoutes1() {
         ArrayList<Route> routes = new ArrayList<>();
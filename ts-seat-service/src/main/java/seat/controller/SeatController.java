@@ -7,8 +7,11 @@ import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 import edu.fudan.common.entity.Seat;
+import edu.fudan.common.entity.SeatHold;
 import seat.service.SeatService;
 
+import java.util.List;
+
 import static org.springframework.http.ResponseEntity.ok;
 
 /**
@@ -58,4 +61,78 @@ public class SeatController {
         return ok(seatService.getLeftTicketOfInterval(seatRequest, headers));
     }
 
+    /**
+     * hold a seat until it is confirmed, released or the ttl passes
+     *
+     * @param seatRequest seat request
+     * @param ttlSeconds hold time without a confirmation
+     * @param headers headers
+     * @return HttpEntity
+     */
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/seats/holds")
+    public HttpEntity holdSeat(@RequestBody Seat seatRequest, @RequestParam(value = "ttlSeconds", defaultValue = "30") int ttlSeconds,
+                               @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[holdSeat][Hold seat][TravelDate: {},TrainNumber: {},SeatType: {}]",seatRequest.getTravelDate(),seatRequest.getTrainNumber(),seatRequest.getSeatType());
+        return ok(seatService.holdSeat(seatRequest, ttlSeconds, headers));
+    }
+
+    /**
+     * hold a seat on the new trip of a rebooked order; the lease of its old seat is dropped when the hold is confirmed
+     */
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/seats/holds/rebook/{orderId}")
+    public HttpEntity rebookSeat(@RequestBody Seat seatRequest, @PathVariable String orderId,
+                                 @RequestParam(value = "ttlSeconds", defaultValue = "30") int ttlSeconds,
+                                 @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[rebookSeat][Rebook seat][OrderId: {},TravelDate: {},TrainNumber: {},SeatType: {}]",orderId,seatRequest.getTravelDate(),seatRequest.getTrainNumber(),seatRequest.getSeatType());
+        return ok(seatService.rebookSeat(seatRequest, orderId, ttlSeconds, headers));
+    }
+
+    /**
+     * hold seats for a group, adjacent where possible
+     *
+     * @param seatRequest seat request
+     * @param count number of passengers
+     * @param ttlSeconds hold time without a confirmation
+     * @param headers headers
+     * @return HttpEntity
+     */
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/seats/holds/group")
+    public HttpEntity holdSeats(@RequestBody Seat seatRequest, @RequestParam(value = "count") int count,
+                                @RequestParam(value = "ttlSeconds", defaultValue = "30") int ttlSeconds,
+                                @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[holdSeats][Hold seats][TravelDate: {},TrainNumber: {},SeatType: {},Count: {}]",seatRequest.getTravelDate(),seatRequest.getTrainNumber(),seatRequest.getSeatType(),count);
+        return ok(seatService.holdSeats(seatRequest, count, ttlSeconds, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/seats/holds/confirm")
+    public HttpEntity confirmHolds(@RequestBody List<SeatHold> holds, @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[confirmHolds][Confirm holds][Count: {}]", holds.size());
+        return ok(seatService.confirmHolds(holds, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/seats/holds/release")
+    public HttpEntity releaseHolds(@RequestBody List<String> holdIds, @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[releaseHolds][Release holds][Count: {}]", holdIds.size());
+        return ok(seatService.releaseHolds(holdIds, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @PostMapping(value = "/seats/holds/{holdId}/confirm/{orderId}")
+    public HttpEntity confirmHold(@PathVariable String holdId, @PathVariable String orderId, @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[confirmHold][Confirm hold][HoldId: {},OrderId: {}]", holdId, orderId);
+        return ok(seatService.confirmHold(holdId, orderId, headers));
+    }
+
+    @CrossOrigin(origins = "*")
+    @DeleteMapping(value = "/seats/holds/{holdId}")
+    public HttpEntity releaseHold(@PathVariable String holdId, @RequestHeader HttpHeaders headers) {
+        SeatController.LOGGER.info("[releaseHold][Release hold][HoldId: {}]", holdId);
+        return ok(seatService.releaseHold(holdId, headers));
+    }
+
 }
@@ -0,0 +1,350 @@
+package seat.service;
+
+import edu.fudan.common.entity.RouteTopology;
+import edu.fudan.common.entity.Seat;
+import edu.fudan.common.entity.SeatHold;
+import edu.fudan.common.entity.Ticket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Seat holds of this instance, grouped by train, travel date and seat type.
+ * A group is only read and changed under its lock stripe, so choosing a seat
+ * and recording the hold is atomic and two bookings never get the same seat.
+ * The sold tickets are read by the caller before, so the remote read never
+ * holds a stripe; leases still live when the read started count as taken.
+ * Holds live in memory only and are not seen by other instances, so the seat
+ * service must run as a single instance, or requests of one train and date
+ * must always reach the same instance. A restart forgets the holds and
+ * leases; seats of stored orders stay taken through the sold tickets.
+ *
+ * @author fdse
+ */
+@Component
+public class SeatHoldRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SeatHoldRegistry.class);
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    /**
+     * train key -> hold id -> lease, the inner maps are guarded by the stripe of the train key
+     */
+    private final Map<String, Map<String, Lease>> leasesByTrain = new ConcurrentHashMap<>();
+
+    private final Map<String, String> trainOfHold = new ConcurrentHashMap<>();
+
+    /**
+     * order id -> hold id of its confirmed lease
+     */
+    private final Map<String, String> holdOfOrder = new ConcurrentHashMap<>();
+
+    /**
+     * hold id -> rebooked order whose lease is dropped when the hold is confirmed
+     */
+    private final Map<String, String> replacedOrderOfHold = new ConcurrentHashMap<>();
+
+    public SeatHoldRegistry() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Hold the first free seat for the requested interval. Seats already used on
+     * other intervals of the route come first, so whole-route seats stay free.
+     *
+     * @param seatRequest train, date, seat type, interval and seat count
+     * @param sold        the tickets of the stored orders
+     * @param soldReadAt  when the read of the sold tickets started
+     * @param ttlMs       how long the hold lives without a confirmation
+     * @return the hold, or null when every seat is taken on the interval
+     */
+    public SeatHold hold(Seat seatRequest, Set<Ticket> sold, long soldReadAt, long ttlMs) {
+        List<SeatHold> holds = holdGroup(seatRequest, sold, soldReadAt, 1, ttlMs);
+        return holds == null ? null : holds.get(0);
+    }
+
+    /**
+     * Hold a seat for a rebooked order. The lease of its old seat stays until
+     * this hold is confirmed, so a rebook that fails keeps the old seat covered.
+     */
+    public SeatHold holdReplacing(Seat seatRequest, Set<Ticket> sold, long soldReadAt, long ttlMs, String orderId) {
+        SeatHold hold = hold(seatRequest, sold, soldReadAt, ttlMs);
+        if (hold != null) {
+            replacedOrderOfHold.put(hold.getHoldId(), orderId);
+        }
+        return hold;
+    }
+
+    /**
+     * Hold seats for a group travelling together. The lowest run of adjacent
+     * free seats is taken; when there is none, the lowest free seats are.
+     *
+     * @return one hold per passenger, or null when fewer seats are free
+     */
+    public List<SeatHold> holdGroup(Seat seatRequest, Set<Ticket> sold, long soldReadAt, int count, long ttlMs) {
+        String train = trainKey(seatRequest.getTrainNumber(), seatRequest.getTravelDate(), seatRequest.getSeatType());
+        RouteTopology stations = RouteTopology.of(seatRequest.getStations(), null);
+        int[] span = spanOf(stations, seatRequest.getStartStation(), seatRequest.getDestStation());
+        Map<Integer, List<int[]>> occupied = new HashMap<>();
+        for (Ticket ticket : sold) {
+            occupied.computeIfAbsent(ticket.getSeatNo(), k -> new ArrayList<>())
+                    .add(spanOf(stations, ticket.getStartStation(), ticket.getDestStation()));
+        }
+        ReentrantLock lock = lockOf(train);
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Map<String, Lease> leases = leasesByTrain.computeIfAbsent(train, k -> new HashMap<>());
+            //a lease that ended before the read started is surely in the sold tickets, a later one may not be
+            purgeExpired(leases, Math.min(now, soldReadAt));
+            for (Lease lease : leases.values()) {
+                occupied.computeIfAbsent(lease.hold.getSeatNo(), k -> new ArrayList<>()).add(lease.span);
+            }
+
+            List<Integer> seatNos;
+            if (count == 1) {
+                int seatNo = firstFit(occupied, span, seatRequest.getTotalNum());
+                seatNos = seatNo < 0 ? null : Collections.singletonList(seatNo);
+            } else {
+                seatNos = adjacentFit(occupied, span, seatRequest.getTotalNum(), count);
+            }
+            if (seatNos == null) {
+                return null;
+            }
+            List<SeatHold> holds = new ArrayList<>(seatNos.size());
+            for (int seatNo : seatNos) {
+                SeatHold hold = new SeatHold();
+                hold.setHoldId(UUID.randomUUID().toString());
+                hold.setTrainNumber(seatRequest.getTrainNumber());
+                hold.setTravelDate(seatRequest.getTravelDate());
+                hold.setSeatType(seatRequest.getSeatType());
+                hold.setSeatNo(seatNo);
+                hold.setStartStation(seatRequest.getStartStation());
+                hold.setDestStation(seatRequest.getDestStation());
+                hold.setExpiresAt(now + ttlMs);
+                leases.put(hold.getHoldId(), new Lease(hold, span));
+                trainOfHold.put(hold.getHoldId(), train);
+                holds.add(copyOf(hold));
+            }
+            return holds;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Bind a live hold to its order. The seat stays leased until the order is
+     * surely visible in the sold tickets of the order service.
+     *
+     * @return the confirmed hold, or null when it expired or is unknown
+     */
+    public SeatHold confirm(String holdId, String orderId, long leaseMs) {
+        String train = trainOfHold.get(holdId);
+        if (train == null) {
+            return null;
+        }
+        String replacedOrder = replacedOrderOfHold.remove(holdId);
+        String replacedHold = replacedOrder == null ? null : holdOfOrder.get(replacedOrder);
+        SeatHold confirmed;
+        ReentrantLock lock = lockOf(train);
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Map<String, Lease> leases = leasesByTrain.get(train);
+            Lease lease = leases == null ? null : leases.get(holdId);
+            if (lease == null || lease.hold.getExpiresAt() <= now) {
+                return null;
+            }
+            lease.hold.setOrderId(orderId);
+            lease.hold.setExpiresAt(now + leaseMs);
+            holdOfOrder.put(orderId, holdId);
+            confirmed = copyOf(lease.hold);
+        } finally {
+            lock.unlock();
+        }
+        if (replacedHold != null && !replacedHold.equals(holdId)) {
+            //the rebooked order is stored on its new seat, the old one is free now
+            release(replacedHold);
+        }
+        return confirmed;
+    }
+
+    /**
+     * @return false when the hold was already gone
+     */
+    public boolean release(String holdId) {
+        String train = trainOfHold.get(holdId);
+        if (train == null) {
+            return false;
+        }
+        ReentrantLock lock = lockOf(train);
+        lock.lock();
+        try {
+            trainOfHold.remove(holdId);
+            Map<String, Lease> leases = leasesByTrain.get(train);
+            Lease lease = leases == null ? null : leases.remove(holdId);
+            if (lease == null) {
+                return false;
+            }
+            forgetOrder(lease.hold);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${seat.hold.sweep-interval-ms:30000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        int trains = 0;
+        for (String train : leasesByTrain.keySet()) {
+            ReentrantLock lock = lockOf(train);
+            lock.lock();
+            try {
+                Map<String, Lease> leases = leasesByTrain.get(train);
+                if (leases == null) {
+                    continue;
+                }
+                purgeExpired(leases, now);
+                if (leases.isEmpty()) {
+                    leasesByTrain.remove(train);
+                    trains++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        if (trains > 0) {
+            LOGGER.info("[sweep][Drop idle trains][count: {}]", trains);
+        }
+    }
+
+    private void purgeExpired(Map<String, Lease> leases, long now) {
+        Iterator<Map.Entry<String, Lease>> it = leases.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Lease> entry = it.next();
+            if (entry.getValue().hold.getExpiresAt() <= now) {
+                trainOfHold.remove(entry.getKey());
+                forgetOrder(entry.getValue().hold);
+                it.remove();
+            }
+        }
+    }
+
+    private void forgetOrder(SeatHold hold) {
+        replacedOrderOfHold.remove(hold.getHoldId());
+        if (hold.getOrderId() != null) {
+            holdOfOrder.remove(hold.getOrderId(), hold.getHoldId());
+        }
+    }
+
+    private static int firstFit(Map<Integer, List<int[]>> occupied, int[] span, int totalNum) {
+        //a seat already used on other intervals of the route
+        for (int seatNo = 1; seatNo <= totalNum; seatNo++) {
+            List<int[]> spans = occupied.get(seatNo);
+            if (spans != null && isFree(spans, span)) {
+                return seatNo;
+            }
+        }
+        //an untouched seat
+        for (int seatNo = 1; seatNo <= totalNum; seatNo++) {
+            if (!occupied.containsKey(seatNo)) {
+                return seatNo;
+            }
+        }
+        return -1;
+    }
+
+    private static List<Integer> adjacentFit(Map<Integer, List<int[]>> occupied, int[] span, int totalNum, int count) {
+        List<Integer> free = new ArrayList<>();
+        int runStart = -1;
+        for (int seatNo = 1; seatNo <= totalNum; seatNo++) {
+            List<int[]> spans = occupied.get(seatNo);
+            if (spans != null && !isFree(spans, span)) {
+                runStart = -1;
+                continue;
+            }
+            free.add(seatNo);
+            if (runStart < 0) {
+                runStart = seatNo;
+            }
+            if (seatNo - runStart + 1 == count) {
+                List<Integer> run = new ArrayList<>(count);
+                for (int i = runStart; i <= seatNo; i++) {
+                    run.add(i);
+                }
+                return run;
+            }
+        }
+        return free.size() < count ? null : free.subList(0, count);
+    }
+
+    private static boolean isFree(List<int[]> spans, int[] span) {
+        for (int[] used : spans) {
+            if (used[0] < span[1] && span[0] < used[1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * [start index, dest index) on the route; an unknown station widens the span to the route end
+     */
+    private static int[] spanOf(RouteTopology stations, String start, String dest) {
+        int from = stations.indexOf(start);
+        int to = stations.indexOf(dest);
+        return new int[]{from < 0 ? 0 : from, to < 0 ? Integer.MAX_VALUE : to};
+    }
+
+    private ReentrantLock lockOf(String train) {
+        return locks[(train.hashCode() & 0x7fffffff) % STRIPES];
+    }
+
+    private static String trainKey(String trainNumber, String travelDate, int seatType) {
+        return trainNumber + "|" + travelDate + "|" + seatType;
+    }
+
+    private static SeatHold copyOf(SeatHold hold) {
+        SeatHold copy = new SeatHold();
+        copy.setHoldId(hold.getHoldId());
+        copy.setTrainNumber(hold.getTrainNumber());
+        copy.setTravelDate(hold.getTravelDate());
+        copy.setSeatType(hold.getSeatType());
+        copy.setSeatNo(hold.getSeatNo());
+        copy.setStartStation(hold.getStartStation());
+        copy.setDestStation(hold.getDestStation());
+        copy.setOrderId(hold.getOrderId());
+        copy.setExpiresAt(hold.getExpiresAt());
+        return copy;
+    }
+
+    private static class Lease {
+
+        private final SeatHold hold;
+
+        private final int[] span;
+
+        Lease(SeatHold hold, int[] span) {
+            this.hold = hold;
+            this.span = span;
+        }
+    }
+}
@@ -3,6 +3,9 @@ package seat.service;
 import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
 import edu.fudan.common.entity.Seat;
+import edu.fudan.common.entity.SeatHold;
+
+import java.util.List;
 
 /**
  * @author fdse
@@ -11,4 +14,21 @@ public interface SeatService {
 
     Response distributeSeat(Seat seatRequest, HttpHeaders headers);
     Response getLeftTicketOfInterval(Seat seatRequest, HttpHeaders headers);
+
+    Response holdSeat(Seat seatRequest, int ttlSeconds, HttpHeaders headers);
+
+    Response confirmHold(String holdId, String orderId, HttpHeaders headers);
+
+    Response releaseHold(String holdId, HttpHeaders headers);
+
+    /**
+     * Hold a seat for a rebooked order, the lease of its old seat is given up once the hold is confirmed
+     */
+    Response rebookSeat(Seat seatRequest, String orderId, int ttlSeconds, HttpHeaders headers);
+
+    Response holdSeats(Seat seatRequest, int count, int ttlSeconds, HttpHeaders headers);
+
+    Response confirmHolds(List<SeatHold> holds, HttpHeaders headers);
+
+    Response releaseHolds(List<String> holdIds, HttpHeaders headers);
 }
@@ -14,10 +14,11 @@ import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import edu.fudan.common.config.ConfigClient;
 import edu.fudan.common.entity.*;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 import java.util.Set;
 
 /**
@@ -31,99 +32,188 @@ public class SeatServiceImpl implements SeatService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private SeatHoldRegistry seatHoldRegistry;
+
+    @Autowired
+    private ConfigClient configClient;
+
+    @Value("${seat.hold.ttl-seconds:30}")
+    long holdTtlSeconds = 30;
+
+    @Value("${seat.hold.max-ttl-seconds:300}")
+    long maxHoldTtlSeconds = 300;
+
+    @Value("${seat.hold.confirmed-lease-seconds:120}")
+    long confirmedLeaseSeconds = 120;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(SeatServiceImpl.class);
 
+    private static final String NO_SEAT_LEFT = "No seat left";
+
+    private static final String SOLD_TICKETS_UNAVAILABLE = "Sold tickets unavailable";
+
+    /**
+     * the initial value of the config service, used until it is reached
+     */
+    private static final double DEFAULT_DIRECT_PROPORTION = 0.5;
+
     private String getServiceUrl(String serviceName) {
         return "http://" + serviceName;
     }
 
     @Override
     public Response distributeSeat(Seat seatRequest, HttpHeaders headers) {
-        Response<Route> routeResult;
-
-        LeftTicketInfo leftTicketInfo;
-        TrainType trainTypeResult = null;
-        ResponseEntity<Response<Route>> re;
-        ResponseEntity<Response<TrainType>> re2;
-        ResponseEntity<Response<LeftTicketInfo>> re3;
-
-        //Distinguish G\D from other trains
-        String trainNumber = seatRequest.getTrainNumber();
+        //the seat stays held for the hold ttl, long enough for the caller to store its order
+        long soldReadAt = System.currentTimeMillis();
+        Set<Ticket> sold = querySoldTickets(seatRequest);
+        if (sold == null) {
+            return soldTicketsUnavailable("distributeSeat", seatRequest);
+        }
+        SeatHold hold = seatHoldRegistry.hold(seatRequest, sold, soldReadAt, holdTtlSeconds * 1000);
+        if (hold == null) {
+            SeatServiceImpl.LOGGER.warn("[distributeSeat][Assign new tickets][No seat left][TrainNumber: {}, TravelDate: {}, SeatType: {}]", seatRequest.getTrainNumber(), seatRequest.getTravelDate(), seatRequest.getSeatType());
+            return new Response<>(0, NO_SEAT_LEFT, null);
+        }
+        SeatServiceImpl.LOGGER.info("[distributeSeat][Assign new tickets][Use a new seat number][seat number:{}]", hold.getSeatNo());
+        return new Response<>(1, "Use a new seat number!", hold.toTicket());
+    }
 
-        if (trainNumber.startsWith("G") || trainNumber.startsWith("D")) {
-            SeatServiceImpl.LOGGER.info("[distributeSeat][TrainNumber start][G or D]");
+    @Override
+    public Response holdSeat(Seat seatRequest, int ttlSeconds, HttpHeaders headers) {
+        long ttl = Math.min(Math.max(ttlSeconds, 1), maxHoldTtlSeconds);
+        long soldReadAt = System.currentTimeMillis();
+        Set<Ticket> sold = querySoldTickets(seatRequest);
+        if (sold == null) {
+            return soldTicketsUnavailable("holdSeat", seatRequest);
+        }
+        SeatHold hold = seatHoldRegistry.hold(seatRequest, sold, soldReadAt, ttl * 1000);
+        if (hold == null) {
+            SeatServiceImpl.LOGGER.warn("[holdSeat][No seat left][TrainNumber: {}, TravelDate: {}, SeatType: {}]", seatRequest.getTrainNumber(), seatRequest.getTravelDate(), seatRequest.getSeatType());
+            return new Response<>(0, NO_SEAT_LEFT, null);
+        }
+        SeatServiceImpl.LOGGER.info("[holdSeat][Seat held][HoldId: {}, seat number: {}, ttl: {}s]", hold.getHoldId(), hold.getSeatNo(), ttl);
+        return new Response<>(1, "Seat held", hold);
+    }
 
-            HttpEntity requestEntity = new HttpEntity(null);
-            //Call the microservice to query for residual Ticket information: the set of the Ticket sold for the specified seat type
-            requestEntity = new HttpEntity(seatRequest, null);
-            String order_service_url=getServiceUrl("ts-order-service");
-            re3 = restTemplate.exchange(
-                    order_service_url + "/api/v1/orderservice/order/tickets",
-                    HttpMethod.POST,
-                    requestEntity,
-                    new ParameterizedTypeReference<Response<LeftTicketInfo>>() {
-                    });
-            SeatServiceImpl.LOGGER.info("[distributeSeat][Left ticket info][info is : {}]", re3.getBody().toString());
-            leftTicketInfo = re3.getBody().getData();
-        } else {
-            SeatServiceImpl.LOGGER.info("[distributeSeat][TrainNumber start][Other Capital Except D and G]");
-            //Call the microservice to query for residual Ticket information: the set of the Ticket sold for the specified seat type
-            HttpEntity requestEntity = new HttpEntity(seatRequest, null);
-            String order_other_service_url=getServiceUrl("ts-order-other-service");
-            re3 = restTemplate.exchange(
-                    order_other_service_url + "/api/v1/orderOtherService/orderOther/tickets",
-                    HttpMethod.POST,
-                    requestEntity,
-                    new ParameterizedTypeReference<Response<LeftTicketInfo>>() {
-                    });
-            SeatServiceImpl.LOGGER.info("[distributeSeat][Left ticket info][info is : {}]", re3.getBody().toString());
-            leftTicketInfo = re3.getBody().getData();
+    @Override
+    public Response confirmHold(String holdId, String orderId, HttpHeaders headers) {
+        SeatHold hold = seatHoldRegistry.confirm(holdId, orderId, confirmedLeaseSeconds * 1000);
+        if (hold == null) {
+            SeatServiceImpl.LOGGER.warn("[confirmHold][Hold expired or not found][HoldId: {}, OrderId: {}]", holdId, orderId);
+            return new Response<>(0, "Hold expired or not found", null);
         }
+        SeatServiceImpl.LOGGER.info("[confirmHold][Hold confirmed][HoldId: {}, OrderId: {}]", holdId, orderId);
+        return new Response<>(1, "Hold confirmed", hold);
+    }
 
-        //Assign seats
-        List<String> stationList = seatRequest.getStations();
+    @Override
+    public Response releaseHold(String holdId, HttpHeaders headers) {
+        if (!seatHoldRegistry.release(holdId)) {
+            SeatServiceImpl.LOGGER.info("[releaseHold][Hold already gone][HoldId: {}]", holdId);
+            return new Response<>(0, "Hold not found", null);
+        }
+        SeatServiceImpl.LOGGER.info("[releaseHold][Hold released][HoldId: {}]", holdId);
+        return new Response<>(1, "Hold released", holdId);
+    }
 
-        int seatTotalNum = seatRequest.getTotalNum();
-        String startStation = seatRequest.getStartStation();
-        Ticket ticket = new Ticket();
-        ticket.setStartStation(startStation);
-        ticket.setDestStation(seatRequest.getDestStation());
+    @Override
+    public Response rebookSeat(Seat seatRequest, String orderId, int ttlSeconds, HttpHeaders headers) {
+        long ttl = Math.min(Math.max(ttlSeconds, 1), maxHoldTtlSeconds);
+        long soldReadAt = System.currentTimeMillis();
+        Set<Ticket> sold = querySoldTickets(seatRequest);
+        if (sold == null) {
+            return soldTicketsUnavailable("rebookSeat", seatRequest);
+        }
+        SeatHold hold = seatHoldRegistry.holdReplacing(seatRequest, sold, soldReadAt, ttl * 1000, orderId);
+        if (hold == null) {
+            SeatServiceImpl.LOGGER.warn("[rebookSeat][No seat left][OrderId: {}, TrainNumber: {}, TravelDate: {}, SeatType: {}]", orderId, seatRequest.getTrainNumber(), seatRequest.getTravelDate(), seatRequest.getSeatType());
+            return new Response<>(0, NO_SEAT_LEFT, null);
+        }
+        SeatServiceImpl.LOGGER.info("[rebookSeat][Seat held][OrderId: {}, HoldId: {}, seat number: {}, ttl: {}s]", orderId, hold.getHoldId(), hold.getSeatNo(), ttl);
+        return new Response<>(1, "Seat held", hold);
+    }
 
-        //Assign new tickets
-        Random rand = new Random();
-        int range = seatTotalNum;
-        int seat = rand.nextInt(range) + 1;
+    @Override
+    public Response holdSeats(Seat seatRequest, int count, int ttlSeconds, HttpHeaders headers) {
+        if (count < 1) {
+            return new Response<>(0, "Seat count must be positive", null);
+        }
+        long ttl = Math.min(Math.max(ttlSeconds, 1), maxHoldTtlSeconds);
+        long soldReadAt = System.currentTimeMillis();
+        Set<Ticket> sold = querySoldTickets(seatRequest);
+        if (sold == null) {
+            return soldTicketsUnavailable("holdSeats", seatRequest);
+        }
+        List<SeatHold> holds = seatHoldRegistry.holdGroup(seatRequest, sold, soldReadAt, count, ttl * 1000);
+        if (holds == null) {
+            SeatServiceImpl.LOGGER.warn("[holdSeats][No seat left][TrainNumber: {}, TravelDate: {}, SeatType: {}, count: {}]", seatRequest.getTrainNumber(), seatRequest.getTravelDate(), seatRequest.getSeatType(), count);
+            return new Response<>(0, NO_SEAT_LEFT, null);
+        }
+        SeatServiceImpl.LOGGER.info("[holdSeats][Seats held][TrainNumber: {}, first seat number: {}, count: {}]", seatRequest.getTrainNumber(), holds.get(0).getSeatNo(), count);
+        return new Response<>(1, "Seats held", holds);
+    }
 
-        if(leftTicketInfo != null) {
-            Set<Ticket> soldTickets = leftTicketInfo.getSoldTickets();
-            //Give priority to tickets already sold
-            for (Ticket soldTicket : soldTickets) {
-                String soldTicketDestStation = soldTicket.getDestStation();
-                //Tickets can be allocated if the sold ticket's end station before the start station of the request
-                if (stationList.indexOf(soldTicketDestStation) < stationList.indexOf(startStation)) {
-                    ticket.setSeatNo(soldTicket.getSeatNo());
-                    SeatServiceImpl.LOGGER.info("[distributeSeat][Assign new tickets][Use the previous distributed seat number][seat number:{}]", soldTicket.getSeatNo());
-                    return new Response<>(1, "Use the previous distributed seat number!", ticket);
-                }
-            }
-            while (isContained(soldTickets, seat)) {
-                seat = rand.nextInt(range) + 1;
+    @Override
+    public Response confirmHolds(List<SeatHold> holds, HttpHeaders headers) {
+        List<SeatHold> confirmed = new ArrayList<>(holds.size());
+        for (SeatHold hold : holds) {
+            SeatHold result = seatHoldRegistry.confirm(hold.getHoldId(), hold.getOrderId(), confirmedLeaseSeconds * 1000);
+            if (result == null) {
+                SeatServiceImpl.LOGGER.warn("[confirmHolds][Hold expired or not found][HoldId: {}, OrderId: {}]", hold.getHoldId(), hold.getOrderId());
+            } else {
+                confirmed.add(result);
             }
         }
-        ticket.setSeatNo(seat);
-        SeatServiceImpl.LOGGER.info("[distributeSeat][Assign new tickets][Use a new seat number][seat number:{}]", seat);
-        return new Response<>(1, "Use a new seat number!", ticket);
+        if (confirmed.size() < holds.size()) {
+            return new Response<>(0, "Some holds expired or not found", confirmed);
+        }
+        return new Response<>(1, "Holds confirmed", confirmed);
     }
 
-    private boolean isContained(Set<Ticket> soldTickets, int seat) {
-        //Check that the seat number has been used
-        boolean result = false;
-        for (Ticket soldTicket : soldTickets) {
-            if (soldTicket.getSeatNo() == seat) {
-                return true;
+    @Override
+    public Response releaseHolds(List<String> holdIds, HttpHeaders headers) {
+        int released = 0;
+        for (String holdId : holdIds) {
+            if (seatHoldRegistry.release(holdId)) {
+                released++;
             }
         }
-        return result;
+        SeatServiceImpl.LOGGER.info("[releaseHolds][Holds released][requested: {}, released: {}]", holdIds.size(), released);
+        return new Response<>(1, "Holds released", released);
+    }
+
+    /**
+     * An unknown sold set is not an empty one, holding a seat on it could sell a seat twice.
+     */
+    private Response soldTicketsUnavailable(String method, Seat seatRequest) {
+        SeatServiceImpl.LOGGER.error("[{}][Sold tickets unavailable][TrainNumber: {}, TravelDate: {}, SeatType: {}]", method, seatRequest.getTrainNumber(), seatRequest.getTravelDate(), seatRequest.getSeatType());
+        return new Response<>(0, SOLD_TICKETS_UNAVAILABLE, null);
+    }
+
+    /**
+     * @return the tickets of the stored orders, null when the order service did not answer them
+     */
+    private Set<Ticket> querySoldTickets(Seat seatRequest) {
+        //Distinguish G\D from other trains
+        String trainNumber = seatRequest.getTrainNumber();
+        String url;
+        if (trainNumber.startsWith("G") || trainNumber.startsWith("D")) {
+            url = getServiceUrl("ts-order-service") + "/api/v1/orderservice/order/tickets";
+        } else {
+            url = getServiceUrl("ts-order-other-service") + "/api/v1/orderOtherService/orderOther/tickets";
+        }
+        //Call the microservice to query for residual Ticket information: the set of the Ticket sold for the specified seat type
+        HttpEntity requestEntity = new HttpEntity(seatRequest, null);
+        ResponseEntity<Response<LeftTicketInfo>> re = restTemplate.exchange(
+                url,
+                HttpMethod.POST,
+                requestEntity,
+                new ParameterizedTypeReference<Response<LeftTicketInfo>>() {
+                });
+        SeatServiceImpl.LOGGER.info("[querySoldTickets][Left ticket info][info is : {}]", re.getBody());
+        LeftTicketInfo leftTicketInfo = re.getBody().getData();
+        return leftTicketInfo == null ? null : leftTicketInfo.getSoldTickets();
     }
 
     @Override
@@ -168,7 +258,7 @@ public class SeatServiceImpl implements SeatService {
         }
 
         //Counting the seats remaining in certain sections
-        List<String> stationList = seatRequest.getStations();
+        RouteTopology topology = RouteTopology.of(seatRequest.getStations(), null);
         int seatTotalNum = seatRequest.getTotalNum();
         int solidTicketSize = 0;
         if (leftTicketInfo != null) {
@@ -179,7 +269,7 @@ public class SeatServiceImpl implements SeatService {
             for (Ticket soldTicket : soldTickets) {
                 String soldTicketDestStation = soldTicket.getDestStation();
                 //Tickets can be allocated if the sold ticket's end station before the start station of the request
-                if (stationList.indexOf(soldTicketDestStation) < stationList.indexOf(startStation)) {
+                if (topology.indexOf(soldTicketDestStation) < topology.indexOf(startStation)) {
                     SeatServiceImpl.LOGGER.info("[getLeftTicketOfInterval][Ticket available or sold][The previous distributed seat number is usable][{}]", soldTicket.getSeatNo());
                     numOfLeftTicket++;
                 }
@@ -189,8 +279,7 @@ public class SeatServiceImpl implements SeatService {
 
         double direstPart = getDirectProportion(headers);
 
-        if (stationList.get(0).equals(seatRequest.getStartStation()) &&
-                stationList.get(stationList.size() - 1).equals(seatRequest.getDestStation())) {
+        if (topology.isWholeRoute(seatRequest.getStartStation(), seatRequest.getDestStation())) {
             //do nothing
         } else {
             direstPart = 1.0 - direstPart;
@@ -203,18 +292,8 @@ public class SeatServiceImpl implements SeatService {
     }
 
     private double getDirectProportion(HttpHeaders headers) {
-
-        String configName = "DirectTicketAllocationProportion";
-        HttpEntity requestEntity = new HttpEntity(null);
-        String config_service_url = getServiceUrl("ts-config-service");
-        ResponseEntity<Response<Config>> re = restTemplate.exchange(
-                config_service_url + "/api/v1/configservice/configs/" + configName,
-                HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<Response<Config>>() {
-                });
-        Response<Config> configValue = re.getBody();
-        SeatServiceImpl.LOGGER.info("[getDirectProportion][Configs is : {}]", configValue.getData().toString());
-        return Double.parseDouble(configValue.getData().getValue());
+        double proportion = configClient.getDouble("DirectTicketAllocationProportion", DEFAULT_DIRECT_PROPORTION);
+        SeatServiceImpl.LOGGER.debug("[getDirectProportion][Direct ticket proportion][proportion: {}]", proportion);
+        return proportion;
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package seat.service;
 
+import edu.fudan.common.config.ConfigClient;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -10,12 +11,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.web.client.RestTemplate;
 import edu.fudan.common.entity.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 
 @RunWith(JUnit4.class)
 public class SeatServiceImplTest {
@@ -26,6 +31,12 @@ public class SeatServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Spy
+    private SeatHoldRegistry seatHoldRegistry = new SeatHoldRegistry();
+
+    @Mock
+    private ConfigClient configClient;
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
@@ -35,62 +46,165 @@ public class SeatServiceImplTest {
 
     @Test
     public void testDistributeSeat1() {
-        Seat seat = new Seat();
-        seat.setTrainNumber("G");
-        seat.setSeatType(2);
-        seat.setStartStation("start_station");
-        seat.setDestStation("dest_station");
+        Seat seat = seatRequest("G1234", "A", "C", 2);
+        mockSoldTickets("/orderservice/order/tickets", new Ticket(1, "A", "C"));
+        Response result = seatServiceImpl.distributeSeat(seat, headers);
+        Assert.assertEquals("Use a new seat number!", result.getMsg());
+        Assert.assertEquals(2, ((Ticket) result.getData()).getSeatNo());
+    }
 
-        Route route = new Route();
-        route.setStations(new ArrayList<>());
-        Response<Route> response1 = new Response<>(null, null, route);
-        ResponseEntity<Response<Route>> re1 = new ResponseEntity<>(response1, HttpStatus.OK);
+    @Test
+    public void testDistributeSeat2() {
+        Seat seat = seatRequest("K1345", "A", "C", 2);
+        mockSoldTickets("/orderOtherService/orderOther/tickets");
+        Ticket first = (Ticket) seatServiceImpl.distributeSeat(seat, headers).getData();
+        Ticket second = (Ticket) seatServiceImpl.distributeSeat(seat, headers).getData();
+        Assert.assertEquals(1, first.getSeatNo());
+        Assert.assertEquals(2, second.getSeatNo());
+    }
 
-        Response<LeftTicketInfo> response2 = new Response<>();
-        ResponseEntity<Response<LeftTicketInfo>> re2 = new ResponseEntity<>(response2, HttpStatus.OK);
+    @Test
+    public void testHoldSeatReusesEarlierInterval() {
+        Seat seat = seatRequest("G1234", "B", "C", 2);
+        mockSoldTickets("/orderservice/order/tickets", new Ticket(2, "A", "B"));
+        Response result = seatServiceImpl.holdSeat(seat, 30, headers);
+        Assert.assertEquals(2, ((SeatHold) result.getData()).getSeatNo());
+    }
 
-        TrainType trainType = new TrainType();
-        trainType.setConfortClass(1);
-        Response<TrainType> response3 = new Response<>(null, null, trainType);
-        ResponseEntity<Response<TrainType>> re3 = new ResponseEntity<>(response3, HttpStatus.OK);
+    @Test
+    public void testHoldSeatNoSeatLeft() {
+        Seat seat = seatRequest("G1234", "A", "C", 1);
+        mockSoldTickets("/orderservice/order/tickets");
+        Assert.assertEquals(1, seatServiceImpl.holdSeat(seat, 30, headers).getStatus().intValue());
+        Assert.assertEquals(new Response<>(0, "No seat left", null), seatServiceImpl.holdSeat(seat, 30, headers));
+    }
+
+    @Test
+    public void testConfirmAndReleaseHold() {
+        Seat seat = seatRequest("G1234", "A", "C", 1);
+        mockSoldTickets("/orderservice/order/tickets");
+        SeatHold hold = (SeatHold) seatServiceImpl.holdSeat(seat, 30, headers).getData();
+        SeatHold confirmed = (SeatHold) seatServiceImpl.confirmHold(hold.getHoldId(), "order_id", headers).getData();
+        Assert.assertEquals("order_id", confirmed.getOrderId());
+        Assert.assertEquals(1, seatServiceImpl.releaseHold(hold.getHoldId(), headers).getStatus().intValue());
+        Assert.assertEquals(0, seatServiceImpl.confirmHold(hold.getHoldId(), "order_id", headers).getStatus().intValue());
+        Assert.assertEquals(1, ((SeatHold) seatServiceImpl.holdSeat(seat, 30, headers).getData()).getSeatNo());
+    }
+
+    @Test
+    public void testHoldSeatsAdjacent() {
+        Seat seat = seatRequest("G1234", "A", "C", 6);
+        mockSoldTickets("/orderservice/order/tickets", new Ticket(2, "A", "C"), new Ticket(6, "B", "C"));
+        List<SeatHold> holds = (List<SeatHold>) seatServiceImpl.holdSeats(seat, 3, 30, headers).getData();
+        Assert.assertEquals(Arrays.asList(3, 4, 5), Arrays.asList(holds.get(0).getSeatNo(), holds.get(1).getSeatNo(), holds.get(2).getSeatNo()));
+        Assert.assertEquals(new Response<>(0, "No seat left", null), seatServiceImpl.holdSeats(seat, 2, 30, headers));
+    }
+
+    @Test
+    public void testRebookSeatReleasesOldLeaseOnConfirm() {
+        Seat oldSeat = seatRequest("G1234", "A", "C", 1);
+        Seat newSeat = seatRequest("G1236", "A", "C", 1);
+        mockSoldTickets("/orderservice/order/tickets");
+        SeatHold old = (SeatHold) seatServiceImpl.holdSeat(oldSeat, 30, headers).getData();
+        seatServiceImpl.confirmHold(old.getHoldId(), "order_id", headers);
+
+        SeatHold rebooked = (SeatHold) seatServiceImpl.rebookSeat(newSeat, "order_id", 30, headers).getData();
+        Assert.assertEquals("G1236", rebooked.getTrainNumber());
+        //the order is not moved yet, its old seat stays taken
+        Assert.assertEquals(0, seatServiceImpl.holdSeat(oldSeat, 30, headers).getStatus().intValue());
+
+        seatServiceImpl.confirmHold(rebooked.getHoldId(), "order_id", headers);
+        Assert.assertEquals(0, seatServiceImpl.releaseHold(old.getHoldId(), headers).getStatus().intValue());
+        Assert.assertEquals(1, seatServiceImpl.holdSeat(oldSeat, 30, headers).getStatus().intValue());
+    }
+
+    @Test
+    public void testFailedRebookKeepsOldLease() {
+        Seat oldSeat = seatRequest("G1234", "A", "C", 1);
+        Seat newSeat = seatRequest("G1236", "A", "C", 1);
+        mockSoldTickets("/orderservice/order/tickets");
+        SeatHold old = (SeatHold) seatServiceImpl.holdSeat(oldSeat, 30, headers).getData();
+        seatServiceImpl.confirmHold(old.getHoldId(), "order_id", headers);
+
+        SeatHold rebooked = (SeatHold) seatServiceImpl.rebookSeat(newSeat, "order_id", 30, headers).getData();
+        seatServiceImpl.releaseHold(rebooked.getHoldId(), headers);
+        Assert.assertEquals(1, seatServiceImpl.releaseHold(old.getHoldId(), headers).getStatus().intValue());
+    }
+
+    @Test
+    public void testSoldTicketsReadOutsideHoldLock() throws Exception {
+        Seat seat = seatRequest("G1234", "A", "C", 2);
+        List<SeatHold> concurrent = new ArrayList<>();
+        Thread other = new Thread(() -> concurrent.add(seatHoldRegistry.hold(seat, new HashSet<>(), System.currentTimeMillis(), 30000)));
+        LeftTicketInfo leftTicketInfo = new LeftTicketInfo();
+        leftTicketInfo.setSoldTickets(new HashSet<>());
         Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
+                Mockito.contains("/orderservice/order/tickets"),
                 Mockito.any(HttpMethod.class),
                 Mockito.any(HttpEntity.class),
                 Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re1).thenReturn(re2).thenReturn(re3);
-        Response result = seatServiceImpl.distributeSeat(seat, headers);
-        Assert.assertEquals("Use a new seat number!", result.getMsg());
+                .thenAnswer(inv -> {
+                    //a hold of the same train does not wait for this remote read
+                    other.start();
+                    other.join(1000);
+                    Assert.assertFalse(other.isAlive());
+                    return new ResponseEntity<>(new Response<>(1, null, leftTicketInfo), HttpStatus.OK);
+                });
+        SeatHold hold = (SeatHold) seatServiceImpl.holdSeat(seat, 30, headers).getData();
+        Assert.assertEquals(1, concurrent.get(0).getSeatNo());
+        Assert.assertEquals(2, hold.getSeatNo());
     }
 
     @Test
-    public void testDistributeSeat2() {
-        Seat seat = new Seat();
-        seat.setTrainNumber("K");
-        seat.setSeatType(3);
-        seat.setStartStation("start_station");
-        seat.setDestStation("dest_station");
+    public void testHoldFailsWhenSoldTicketsUnavailable() {
+        Seat seat = seatRequest("G1234", "A", "C", 2);
+        Mockito.when(restTemplate.exchange(
+                Mockito.contains("/orderservice/order/tickets"),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(new Response<>(0, "Order service busy", null), HttpStatus.OK));
+        Assert.assertEquals(new Response<>(0, "Sold tickets unavailable", null), seatServiceImpl.holdSeat(seat, 30, headers));
+        Assert.assertEquals(new Response<>(0, "Sold tickets unavailable", null), seatServiceImpl.holdSeats(seat, 2, 30, headers));
+        Assert.assertEquals(0, seatServiceImpl.distributeSeat(seat, headers).getStatus().intValue());
+    }
 
-        Route route = new Route();
-        route.setStations(new ArrayList<>());
-        Response<Route> response1 = new Response<>(null, null, route);
-        ResponseEntity<Response<Route>> re1 = new ResponseEntity<>(response1, HttpStatus.OK);
+    @Test
+    public void testLeaseEndingAfterSoldReadStaysTaken() throws Exception {
+        Seat seat = seatRequest("G1234", "A", "C", 3);
+        long soldReadAt = System.currentTimeMillis();
+        SeatHold first = seatHoldRegistry.hold(seat, new HashSet<>(), soldReadAt, 30000);
+        seatHoldRegistry.confirm(first.getHoldId(), "order_id", 1);
+        Thread.sleep(5);
+        //the sold tickets were read before the order could be seen there
+        Assert.assertEquals(2, seatHoldRegistry.hold(seat, new HashSet<>(), soldReadAt, 30000).getSeatNo());
+        //a read started after the lease ended
+        Assert.assertEquals(1, seatHoldRegistry.hold(seat, new HashSet<>(), System.currentTimeMillis(), 30000).getSeatNo());
+    }
 
-        Response<LeftTicketInfo> response2 = new Response<>();
-        ResponseEntity<Response<LeftTicketInfo>> re2 = new ResponseEntity<>(response2, HttpStatus.OK);
+    private Seat seatRequest(String trainNumber, String start, String dest, int totalNum) {
+        Seat seat = new Seat();
+        seat.setTravelDate("2026-01-01");
+        seat.setTrainNumber(trainNumber);
+        seat.setSeatType(2);
+        seat.setStartStation(start);
+        seat.setDestStation(dest);
+        seat.setTotalNum(totalNum);
+        seat.setStations(Arrays.asList("A", "B", "C"));
+        return seat;
+    }
 
-        TrainType trainType = new TrainType();
-        trainType.setEconomyClass(1);
-        Response<TrainType> response3 = new Response<>(null, null, trainType);
-        ResponseEntity<Response<TrainType>> re3 = new ResponseEntity<>(response3, HttpStatus.OK);
+    private void mockSoldTickets(String path, Ticket... soldTickets) {
+        LeftTicketInfo leftTicketInfo = new LeftTicketInfo();
+        leftTicketInfo.setSoldTickets(new HashSet<>(Arrays.asList(soldTickets)));
+        Response<LeftTicketInfo> response = new Response<>(1, null, leftTicketInfo);
+        ResponseEntity<Response<LeftTicketInfo>> re = new ResponseEntity<>(response, HttpStatus.OK);
         Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
+                Mockito.contains(path),
                 Mockito.any(HttpMethod.class),
                 Mockito.any(HttpEntity.class),
                 Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re1).thenReturn(re2).thenReturn(re3);
-        Response result = seatServiceImpl.distributeSeat(seat, headers);
-        Assert.assertEquals("Use a new seat number!", result.getMsg());
+                .thenReturn(re);
     }
 
     @Test
@@ -0,0 +1,43 @@
+package security.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author fdse
+ */
+@Configuration
+public class Queues {
+
+    /**
+     * order events of ts-order-service and ts-order-other-service
+     */
+    public final static String orderEventExchange = "order_event";
+
+    /**
+     * durable, events published while the service is down are delivered when it is back;
+     * one consumer at a time, the counters depend on the order of the events. The counters
+     * are shared through the database, so every instance checks against the same counts.
+     */
+    public final static String orderEventQueue = "order_event_security";
+
+    @Bean
+    public FanoutExchange orderEventExchange() {
+        return new FanoutExchange(orderEventExchange);
+    }
+
+    @Bean
+    public Queue orderEventQueue() {
+        return QueueBuilder.durable(orderEventQueue).withArgument("x-single-active-consumer", true).build();
+    }
+
+    @Bean
+    public Binding orderEventBinding() {
+        return BindingBuilder.bind(orderEventQueue()).to(orderEventExchange());
+    }
+}
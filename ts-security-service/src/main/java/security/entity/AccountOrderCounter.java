@@ -0,0 +1,48 @@
+package security.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * Saved order counters of one account, see OrderCounters.
+ *
+ * @author fdse
+ */
+@Data
+@AllArgsConstructor
+@Entity
+@Table(name = "account_order_counter")
+public class AccountOrderCounter {
+
+    @Id
+    @Column(name = "account_id", length = 36)
+    private String accountId;
+
+    /**
+     * ids of the valid orders seen in events, comma separated
+     */
+    @Column(name = "valid_orders", columnDefinition = "TEXT")
+    private String validOrders;
+
+    /**
+     * valid orders counted before the events of the account were followed
+     */
+    @Column(name = "valid_seed")
+    private int validSeed;
+
+    /**
+     * orders per time bucket, as bucket:count pairs, comma separated
+     */
+    @Column(name = "buckets", columnDefinition = "TEXT")
+    private String buckets;
+
+    public AccountOrderCounter() {
+        //Default Constructor
+    }
+
+}
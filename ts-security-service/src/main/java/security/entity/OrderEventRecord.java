@@ -0,0 +1,32 @@
+package security.entity;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Order event applied to the counters, kept so a redelivered event is
+ * recognized, until it is older than the dedup ttl.
+ *
+ * @author fdse
+ */
+@Data
+@Entity
+@Table(name = "order_event_record")
+public class OrderEventRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long seq;
+
+    @Column(name = "event_id", length = 36, unique = true)
+    private String eventId;
+
+    @Column(name = "recorded_at")
+    private long recordedAt;
+
+    public OrderEventRecord() {
+        //Default Constructor
+    }
+
+}
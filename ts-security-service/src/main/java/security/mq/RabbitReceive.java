@@ -0,0 +1,35 @@
+package security.mq;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import security.config.Queues;
+import security.service.OrderCounterJournal;
+
+/**
+ * Every order transition moves the order counters of its account.
+ */
+@Component
+public class RabbitReceive {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitReceive.class);
+
+    @Autowired
+    private OrderCounterJournal orderCounterJournal;
+
+    @RabbitListener(queues = Queues.orderEventQueue)
+    public void process(String payload) {
+        OrderEvent event = JsonUtils.json2Object(payload, OrderEvent.class);
+        if (event == null) {
+            logger.error("[process][json2Object][Receive order event object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable order event");
+        }
+        logger.debug("[process][Order event][OrderId: {}, AccountId: {}, Type: {}]", event.getOrderId(), event.getAccountId(), event.getType());
+        orderCounterJournal.record(event);
+    }
+}
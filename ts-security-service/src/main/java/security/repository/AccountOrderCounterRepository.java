@@ -0,0 +1,25 @@
+package security.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import security.entity.AccountOrderCounter;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface AccountOrderCounterRepository extends CrudRepository<AccountOrderCounter, String> {
+
+    /**
+     * a seed never overwrites the counters of an account whose events were applied meanwhile
+     *
+     * @return 0 when the account has counters already
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT IGNORE INTO account_order_counter (account_id, valid_orders, valid_seed, buckets) VALUES (?1, ?2, ?3, ?4)", nativeQuery = true)
+    int insertIfAbsent(String accountId, String validOrders, int validSeed, String buckets);
+}
@@ -0,0 +1,22 @@
+package security.repository;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import security.entity.OrderEventRecord;
+
+/**
+ * @author fdse
+ */
+@Repository
+public interface OrderEventRecordRepository extends CrudRepository<OrderEventRecord, Long> {
+
+    boolean existsByEventId(String eventId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from OrderEventRecord r where r.recordedAt < ?1")
+    int deleteRecordedBefore(long recordedBefore);
+}
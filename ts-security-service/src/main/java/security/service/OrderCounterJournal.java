@@ -0,0 +1,64 @@
+package security.service;
+
+import edu.fudan.common.entity.OrderEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import security.entity.OrderEventRecord;
+import security.repository.OrderEventRecordRepository;
+
+/**
+ * Applies the order events to the counters. The event id is written to the
+ * journal in the transaction that updates the counters of the account, so
+ * an event is applied once even when the broker delivers it again, and a
+ * failed update leaves the event to be redelivered. Event ids are kept for
+ * the dedup ttl, longer than the broker takes to redeliver an event.
+ *
+ * @author fdse
+ */
+@Component
+public class OrderCounterJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OrderCounterJournal.class);
+
+    @Autowired
+    private OrderCounters orderCounters;
+
+    @Autowired
+    private OrderEventRecordRepository orderEventRecordRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${security.counters.dedup-ttl-ms:86400000}")
+    private long dedupTtlMs = 86400000;
+
+    /**
+     * Apply an order event, a redelivered event is dropped.
+     */
+    public void record(OrderEvent event) {
+        transactionTemplate.execute(status -> {
+            if (orderEventRecordRepository.existsByEventId(event.getEventId())) {
+                LOGGER.info("[record][Order event already applied][eventId: {}]", event.getEventId());
+                return null;
+            }
+            OrderEventRecord record = new OrderEventRecord();
+            record.setEventId(event.getEventId());
+            record.setRecordedAt(System.currentTimeMillis());
+            orderEventRecordRepository.save(record);
+            orderCounters.apply(event);
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${security.counters.purge-interval-ms:3600000}",
+            initialDelayString = "${security.counters.purge-interval-ms:3600000}")
+    public void purge() {
+        int dropped = orderEventRecordRepository.deleteRecordedBefore(System.currentTimeMillis() - dedupTtlMs);
+        LOGGER.info("[purge][Order event ids past the dedup ttl dropped][records: {}]", dropped);
+    }
+}
@@ -0,0 +1,226 @@
+package security.service;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.entity.OrderEventType;
+import edu.fudan.common.entity.OrderSecurity;
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.util.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import security.entity.AccountOrderCounter;
+import security.repository.AccountOrderCounterRepository;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Order counters of every account, kept from the order events instead of
+ * loading all orders of the account on every check. Orders bought in the
+ * last window are counted in a ring of time buckets; a bucket that overlaps
+ * the start of the window still counts whole, so the count errs on the
+ * strict side by at most one bucket. Valid orders are the ids whose last
+ * event left them not paid, paid or collected.
+ * The counters are rows of the database shared by all instances: the
+ * instance consuming the events updates the row of the account, every
+ * instance answers a check from the row as committed.
+ *
+ * @author fdse
+ */
+@Component
+public class OrderCounters {
+
+    @Autowired
+    private AccountOrderCounterRepository accountOrderCounterRepository;
+
+    @Value("${security.counters.bucket-ms:60000}")
+    long bucketMs = 60000;
+
+    @Value("${security.counters.window-ms:3600000}")
+    long windowMs = 3600000;
+
+    /**
+     * @return the counts at now, null when no event and no seed of the account was seen
+     */
+    public OrderSecurity securityOf(String accountId, long now) {
+        AccountOrderCounter row = accountOrderCounterRepository.findById(accountId).orElse(null);
+        return row == null ? null : new AccountCounter(row).security(now);
+    }
+
+    /**
+     * Update the row of the account, called in the transaction that records the event.
+     */
+    public void apply(OrderEvent event) {
+        if (event.getAccountId() == null || event.getOrderId() == null) {
+            return;
+        }
+        if (event.getType() == OrderEventType.MOVED) {
+            //the same order on the shard of its new train, its CHANGED event was applied already
+            return;
+        }
+        AccountCounter counter = accountOrderCounterRepository.findById(event.getAccountId())
+                .map(AccountCounter::new).orElseGet(AccountCounter::new);
+        counter.apply(event, boughtAt(event));
+        accountOrderCounterRepository.save(counter.toRow(event.getAccountId()));
+    }
+
+    /**
+     * Start counting an account whose orders were counted elsewhere, e.g. by
+     * the order services, before its events were followed.
+     *
+     * @return the counts of the account, the seed is dropped when events of the account arrived meanwhile
+     */
+    public OrderSecurity seed(String accountId, OrderSecurity counted, long now) {
+        AccountCounter seeded = new AccountCounter();
+        seeded.seed(counted, now);
+        AccountOrderCounter row = seeded.toRow(accountId);
+        if (accountOrderCounterRepository.insertIfAbsent(accountId, row.getValidOrders(), row.getValidSeed(), row.getBuckets()) == 0) {
+            OrderSecurity current = securityOf(accountId, now);
+            if (current != null) {
+                return current;
+            }
+        }
+        return seeded.security(now);
+    }
+
+    private long boughtAt(OrderEvent event) {
+        if (event.getBoughtDate() != null) {
+            long bought = StringUtils.String2Date(event.getBoughtDate()).getTime();
+            if (bought > 0) {
+                return bought;
+            }
+        }
+        return event.getOccurredAt();
+    }
+
+    private static boolean isValid(int status) {
+        return status == OrderStatus.NOTPAID.getCode()
+                || status == OrderStatus.PAID.getCode()
+                || status == OrderStatus.COLLECTED.getCode();
+    }
+
+    /**
+     * whether the order could have been valid before the event
+     */
+    private static boolean wasValid(OrderEvent event) {
+        if (event.getType() == OrderEventType.DELETED) {
+            return isValid(event.getStatus());
+        }
+        for (int source : OrderStatus.getAllowedSourceCodes(event.getStatus())) {
+            if (isValid(source)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int slots() {
+        return (int) ((windowMs + bucketMs - 1) / bucketMs) + 1;
+    }
+
+    private class AccountCounter {
+
+        private final long[] bucketKeys = new long[slots()];
+
+        private final int[] bucketCounts = new int[bucketKeys.length];
+
+        private final Set<String> validOrders = new HashSet<>();
+
+        private int validSeed;
+
+        AccountCounter() {
+            Arrays.fill(bucketKeys, -1);
+        }
+
+        AccountCounter(AccountOrderCounter row) {
+            this();
+            restore(row);
+        }
+
+        void apply(OrderEvent event, long boughtAt) {
+            boolean valid = event.getType() != OrderEventType.DELETED && isValid(event.getStatus());
+            boolean known = validOrders.contains(event.getOrderId());
+            if (event.getType() == OrderEventType.CREATED) {
+                //a rebook across order services creates its new order in CHANGE, it is no new purchase
+                if (event.getStatus() != OrderStatus.CHANGE.getCode()) {
+                    count(boughtAt);
+                }
+            } else if (!known && validSeed > 0 && wasValid(event)) {
+                //an order from before the seed, it leaves the seed and is followed from now on
+                validSeed--;
+            }
+            if (valid) {
+                validOrders.add(event.getOrderId());
+            } else {
+                validOrders.remove(event.getOrderId());
+            }
+        }
+
+        void seed(OrderSecurity counted, long now) {
+            bucketKeys[slotOf(now / bucketMs)] = now / bucketMs;
+            bucketCounts[slotOf(now / bucketMs)] = counted.getOrderNumInLastOneHour();
+            validSeed = counted.getOrderNumOfValidOrder();
+        }
+
+        OrderSecurity security(long now) {
+            long windowStart = now - windowMs;
+            int inWindow = 0;
+            for (int i = 0; i < bucketKeys.length; i++) {
+                long key = bucketKeys[i];
+                if (key >= 0 && (key + 1) * bucketMs > windowStart && key * bucketMs <= now) {
+                    inWindow += bucketCounts[i];
+                }
+            }
+            return new OrderSecurity(inWindow, validOrders.size() + validSeed);
+        }
+
+        AccountOrderCounter toRow(String accountId) {
+            StringBuilder buckets = new StringBuilder();
+            for (int i = 0; i < bucketKeys.length; i++) {
+                if (bucketKeys[i] >= 0 && bucketCounts[i] > 0) {
+                    if (buckets.length() > 0) {
+                        buckets.append(',');
+                    }
+                    buckets.append(bucketKeys[i]).append(':').append(bucketCounts[i]);
+                }
+            }
+            return new AccountOrderCounter(accountId, String.join(",", validOrders), validSeed, buckets.toString());
+        }
+
+        private void restore(AccountOrderCounter row) {
+            if (row.getValidOrders() != null && !row.getValidOrders().isEmpty()) {
+                validOrders.addAll(Arrays.asList(row.getValidOrders().split(",")));
+            }
+            validSeed = row.getValidSeed();
+            if (row.getBuckets() != null && !row.getBuckets().isEmpty()) {
+                for (String bucket : row.getBuckets().split(",")) {
+                    String[] keyAndCount = bucket.split(":");
+                    long key = Long.parseLong(keyAndCount[0]);
+                    int slot = slotOf(key);
+                    if (key > bucketKeys[slot]) {
+                        bucketKeys[slot] = key;
+                        bucketCounts[slot] = Integer.parseInt(keyAndCount[1]);
+                    }
+                }
+            }
+        }
+
+        private void count(long boughtAt) {
+            long key = boughtAt / bucketMs;
+            int slot = slotOf(key);
+            if (bucketKeys[slot] == key) {
+                bucketCounts[slot]++;
+            } else if (bucketKeys[slot] < key) {
+                //the slot held a bucket that left the window
+                bucketKeys[slot] = key;
+                bucketCounts[slot] = 1;
+            }
+            //otherwise bought long before the window, not counted
+        }
+
+        private int slotOf(long key) {
+            return (int) (key % bucketKeys.length);
+        }
+    }
+}
@@ -38,9 +38,21 @@ public class SecurityServiceImpl implements SecurityService {
     @Autowired
     RestTemplate restTemplate;
 
+    @Autowired
+    private SecurityThresholds securityThresholds;
+
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private OrderCounters orderCounters;
+
+    /**
+     * count the orders of an account not seen in events yet once through the order services
+     */
+    @Value("${security.counters.seed-from-orders:true}")
+    private boolean seedFromOrders = true;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(SecurityServiceImpl.class);
 
     private String getServiceUrl(String serviceName) {
@@ -72,6 +84,7 @@ public class SecurityServiceImpl implements SecurityService {
             config.setValue(info.getValue());
             config.setDescription(info.getDescription());
             securityRepository.save(config);
+            securityThresholds.refresh();
             return new Response<>(1, success, config);
         }
     }
@@ -87,6 +100,7 @@ public class SecurityServiceImpl implements SecurityService {
             sc.setValue(info.getValue());
             sc.setDescription(info.getDescription());
             securityRepository.save(sc);
+            securityThresholds.refresh();
             return new Response<>(1, success, sc);
         }
     }
@@ -97,6 +111,7 @@ public class SecurityServiceImpl implements SecurityService {
         securityRepository.deleteById(id);
         SecurityConfig sc = securityRepository.findById(id).orElse(null);
         if (sc == null) {
+            securityThresholds.refresh();
             return new Response<>(1, success, id);
         } else {
             SecurityServiceImpl.LOGGER.error("[deleteSecurityConfig][Delete Security config error][Reason not clear][SecurityConfigId: {}]",id);
@@ -108,17 +123,20 @@ public class SecurityServiceImpl implements SecurityService {
     public Response check(String accountId, HttpHeaders headers) {
         //1.Get the orders in the past one hour and the total effective votes
         SecurityServiceImpl.LOGGER.debug("[check][Get Order Num Info]");
-        OrderSecurity orderResult = getSecurityOrderInfoFromOrder(new Date(), accountId, headers);
-        OrderSecurity orderOtherResult = getSecurityOrderOtherInfoFromOrder(new Date(), accountId, headers);
-        int orderInOneHour = orderOtherResult.getOrderNumInLastOneHour() + orderResult.getOrderNumInLastOneHour();
-        int totalValidOrder = orderOtherResult.getOrderNumOfValidOrder() + orderResult.getOrderNumOfValidOrder();
+        long now = System.currentTimeMillis();
+        OrderSecurity counted = orderCounters.securityOf(accountId, now);
+        if (counted == null) {
+            counted = orderCounters.seed(accountId, countOrders(accountId, headers), now);
+        }
+        int orderInOneHour = counted.getOrderNumInLastOneHour();
+        int totalValidOrder = counted.getOrderNumOfValidOrder();
         //2. get critical configuration information
         SecurityServiceImpl.LOGGER.debug("[check][Get Security Config Info]");
-        SecurityConfig configMaxInHour = securityRepository.findByName("max_order_1_hour");
-        SecurityConfig configMaxNotUse = securityRepository.findByName("max_order_not_use");
-        SecurityServiceImpl.LOGGER.info("[check][Max][Max In One Hour: {}  Max Not Use: {}]", configMaxInHour.getValue(), configMaxNotUse.getValue());
-        int oneHourLine = Integer.parseInt(configMaxInHour.getValue());
-        int totalValidLine = Integer.parseInt(configMaxNotUse.getValue());
+        String maxInHour = securityThresholds.value("max_order_1_hour");
+        String maxNotUse = securityThresholds.value("max_order_not_use");
+        SecurityServiceImpl.LOGGER.info("[check][Max][Max In One Hour: {}  Max Not Use: {}]", maxInHour, maxNotUse);
+        int oneHourLine = Integer.parseInt(maxInHour);
+        int totalValidLine = Integer.parseInt(maxNotUse);
         if (orderInOneHour > oneHourLine || totalValidOrder > totalValidLine) {
             SecurityServiceImpl.LOGGER.warn("[check][Check Security config warn][Too much order in last one hour or too much valid order][AccountId: {}]",accountId);
             return new Response<>(0, "Too much order in last one hour or too much valid order", accountId);
@@ -127,6 +145,17 @@ public class SecurityServiceImpl implements SecurityService {
         }
     }
 
+    private OrderSecurity countOrders(String accountId, HttpHeaders headers) {
+        if (!seedFromOrders) {
+            return new OrderSecurity(0, 0);
+        }
+        SecurityServiceImpl.LOGGER.info("[countOrders][Seed order counters from order services][AccountId: {}]", accountId);
+        OrderSecurity orderResult = getSecurityOrderInfoFromOrder(new Date(), accountId, headers);
+        OrderSecurity orderOtherResult = getSecurityOrderOtherInfoFromOrder(new Date(), accountId, headers);
+        return new OrderSecurity(orderOtherResult.getOrderNumInLastOneHour() + orderResult.getOrderNumInLastOneHour(),
+                orderOtherResult.getOrderNumOfValidOrder() + orderResult.getOrderNumOfValidOrder());
+    }
+
     private OrderSecurity getSecurityOrderInfoFromOrder(Date checkDate, String accountId, HttpHeaders headers) {
         HttpEntity requestEntity = new HttpEntity(null);
         String order_service_url = getServiceUrl("ts-order-service");
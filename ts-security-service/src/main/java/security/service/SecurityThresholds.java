@@ -0,0 +1,62 @@
+package security.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import security.entity.SecurityConfig;
+import security.repository.SecurityRepository;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Values of the security configs, read once a second instead of on every
+ * check. Changes made here are visible at once, changes made through another
+ * instance with the next refresh.
+ *
+ * @author fdse
+ */
+@Component
+public class SecurityThresholds {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SecurityThresholds.class);
+
+    @Autowired
+    private SecurityRepository securityRepository;
+
+    private volatile Map<String, String> values = Collections.emptyMap();
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${security.thresholds.refresh-interval-ms:1000}")
+    public void refresh() {
+        Map<String, String> loaded = new HashMap<>();
+        List<SecurityConfig> configs = securityRepository.findAll();
+        if (configs != null) {
+            for (SecurityConfig config : configs) {
+                loaded.put(config.getName(), config.getValue());
+            }
+        }
+        if (!loaded.equals(values)) {
+            SecurityThresholds.LOGGER.info("[refresh][Security thresholds changed][thresholds: {}]", loaded);
+        }
+        values = Collections.unmodifiableMap(loaded);
+    }
+
+    /**
+     * @return the value of the config, null when it does not exist
+     */
+    public String value(String name) {
+        String value = values.get(name);
+        if (value == null) {
+            //created after the last refresh
+            SecurityConfig config = securityRepository.findByName(name);
+            value = config == null ? null : config.getValue();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,70 @@
+package security.service;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.entity.OrderEventType;
+import edu.fudan.common.entity.OrderStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import security.entity.OrderEventRecord;
+import security.repository.OrderEventRecordRepository;
+
+import java.util.HashMap;
+
+@RunWith(JUnit4.class)
+public class OrderCounterJournalTest {
+
+    @InjectMocks
+    private OrderCounterJournal orderCounterJournal;
+
+    @Spy
+    private OrderCounters orderCounters = new OrderCounters();
+
+    @Mock
+    private OrderEventRecordRepository orderEventRecordRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(orderCounters, "accountOrderCounterRepository", OrderCountersTest.repositoryOf(new HashMap<>()));
+        Mockito.when(transactionTemplate.execute(Mockito.any()))
+                .thenAnswer(invocation -> ((TransactionCallback) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    public void testRedeliveredEventDropped() {
+        OrderEvent event = new OrderEvent();
+        event.setEventId("event_id");
+        event.setType(OrderEventType.CREATED);
+        event.setOrderId("order_id");
+        event.setAccountId("account_id");
+        event.setStatus(OrderStatus.NOTPAID.getCode());
+        event.setOccurredAt(System.currentTimeMillis());
+        orderCounterJournal.record(event);
+        Mockito.verify(orderEventRecordRepository).save(Mockito.any(OrderEventRecord.class));
+
+        Mockito.when(orderEventRecordRepository.existsByEventId("event_id")).thenReturn(true);
+        orderCounterJournal.record(event);
+        Mockito.verify(orderCounters, Mockito.times(1)).apply(event);
+        Mockito.verify(orderEventRecordRepository, Mockito.times(1)).save(Mockito.any(OrderEventRecord.class));
+    }
+
+    @Test
+    public void testPurgeKeepsEventIdsForDedupTtl() {
+        long before = System.currentTimeMillis();
+        orderCounterJournal.purge();
+        Mockito.verify(orderEventRecordRepository).deleteRecordedBefore(Mockito.longThat(cutoff -> cutoff <= before - 86400000 + 1000 && cutoff > before - 86400000 - 1000));
+    }
+}
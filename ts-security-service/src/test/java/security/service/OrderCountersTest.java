@@ -0,0 +1,146 @@
+package security.service;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.entity.OrderEventType;
+import edu.fudan.common.entity.OrderSecurity;
+import edu.fudan.common.entity.OrderStatus;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import security.entity.AccountOrderCounter;
+import security.repository.AccountOrderCounterRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+public class OrderCountersTest {
+
+    private static final long MINUTE = 60000;
+
+    private static final long HOUR = 60 * MINUTE;
+
+    private OrderCounters orderCounters;
+
+    private Map<String, AccountOrderCounter> rows = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        orderCounters = new OrderCounters();
+        ReflectionTestUtils.setField(orderCounters, "accountOrderCounterRepository", repositoryOf(rows));
+    }
+
+    @Test
+    public void testOrdersLeaveWindow() {
+        long now = 100 * HOUR;
+        orderCounters.apply(event(OrderEventType.CREATED, "o1", OrderStatus.NOTPAID, now - 2 * HOUR));
+        orderCounters.apply(event(OrderEventType.CREATED, "o2", OrderStatus.NOTPAID, now - 30 * MINUTE));
+        orderCounters.apply(event(OrderEventType.CREATED, "o3", OrderStatus.NOTPAID, now));
+        Assert.assertEquals(new OrderSecurity(2, 3), orderCounters.securityOf("account_id", now));
+        Assert.assertEquals(new OrderSecurity(1, 3), orderCounters.securityOf("account_id", now + 40 * MINUTE));
+        Assert.assertNull(orderCounters.securityOf("other_account_id", now));
+    }
+
+    @Test
+    public void testCancelledAndUsedOrdersAreNotValid() {
+        long now = 100 * HOUR;
+        orderCounters.apply(event(OrderEventType.CREATED, "o1", OrderStatus.NOTPAID, now));
+        orderCounters.apply(event(OrderEventType.CREATED, "o2", OrderStatus.NOTPAID, now));
+        orderCounters.apply(event(OrderEventType.PAID, "o1", OrderStatus.PAID, now));
+        orderCounters.apply(event(OrderEventType.COLLECTED, "o1", OrderStatus.COLLECTED, now));
+        orderCounters.apply(event(OrderEventType.USED, "o1", OrderStatus.USED, now));
+        orderCounters.apply(event(OrderEventType.CANCELLED, "o2", OrderStatus.CANCEL, now));
+        orderCounters.apply(event(OrderEventType.CANCELLED, "o2", OrderStatus.REFUNDS, now));
+        Assert.assertEquals(new OrderSecurity(2, 0), orderCounters.securityOf("account_id", now));
+    }
+
+    @Test
+    public void testSeededOrdersLeaveSeed() {
+        long now = 100 * HOUR;
+        orderCounters.seed("account_id", new OrderSecurity(1, 3), now);
+        //o1 and o2 were counted in the seed
+        orderCounters.apply(event(OrderEventType.PAID, "o1", OrderStatus.PAID, now));
+        orderCounters.apply(event(OrderEventType.CANCELLED, "o2", OrderStatus.CANCEL, now));
+        orderCounters.apply(event(OrderEventType.CANCELLED, "o2", OrderStatus.REFUNDS, now));
+        orderCounters.apply(event(OrderEventType.CREATED, "o3", OrderStatus.NOTPAID, now));
+        Assert.assertEquals(new OrderSecurity(2, 3), orderCounters.securityOf("account_id", now));
+        //a later seed never replaces what was counted
+        Assert.assertEquals(new OrderSecurity(2, 3), orderCounters.seed("account_id", new OrderSecurity(9, 9), now));
+    }
+
+    @Test
+    public void testRebooksAreNoNewOrders() {
+        long now = 100 * HOUR;
+        //o2 and another order were counted in the seed
+        orderCounters.seed("account_id", new OrderSecurity(1, 2), now);
+        orderCounters.apply(event(OrderEventType.CREATED, "o1", OrderStatus.NOTPAID, now));
+        orderCounters.apply(event(OrderEventType.PAID, "o1", OrderStatus.PAID, now));
+        //o1 rebooked onto a train of another shard, it keeps its id
+        orderCounters.apply(event(OrderEventType.CHANGED, "o1", OrderStatus.CHANGE, now));
+        orderCounters.apply(event(OrderEventType.MOVED, "o1", OrderStatus.CHANGE, now));
+        //the seeded order rebooked across order services: claimed, created anew, deleted
+        orderCounters.apply(event(OrderEventType.CHANGED, "o2", OrderStatus.CHANGE, now));
+        orderCounters.apply(event(OrderEventType.CREATED, "o3", OrderStatus.CHANGE, now));
+        orderCounters.apply(event(OrderEventType.DELETED, "o2", OrderStatus.CHANGE, now));
+        Assert.assertEquals(new OrderSecurity(2, 1), orderCounters.securityOf("account_id", now));
+    }
+
+    @Test
+    public void testCountersSharedThroughRows() {
+        long now = 100 * HOUR;
+        orderCounters.apply(event(OrderEventType.CREATED, "o1", OrderStatus.NOTPAID, now - 10 * MINUTE));
+        orderCounters.apply(event(OrderEventType.CREATED, "o2", OrderStatus.NOTPAID, now));
+        Assert.assertEquals(1, rows.size());
+
+        //another instance answers from the same row
+        OrderCounters other = new OrderCounters();
+        ReflectionTestUtils.setField(other, "accountOrderCounterRepository", repositoryOf(rows));
+        Assert.assertEquals(new OrderSecurity(2, 2), other.securityOf("account_id", now));
+        orderCounters.apply(event(OrderEventType.CANCELLED, "o1", OrderStatus.CANCEL, now));
+        Assert.assertEquals(new OrderSecurity(2, 1), other.securityOf("account_id", now));
+    }
+
+    @Test
+    public void testSeedKeepsCountersOfOtherInstance() {
+        long now = 100 * HOUR;
+        OrderCounters other = new OrderCounters();
+        ReflectionTestUtils.setField(other, "accountOrderCounterRepository", repositoryOf(rows));
+        orderCounters.apply(event(OrderEventType.CREATED, "o1", OrderStatus.NOTPAID, now));
+        Assert.assertEquals(new OrderSecurity(1, 1), other.seed("account_id", new OrderSecurity(5, 5), now));
+        Assert.assertEquals(new OrderSecurity(1, 1), orderCounters.securityOf("account_id", now));
+    }
+
+    /**
+     * the counters table, as seen by every instance
+     */
+    static AccountOrderCounterRepository repositoryOf(Map<String, AccountOrderCounter> rows) {
+        AccountOrderCounterRepository repository = Mockito.mock(AccountOrderCounterRepository.class);
+        Mockito.when(repository.findById(Mockito.anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(rows.get(invocation.<String>getArgument(0))));
+        Mockito.when(repository.save(Mockito.any(AccountOrderCounter.class))).thenAnswer(invocation -> {
+            AccountOrderCounter row = invocation.getArgument(0);
+            rows.put(row.getAccountId(), row);
+            return row;
+        });
+        Mockito.when(repository.insertIfAbsent(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt(), Mockito.anyString()))
+                .thenAnswer(invocation -> rows.putIfAbsent(invocation.getArgument(0), new AccountOrderCounter(invocation.getArgument(0),
+                        invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3))) == null ? 1 : 0);
+        return repository;
+    }
+
+    private OrderEvent event(OrderEventType type, String orderId, OrderStatus status, long occurredAt) {
+        OrderEvent event = new OrderEvent();
+        event.setEventId(orderId + ":" + type);
+        event.setType(type);
+        event.setOrderId(orderId);
+        event.setAccountId("account_id");
+        event.setStatus(status.getCode());
+        event.setOccurredAt(occurredAt);
+        return event;
+    }
+}
@@ -1,6 +1,9 @@
 package security.service;
 
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.entity.OrderEventType;
 import edu.fudan.common.entity.OrderSecurity;
+import edu.fudan.common.entity.OrderStatus;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -11,13 +14,16 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.client.RestTemplate;
 import security.entity.SecurityConfig;
 import security.repository.SecurityRepository;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -30,6 +36,12 @@ public class SecurityServiceImplTest {
     @Mock
     private SecurityRepository securityRepository;
 
+    @Spy
+    private SecurityThresholds securityThresholds = new SecurityThresholds();
+
+    @Spy
+    private OrderCounters orderCounters = new OrderCounters();
+
     @Mock
     private RestTemplate restTemplate;
 
@@ -38,6 +50,8 @@ public class SecurityServiceImplTest {
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(securityThresholds, "securityRepository", securityRepository);
+        ReflectionTestUtils.setField(orderCounters, "accountOrderCounterRepository", OrderCountersTest.repositoryOf(new HashMap<>()));
     }
 
     @Test
@@ -129,4 +143,59 @@ public class SecurityServiceImplTest {
         Assert.assertEquals(new Response<>(1, "Success.r", "account_id"), result);
     }
 
+    @Test
+    public void testCheckReadsThresholdsFromSnapshot() {
+        OrderSecurity orderSecurity = new OrderSecurity(2, 1);
+        ResponseEntity<Response<OrderSecurity>> re = new ResponseEntity<>(new Response<>(1, null, orderSecurity), HttpStatus.OK);
+        Mockito.when(restTemplate.exchange(
+                Mockito.anyString(),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(re);
+        ArrayList<SecurityConfig> configs = new ArrayList<>();
+        configs.add(securityConfig("max_order_1_hour", "3"));
+        configs.add(securityConfig("max_order_not_use", "10"));
+        Mockito.when(securityRepository.findAll()).thenReturn(configs);
+        securityThresholds.refresh();
+
+        //two orders from each order service in the last hour
+        Assert.assertEquals(0, securityServiceImpl.check("account_id", headers).getStatus().intValue());
+        Mockito.verify(securityRepository, Mockito.never()).findByName(Mockito.anyString());
+    }
+
+    @Test
+    public void testCheckCountsFromEvents() {
+        ArrayList<SecurityConfig> configs = new ArrayList<>();
+        configs.add(securityConfig("max_order_1_hour", "1"));
+        configs.add(securityConfig("max_order_not_use", "10"));
+        Mockito.when(securityRepository.findAll()).thenReturn(configs);
+        securityThresholds.refresh();
+
+        orderCounters.apply(orderEvent("e1", OrderEventType.CREATED, "o1", OrderStatus.NOTPAID));
+        Assert.assertEquals(1, securityServiceImpl.check("account_id", headers).getStatus().intValue());
+        orderCounters.apply(orderEvent("e2", OrderEventType.CREATED, "o2", OrderStatus.NOTPAID));
+        Assert.assertEquals(0, securityServiceImpl.check("account_id", headers).getStatus().intValue());
+        //the counters alone answer, the order services are never asked
+        Mockito.verifyNoInteractions(restTemplate);
+    }
+
+    private OrderEvent orderEvent(String eventId, OrderEventType type, String orderId, OrderStatus status) {
+        OrderEvent event = new OrderEvent();
+        event.setEventId(eventId);
+        event.setType(type);
+        event.setOrderId(orderId);
+        event.setAccountId("account_id");
+        event.setStatus(status.getCode());
+        event.setOccurredAt(System.currentTimeMillis());
+        return event;
+    }
+
+    private SecurityConfig securityConfig(String name, String value) {
+        SecurityConfig config = new SecurityConfig();
+        config.setName(name);
+        config.setValue(value);
+        return config;
+    }
+
 }
@@ -0,0 +1,237 @@
+package fdse.microservice.service;
+
+import edu.fudan.common.util.StringUtils;
+import fdse.microservice.entity.Station;
+import fdse.microservice.repository.StationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Station names and ids for the name lookups made by every travel and route
+ * query, kept in memory and indexed by lower case name and by id. Stations
+ * change rarely, so the table is reloaded as a whole each refresh interval.
+ * A miss is read from the database once, the station may just have been
+ * created, and then remembered as unknown for a while, so floods of
+ * misspelled names do not reach the database.
+ *
+ * @author fdse
+ */
+@Component
+public class StationDictionary {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StationDictionary.class);
+
+    @Autowired
+    private StationRepository repository;
+
+    @Value("${station.dictionary.negative-ttl-ms:60000}")
+    private long negativeTtlMs = 60000;
+
+    @Value("${station.dictionary.negative-max:10000}")
+    private int negativeMax = 10000;
+
+    private volatile Indexes indexes = new Indexes(Collections.emptyList());
+
+    /**
+     * "name:" or "id:" key -> time it stops being known as missing
+     */
+    private final Map<String, Long> unknown = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${station.dictionary.refresh-interval-ms:60000}",
+            initialDelayString = "${station.dictionary.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        List<Station> stations = repository.findAll();
+        indexes = new Indexes(stations == null ? Collections.emptyList() : stations);
+        unknown.clear();
+        StationDictionary.LOGGER.info("[refresh][Station dictionary loaded][Stations: {}]", indexes.byId.size());
+    }
+
+    /**
+     * Record a created or updated station, a renamed station loses its old name.
+     */
+    public void put(Station station) {
+        putAll(Collections.singletonList(station));
+    }
+
+    /**
+     * Record a batch of stations, the indexes are rebuilt once for all of them.
+     */
+    public synchronized void putAll(Collection<Station> stations) {
+        if (stations.isEmpty()) {
+            return;
+        }
+        Map<String, Station> byId = new HashMap<>(indexes.byId);
+        for (Station station : stations) {
+            byId.put(station.getId(), station);
+            unknown.remove("name:" + StringUtils.String2Lower(station.getName()));
+            unknown.remove("id:" + station.getId());
+        }
+        indexes = new Indexes(byId.values());
+    }
+
+    public synchronized void remove(String stationId) {
+        if (indexes.byId.containsKey(stationId)) {
+            Map<String, Station> byId = new HashMap<>(indexes.byId);
+            byId.remove(stationId);
+            indexes = new Indexes(byId.values());
+        }
+    }
+
+    /**
+     * @return the station, null when unknown
+     */
+    public Station byName(String name) {
+        String key = StringUtils.String2Lower(name);
+        if (key == null) {
+            return null;
+        }
+        Station station = indexes.byName.get(key);
+        if (station == null && !isKnownMissing("name:" + key)) {
+            station = remember(repository.findByName(key), "name:" + key);
+        }
+        return station;
+    }
+
+    /**
+     * @return the station, null when unknown
+     */
+    public Station byId(String id) {
+        if (id == null) {
+            return null;
+        }
+        Station station = indexes.byId.get(id);
+        if (station == null && !isKnownMissing("id:" + id)) {
+            station = remember(repository.findById(id).orElse(null), "id:" + id);
+        }
+        return station;
+    }
+
+    /**
+     * Stations of the names, in one pass; names missing here are read with one query.
+     *
+     * @return normalized name -> station, unknown names left out
+     */
+    public Map<String, Station> byNames(Collection<String> names) {
+        Indexes current = indexes;
+        Map<String, Station> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            String key = StringUtils.String2Lower(name);
+            if (key == null) {
+                continue;
+            }
+            Station station = current.byName.get(key);
+            if (station != null) {
+                result.put(key, station);
+            } else if (!isKnownMissing("name:" + key)) {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Station> found = repository.findByNames(missing);
+            putAll(found);
+            Indexes updated = indexes;
+            for (Station station : found) {
+                result.put(station.getName(), updated.byId.get(station.getId()));
+            }
+            for (String key : missing) {
+                if (!result.containsKey(key)) {
+                    remember(null, "name:" + key);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stations of the ids, in one pass; ids missing here are read with one query.
+     *
+     * @return id -> station, unknown ids left out
+     */
+    public Map<String, Station> byIds(Collection<String> ids) {
+        Indexes current = indexes;
+        Map<String, Station> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String id : ids) {
+            Station station = current.byId.get(id);
+            if (station != null) {
+                result.put(id, station);
+            } else if (id != null && !isKnownMissing("id:" + id)) {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Station> found = new ArrayList<>();
+            repository.findAllById(missing).forEach(found::add);
+            putAll(found);
+            Indexes updated = indexes;
+            for (Station station : found) {
+                result.put(station.getId(), updated.byId.get(station.getId()));
+            }
+            for (String id : missing) {
+                if (!result.containsKey(id)) {
+                    remember(null, "id:" + id);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean isKnownMissing(String key) {
+        Long until = unknown.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (until < System.currentTimeMillis()) {
+            unknown.remove(key, until);
+            return false;
+        }
+        return true;
+    }
+
+    private Station remember(Station station, String missingKey) {
+        if (station != null) {
+            put(station);
+            return indexes.byId.get(station.getId());
+        }
+        if (unknown.size() >= negativeMax) {
+            //a flood of distinct names, start over rather than grow without bound
+            unknown.clear();
+        }
+        unknown.put(missingKey, System.currentTimeMillis() + negativeTtlMs);
+        return null;
+    }
+
+    /**
+     * the indexes keep their own copies, never the managed entities
+     */
+    private static Station copyOf(Station station) {
+        Station copy = new Station(station.getName(), station.getStayTime());
+        copy.setId(station.getId());
+        return copy;
+    }
+
+    private static class Indexes {
+
+        private final Map<String, Station> byId = new HashMap<>();
+
+        private final Map<String, Station> byName = new HashMap<>();
+
+        Indexes(Collection<Station> stations) {
+            for (Station station : stations) {
+                Station copy = copyOf(station);
+                byId.put(copy.getId(), copy);
+                byName.put(StringUtils.String2Lower(copy.getName()), copy);
+            }
+        }
+    }
+}
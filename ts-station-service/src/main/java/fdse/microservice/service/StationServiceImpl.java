@@ -1,6 +1,7 @@
 package fdse.microservice.service;
 
 import edu.fudan.common.util.Response;
+import edu.fudan.common.util.StringUtils;
 import fdse.microservice.entity.*;
 import fdse.microservice.repository.StationRepository;
 import org.slf4j.Logger;
@@ -18,6 +19,9 @@ public class StationServiceImpl implements StationService {
     @Autowired
     private StationRepository repository;
 
+    @Autowired
+    private StationDictionary dictionary;
+
     String success = "Success";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(StationServiceImpl.class);
@@ -31,6 +35,7 @@ public class StationServiceImpl implements StationService {
         if (repository.findByName(station.getName()) == null) {
             station.setStayTime(station.getStayTime());
             repository.save(station);
+            dictionary.put(station);
             return new Response<>(1, "Create success", station);
         }
         StationServiceImpl.LOGGER.error("[create][Create station error][Already exists][StationId: {}]",station.getId());
@@ -40,11 +45,7 @@ public class StationServiceImpl implements StationService {
 
     @Override
     public boolean exist(String stationName, HttpHeaders headers) {
-        boolean result = false;
-        if (repository.findByName(stationName) != null) {
-            result = true;
-        }
-        return result;
+        return dictionary.byName(stationName) != null;
     }
 
     @Override
@@ -59,6 +60,7 @@ public class StationServiceImpl implements StationService {
             station.setName(info.getName());
             station.setStayTime(info.getStayTime());
             repository.save(station);
+            dictionary.put(station);
             return new Response<>(1, "Update success", station);
         }
     }
@@ -69,6 +71,7 @@ public class StationServiceImpl implements StationService {
         if (op.isPresent()) {
             Station station = op.get();
             repository.delete(station);
+            dictionary.remove(stationsId);
             return new Response<>(1, "Delete success", station);
         }
         StationServiceImpl.LOGGER.error("[delete][Delete station error][Station not found][StationId: {}]",stationsId);
@@ -88,7 +91,7 @@ public class StationServiceImpl implements StationService {
 
     @Override
     public Response queryForId(String stationName, HttpHeaders headers) {
-        Station station = repository.findByName(stationName);
+        Station station = dictionary.byName(stationName);
 
         if (station  != null) {
             return new Response<>(1, success, station.getId());
@@ -102,14 +105,10 @@ public class StationServiceImpl implements StationService {
     @Override
     public Response queryForIdBatch(List<String> nameList, HttpHeaders headers) {
         Map<String, String> result = new HashMap<>();
-        List<Station> stations = repository.findByNames(nameList);
-        Map<String, String> stationMap = new HashMap<>();
-        for(Station s: stations) {
-            stationMap.put(s.getName(), s.getId());
-        }
-
+        Map<String, Station> stations = dictionary.byNames(nameList);
         for(String name: nameList){
-            result.put(name, stationMap.get(name));
+            Station station = stations.get(StringUtils.String2Lower(name));
+            result.put(name, station == null ? null : station.getId());
         }
 
         if (!result.isEmpty()) {
@@ -123,9 +122,9 @@ public class StationServiceImpl implements StationService {
 
     @Override
     public Response queryById(String stationId, HttpHeaders headers) {
-        Optional<Station> station = repository.findById(stationId);
-        if (station.isPresent()) {
-            return new Response<>(1, success, station.get().getName());
+        Station station = dictionary.byId(stationId);
+        if (station != null) {
+            return new Response<>(1, success, station.getName());
         } else {
             StationServiceImpl.LOGGER.error("[queryById][Find station name error][Station not found][StationId: {}]",stationId);
             return new Response<>(0, "No that stationId", stationId);
@@ -135,10 +134,10 @@ public class StationServiceImpl implements StationService {
     @Override
     public Response queryByIdBatch(List<String> idList, HttpHeaders headers) {
         ArrayList<String> result = new ArrayList<>();
-        for (int i = 0; i < idList.size(); i++) {
-            Optional<Station> stationOld = repository.findById(idList.get(i));
-            if(stationOld.isPresent()){
-                Station station=stationOld.get();
+        Map<String, Station> stations = dictionary.byIds(idList);
+        for (String id : idList) {
+            Station station = stations.get(id);
+            if (station != null) {
                 result.add(station.getName());
             }
         }
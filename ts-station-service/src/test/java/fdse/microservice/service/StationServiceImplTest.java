@@ -12,10 +12,15 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RunWith(JUnit4.class)
 public class StationServiceImplTest {
@@ -26,11 +31,15 @@ public class StationServiceImplTest {
     @Mock
     private StationRepository repository;
 
+    @Spy
+    private StationDictionary dictionary = new StationDictionary();
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(dictionary, "repository", repository);
     }
 
     @Test
@@ -176,4 +185,48 @@ public class StationServiceImplTest {
         Assert.assertEquals("Success", result.getMsg());
     }
 
+    @Test
+    public void testQueryForIdFromDictionary() {
+        Station station = new Station("Shang Hai", 10);
+        station.setId("station_id");
+        Mockito.when(repository.findAll()).thenReturn(Collections.singletonList(station));
+        dictionary.refresh();
+        Assert.assertEquals(new Response<>(1, "Success", "station_id"), stationServiceImpl.queryForId("ShangHai", headers));
+        Assert.assertEquals(new Response<>(1, "Success", "shanghai"), stationServiceImpl.queryById("station_id", headers));
+        Mockito.verify(repository, Mockito.never()).findByName(Mockito.anyString());
+    }
+
+    @Test
+    public void testUnknownNameAskedOnce() {
+        Mockito.when(repository.findByName(Mockito.anyString())).thenReturn(null);
+        Assert.assertFalse(stationServiceImpl.exist("shanghia", headers));
+        Assert.assertFalse(stationServiceImpl.exist("Shang Hia", headers));
+        Mockito.verify(repository, Mockito.times(1)).findByName("shanghia");
+
+        //creating the station clears what was remembered as unknown
+        Mockito.when(repository.findByName("shanghia")).thenReturn(null);
+        Station station = new Station("shanghia", 10);
+        station.setId("station_id");
+        stationServiceImpl.create(station, headers);
+        Assert.assertTrue(stationServiceImpl.exist("shanghia", headers));
+    }
+
+    @Test
+    public void testQueryForIdBatchReadsMissingOnce() {
+        Station known = new Station("nanjing", 8);
+        known.setId("nanjing_id");
+        Station other = new Station("suzhou", 5);
+        other.setId("suzhou_id");
+        Mockito.when(repository.findAll()).thenReturn(Collections.singletonList(known));
+        dictionary.refresh();
+        Mockito.when(repository.findByNames(Arrays.asList("suzhou", "wuxi"))).thenReturn(Collections.singletonList(other));
+
+        Map<String, String> result = (Map<String, String>) stationServiceImpl.queryForIdBatch(Arrays.asList("Nan Jing", "suzhou", "wuxi"), headers).getData();
+        Assert.assertEquals("nanjing_id", result.get("Nan Jing"));
+        Assert.assertEquals("suzhou_id", result.get("suzhou"));
+        Assert.assertNull(result.get("wuxi"));
+        stationServiceImpl.queryForIdBatch(Arrays.asList("suzhou", "wuxi"), headers);
+        Mockito.verify(repository, Mockito.times(1)).findByNames(Mockito.anyList());
+    }
+
 }
@@ -6,7 +6,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import train.entity.TrainType;
 import train.service.TrainService;
 
@@ -78,6 +80,16 @@ public class TrainController {
         }
     }
 
+    @CrossOrigin(origins = "*")
+    @GetMapping(value = "/trains/snapshot")
+    public DeferredResult<ResponseEntity<Response>> snapshot(@RequestParam(value = "wait", defaultValue = "0") long waitMs,
+                                                             @RequestHeader HttpHeaders headers) {
+        List<String> etags = headers.getIfNoneMatch();
+        String etag = etags.isEmpty() ? null : etags.get(0);
+        TrainController.LOGGER.debug("[snapshot][Revalidate train types][ETag: {}, wait: {}]", etag, waitMs);
+        return trainService.watchSnapshot(etag, waitMs, headers);
+    }
+
     @CrossOrigin(origins = "*")
     @PutMapping(value = "/trains")
     public HttpEntity update(@RequestBody TrainType trainType, @RequestHeader HttpHeaders headers) {
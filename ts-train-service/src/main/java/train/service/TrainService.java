@@ -1,6 +1,9 @@
 package train.service;
 
+import edu.fudan.common.util.Response;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 import train.entity.TrainType;
 
 import java.util.List;
@@ -20,4 +23,10 @@ public interface TrainService {
     boolean delete(String id,HttpHeaders headers);
 
     List<TrainType> query(HttpHeaders headers);
+
+    /**
+     * All train types with their ETag, held until they change or waitMs passes
+     * when the caller already has the current ones
+     */
+    DeferredResult<ResponseEntity<Response>> watchSnapshot(String etag, long waitMs, HttpHeaders headers);
 }
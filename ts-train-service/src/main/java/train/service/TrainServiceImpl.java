@@ -1,11 +1,15 @@
 package train.service;
 
+import edu.fudan.common.util.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.async.DeferredResult;
 import train.entity.TrainType;
 import train.repository.TrainTypeRepository;
 
@@ -17,6 +21,12 @@ public class TrainServiceImpl implements TrainService {
     @Autowired
     private TrainTypeRepository repository;
 
+    @Autowired
+    private TrainTypeSnapshotHolder snapshotHolder;
+
+    @Value("${train.snapshot.max-wait-ms:30000}")
+    long maxWaitMs = 30000;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(TrainServiceImpl.class);
 
     @Override
@@ -30,6 +40,7 @@ public class TrainServiceImpl implements TrainService {
             TrainType type = new TrainType(trainType.getName(), trainType.getEconomyClass(), trainType.getConfortClass());
             type.setAverageSpeed(trainType.getAverageSpeed());
             repository.save(type);
+            snapshotHolder.refresh();
             result = true;
         }
         else {
@@ -78,6 +89,7 @@ public class TrainServiceImpl implements TrainService {
             TrainType type = new TrainType(trainType.getName(), trainType.getEconomyClass(), trainType.getConfortClass(), trainType.getAverageSpeed());
             type.setId(trainType.getId());
             repository.save(type);
+            snapshotHolder.refresh();
             result = true;
         }
         else {
@@ -91,6 +103,7 @@ public class TrainServiceImpl implements TrainService {
         boolean result = false;
         if (repository.findById(id).isPresent()) {
             repository.deleteById(id);
+            snapshotHolder.refresh();
             result = true;
         }
         else {
@@ -104,4 +117,9 @@ public class TrainServiceImpl implements TrainService {
         return repository.findAll();
     }
 
+    @Override
+    public DeferredResult<ResponseEntity<Response>> watchSnapshot(String etag, long waitMs, HttpHeaders headers) {
+        return snapshotHolder.watch(etag, Math.min(Math.max(waitMs, 0), maxWaitMs));
+    }
+
 }
@@ -0,0 +1,87 @@
+package train.service;
+
+import edu.fudan.common.config.SnapshotHolder;
+import edu.fudan.common.entity.TrainTypeSnapshot;
+import edu.fudan.common.util.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import train.entity.TrainType;
+import train.repository.TrainTypeRepository;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Train types as served to the TrainTypeClient of travel, basic and the
+ * other services that price and plan trips. The ETag is the checksum of the
+ * sorted train types; a caller sending the one it holds gets a 304 without
+ * a body. Train types are written rarely and by admins only, so the table
+ * is read again every second and that read is what catches a write made on
+ * another train service instance.
+ *
+ * @author fdse
+ */
+@Component
+public class TrainTypeSnapshotHolder extends SnapshotHolder<TrainTypeSnapshot, ResponseEntity<Response>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrainTypeSnapshotHolder.class);
+
+    @Autowired
+    private TrainTypeRepository repository;
+
+    public TrainTypeSnapshotHolder() {
+        super(snapshotOf(Collections.emptyList()));
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${train.snapshot.poll-interval-ms:1000}")
+    public void refresh() {
+        List<TrainType> trainTypes = repository.findAll();
+        TrainTypeSnapshot next = snapshotOf(trainTypes == null ? Collections.emptyList() : trainTypes);
+        if (publish(next)) {
+            TrainTypeSnapshotHolder.LOGGER.info("[refresh][Train type snapshot changed][version: {}, trainTypes: {}]", next.getVersion(), next.getTrainTypes().size());
+        }
+    }
+
+    @Override
+    protected String tagOf(TrainTypeSnapshot snapshot) {
+        return etagOf(snapshot);
+    }
+
+    @Override
+    protected ResponseEntity<Response> answer(TrainTypeSnapshot snapshot, String etag) {
+        String currentEtag = etagOf(snapshot);
+        if (currentEtag.equals(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(currentEtag).build();
+        }
+        return ResponseEntity.ok().eTag(currentEtag).body(new Response<>(1, "Success", snapshot));
+    }
+
+    static String etagOf(TrainTypeSnapshot snapshot) {
+        return "\"" + snapshot.getVersion() + "\"";
+    }
+
+    static TrainTypeSnapshot snapshotOf(Collection<TrainType> trainTypes) {
+        List<edu.fudan.common.entity.TrainType> sorted = new ArrayList<>();
+        for (TrainType trainType : trainTypes) {
+            edu.fudan.common.entity.TrainType copy = new edu.fudan.common.entity.TrainType(trainType.getName(),
+                    trainType.getEconomyClass(), trainType.getConfortClass(), trainType.getAverageSpeed());
+            copy.setId(trainType.getId());
+            sorted.add(copy);
+        }
+        sorted.sort(Comparator.comparing(edu.fudan.common.entity.TrainType::getName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        CRC32 crc = new CRC32();
+        for (edu.fudan.common.entity.TrainType trainType : sorted) {
+            crc.update((trainType.getId() + "," + trainType.getName() + "," + trainType.getEconomyClass() + ","
+                    + trainType.getConfortClass() + "," + trainType.getAverageSpeed() + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return new TrainTypeSnapshot(Long.toHexString(crc.getValue()), Collections.unmodifiableList(sorted));
+    }
+}
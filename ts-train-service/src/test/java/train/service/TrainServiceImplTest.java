@@ -22,6 +22,9 @@ public class TrainServiceImplTest {
     @Mock
     private TrainTypeRepository repository;
 
+    @Mock
+    private TrainTypeSnapshotHolder snapshotHolder;
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
@@ -0,0 +1,70 @@
+package train.service;
+
+import edu.fudan.common.entity.TrainTypeSnapshot;
+import edu.fudan.common.util.Response;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import train.entity.TrainType;
+import train.repository.TrainTypeRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class TrainTypeSnapshotHolderTest {
+
+    @InjectMocks
+    private TrainTypeSnapshotHolder snapshotHolder;
+
+    @Mock
+    private TrainTypeRepository repository;
+
+    private List<TrainType> trainTypes = new ArrayList<>(Arrays.asList(new TrainType("GaoTieOne", 10, 5, 250)));
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(repository.findAll()).thenReturn(trainTypes);
+        snapshotHolder.refresh();
+    }
+
+    @Test
+    public void testRevalidateCurrentEtag() {
+        ResponseEntity<Response> first = answer(snapshotHolder.watch(null, 0));
+        Assert.assertEquals(HttpStatus.OK, first.getStatusCode());
+        Assert.assertEquals(1, ((TrainTypeSnapshot) first.getBody().getData()).getTrainTypes().size());
+
+        ResponseEntity<Response> second = answer(snapshotHolder.watch(first.getHeaders().getETag(), 0));
+        Assert.assertEquals(HttpStatus.NOT_MODIFIED, second.getStatusCode());
+        Assert.assertNull(second.getBody());
+    }
+
+    @Test
+    public void testChangeAnswersWaitingCaller() {
+        String etag = answer(snapshotHolder.watch(null, 0)).getHeaders().getETag();
+        DeferredResult<ResponseEntity<Response>> waiting = snapshotHolder.watch(etag, 30000);
+        Assert.assertFalse(waiting.hasResult());
+
+        trainTypes.add(new TrainType("DongCheOne", 10, 5, 200));
+        snapshotHolder.refresh();
+        ResponseEntity<Response> changed = answer(waiting);
+        Assert.assertEquals(HttpStatus.OK, changed.getStatusCode());
+        Assert.assertNotEquals(etag, changed.getHeaders().getETag());
+        Assert.assertEquals(2, ((TrainTypeSnapshot) changed.getBody().getData()).getTrainTypes().size());
+    }
+
+    private ResponseEntity<Response> answer(DeferredResult<ResponseEntity<Response>> result) {
+        return (ResponseEntity<Response>) result.getResult();
+    }
+}
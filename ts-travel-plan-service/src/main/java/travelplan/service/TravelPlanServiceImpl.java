@@ -1,6 +1,6 @@
 package travelplan.service;
 
-import edu.fudan.common.util.JsonUtils;
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.util.Response;
 import edu.fudan.common.util.StringUtils;
 import org.slf4j.Logger;
@@ -36,6 +36,8 @@ public class TravelPlanServiceImpl implements TravelPlanService {
     private RestTemplate restTemplate;
     @Autowired
     private DiscoveryClient discoveryClient;
+    @Autowired
+    private TrainTypeClient trainTypeClient;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TravelPlanServiceImpl.class);
 
@@ -315,16 +317,7 @@ public class TravelPlanServiceImpl implements TravelPlanService {
     }
 
     public TrainType queryTrainTypeByName(String trainTypeName, HttpHeaders headers) {
-        HttpEntity requestEntity = new HttpEntity(null);
-        String train_service_url=getServiceUrl("ts-train-service");
-        ResponseEntity<Response> re = restTemplate.exchange(
-                train_service_url + "/api/v1/trainservice/trains/byName/" + trainTypeName,
-                HttpMethod.GET,
-                requestEntity,
-                Response.class);
-        Response  response = re.getBody();
-
-        return JsonUtils.conveterObject(response.getData(), TrainType.class);
+        return trainTypeClient.byName(trainTypeName);
     }
 
 }
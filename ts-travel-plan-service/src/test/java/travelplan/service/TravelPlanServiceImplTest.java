@@ -1,5 +1,6 @@
 package travelplan.service;
 
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.util.Response;
 import org.junit.Assert;
 import org.junit.Before;
@@ -29,11 +30,15 @@ public class TravelPlanServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private TrainTypeClient trainTypeClient;
+
     private HttpHeaders headers = new HttpHeaders();
 
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        Mockito.when(trainTypeClient.byName(Mockito.anyString())).thenReturn(new TrainType("type_id", 10, 5));
     }
 
     @Test
@@ -1,5 +1,6 @@
 package travel.entity;
 
+import edu.fudan.common.entity.TravelResult;
 import edu.fudan.common.entity.TripResponse;
 import lombok.Data;
 
@@ -14,6 +15,8 @@ public class TripAllDetail {
 
     private Trip trip;
 
+    private TravelResult travelResult;
+
     public TripAllDetail() {
     }
 
@@ -2,6 +2,7 @@ package travel.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.*;
 import edu.fudan.common.util.JsonUtils;
 import edu.fudan.common.util.Response;
@@ -44,6 +45,9 @@ public class TravelServiceImpl implements TravelService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private TrainTypeClient trainTypeClient;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(TravelServiceImpl.class);
 
     private static final ExecutorService executorService = Executors.newFixedThreadPool(20, new CustomizableThreadFactory("HttpClientThreadPool-"));
@@ -305,7 +309,9 @@ public class TravelServiceImpl implements TravelService {
         } else {
             String startPlaceName = gtdi.getFrom();
             String endPlaceName = gtdi.getTo();
-            TripResponse tripResponse = getTickets(trip, null, startPlaceName, endPlaceName, gtdi.getTravelDate(), headers);
+            TravelResult travelResult = queryTravelResult(trip, startPlaceName, endPlaceName, gtdi.getTravelDate());
+            TripResponse tripResponse = travelResult == null ? null
+                    : setResponse(trip, travelResult, startPlaceName, endPlaceName, gtdi.getTravelDate(), headers);
             if (tripResponse == null) {
                 gtdr.setTripResponse(null);
                 gtdr.setTrip(null);
@@ -313,7 +319,9 @@ public class TravelServiceImpl implements TravelService {
                 return new Response<>(0, "getTickets failed", gtdr);
             } else {
                 gtdr.setTripResponse(tripResponse);
-                gtdr.setTrip(repository.findByTripId(new TripId(gtdi.getTripId())));
+                gtdr.setTrip(trip);
+                // callers booking on this trip need the route and train type too, spare them asking basic service again
+                gtdr.setTravelResult(travelResult);
             }
         }
         return new Response<>(1, success, gtdr);
@@ -377,6 +385,15 @@ public class TravelServiceImpl implements TravelService {
     }
 
     private TripResponse getTickets(Trip trip, Route route1, String startPlaceName, String endPlaceName, String departureTime, HttpHeaders headers) {
+        TravelResult resultForTravel = queryTravelResult(trip, startPlaceName, endPlaceName, departureTime);
+        if (resultForTravel == null) {
+            return null;
+        }
+        //Set the returned ticket information
+        return setResponse(trip, resultForTravel, startPlaceName, endPlaceName, departureTime, headers);
+    }
+
+    private TravelResult queryTravelResult(Trip trip, String startPlaceName, String endPlaceName, String departureTime) {
 
         //Determine if the date checked is the same day and after
         if (!afterToday(departureTime)) {
@@ -405,10 +422,7 @@ public class TravelServiceImpl implements TravelService {
             return null;
         }
 
-        TravelResult resultForTravel = JsonUtils.conveterObject(re.getBody().getData(), TravelResult.class);
-
-        //Set the returned ticket information
-        return setResponse(trip, resultForTravel, startPlaceName, endPlaceName, departureTime, headers);
+        return JsonUtils.conveterObject(re.getBody().getData(), TravelResult.class);
     }
 
     private TripResponse setResponse(Trip trip, TravelResult tr, String startPlaceName, String endPlaceName, String departureTime, HttpHeaders headers){
@@ -435,10 +449,9 @@ public class TravelServiceImpl implements TravelService {
         response.setTerminalStation(endPlaceName);
 
         //Calculate the distance from the starting point
-        int indexStart = route.getStations().indexOf(startPlaceName);
-        int indexEnd = route.getStations().indexOf(endPlaceName);
-        int distanceStart = route.getDistances().get(indexStart) - route.getDistances().get(0);
-        int distanceEnd = route.getDistances().get(indexEnd) - route.getDistances().get(0);
+        RouteTopology topology = route.topology();
+        int distanceStart = topology.distanceFromStart(startPlaceName);
+        int distanceEnd = topology.distanceFromStart(endPlaceName);
         TrainType trainType = tr.getTrainType();
         //Train running time is calculated according to the average running speed of the train
         int minutesStart = 60 * distanceStart / trainType.getAverageSpeed();
@@ -502,16 +515,7 @@ public class TravelServiceImpl implements TravelService {
     }
 
     private TrainType getTrainTypeByName(String trainTypeName, HttpHeaders headers) {
-        HttpEntity requestEntity = new HttpEntity(null);
-        String train_service_url = getServiceUrl("ts-train-service");
-        ResponseEntity<Response<TrainType>> re = restTemplate.exchange(
-                train_service_url + "/api/v1/trainservice/trains/byName/" + trainTypeName,
-                HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<Response<TrainType>>() {
-                });
-
-        return re.getBody().getData();
+        return trainTypeClient.byName(trainTypeName);
     }
 
     private Route getRouteByRouteId(String routeId, HttpHeaders headers) {
@@ -1,5 +1,6 @@
 package travel.service;
 
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.*;
 import edu.fudan.common.util.Response;
 import edu.fudan.common.util.StringUtils;
@@ -34,6 +35,9 @@ public class TravelServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private TrainTypeClient trainTypeClient;
+
     private HttpHeaders headers = new HttpHeaders();
     String success = "Success";
     String noCnontent = "No Content";
@@ -74,14 +78,7 @@ public class TravelServiceImplTest {
         Mockito.when(repository.findByTripId(Mockito.any(TripId.class))).thenReturn(trip);
         //mock getTrainType()
         TrainType trainType = new TrainType();
-        Response<TrainType> response = new Response<>(null, null, trainType);
-        ResponseEntity<Response<TrainType>> re = new ResponseEntity<>(response, HttpStatus.OK);
-        Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
-                Mockito.any(HttpMethod.class),
-                Mockito.any(HttpEntity.class),
-                Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re);
+        Mockito.when(trainTypeClient.byName(Mockito.any())).thenReturn(trainType);
         Response result = travelServiceImpl.getTrainTypeByTripId("K1255", headers);
         Assert.assertEquals(new Response<>(1, "Success", trainType), result);
     }
@@ -282,14 +279,7 @@ public class TravelServiceImplTest {
 
         //mock getTrainType()
         TrainType trainType = new TrainType();
-        Response<TrainType> response = new Response<>(null, null, trainType);
-        ResponseEntity<Response<TrainType>> re = new ResponseEntity<>(response, HttpStatus.OK);
-        Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
-                Mockito.any(HttpMethod.class),
-                Mockito.any(HttpEntity.class),
-                Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re);
+        Mockito.when(trainTypeClient.byName(Mockito.any())).thenReturn(trainType);
         Response result = travelServiceImpl.adminQueryAll(headers);
         Assert.assertEquals("Success", result.getMsg());
     }
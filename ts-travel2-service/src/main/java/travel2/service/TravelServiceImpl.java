@@ -2,6 +2,7 @@ package travel2.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.*;
 import edu.fudan.common.util.JsonUtils;
 import edu.fudan.common.util.Response;
@@ -41,6 +42,9 @@ public class TravelServiceImpl implements TravelService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private TrainTypeClient trainTypeClient;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(TravelServiceImpl.class);
 
     private String getServiceUrl(String serviceName) {
@@ -222,7 +226,9 @@ public class TravelServiceImpl implements TravelService {
         } else {
             String endPlaceName = gtdi.getTo();
             String StartPlaceName = gtdi.getFrom();
-            TripResponse tripResponse = getTickets(trip, null, gtdi.getFrom(), gtdi.getTo(), gtdi.getTravelDate(), headers);
+            TravelResult travelResult = queryTravelResult(trip, gtdi.getFrom(), gtdi.getTo(), gtdi.getTravelDate());
+            TripResponse tripResponse = travelResult == null ? null
+                    : setResponse(trip, travelResult, gtdi.getFrom(), gtdi.getTo(), gtdi.getTravelDate(), headers);
             if (tripResponse == null) {
                 gtdr.setTrip(null);
                 gtdr.setTripResponse(null);
@@ -230,7 +236,9 @@ public class TravelServiceImpl implements TravelService {
                 return new Response<>(0, "getTickets failed", gtdr);
             } else {
                 gtdr.setTripResponse(tripResponse);
-                gtdr.setTrip(repository.findByTripId(new TripId(gtdi.getTripId())));
+                gtdr.setTrip(trip);
+                // callers booking on this trip need the route and train type too, spare them asking basic service again
+                gtdr.setTravelResult(travelResult);
             }
         }
         return new Response<>(1, success, gtdr);
@@ -295,6 +303,15 @@ public class TravelServiceImpl implements TravelService {
 
 
     private TripResponse getTickets(Trip trip, Route route1, String startPlaceName, String endPlaceName, String departureTime, HttpHeaders headers) {
+        TravelResult resultForTravel = queryTravelResult(trip, startPlaceName, endPlaceName, departureTime);
+        if (resultForTravel == null) {
+            return null;
+        }
+        //Set the returned ticket information
+        return setResponse(trip, resultForTravel, startPlaceName, endPlaceName, departureTime, headers);
+    }
+
+    private TravelResult queryTravelResult(Trip trip, String startPlaceName, String endPlaceName, String departureTime) {
 
         //Determine if the date checked is the same day and after
         if (!afterToday(departureTime)) {
@@ -320,10 +337,7 @@ public class TravelServiceImpl implements TravelService {
             TravelServiceImpl.LOGGER.info("[getTickets][Ts-basic-service response status is 0][response is: {}]", r);
             return null;
         }
-        TravelResult resultForTravel =  re.getBody().getData();
-
-        //Set the returned ticket information
-        return setResponse(trip, resultForTravel, startPlaceName, endPlaceName, departureTime, headers);
+        return re.getBody().getData();
     }
 
     private TripResponse setResponse(Trip trip, TravelResult tr, String startPlaceName, String endPlaceName, String departureTime, HttpHeaders headers){
@@ -350,10 +364,9 @@ public class TravelServiceImpl implements TravelService {
         response.setTerminalStation(endPlaceName);
 
         //Calculate the distance from the starting point
-        int indexStart = route.getStations().indexOf(startPlaceName);
-        int indexEnd = route.getStations().indexOf(endPlaceName);
-        int distanceStart = route.getDistances().get(indexStart) - route.getDistances().get(0);
-        int distanceEnd = route.getDistances().get(indexEnd) - route.getDistances().get(0);
+        RouteTopology topology = route.topology();
+        int distanceStart = topology.distanceFromStart(startPlaceName);
+        int distanceEnd = topology.distanceFromStart(endPlaceName);
         TrainType trainType = tr.getTrainType();
         //Train running time is calculated according to the average running speed of the train
         int minutesStart = 60 * distanceStart / trainType.getAverageSpeed();
@@ -413,16 +426,7 @@ public class TravelServiceImpl implements TravelService {
     }
 
     private TrainType getTrainTypeByName(String trainTypeName, HttpHeaders headers) {
-        HttpEntity requestEntity = new HttpEntity(null);
-        String train_service_url = getServiceUrl("ts-train-service");
-        ResponseEntity<Response<TrainType>> re = restTemplate.exchange(
-                train_service_url + "/api/v1/trainservice/trains/byName/" + trainTypeName,
-                HttpMethod.GET,
-                requestEntity,
-                new ParameterizedTypeReference<Response<TrainType>>() {
-                });
-
-        return re.getBody().getData();
+        return trainTypeClient.byName(trainTypeName);
     }
 
     private Route getRouteByRouteId(String routeId, HttpHeaders headers) {
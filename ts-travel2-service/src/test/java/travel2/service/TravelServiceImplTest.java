@@ -1,5 +1,6 @@
 package travel2.service;
 
+import edu.fudan.common.config.TrainTypeClient;
 import edu.fudan.common.entity.TripId;
 import edu.fudan.common.entity.TripAllDetailInfo;
 import edu.fudan.common.entity.TripInfo;
@@ -35,6 +36,9 @@ public class TravelServiceImplTest {
     @Mock
     private RestTemplate restTemplate;
 
+    @Mock
+    private TrainTypeClient trainTypeClient;
+
     private HttpHeaders headers = new HttpHeaders();
     String success = "Success";
     String noCnontent = "No Content";
@@ -75,14 +79,7 @@ public class TravelServiceImplTest {
         Mockito.when(repository.findByTripId(Mockito.any(TripId.class))).thenReturn(trip);
         //mock getTrainType()
         edu.fudan.common.entity.TrainType trainType = new edu.fudan.common.entity.TrainType();
-        Response<edu.fudan.common.entity.TrainType> response = new Response<>(null, null, trainType);
-        ResponseEntity<Response<edu.fudan.common.entity.TrainType>> re = new ResponseEntity<>(response, HttpStatus.OK);
-        Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
-                Mockito.any(HttpMethod.class),
-                Mockito.any(HttpEntity.class),
-                Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re);
+        Mockito.when(trainTypeClient.byName(Mockito.any())).thenReturn(trainType);
         Response result = travel2ServiceImpl.getTrainTypeByTripId("K1255", headers);
         Assert.assertEquals(new Response<>(1, "Success query Train by trip id", trainType), result);
     }
@@ -283,14 +280,7 @@ public class TravelServiceImplTest {
 
         //mock getTrainType()
         edu.fudan.common.entity.TrainType trainType = new edu.fudan.common.entity.TrainType();
-        Response<edu.fudan.common.entity.TrainType> response = new Response<>(null, null, trainType);
-        ResponseEntity<Response<edu.fudan.common.entity.TrainType>> re = new ResponseEntity<>(response, HttpStatus.OK);
-        Mockito.when(restTemplate.exchange(
-                Mockito.anyString(),
-                Mockito.any(HttpMethod.class),
-                Mockito.any(HttpEntity.class),
-                Mockito.any(ParameterizedTypeReference.class)))
-                .thenReturn(re);
+        Mockito.when(trainTypeClient.byName(Mockito.any())).thenReturn(trainType);
         Response result = travel2ServiceImpl.adminQueryAll(headers);
         Assert.assertEquals("Travel Service Admin Query All Travel Success", result.getMsg());
     }
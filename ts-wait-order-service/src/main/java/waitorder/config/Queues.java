@@ -0,0 +1,38 @@
+package waitorder.config;
+
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.FanoutExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @author fdse
+ */
+@Configuration
+public class Queues {
+
+    /**
+     * order events of ts-order-service and ts-order-other-service
+     */
+    public final static String orderEventExchange = "order_event";
+
+    public final static String orderEventQueue = "order_event_wait_order";
+
+    @Bean
+    public FanoutExchange orderEventExchange() {
+        return new FanoutExchange(orderEventExchange);
+    }
+
+    @Bean
+    public Queue orderEventQueue() {
+        return QueueBuilder.durable(orderEventQueue).build();
+    }
+
+    @Bean
+    public Binding orderEventBinding() {
+        return BindingBuilder.bind(orderEventQueue()).to(orderEventExchange());
+    }
+}
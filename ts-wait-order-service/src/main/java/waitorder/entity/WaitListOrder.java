@@ -42,6 +42,11 @@ public class WaitListOrder {
     private String createdTime;
     private int status;
 
+    /**
+     * time the order joined the wait list, orders of one train are served in this order
+     */
+    private long queuedAt;
+
 
     public WaitListOrder(){
         createdTime = StringUtils.Date2String(new Date(System.currentTimeMillis()));
@@ -89,7 +94,7 @@ public class WaitListOrder {
 
     public Date getCreatedTime(){ return StringUtils.String2Date(createdTime); }
 
-    public Date getTravelTime(){ return StringUtils.String2Date(createdTime); }
+    public Date getTravelTime(){ return StringUtils.String2Date(travelTime); }
 
     public Date getWaitUtilTime(){ return StringUtils.String2Date(waitUtilTime); }
 
@@ -97,7 +102,7 @@ public class WaitListOrder {
         this.createdTime = StringUtils.Date2String(createdTime);
     }
 
-    public void setTravelTime(Date travelTime){ this.createdTime = StringUtils.Date2String(travelTime); }
+    public void setTravelTime(Date travelTime){ this.travelTime = StringUtils.Date2String(travelTime); }
 
     public void setWaitUntilTime(Date waitUntilTime){ this.waitUtilTime=StringUtils.Date2String(waitUntilTime);}
 
@@ -26,7 +26,11 @@ public enum WaitListOrderStatus {
     /**
      * expired
      */
-    EXPIRED   (5, "Expired");
+    EXPIRED   (5, "Expired"),
+    /**
+     * a released seat was booked for it
+     */
+    FULFILLED (6, "Fulfilled");
 
 
 
@@ -0,0 +1,55 @@
+package waitorder.mq;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.entity.OrderEventType;
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.util.JsonUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import waitorder.config.Queues;
+import waitorder.service.WaitListEngine;
+
+/**
+ * A cancelled, refunded, rebooked or deleted order gives its seat back; the
+ * seat goes to the wait list of the same train, date and seat class.
+ */
+@Component
+public class RabbitReceive {
+
+    private static final Logger logger = LoggerFactory.getLogger(RabbitReceive.class);
+
+    @Autowired
+    private WaitListEngine waitListEngine;
+
+    @RabbitListener(queues = Queues.orderEventQueue)
+    public void process(String payload) {
+        OrderEvent event = JsonUtils.json2Object(payload, OrderEvent.class);
+        if (event == null) {
+            logger.error("[process][json2Object][Receive order event object is null error][payload: {}]", payload);
+            throw new AmqpRejectAndDontRequeueException("unreadable order event");
+        }
+        if (!releasesSeat(event)) {
+            return;
+        }
+        logger.info("[process][Seat released][OrderId: {}, TrainNumber: {}, TravelDate: {}, SeatClass: {}]",
+                event.getOrderId(), event.getTrainNumber(), event.getTravelDate(), event.getSeatClass());
+        waitListEngine.onSeatReleased(event.getTrainNumber(), event.getTravelDate(), event.getSeatClass());
+    }
+
+    /**
+     * a deleted order carries its last status, only an order still holding its seat frees one
+     */
+    static boolean releasesSeat(OrderEvent event) {
+        if (event.getType() == OrderEventType.CANCELLED || event.getType() == OrderEventType.CHANGED) {
+            return true;
+        }
+        return event.getType() == OrderEventType.DELETED
+                && (event.getStatus() == OrderStatus.NOTPAID.getCode()
+                || event.getStatus() == OrderStatus.PAID.getCode()
+                || event.getStatus() == OrderStatus.COLLECTED.getCode());
+    }
+}
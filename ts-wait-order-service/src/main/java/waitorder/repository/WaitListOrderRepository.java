@@ -6,6 +6,7 @@ import org.springframework.stereotype.Repository;
 import waitorder.entity.WaitListOrder;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +21,8 @@ public interface WaitListOrderRepository extends CrudRepository<WaitListOrder,St
 
     ArrayList<WaitListOrder> findByAccountId(String accountId);
 
+    List<WaitListOrder> findByStatusIn(Collection<Integer> statuses);
+
     @Override
     void deleteById(String id);
 }
@@ -5,6 +5,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.discovery.DiscoveryClient;
 import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
@@ -14,10 +15,11 @@ import waitorder.entity.WaitListOrder;
 import waitorder.entity.WaitListOrderStatus;
 import waitorder.entity.WaitListOrderVO;
 import waitorder.repository.WaitListOrderRepository;
+import waitorder.service.WaitListEngine;
 import waitorder.service.WaitListOrderService;
-import waitorder.utils.PollThread;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,6 +34,15 @@ public class WaitListOrderServiceImpl implements WaitListOrderService {
     @Autowired
     private DiscoveryClient discoveryClient;
 
+    @Autowired
+    private WaitListEngine waitListEngine;
+
+    /**
+     * how long an order stays on the wait list, capped by the travel time
+     */
+    @Value("${waitorder.engine.expiry-hours:24}")
+    private long expiryHours = 24;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(WaitListOrderServiceImpl.class);
 
     String success = "Success";
@@ -54,13 +65,11 @@ public class WaitListOrderServiceImpl implements WaitListOrderService {
     public Response create(WaitListOrderVO orderVO, HttpHeaders headers) {
         LOGGER.info("[create][Create Wait Order][Ready to Create Wait Order]");
         Response<WaitListOrder> response=saveNewOrder(orderVO,headers);
-        if(response.getStatus()==0){
-            //未能正常保存到数据库
-            return response;
-        } else {
-            //已保存到数据库 开始轮询
-            return triggerThread(response.getData(),orderVO,headers);
+        if(response.getStatus()==1){
+            //已保存到数据库 等待释放的座位
+            waitListEngine.enqueue(response.getData());
         }
+        return response;
     }
 
     @Override
@@ -123,6 +132,9 @@ public class WaitListOrderServiceImpl implements WaitListOrderService {
             WaitListOrder old = op.get();
             old.setStatus(status);
             waitListOrderRepository.save(old);
+            if(!WaitListEngine.isWaiting(status)){
+                waitListEngine.remove(old);
+            }
             LOGGER.info("[modifyWaitListOrderStatus][Modify Order Status Success][OrderId: {}]",orderId);
             return new Response<>(1, "Modify Wait List Order Status Success", old);
         }
@@ -136,9 +148,17 @@ public class WaitListOrderServiceImpl implements WaitListOrderService {
             return new Response<>(0, "Order already exist", null);
         } else {
             WaitListOrder newWaitListOrder=new WaitListOrder();
+            BeanUtils.copyProperties(orderVO,newWaitListOrder);
             newWaitListOrder.setId(UUID.randomUUID().toString());
-            BeanUtils.copyProperties(newWaitListOrder,orderVO);
             newWaitListOrder.setTrainNumber(orderVO.getTripId());
+            newWaitListOrder.setTravelTime(orderVO.getDate());
+            long now=System.currentTimeMillis();
+            long waitUntil=now+TimeUnit.HOURS.toMillis(expiryHours);
+            if(orderVO.getDate()!=null){
+                waitUntil=Math.min(waitUntil,orderVO.getDate().getTime());
+            }
+            newWaitListOrder.setWaitUntilTime(new Date(waitUntil));
+            newWaitListOrder.setQueuedAt(now);
             waitListOrderRepository.save(newWaitListOrder);
             WaitListOrderServiceImpl.LOGGER.info("[create][Create Wait Order Success][Order Price][AccountId: {} , TripId: {}]", orderVO.getAccountId(),orderVO.getTripId());
             return new Response<>(1,success,newWaitListOrder);
@@ -159,16 +179,4 @@ public class WaitListOrderServiceImpl implements WaitListOrderService {
         return false;
     }
 
-    private Response triggerThread(WaitListOrder orderPO,WaitListOrderVO orderVO,HttpHeaders headers){
-        PollThread pollThread;
-        try{
-            pollThread =new PollThread(orderPO.getWaitUtilTime(),this,orderVO,restTemplate, headers);
-            pollThread.start();
-        } catch (Exception e){
-            return new Response<>(0, "Fail To Run A New Thread", null);
-        }
-        return new Response<>(1,"Thread Start Success",null);
-    }
-
-
 }
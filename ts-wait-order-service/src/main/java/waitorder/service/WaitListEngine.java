@@ -0,0 +1,290 @@
+package waitorder.service;
+
+import edu.fudan.common.entity.OrderTicketsInfo;
+import edu.fudan.common.security.jwt.ServiceToken;
+import edu.fudan.common.util.Response;
+import edu.fudan.common.util.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import waitorder.entity.WaitListOrder;
+import waitorder.entity.WaitListOrderStatus;
+import waitorder.repository.WaitListOrderRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wait list orders queued per train, travel date and seat class. A released
+ * seat is offered to the oldest live order of its queue on a small worker
+ * pool. The queues are only an index over the wait list table, which keeps
+ * the state and rebuilds them on start.
+ *
+ * @author fdse
+ */
+@Component
+public class WaitListEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WaitListEngine.class);
+
+    static final List<Integer> WAITING = Arrays.asList(WaitListOrderStatus.NOTPAID.getCode(), WaitListOrderStatus.PAID.getCode());
+
+    private static final Comparator<Entry> FIFO = Comparator.comparingLong((Entry e) -> e.queuedAt).thenComparing(e -> e.orderId);
+
+    @Autowired
+    private WaitListOrderRepository waitListOrderRepository;
+
+    @Autowired
+    private WaitListOrderService waitListOrderService;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Value("${waitorder.engine.workers:2}")
+    int workers = 2;
+
+    @Value("${waitorder.engine.backlog:1000}")
+    int backlog = 1000;
+
+    /**
+     * wait list orders tried for one released seat before it is given up
+     */
+    @Value("${waitorder.engine.attempts-per-seat:3}")
+    int attemptsPerSeat = 3;
+
+    /**
+     * train|day|seat class -> orders waiting, each queue is guarded by itself
+     */
+    private final Map<String, PriorityQueue<Entry>> queues = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger seq = new AtomicInteger();
+        //a full backlog runs the allocation on the listener thread, which slows the consumer down
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(backlog),
+                r -> {
+                    Thread t = new Thread(r, "wait-list-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        List<WaitListOrder> waiting = waitListOrderRepository.findByStatusIn(WAITING);
+        if (waiting != null) {
+            waiting.forEach(this::enqueue);
+            LOGGER.info("[start][Load wait list][size: {}]", waiting.size());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    public static boolean isWaiting(int status) {
+        return WAITING.contains(status);
+    }
+
+    public void enqueue(WaitListOrder order) {
+        //compute is atomic per key, so the sweep cannot drop the queue while the order is added
+        queues.compute(queueKey(order.getTrainNumber(), order.getTravelTime(), order.getSeatType()), (k, queue) -> {
+            PriorityQueue<Entry> q = queue == null ? new PriorityQueue<>(FIFO) : queue;
+            synchronized (q) {
+                q.removeIf(e -> e.orderId.equals(order.getId()));
+                q.add(new Entry(order.getId(), order.getQueuedAt()));
+            }
+            return q;
+        });
+    }
+
+    public void remove(WaitListOrder order) {
+        PriorityQueue<Entry> queue = queues.get(queueKey(order.getTrainNumber(), order.getTravelTime(), order.getSeatType()));
+        if (queue != null) {
+            synchronized (queue) {
+                queue.removeIf(e -> e.orderId.equals(order.getId()));
+            }
+        }
+    }
+
+    /**
+     * A seat of the train came free; hand it to the wait list in the background.
+     */
+    public void onSeatReleased(String trainNumber, String travelDate, int seatClass) {
+        String key = queueKey(trainNumber, travelDate, seatClass);
+        if (!queues.containsKey(key)) {
+            return;
+        }
+        executor.execute(() -> allocate(key));
+    }
+
+    /**
+     * Try the oldest orders of the queue until one gets the seat. An order the
+     * booking refuses keeps its place for the next released seat.
+     */
+    void allocate(String key) {
+        PriorityQueue<Entry> queue = queues.get(key);
+        if (queue == null) {
+            return;
+        }
+        List<Entry> refused = new ArrayList<>();
+        try {
+            while (refused.size() < attemptsPerSeat) {
+                Entry entry;
+                synchronized (queue) {
+                    entry = queue.poll();
+                }
+                if (entry == null) {
+                    return;
+                }
+                Optional<WaitListOrder> op = waitListOrderRepository.findById(entry.orderId);
+                if (!op.isPresent() || !isWaiting(op.get().getStatus())) {
+                    continue;
+                }
+                WaitListOrder order = op.get();
+                if (isExpired(order, System.currentTimeMillis())) {
+                    waitListOrderService.modifyWaitListOrderStatus(WaitListOrderStatus.EXPIRED.getCode(), order.getId());
+                    continue;
+                }
+                if (preserve(order)) {
+                    waitListOrderService.modifyWaitListOrderStatus(WaitListOrderStatus.FULFILLED.getCode(), order.getId());
+                    LOGGER.info("[allocate][Wait list order fulfilled][OrderId: {}, queue: {}]", order.getId(), key);
+                    return;
+                }
+                refused.add(entry);
+            }
+        } finally {
+            if (!refused.isEmpty()) {
+                synchronized (queue) {
+                    queue.addAll(refused);
+                }
+            }
+        }
+    }
+
+    /**
+     * Expire orders past their wait time, so they leave the queues even when
+     * their train never releases a seat.
+     */
+    @Scheduled(fixedDelayString = "${waitorder.engine.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        List<WaitListOrder> waiting = waitListOrderRepository.findByStatusIn(WAITING);
+        if (waiting == null) {
+            return;
+        }
+        int expired = 0;
+        for (WaitListOrder order : waiting) {
+            if (isExpired(order, now)) {
+                waitListOrderService.modifyWaitListOrderStatus(WaitListOrderStatus.EXPIRED.getCode(), order.getId());
+                expired++;
+            }
+        }
+        for (String key : queues.keySet()) {
+            queues.computeIfPresent(key, (k, queue) -> {
+                synchronized (queue) {
+                    return queue.isEmpty() ? null : queue;
+                }
+            });
+        }
+        if (expired > 0) {
+            LOGGER.info("[sweep][Expire wait list orders][count: {}]", expired);
+        }
+    }
+
+    int queuedCount(String trainNumber, String travelDate, int seatClass) {
+        PriorityQueue<Entry> queue = queues.get(queueKey(trainNumber, travelDate, seatClass));
+        if (queue == null) {
+            return 0;
+        }
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private boolean preserve(WaitListOrder order) {
+        OrderTicketsInfo oti = new OrderTicketsInfo();
+        oti.setAccountId(order.getAccountId());
+        oti.setContactsId(order.getContactsId());
+        oti.setTripId(order.getTrainNumber());
+        oti.setSeatType(order.getSeatType());
+        oti.setDate(StringUtils.Date2String(order.getTravelTime()));
+        oti.setFrom(order.getFrom());
+        oti.setTo(order.getTo());
+        //the user may be long signed out, the booking is made by the wait list service for the account
+        HttpHeaders headers = ServiceToken.headers("ts-wait-order-service");
+        String url = order.getTrainNumber().startsWith("G") || order.getTrainNumber().startsWith("D")
+                ? "http://ts-preserve-service/api/v1/preserveservice/preserve"
+                : "http://ts-preserve-other-service/api/v1/preserveotherservice/preserveOther";
+        try {
+            ResponseEntity<Response<String>> re = restTemplate.exchange(
+                    url,
+                    HttpMethod.POST,
+                    new HttpEntity<>(oti, headers),
+                    new ParameterizedTypeReference<Response<String>>() {
+                    });
+            Response<String> result = re.getBody();
+            if (result != null && result.getStatus() == 1) {
+                return true;
+            }
+            LOGGER.info("[preserve][Booking refused][OrderId: {}, msg: {}]", order.getId(), result == null ? null : result.getMsg());
+        } catch (RestClientException e) {
+            LOGGER.warn("[preserve][Booking call failed][OrderId: {}, error: {}]", order.getId(), e.getMessage());
+        }
+        return false;
+    }
+
+    private static boolean isExpired(WaitListOrder order, long now) {
+        return order.getWaitUtilTime() != null && order.getWaitUtilTime().getTime() <= now;
+    }
+
+    private static String queueKey(String trainNumber, Date travelDate, int seatClass) {
+        return queueKey(trainNumber, travelDate == null ? null : StringUtils.Date2String(travelDate), seatClass);
+    }
+
+    /**
+     * order events and wait list orders format the travel date differently, only the day is compared
+     */
+    private static String queueKey(String trainNumber, String travelDate, int seatClass) {
+        String day = travelDate != null && travelDate.length() > 10 ? travelDate.substring(0, 10) : travelDate;
+        return trainNumber + "|" + day + "|" + seatClass;
+    }
+
+    private static class Entry {
+
+        private final String orderId;
+
+        private final long queuedAt;
+
+        Entry(String orderId, long queuedAt) {
+            this.orderId = orderId;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
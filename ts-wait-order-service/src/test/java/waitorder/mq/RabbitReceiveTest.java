@@ -0,0 +1,55 @@
+package waitorder.mq;
+
+import edu.fudan.common.entity.OrderEvent;
+import edu.fudan.common.entity.OrderEventType;
+import edu.fudan.common.entity.OrderStatus;
+import edu.fudan.common.util.JsonUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import waitorder.service.WaitListEngine;
+
+@RunWith(JUnit4.class)
+public class RabbitReceiveTest {
+
+    @InjectMocks
+    private RabbitReceive rabbitReceive;
+
+    @Mock
+    private WaitListEngine waitListEngine;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testDeletedOrderReleasesSeat() {
+        rabbitReceive.process(payload(OrderEventType.DELETED, OrderStatus.PAID));
+        Mockito.verify(waitListEngine).onSeatReleased("G1234", "2026-10-20", 2);
+    }
+
+    @Test
+    public void testDeletedCancelledOrderReleasesNothing() {
+        rabbitReceive.process(payload(OrderEventType.DELETED, OrderStatus.CANCEL));
+        rabbitReceive.process(payload(OrderEventType.PAID, OrderStatus.PAID));
+        Mockito.verify(waitListEngine, Mockito.never()).onSeatReleased(Mockito.anyString(), Mockito.anyString(), Mockito.anyInt());
+    }
+
+    private String payload(OrderEventType type, OrderStatus status) {
+        OrderEvent event = new OrderEvent();
+        event.setEventId("event_id");
+        event.setType(type);
+        event.setOrderId("order_id");
+        event.setTrainNumber("G1234");
+        event.setTravelDate("2026-10-20");
+        event.setSeatClass(2);
+        event.setStatus(status.getCode());
+        return JsonUtils.object2Json(event);
+    }
+}
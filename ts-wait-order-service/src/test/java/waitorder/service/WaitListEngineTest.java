@@ -0,0 +1,123 @@
+package waitorder.service;
+
+import edu.fudan.common.util.Response;
+import edu.fudan.common.util.StringUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+import waitorder.entity.WaitListOrder;
+import waitorder.entity.WaitListOrderStatus;
+import waitorder.repository.WaitListOrderRepository;
+
+import java.util.Date;
+import java.util.Optional;
+
+@RunWith(JUnit4.class)
+public class WaitListEngineTest {
+
+    @InjectMocks
+    private WaitListEngine waitListEngine;
+
+    @Mock
+    private WaitListOrderRepository repository;
+
+    @Mock
+    private WaitListOrderService waitListOrderService;
+
+    @Mock
+    private RestTemplate restTemplate;
+
+    private static final String TRAVEL_DATE = "2026-10-20 00:00:00";
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testAllocateOldestFirst() {
+        WaitListOrder first = waitListOrder("first", 1L, new Date(System.currentTimeMillis() + 60000));
+        WaitListOrder second = waitListOrder("second", 2L, new Date(System.currentTimeMillis() + 60000));
+        waitListEngine.enqueue(second);
+        waitListEngine.enqueue(first);
+        mockPreserve(new Response<>(1, "Success.", null));
+
+        waitListEngine.allocate("G1234|2026-10-20|2");
+        Mockito.verify(waitListOrderService).modifyWaitListOrderStatus(WaitListOrderStatus.FULFILLED.getCode(), "first");
+        Mockito.verify(waitListOrderService, Mockito.never()).modifyWaitListOrderStatus(Mockito.anyInt(), Mockito.eq("second"));
+        Assert.assertEquals(1, waitListEngine.queuedCount("G1234", "2026-10-20", 2));
+    }
+
+    @Test
+    public void testPreserveWithServiceToken() {
+        WaitListOrder order = waitListOrder("first", 1L, new Date(System.currentTimeMillis() + 60000));
+        waitListEngine.enqueue(order);
+        mockPreserve(new Response<>(1, "Success.", null));
+
+        waitListEngine.allocate("G1234|2026-10-20|2");
+        ArgumentCaptor<HttpEntity> request = ArgumentCaptor.forClass(HttpEntity.class);
+        Mockito.verify(restTemplate).exchange(Mockito.anyString(), Mockito.eq(HttpMethod.POST), request.capture(),
+                Mockito.any(ParameterizedTypeReference.class));
+        String authorization = request.getValue().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        Assert.assertTrue(authorization.startsWith("Bearer "));
+    }
+
+    @Test
+    public void testAllocateSkipsExpired() {
+        WaitListOrder expired = waitListOrder("expired", 1L, new Date(System.currentTimeMillis() - 1000));
+        WaitListOrder live = waitListOrder("live", 2L, new Date(System.currentTimeMillis() + 60000));
+        waitListEngine.enqueue(expired);
+        waitListEngine.enqueue(live);
+        mockPreserve(new Response<>(1, "Success.", null));
+
+        waitListEngine.allocate("G1234|2026-10-20|2");
+        Mockito.verify(waitListOrderService).modifyWaitListOrderStatus(WaitListOrderStatus.EXPIRED.getCode(), "expired");
+        Mockito.verify(waitListOrderService).modifyWaitListOrderStatus(WaitListOrderStatus.FULFILLED.getCode(), "live");
+    }
+
+    @Test
+    public void testRefusedOrderKeepsItsPlace() {
+        WaitListOrder order = waitListOrder("first", 1L, new Date(System.currentTimeMillis() + 60000));
+        waitListEngine.enqueue(order);
+        mockPreserve(new Response<>(0, "Seat Not Enough", null));
+
+        waitListEngine.allocate("G1234|2026-10-20|2");
+        Mockito.verify(waitListOrderService, Mockito.never()).modifyWaitListOrderStatus(Mockito.anyInt(), Mockito.anyString());
+        Assert.assertEquals(1, waitListEngine.queuedCount("G1234", TRAVEL_DATE, 2));
+    }
+
+    private WaitListOrder waitListOrder(String id, long queuedAt, Date waitUntil) {
+        WaitListOrder order = new WaitListOrder();
+        order.setId(id);
+        order.setTrainNumber("G1234");
+        order.setTravelTime(StringUtils.String2Date(TRAVEL_DATE));
+        order.setSeatType(2);
+        order.setQueuedAt(queuedAt);
+        order.setWaitUntilTime(waitUntil);
+        Mockito.when(repository.findById(id)).thenReturn(Optional.of(order));
+        return order;
+    }
+
+    private void mockPreserve(Response<String> response) {
+        Mockito.when(restTemplate.exchange(
+                Mockito.anyString(),
+                Mockito.any(HttpMethod.class),
+                Mockito.any(HttpEntity.class),
+                Mockito.any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(response, HttpStatus.OK));
+    }
+}